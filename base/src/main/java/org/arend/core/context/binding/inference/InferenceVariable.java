@@ -6,6 +6,7 @@ import org.arend.core.expr.InferenceReferenceExpression;
 import org.arend.core.subst.ExprSubstitution;
 import org.arend.term.concrete.Concrete;
 import org.arend.ext.error.LocalError;
+import org.arend.typechecking.computation.TypecheckingMetrics;
 import org.arend.typechecking.implicitargs.equations.Equations;
 import org.arend.typechecking.implicitargs.equations.InferenceVariableListener;
 
@@ -45,6 +46,7 @@ public abstract class InferenceVariable extends BaseInferenceVariable {
       return;
     }
     mySolved = true;
+    TypecheckingMetrics.equationSolved();
     myReference.setSubstExpression(mySubstitution == null ? solution : solution.subst(mySubstitution));
     mySubstitution = null;
     for (InferenceVariableListener listener : myListeners) {
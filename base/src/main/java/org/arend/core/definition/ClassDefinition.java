@@ -19,9 +19,14 @@ import java.util.*;
 
 public class ClassDefinition extends Definition implements CoreClassDefinition {
   private final Set<ClassDefinition> mySuperClasses = new LinkedHashSet<>();
-  private final LinkedHashSet<ClassField> myFields = new LinkedHashSet<>();
+  private final List<ClassField> myFieldList = new ArrayList<>();
+  // Indices of fields that are not stored at their ordinals
+  private final Map<ClassField, Integer> myFieldIndices = new HashMap<>();
+  private final Set<ClassField> myFields = new FieldSet();
+  private volatile Ancestors myAncestors;
+  private volatile int myHierarchyVersion;
   private final List<ClassField> myPersonalFields = new ArrayList<>();
-  private final Map<ClassField, AbsExpression> myImplemented = new HashMap<>();
+  private final Map<ClassField, AbsExpression> myImplemented = new ClassFieldMap<>(this);
   private final Map<ClassField, PiExpression> myOverridden = new HashMap<>();
   private ClassField myCoercingField;
   private Sort mySort = Sort.PROP;
@@ -190,13 +195,52 @@ public class ClassDefinition extends Definition implements CoreClassDefinition {
     return myCoerce;
   }
 
+  /**
+   * The set of all super classes of a class, including the class itself.
+   * It is valid as long as the hierarchy versions of its members coincide with the recorded ones.
+   * The version of a class changes whenever its direct super classes change.
+   */
+  private static class Ancestors {
+    final Set<ClassDefinition> classes;
+    final ClassDefinition[] members;
+    final int[] versions;
+
+    Ancestors(Set<ClassDefinition> classes) {
+      this.classes = classes;
+      members = classes.toArray(new ClassDefinition[0]);
+      versions = new int[members.length];
+      for (int i = 0; i < members.length; i++) {
+        versions[i] = members[i].myHierarchyVersion;
+      }
+    }
+
+    boolean isValid() {
+      for (int i = 0; i < members.length; i++) {
+        if (members[i].myHierarchyVersion != versions[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private Set<ClassDefinition> getAncestors() {
+    Ancestors ancestors = myAncestors;
+    if (ancestors == null || !ancestors.isValid()) {
+      Set<ClassDefinition> classes = Collections.newSetFromMap(new IdentityHashMap<>());
+      classes.add(this);
+      for (ClassDefinition superClass : mySuperClasses) {
+        classes.addAll(superClass.getAncestors());
+      }
+      ancestors = new Ancestors(classes);
+      myAncestors = ancestors;
+    }
+    return ancestors.classes;
+  }
+
   @Override
   public boolean isSubClassOf(@NotNull CoreClassDefinition classDefinition) {
-    if (this.equals(classDefinition)) return true;
-    for (ClassDefinition superClass : mySuperClasses) {
-      if (superClass.isSubClassOf(classDefinition)) return true;
-    }
-    return false;
+    return this == classDefinition || classDefinition instanceof ClassDefinition && getAncestors().contains(classDefinition);
   }
 
   @NotNull
@@ -206,7 +250,9 @@ public class ClassDefinition extends Definition implements CoreClassDefinition {
   }
 
   public void addSuperClass(ClassDefinition superClass) {
-    mySuperClasses.add(superClass);
+    if (mySuperClasses.add(superClass)) {
+      myHierarchyVersion++;
+    }
   }
 
   @NotNull
@@ -214,6 +260,68 @@ public class ClassDefinition extends Definition implements CoreClassDefinition {
     return myFields;
   }
 
+  public int getNumberOfFields() {
+    return myFieldList.size();
+  }
+
+  /**
+   * @return the index of a field in the list of fields of this class or -1 if it is not a field of this class.
+   *         Indices of fields do not change when new fields are added.
+   *         If the field is stored at its {@link ClassField#getOrdinal ordinal}, the index is found without hashing.
+   */
+  public int getFieldIndex(ClassField field) {
+    int ordinal = field.getOrdinal();
+    if (ordinal >= 0 && ordinal < myFieldList.size() && myFieldList.get(ordinal) == field) {
+      return ordinal;
+    }
+    Integer index = myFieldIndices.get(field);
+    return index == null ? -1 : index;
+  }
+
+  public ClassField getField(int index) {
+    return myFieldList.get(index);
+  }
+
+  private class FieldSet extends AbstractSet<ClassField> {
+    @Override
+    public Iterator<ClassField> iterator() {
+      return Collections.unmodifiableList(myFieldList).iterator();
+    }
+
+    @Override
+    public int size() {
+      return myFieldList.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof ClassField && getFieldIndex((ClassField) o) >= 0;
+    }
+
+    @Override
+    public boolean add(ClassField field) {
+      if (getFieldIndex(field) >= 0) {
+        return false;
+      }
+      int index = myFieldList.size();
+      // Ordinals never change, so that fields stored at their ordinals in subclasses remain valid
+      if (field.getParentClass() == ClassDefinition.this && field.getOrdinal() < 0) {
+        field.setOrdinal(index);
+      }
+      if (field.getOrdinal() != index) {
+        myFieldIndices.put(field, index);
+      }
+      myFieldList.add(field);
+      return true;
+    }
+
+    @Override
+    public void clear() {
+      myFieldList.clear();
+      myFieldIndices.clear();
+    }
+  }
+
   @NotNull
   @Override
   public List<? extends ClassField> getPersonalFields() {
@@ -321,7 +429,10 @@ public class ClassDefinition extends Definition implements CoreClassDefinition {
   }
 
   public void clear() {
-    mySuperClasses.clear();
+    if (!mySuperClasses.isEmpty()) {
+      mySuperClasses.clear();
+      myHierarchyVersion++;
+    }
     myFields.clear();
     myPersonalFields.clear();
     myImplemented.clear();
@@ -22,6 +22,7 @@ public class ClassField extends Definition implements CoreClassField {
   private int myNumberOfParameters;
   private boolean myHideable;
   private boolean myCovariant;
+  private int myOrdinal = -1;
 
   public ClassField(TCFieldReferable referable, ClassDefinition parentClass) {
     super(referable, TypeCheckingStatus.HEADER_NEEDS_TYPE_CHECKING);
@@ -46,6 +47,19 @@ public class ClassField extends Definition implements CoreClassField {
     return myParentClass;
   }
 
+  /**
+   * @return the index of this field in the list of fields of its parent class when it was added to it for the first time
+   *         or -1 if it was not added to the parent class yet.
+   *         Subclasses usually store inherited fields at the same indices, so {@link ClassDefinition#getFieldIndex} checks it first.
+   */
+  public int getOrdinal() {
+    return myOrdinal;
+  }
+
+  void setOrdinal(int ordinal) {
+    myOrdinal = ordinal;
+  }
+
   public void setType(PiExpression type) {
     myType = type;
   }
@@ -0,0 +1,297 @@
+package org.arend.core.definition;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * A map from fields of a class to values that is stored in an array indexed by {@link ClassDefinition#getFieldIndex}.
+ * Entries are iterated in the order of fields of the class.
+ * Fields that do not belong to the class are also allowed, but they are kept in an ordinary map.
+ * Iterators are fail-fast: they throw {@link ConcurrentModificationException} if keys are added or removed
+ * not through the iterator itself.
+ */
+public class ClassFieldMap<V> extends AbstractMap<ClassField, V> {
+  private static final Object[] EMPTY = new Object[0];
+  private static final Object NULL = new Object();
+
+  private final ClassDefinition myClass;
+  private Object[] myValues = EMPTY;
+  private int mySize;
+  private int myModCount;
+  private Map<ClassField, V> myOtherFields;
+  private EntrySet myEntrySet;
+
+  public ClassFieldMap(ClassDefinition classDef) {
+    myClass = classDef;
+  }
+
+  public ClassFieldMap(ClassDefinition classDef, Map<? extends ClassField, ? extends V> map) {
+    myClass = classDef;
+    putAll(map);
+  }
+
+  public ClassDefinition getClassDefinition() {
+    return myClass;
+  }
+
+  private int getIndex(Object key) {
+    if (!(key instanceof ClassField)) {
+      return -1;
+    }
+    int index = myClass.getFieldIndex((ClassField) key);
+    // A field might have been added to the map before it was added to the class
+    return index >= 0 && myOtherFields != null && myOtherFields.containsKey(key) ? -1 : index;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> V unmask(Object value) {
+    return value == NULL ? null : (V) value;
+  }
+
+  @Override
+  public int size() {
+    return myOtherFields == null ? mySize : mySize + myOtherFields.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    int index = getIndex(key);
+    if (index >= 0) {
+      return index < myValues.length && myValues[index] != null;
+    }
+    return myOtherFields != null && myOtherFields.containsKey(key);
+  }
+
+  @Override
+  public V get(Object key) {
+    int index = getIndex(key);
+    if (index >= 0) {
+      return index < myValues.length ? unmask(myValues[index]) : null;
+    }
+    return myOtherFields == null ? null : myOtherFields.get(key);
+  }
+
+  @Override
+  public V put(ClassField key, V value) {
+    int index = getIndex(key);
+    if (index < 0) {
+      if (myOtherFields == null) {
+        myOtherFields = new LinkedHashMap<>();
+      }
+      if (!myOtherFields.containsKey(key)) {
+        myModCount++;
+      }
+      return myOtherFields.put(key, value);
+    }
+
+    if (index >= myValues.length) {
+      myValues = Arrays.copyOf(myValues, Math.max(index + 1, myClass.getNumberOfFields()));
+    }
+    Object prev = myValues[index];
+    myValues[index] = value == null ? NULL : value;
+    if (prev == null) {
+      mySize++;
+      myModCount++;
+    }
+    return unmask(prev);
+  }
+
+  @Override
+  public V remove(Object key) {
+    int index = getIndex(key);
+    if (index < 0) {
+      if (myOtherFields == null || !myOtherFields.containsKey(key)) {
+        return null;
+      }
+      myModCount++;
+      return myOtherFields.remove(key);
+    }
+    if (index >= myValues.length || myValues[index] == null) {
+      return null;
+    }
+    Object prev = myValues[index];
+    myValues[index] = null;
+    mySize--;
+    myModCount++;
+    return unmask(prev);
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(myValues, null);
+    mySize = 0;
+    myOtherFields = null;
+    myModCount++;
+  }
+
+  @NotNull
+  @Override
+  public Set<Entry<ClassField, V>> entrySet() {
+    if (myEntrySet == null) {
+      myEntrySet = new EntrySet();
+    }
+    return myEntrySet;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof ClassFieldMap) || ((ClassFieldMap<?>) o).myClass != myClass || myOtherFields != null || ((ClassFieldMap<?>) o).myOtherFields != null) {
+      return super.equals(o);
+    }
+
+    ClassFieldMap<?> map = (ClassFieldMap<?>) o;
+    if (mySize != map.mySize) {
+      return false;
+    }
+    int length = Math.max(myValues.length, map.myValues.length);
+    for (int i = 0; i < length; i++) {
+      Object value1 = i < myValues.length ? myValues[i] : null;
+      Object value2 = i < map.myValues.length ? map.myValues[i] : null;
+      if (!Objects.equals(value1, value2)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  private class EntrySet extends AbstractSet<Entry<ClassField, V>> {
+    @NotNull
+    @Override
+    public Iterator<Entry<ClassField, V>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return ClassFieldMap.this.size();
+    }
+
+    @Override
+    public void clear() {
+      ClassFieldMap.this.clear();
+    }
+  }
+
+  private class FieldEntry implements Entry<ClassField, V> {
+    private final int myIndex;
+
+    FieldEntry(int index) {
+      myIndex = index;
+    }
+
+    @Override
+    public ClassField getKey() {
+      return myClass.getField(myIndex);
+    }
+
+    @Override
+    public V getValue() {
+      return unmask(myValues[myIndex]);
+    }
+
+    @Override
+    public V setValue(V value) {
+      Object prev = myValues[myIndex];
+      myValues[myIndex] = value == null ? NULL : value;
+      return unmask(prev);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Entry)) return false;
+      Entry<?, ?> entry = (Entry<?, ?>) o;
+      return getKey().equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return getKey().hashCode() ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+  private class EntryIterator implements Iterator<Entry<ClassField, V>> {
+    private int myNext = -1;
+    private int myLast = -1;
+    private Iterator<Entry<ClassField, V>> myOtherIterator;
+    private boolean myLastIsOther;
+    private int myExpectedModCount = myModCount;
+
+    EntryIterator() {
+      advance();
+    }
+
+    private void checkModCount() {
+      if (myModCount != myExpectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+
+    private void advance() {
+      do {
+        myNext++;
+      } while (myNext < myValues.length && myValues[myNext] == null);
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (myNext < myValues.length) {
+        return true;
+      }
+      if (myOtherIterator == null && myOtherFields != null) {
+        myOtherIterator = myOtherFields.entrySet().iterator();
+      }
+      return myOtherIterator != null && myOtherIterator.hasNext();
+    }
+
+    @Override
+    public Entry<ClassField, V> next() {
+      checkModCount();
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (myNext < myValues.length) {
+        myLast = myNext;
+        myLastIsOther = false;
+        advance();
+        return new FieldEntry(myLast);
+      }
+      myLastIsOther = true;
+      return myOtherIterator.next();
+    }
+
+    @Override
+    public void remove() {
+      checkModCount();
+      if (myLastIsOther) {
+        myOtherIterator.remove();
+        myModCount++;
+        myExpectedModCount = myModCount;
+        return;
+      }
+      if (myLast < 0 || myValues[myLast] == null) {
+        throw new IllegalStateException();
+      }
+      myValues[myLast] = null;
+      mySize--;
+      myModCount++;
+      myExpectedModCount = myModCount;
+    }
+  }
+}
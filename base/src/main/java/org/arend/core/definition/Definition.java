@@ -38,6 +38,14 @@ public abstract class Definition implements Variable, CoreDefinition {
     return myReferable;
   }
 
+  /**
+   * Moves this definition to another referable, for example, when its module is parsed again.
+   * The typechecker state should be updated accordingly.
+   */
+  public void setReferable(TCReferable referable) {
+    myReferable = referable;
+  }
+
   public DependentLink getParameters() {
     return EmptyDependentLink.getInstance();
   }
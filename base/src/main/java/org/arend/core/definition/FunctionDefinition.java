@@ -7,6 +7,7 @@ import org.arend.core.context.param.UntypedDependentLink;
 import org.arend.core.elimtree.Body;
 import org.arend.core.expr.*;
 import org.arend.core.expr.type.TypeExpression;
+import org.arend.core.expr.visitor.WhnfCache;
 import org.arend.core.sort.Sort;
 import org.arend.core.subst.ExprSubstitution;
 import org.arend.core.subst.LevelSubstitution;
@@ -17,12 +18,14 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class FunctionDefinition extends Definition implements Function, CoreFunctionDefinition {
   private DependentLink myParameters;
   private Expression myResultType;
   private Expression myResultTypeLevel;
   private Body myBody;
+  private volatile Supplier<? extends Body> myBodyLoader;
   private List<Integer> myParametersTypecheckingOrder;
   private Kind myKind = Kind.FUNC;
   private boolean myBodyIsHidden = false;
@@ -38,24 +41,49 @@ public class FunctionDefinition extends Definition implements Function, CoreFunc
 
   @Override
   public Body getBody() {
-    return myKind != Kind.FUNC || myBodyIsHidden ? null : myBody;
+    return myKind != Kind.FUNC || myBodyIsHidden ? null : getActualBody();
   }
 
   @Override
   public Body getActualBody() {
+    if (myBodyLoader != null) {
+      loadBody();
+    }
     return myBody;
   }
 
+  private synchronized void loadBody() {
+    Supplier<? extends Body> bodyLoader = myBodyLoader;
+    if (bodyLoader != null) {
+      myBody = bodyLoader.get();
+      myBodyLoader = null;
+    }
+  }
+
   public boolean isBodyHidden() {
     return myBodyIsHidden;
   }
 
   public void hideBody() {
     myBodyIsHidden = true;
+    WhnfCache.definitionChanged();
   }
 
   public void setBody(Body body) {
     myBody = body;
+    myBodyLoader = null;
+    WhnfCache.definitionChanged();
+  }
+
+  /**
+   * Sets a function that computes the body of this definition the first time it is requested.
+   */
+  public void setBodyLoader(Supplier<? extends Body> bodyLoader) {
+    myBodyLoader = bodyLoader;
+  }
+
+  public boolean isBodyLoaded() {
+    return myBodyLoader == null;
   }
 
   public boolean isSFunc() {
@@ -70,6 +98,7 @@ public class FunctionDefinition extends Definition implements Function, CoreFunc
 
   public void setKind(Kind kind) {
     myKind = kind;
+    WhnfCache.definitionChanged();
   }
 
   @NotNull
@@ -35,7 +35,7 @@ public class BigIntegerExpression extends IntegerExpression {
 
   @Override
   public IntegerExpression pred() {
-    return new BigIntegerExpression(myInteger.subtract(BigInteger.ONE));
+    return make(myInteger.subtract(BigInteger.ONE));
   }
 
   @Override
@@ -74,29 +74,29 @@ public class BigIntegerExpression extends IntegerExpression {
   }
 
   @Override
-  public BigIntegerExpression mul(IntegerExpression expr) {
-    return new BigIntegerExpression(myInteger.multiply(expr.getBigInteger()));
+  public IntegerExpression mul(IntegerExpression expr) {
+    return expr.isZero() ? expr : new BigIntegerExpression(myInteger.multiply(expr.getBigInteger()));
   }
 
   @Override
   public ConCallExpression minus(IntegerExpression expr) {
     BigInteger result = myInteger.subtract(expr.getBigInteger());
-    return result.signum() >= 0 ? Pos(new BigIntegerExpression(result)) : Neg(new BigIntegerExpression(result.negate()));
+    return result.signum() >= 0 ? Pos(make(result)) : Neg(make(result.negate()));
   }
 
   @Override
-  public BigIntegerExpression minus(int x) {
-    return new BigIntegerExpression(myInteger.subtract(BigInteger.valueOf(x)));
+  public IntegerExpression minus(int x) {
+    return make(myInteger.subtract(BigInteger.valueOf(x)));
   }
 
   @Override
-  public BigIntegerExpression div(IntegerExpression expr) {
-    return expr.isZero() ? this : new BigIntegerExpression(myInteger.divide(expr.getBigInteger()));
+  public IntegerExpression div(IntegerExpression expr) {
+    return expr.isZero() ? this : make(myInteger.divide(expr.getBigInteger()));
   }
 
   @Override
-  public BigIntegerExpression mod(IntegerExpression expr) {
-    return expr.isZero() ? this : new BigIntegerExpression(myInteger.remainder(expr.getBigInteger()));
+  public IntegerExpression mod(IntegerExpression expr) {
+    return expr.isZero() ? this : make(myInteger.remainder(expr.getBigInteger()));
   }
 
   @Override
@@ -107,8 +107,8 @@ public class BigIntegerExpression extends IntegerExpression {
       fields.add(this);
     } else {
       BigInteger[] divMod = myInteger.divideAndRemainder(expr.getBigInteger());
-      fields.add(new BigIntegerExpression(divMod[0]));
-      fields.add(new BigIntegerExpression(divMod[1]));
+      fields.add(make(divMod[0]));
+      fields.add(make(divMod[1]));
     }
     return new TupleExpression(fields, Prelude.DIV_MOD_TYPE);
   }
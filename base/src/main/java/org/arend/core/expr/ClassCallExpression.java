@@ -7,6 +7,7 @@ import org.arend.core.context.param.EmptyDependentLink;
 import org.arend.core.context.param.TypedDependentLink;
 import org.arend.core.definition.ClassDefinition;
 import org.arend.core.definition.ClassField;
+import org.arend.core.definition.ClassFieldMap;
 import org.arend.core.definition.UniverseKind;
 import org.arend.core.expr.type.Type;
 import org.arend.core.expr.type.TypeExpression;
@@ -170,7 +171,7 @@ public class ClassCallExpression extends DefCallExpression implements Type, Core
   }
 
   public DependentLink getClassFieldParameters() {
-    Map<ClassField, Expression> implementations = new HashMap<>();
+    Map<ClassField, Expression> implementations = new ClassFieldMap<>(getDefinition());
     NewExpression newExpr = new NewExpression(null, new ClassCallExpression(getDefinition(), getSortArgument(), implementations, Sort.PROP, UniverseKind.NO_UNIVERSES));
     newExpr.getClassCall().copyImplementationsFrom(this);
 
@@ -154,7 +154,7 @@ public abstract class Expression implements Body, CoreExpression {
   @NotNull
   @Override
   public Expression normalize(@NotNull NormalizationMode mode) {
-    return accept(NormalizeVisitor.INSTANCE, mode);
+    return mode == NormalizationMode.WHNF ? WhnfCache.normalize(this) : accept(NormalizeVisitor.INSTANCE, mode);
   }
 
   @Nullable
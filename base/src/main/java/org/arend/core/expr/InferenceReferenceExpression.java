@@ -5,6 +5,7 @@ import org.arend.core.context.binding.inference.InferenceVariable;
 import org.arend.core.definition.ClassField;
 import org.arend.core.expr.visitor.ExpressionVisitor;
 import org.arend.core.expr.visitor.ExpressionVisitor2;
+import org.arend.core.expr.visitor.WhnfCache;
 import org.arend.ext.core.expr.CoreExpressionVisitor;
 import org.arend.ext.core.expr.CoreInferenceReferenceExpression;
 import org.arend.ext.core.ops.CMP;
@@ -65,6 +66,7 @@ public class InferenceReferenceExpression extends Expression implements CoreInfe
 
   public void setSubstExpression(Expression substExpression) {
     mySubstExpression = substExpression;
+    WhnfCache.inferenceVariableSolved();
   }
 
   @Override
@@ -9,7 +9,20 @@ import org.arend.prelude.Prelude;
 import org.arend.util.Decision;
 import org.jetbrains.annotations.NotNull;
 
+import java.math.BigInteger;
+
 public abstract class IntegerExpression extends Expression implements CoreIntegerExpression {
+  /**
+   * @return a {@link SmallIntegerExpression} if {@code integer} fits into an int and a {@link BigIntegerExpression} otherwise.
+   */
+  public static IntegerExpression make(BigInteger integer) {
+    return integer.bitLength() < Integer.SIZE ? new SmallIntegerExpression(integer.intValue()) : new BigIntegerExpression(integer);
+  }
+
+  public static IntegerExpression make(long integer) {
+    return integer >= Integer.MIN_VALUE && integer <= Integer.MAX_VALUE ? new SmallIntegerExpression((int) integer) : new BigIntegerExpression(BigInteger.valueOf(integer));
+  }
+
   public abstract int getSmallInteger();
 
   public abstract IntegerExpression suc();
@@ -1,6 +1,7 @@
 package org.arend.core.expr;
 
 import org.arend.core.definition.ClassField;
+import org.arend.core.definition.ClassFieldMap;
 import org.arend.core.definition.UniverseKind;
 import org.arend.core.expr.let.LetClause;
 import org.arend.core.expr.let.LetClausePattern;
@@ -15,7 +16,6 @@ import org.arend.util.Decision;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -62,7 +62,7 @@ public class LetExpression extends Expression implements CoreLetExpression {
     NewExpression newExpr = expression.cast(NewExpression.class);
     if (newExpr != null && pattern.getFields() != null && pattern.getFields().size() == pattern.getPatterns().size()) {
       ClassCallExpression classCall = newExpr.getClassCall();
-      Map<ClassField, Expression> implementations = new HashMap<>();
+      Map<ClassField, Expression> implementations = new ClassFieldMap<>(classCall.getDefinition());
       ClassCallExpression resultClassCall = new ClassCallExpression(classCall.getDefinition(), classCall.getSortArgument(), implementations, Sort.PROP, UniverseKind.NO_UNIVERSES);
 
       boolean someNotImplemented = false;
@@ -1,6 +1,7 @@
 package org.arend.core.expr;
 
 import org.arend.core.definition.ClassField;
+import org.arend.core.definition.ClassFieldMap;
 import org.arend.core.definition.UniverseKind;
 import org.arend.core.expr.visitor.ExpressionVisitor;
 import org.arend.core.expr.visitor.ExpressionVisitor2;
@@ -11,7 +12,6 @@ import org.arend.util.Decision;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public class NewExpression extends Expression implements CoreNewExpression {
@@ -27,7 +27,7 @@ public class NewExpression extends Expression implements CoreNewExpression {
     NewExpression newExpr = renewExpression == null ? null : renewExpression.cast(NewExpression.class);
     if (newExpr != null) {
       myRenewExpression = newExpr.myRenewExpression;
-      Map<ClassField, Expression> implementations = new HashMap<>();
+      Map<ClassField, Expression> implementations = new ClassFieldMap<>(classCall.getDefinition());
       NewExpression myNewExpr = new NewExpression(newExpr, classCall);
       for (ClassField field : classCall.getDefinition().getFields()) {
         if (classCall.getDefinition().isImplemented(field)) {
@@ -99,7 +99,7 @@ public class NewExpression extends Expression implements CoreNewExpression {
       return myClassCall;
     }
 
-    Map<ClassField, Expression> implementations = new HashMap<>();
+    Map<ClassField, Expression> implementations = new ClassFieldMap<>(myClassCall.getDefinition());
     for (ClassField field : myClassCall.getDefinition().getFields()) {
       if (myClassCall.getDefinition().isImplemented(field)) {
         continue;
@@ -11,8 +11,6 @@ import static org.arend.core.expr.ExpressionFactory.Neg;
 import static org.arend.core.expr.ExpressionFactory.Pos;
 
 public class SmallIntegerExpression extends IntegerExpression {
-  private final static int MAX_VALUE_TO_MULTIPLY = 45000;
-
   private final int myInteger;
 
   public SmallIntegerExpression(int integer) {
@@ -36,20 +34,12 @@ public class SmallIntegerExpression extends IntegerExpression {
 
   @Override
   public IntegerExpression suc() {
-    if (myInteger < 0) {
-      return new SmallIntegerExpression(myInteger + 1);
-    }
-    int newInt = myInteger + 1;
-    return newInt < 0 ? new BigIntegerExpression(BigInteger.valueOf(myInteger).add(BigInteger.ONE)) : new SmallIntegerExpression(newInt);
+    return make((long) myInteger + 1);
   }
 
   @Override
   public IntegerExpression pred() {
-    if (myInteger > 0) {
-      return new SmallIntegerExpression(myInteger - 1);
-    }
-    int newInt = myInteger - 1;
-    return newInt > 0 ? new BigIntegerExpression(BigInteger.valueOf(myInteger).subtract(BigInteger.ONE)) : new SmallIntegerExpression(newInt);
+    return make((long) myInteger - 1);
   }
 
   @Override
@@ -79,39 +69,25 @@ public class SmallIntegerExpression extends IntegerExpression {
 
   @Override
   public IntegerExpression plus(IntegerExpression expr) {
-    if (expr instanceof SmallIntegerExpression) {
-      int sum = myInteger + ((SmallIntegerExpression) expr).myInteger;
-      if (sum >= 0) {
-        return new SmallIntegerExpression(sum);
-      }
-    }
-
-    return new BigIntegerExpression(BigInteger.valueOf(myInteger).add(expr.getBigInteger()));
+    return expr instanceof SmallIntegerExpression ? make((long) myInteger + ((SmallIntegerExpression) expr).myInteger) : make(BigInteger.valueOf(myInteger).add(expr.getBigInteger()));
   }
 
   @Override
   public IntegerExpression plus(int num) {
-    int sum = myInteger + num;
-    return sum >= 0 ? new SmallIntegerExpression(sum) : new BigIntegerExpression(BigInteger.valueOf(myInteger).add(BigInteger.valueOf(num)));
+    return make((long) myInteger + num);
   }
 
   @Override
   public IntegerExpression mul(IntegerExpression expr) {
-    if (expr instanceof SmallIntegerExpression) {
-      int other = ((SmallIntegerExpression) expr).getInteger();
-      if (myInteger <= MAX_VALUE_TO_MULTIPLY && other <= MAX_VALUE_TO_MULTIPLY) {
-        return new SmallIntegerExpression(myInteger * other);
-      }
-    }
-
-    return new BigIntegerExpression(BigInteger.valueOf(myInteger).multiply(expr.getBigInteger()));
+    // The product of two ints always fits into a long
+    return expr instanceof SmallIntegerExpression ? make((long) myInteger * ((SmallIntegerExpression) expr).myInteger) : make(BigInteger.valueOf(myInteger).multiply(expr.getBigInteger()));
   }
 
   @Override
   public ConCallExpression minus(IntegerExpression expr) {
     if (expr instanceof SmallIntegerExpression) {
-      int result = myInteger - ((SmallIntegerExpression) expr).myInteger;
-      return result >= 0 ? Pos(new SmallIntegerExpression(result)) : Neg(new SmallIntegerExpression(-result));
+      long result = (long) myInteger - ((SmallIntegerExpression) expr).myInteger;
+      return result >= 0 ? Pos(make(result)) : Neg(make(-result));
     } else {
       return new BigIntegerExpression(BigInteger.valueOf(myInteger)).minus(expr);
     }
@@ -133,7 +109,7 @@ public class SmallIntegerExpression extends IntegerExpression {
       return new SmallIntegerExpression(myInteger / other);
     }
 
-    return new BigIntegerExpression(BigInteger.valueOf(myInteger).divide(expr.getBigInteger()));
+    return make(BigInteger.valueOf(myInteger).divide(expr.getBigInteger()));
   }
 
   @Override
@@ -146,7 +122,7 @@ public class SmallIntegerExpression extends IntegerExpression {
       return new SmallIntegerExpression(myInteger % other);
     }
 
-    return new BigIntegerExpression(BigInteger.valueOf(myInteger).remainder(expr.getBigInteger()));
+    return make(BigInteger.valueOf(myInteger).remainder(expr.getBigInteger()));
   }
 
   @Override
@@ -162,8 +138,8 @@ public class SmallIntegerExpression extends IntegerExpression {
         fields.add(new SmallIntegerExpression(myInteger % other));
       } else {
         BigInteger[] divMod = BigInteger.valueOf(myInteger).divideAndRemainder(expr.getBigInteger());
-        fields.add(new BigIntegerExpression(divMod[0]));
-        fields.add(new BigIntegerExpression(divMod[1]));
+        fields.add(make(divMod[0]));
+        fields.add(make(divMod[1]));
       }
     }
     return new TupleExpression(fields, Prelude.DIV_MOD_TYPE);
@@ -113,6 +113,11 @@ public class CompareVisitor implements ExpressionVisitor2<Expression, Expression
       return true;
     }
 
+    // Numerals are in normal form, so they can be compared without normalization
+    if (expr1 instanceof IntegerExpression && expr2 instanceof IntegerExpression) {
+      return ((IntegerExpression) expr1).isEqual((IntegerExpression) expr2);
+    }
+
     // Another optimization
     boolean check;
     if (expr1 instanceof FunCallExpression) {
@@ -546,7 +551,7 @@ public class CompareVisitor implements ExpressionVisitor2<Expression, Expression
           }
         }
       } else {
-        Map<ClassField, Expression> implementations = new HashMap<>();
+        Map<ClassField, Expression> implementations = new ClassFieldMap<>(classCall1.getDefinition());
         codSort = classCall1.getSort();
         ClassCallExpression classCall = new ClassCallExpression(classCall1.getDefinition(), classCall1.getSortArgument(), implementations, codSort, classCall1.getUniverseKind());
         int i = 0;
@@ -6,6 +6,7 @@ import org.arend.core.context.binding.Variable;
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.context.param.SingleDependentLink;
 import org.arend.core.definition.ClassField;
+import org.arend.core.definition.ClassFieldMap;
 import org.arend.core.elimtree.ElimBody;
 import org.arend.core.elimtree.ElimClause;
 import org.arend.core.expr.*;
@@ -122,7 +123,7 @@ public class ElimBindingVisitor extends BaseExpressionVisitor<Void, Expression>
   }
 
   public ClassCallExpression visitClassCall(ClassCallExpression expr, boolean removeImplementations) {
-    Map<ClassField, Expression> newFieldSet = new HashMap<>();
+    Map<ClassField, Expression> newFieldSet = new ClassFieldMap<>(expr.getDefinition());
     ClassCallExpression result = new ClassCallExpression(expr.getDefinition(), expr.getSortArgument(), newFieldSet, expr.getSort(), expr.getUniverseKind());
     if (myKeepVisitor != null) {
       myKeepVisitor.getBindings().add(expr.getThisBinding());
@@ -0,0 +1,151 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.Body;
+import org.arend.core.elimtree.ElimBody;
+import org.arend.core.elimtree.ElimClause;
+import org.arend.core.expr.*;
+import org.arend.core.pattern.Pattern;
+import org.arend.core.sort.Sort;
+import org.arend.core.subst.ExprSubstitution;
+import org.arend.core.subst.LevelSubstitution;
+import org.arend.ext.core.ops.NormalizationMode;
+import org.arend.prelude.Prelude;
+import org.arend.typechecking.computation.ComputationRunner;
+import org.arend.typechecking.computation.ReductionBudget;
+import org.arend.typechecking.computation.UnfoldingProfiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates function calls to weak head normal form.
+ * {@link NormalizeVisitor} substitutes arguments into the whole body of a function before it continues evaluation.
+ * This machine keeps the arguments in an environment instead and follows the head of the body,
+ * so only the subterms that are matched on or returned are substituted.
+ * The result is the same as the result of {@link NormalizeVisitor}.
+ */
+public class EnvironmentMachine {
+  private static final ThreadLocal<Boolean> ENABLED = ThreadLocal.withInitial(() -> false);
+
+  public static boolean isEnabled() {
+    return ENABLED.get();
+  }
+
+  /**
+   * Runs a computation in the current thread with the selected evaluator for calls of functions in {@link NormalizationMode#WHNF}.
+   * Typechecking sessions select it with {@link org.arend.typechecking.order.listener.TypecheckingOrderingListener#setEnvironmentMachineEnabled}.
+   *
+   * @param enabled  if it is true, {@link NormalizeVisitor} evaluates calls of functions with this machine.
+   */
+  public static <T> T run(boolean enabled, Supplier<T> supplier) {
+    boolean previous = ENABLED.get();
+    if (enabled == previous) {
+      return supplier.get();
+    }
+
+    ENABLED.set(enabled);
+    try {
+      return supplier.get();
+    } finally {
+      ENABLED.set(previous);
+    }
+  }
+
+  /**
+   * Evaluates a call of a function.
+   *
+   * @param definition    the function.
+   * @param sortArgument  the sort argument of the call.
+   * @param arguments     arguments of the call.
+   * @param body          the body of the function, which is either an {@link Expression} or an {@link ElimBody}.
+   *
+   * @return the weak head normal form of the call or null if the call does not evaluate.
+   */
+  static Expression evaluate(FunctionDefinition definition, Sort sortArgument, List<? extends Expression> arguments, Body body) {
+    ExprSubstitution environment = new ExprSubstitution();
+    Expression expr = unfold(definition, arguments, body, environment);
+    if (expr == null) {
+      return null;
+    }
+    LevelSubstitution levelSubstitution = sortArgument.toLevelSubstitution();
+    ComputationRunner.checkCanceled();
+
+    while (true) {
+      if (expr instanceof ReferenceExpression) {
+        Expression value = environment.get(((ReferenceExpression) expr).getBinding());
+        if (value != null) {
+          return value.accept(NormalizeVisitor.INSTANCE, NormalizationMode.WHNF);
+        }
+      } else if (expr instanceof FunCallExpression) {
+        FunCallExpression funCall = (FunCallExpression) expr;
+        FunctionDefinition function = funCall.getDefinition();
+        Body functionBody = isEvaluated(function) ? function.getBody() : null;
+        if (functionBody instanceof Expression || functionBody instanceof ElimBody) {
+          List<Expression> args = new ArrayList<>(funCall.getDefCallArguments().size());
+          for (Expression arg : funCall.getDefCallArguments()) {
+            args.add(arg.subst(environment, levelSubstitution));
+          }
+          Sort sort = funCall.getSortArgument().subst(levelSubstitution);
+
+          ExprSubstitution newEnvironment = new ExprSubstitution();
+          expr = unfold(function, args, functionBody, newEnvironment);
+          if (expr == null) {
+            return new FunCallExpression(function, sort, args);
+          }
+          environment = newEnvironment;
+          levelSubstitution = sort.toLevelSubstitution();
+          ComputationRunner.checkCanceled();
+          continue;
+        }
+      } else if (expr instanceof CaseExpression && !((CaseExpression) expr).isSCase()) {
+        CaseExpression caseExpr = (CaseExpression) expr;
+        List<Expression> args = new ArrayList<>(caseExpr.getArguments().size());
+        for (Expression arg : caseExpr.getArguments()) {
+          args.add(arg.subst(environment, levelSubstitution));
+        }
+
+        // Clauses of a case expression may refer to the bindings of the enclosing function
+        ExprSubstitution newEnvironment = new ExprSubstitution(environment);
+        ElimClause<Pattern> clause = NormalizeVisitor.INSTANCE.matchClause(caseExpr.getElimBody(), args, newEnvironment);
+        if (clause == null) {
+          return caseExpr.subst(environment, levelSubstitution);
+        }
+        expr = Objects.requireNonNull(clause.getExpression());
+        environment = newEnvironment;
+        continue;
+      }
+
+      return expr.subst(environment, levelSubstitution).accept(NormalizeVisitor.INSTANCE, NormalizationMode.WHNF);
+    }
+  }
+
+  private static Expression unfold(FunctionDefinition definition, List<? extends Expression> arguments, Body body, ExprSubstitution environment) {
+    Expression result;
+    if (body instanceof Expression) {
+      environment.add(definition.getParameters(), arguments);
+      result = (Expression) body;
+    } else {
+      ElimClause<Pattern> clause = NormalizeVisitor.INSTANCE.matchClause((ElimBody) body, arguments, environment);
+      if (clause == null) {
+        return null;
+      }
+      result = Objects.requireNonNull(clause.getExpression());
+    }
+
+    ReductionBudget.step();
+    UnfoldingProfiler.unfolded(definition);
+    return result;
+  }
+
+  // Functions that NormalizeVisitor evaluates by substituting arguments into their bodies without special cases
+  private static boolean isEvaluated(FunctionDefinition function) {
+    return !function.isSFunc() && function.status() == Definition.TypeCheckingStatus.NO_ERRORS &&
+      function != Prelude.COERCE && function != Prelude.COERCE2 &&
+      function != Prelude.PLUS && function != Prelude.MINUS && function != Prelude.MUL &&
+      function != Prelude.DIV_MOD && function != Prelude.DIV && function != Prelude.MOD;
+  }
+}
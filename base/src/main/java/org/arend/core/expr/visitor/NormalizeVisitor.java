@@ -11,11 +11,14 @@ import org.arend.core.elimtree.*;
 import org.arend.core.expr.*;
 import org.arend.core.expr.let.LetClause;
 import org.arend.core.pattern.Pattern;
+import org.arend.core.sort.Sort;
 import org.arend.core.subst.ExprSubstitution;
 import org.arend.core.subst.LevelSubstitution;
 import org.arend.ext.core.ops.NormalizationMode;
 import org.arend.prelude.Prelude;
 import org.arend.typechecking.computation.ComputationRunner;
+import org.arend.typechecking.computation.ReductionBudget;
+import org.arend.typechecking.computation.UnfoldingProfiler;
 import org.arend.util.Pair;
 
 import java.util.*;
@@ -88,13 +91,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
         return arg1.accept(this, mode);
       }
 
-      if (mode != NormalizationMode.WHNF) {
-        arg1 = arg1.accept(this, mode);
-      }
-      for (int i = 0; intExpr2.compare(i) > 0; i++) {
-        arg1 = Suc(arg1);
-      }
-      return arg1;
+      return addOffset(arg1, intExpr2, expr.getSortArgument(), mode);
     }
 
     List<Expression> newDefCallArgs = new ArrayList<>(2);
@@ -110,6 +107,71 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
     return result;
   }
 
+  // Represents a WHNF expression as suc^offset(base), where base is neither suc nor a sum with a numeral
+  private Pair<Expression, IntegerExpression> getOffset(Expression expr) {
+    IntegerExpression offset = new SmallIntegerExpression(0);
+    while (true) {
+      ConCallExpression conCall = expr.cast(ConCallExpression.class);
+      if (conCall != null && conCall.getDefinition() == Prelude.SUC) {
+        offset = offset.suc();
+        expr = conCall.getDefCallArguments().get(0);
+        continue;
+      }
+
+      FunCallExpression funCall = expr.cast(FunCallExpression.class);
+      IntegerExpression intExpr = funCall != null && funCall.getDefinition() == Prelude.PLUS ? funCall.getDefCallArguments().get(1).cast(IntegerExpression.class) : null;
+      if (intExpr != null) {
+        offset = offset.plus(intExpr);
+        expr = funCall.getDefCallArguments().get(0).accept(this, NormalizationMode.WHNF);
+        continue;
+      }
+
+      return new Pair<>(expr, offset);
+    }
+  }
+
+  // In WHNF, only the head constructor is computed, so large numerals do not unfold into chains of suc
+  private Expression addOffset(Expression base, IntegerExpression offset, Sort sortArgument, NormalizationMode mode) {
+    if (offset.isZero()) {
+      return mode == NormalizationMode.WHNF ? base : base.accept(this, mode);
+    }
+    if (mode == NormalizationMode.WHNF) {
+      if (offset.isOne()) {
+        return Suc(base);
+      }
+      List<Expression> args = new ArrayList<>(2);
+      args.add(base);
+      args.add(offset.pred());
+      return Suc(new FunCallExpression(Prelude.PLUS, sortArgument, args));
+    }
+
+    Expression result = base.accept(this, mode);
+    for (int i = 0; offset.compare(i) > 0; i++) {
+      result = Suc(result);
+    }
+    return result;
+  }
+
+  private static boolean isOffset(Expression expr) {
+    FunCallExpression funCall = expr.cast(FunCallExpression.class);
+    if (funCall == null || funCall.getDefinition() != Prelude.PLUS) {
+      return false;
+    }
+    IntegerExpression intExpr = funCall.getDefCallArguments().get(1).cast(IntegerExpression.class);
+    return intExpr != null && !intExpr.isZero();
+  }
+
+  private static IntegerExpression min(IntegerExpression expr1, IntegerExpression expr2) {
+    return expr1.compare(expr2) <= 0 ? expr1 : expr2;
+  }
+
+  // Assumes that expr1 >= expr2
+  private static IntegerExpression subtract(IntegerExpression expr1, IntegerExpression expr2) {
+    return expr1 instanceof SmallIntegerExpression && expr2 instanceof SmallIntegerExpression
+      ? new SmallIntegerExpression(((SmallIntegerExpression) expr1).getInteger() - ((SmallIntegerExpression) expr2).getInteger())
+      : IntegerExpression.make(expr1.getBigInteger().subtract(expr2.getBigInteger()));
+  }
+
   private Expression normalizeMinus(DefCallExpression expr, NormalizationMode mode) {
     List<? extends Expression> defCallArgs = expr.getDefCallArguments();
     Expression arg1 = defCallArgs.get(0).accept(this, NormalizationMode.WHNF);
@@ -126,25 +188,25 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
         return Neg(mode == NormalizationMode.WHNF ? arg2 : arg2.accept(this, mode));
       }
 
-      ConCallExpression conCall2 = arg2.cast(ConCallExpression.class);
-      while (!intExpr1.isZero() && conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
-        intExpr1 = intExpr1.pred();
-        arg2 = conCall2.getDefCallArguments().get(0);
-        conCall2 = arg2.cast(ConCallExpression.class);
+      Pair<Expression, IntegerExpression> offset2 = getOffset(arg2);
+      IntegerExpression base2 = offset2.proj1.cast(IntegerExpression.class);
+      if (base2 != null) {
+        return intExpr1.minus(base2.plus(offset2.proj2));
       }
 
-      if (conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
-        return Neg(conCall2);
+      IntegerExpression common = min(intExpr1, offset2.proj2);
+      if (offset2.proj2.compare(common) > 0) {
+        return Neg(addOffset(offset2.proj1, subtract(offset2.proj2, common), expr.getSortArgument(), mode));
       }
 
       List<Expression> newDefCallArgs = new ArrayList<>(2);
-      newDefCallArgs.add(intExpr1);
-      newDefCallArgs.add(mode == NormalizationMode.WHNF ? arg2 : arg2.accept(this, mode));
+      newDefCallArgs.add(subtract(intExpr1, common));
+      newDefCallArgs.add(mode == NormalizationMode.WHNF ? offset2.proj1 : offset2.proj1.accept(this, mode));
       return new FunCallExpression(Prelude.MINUS, expr.getSortArgument(), newDefCallArgs);
     }
 
-    ConCallExpression conCall1 = arg1.cast(ConCallExpression.class);
-    if (conCall1 == null || conCall1.getDefinition() != Prelude.SUC) {
+    Pair<Expression, IntegerExpression> offset1 = getOffset(arg1);
+    if (offset1.proj2.isZero()) {
       List<Expression> newDefCallArgs = new ArrayList<>(2);
       newDefCallArgs.add(mode == NormalizationMode.WHNF ? arg1 : arg1.accept(this, mode));
       newDefCallArgs.add(arg2.accept(this, mode));
@@ -152,35 +214,34 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
     }
 
     arg2 = arg2.accept(this, NormalizationMode.WHNF);
+    Pair<Expression, IntegerExpression> offset2;
     IntegerExpression intExpr2 = arg2.cast(IntegerExpression.class);
     if (intExpr2 != null) {
-      while (!intExpr2.isZero() && conCall1 != null && conCall1.getDefinition() == Prelude.SUC) {
-        intExpr2 = intExpr2.pred();
-        arg1 = conCall1.getDefCallArguments().get(0);
-        conCall1 = arg1.cast(ConCallExpression.class);
+      offset2 = new Pair<>(new SmallIntegerExpression(0), intExpr2);
+    } else {
+      offset2 = getOffset(arg2);
+      IntegerExpression base2 = offset2.proj1.cast(IntegerExpression.class);
+      if (base2 != null) {
+        offset2 = new Pair<>(new SmallIntegerExpression(0), base2.plus(offset2.proj2));
       }
+    }
 
-      if (conCall1 != null && conCall1.getDefinition() == Prelude.SUC) {
-        return Pos(conCall1);
+    IntegerExpression common = min(offset1.proj2, offset2.proj2);
+    IntegerExpression rest1 = subtract(offset1.proj2, common);
+    IntegerExpression rest2 = subtract(offset2.proj2, common);
+    if (offset2.proj1 instanceof IntegerExpression) {
+      if (!rest1.isZero()) {
+        return Pos(addOffset(offset1.proj1, rest1, expr.getSortArgument(), mode));
       }
-
       List<Expression> newDefCallArgs = new ArrayList<>(2);
-      newDefCallArgs.add(mode == NormalizationMode.WHNF ? arg1 : arg1.accept(this, mode));
-      newDefCallArgs.add(intExpr2);
+      newDefCallArgs.add(mode == NormalizationMode.WHNF ? offset1.proj1 : offset1.proj1.accept(this, mode));
+      newDefCallArgs.add(rest2);
       return new FunCallExpression(Prelude.MINUS, expr.getSortArgument(), newDefCallArgs);
     }
 
-    ConCallExpression conCall2 = arg2.cast(ConCallExpression.class);
-    while (conCall1 != null && conCall1.getDefinition() == Prelude.SUC && conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
-      arg1 = conCall1.getDefCallArguments().get(0);
-      conCall1 = arg1.cast(ConCallExpression.class);
-      arg2 = conCall2.getDefCallArguments().get(0);
-      conCall2 = arg2.cast(ConCallExpression.class);
-    }
-
     List<Expression> newDefCallArgs = new ArrayList<>(2);
-    newDefCallArgs.add(mode == NormalizationMode.WHNF ? arg1 : arg1.accept(this, mode));
-    newDefCallArgs.add(mode == NormalizationMode.WHNF ? arg2 : arg2.accept(this, mode));
+    newDefCallArgs.add(addOffset(offset1.proj1, rest1, expr.getSortArgument(), mode));
+    newDefCallArgs.add(addOffset(offset2.proj1, rest2, expr.getSortArgument(), mode));
     return new FunCallExpression(Prelude.MINUS, expr.getSortArgument(), newDefCallArgs);
   }
 
@@ -287,6 +348,10 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
     }
 
     if (definition == Prelude.SUC) {
+      // suc (x + n) is already in WHNF; normalizing its argument would unfold the numeral one step at a time
+      if (mode == NormalizationMode.WHNF && isOffset(defCallArgs.get(0))) {
+        return expr;
+      }
       Expression arg = defCallArgs.get(0).accept(this, mode);
       IntegerExpression intArg = arg.cast(IntegerExpression.class);
       return intArg != null ? intArg.suc() : Suc(arg);
@@ -338,6 +403,11 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
       body = elim.getOtherwise();
     }
 
+    if (mode == NormalizationMode.WHNF && expr instanceof FunCallExpression && (body instanceof Expression || body instanceof ElimBody) && EnvironmentMachine.isEnabled()) {
+      Expression result = EnvironmentMachine.evaluate((FunctionDefinition) definition, expr.getSortArgument(), defCallArgs, body);
+      return result == null ? applyDefCall(expr, mode) : result;
+    }
+
     Expression result;
     if (body instanceof Expression) {
       result = mode == NormalizationMode.RNF || mode == NormalizationMode.RNF_EXP ? null : ((Expression) body).subst(getDataTypeArgumentsSubstitution(expr).add(definition.getParameters(), defCallArgs), expr.getSortArgument().toLevelSubstitution());
@@ -349,6 +419,10 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
     }
 
     ComputationRunner.checkCanceled();
+    if (result != null && definition instanceof FunctionDefinition) {
+      ReductionBudget.step();
+      UnfoldingProfiler.unfolded((FunctionDefinition) definition);
+    }
 
     return result == null ? applyDefCall(expr, mode) : result.accept(this, mode);
   }
@@ -380,6 +454,17 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
   }
 
   public Expression eval(ElimBody elimBody, List<? extends Expression> arguments, ExprSubstitution substitution, LevelSubstitution levelSubstitution) {
+    ElimClause<Pattern> clause = matchClause(elimBody, arguments, substitution);
+    return clause == null ? null : Objects.requireNonNull(clause.getExpression()).subst(substitution, levelSubstitution);
+  }
+
+  /**
+   * Finds the clause of {@code elimBody} that matches {@code arguments}.
+   *
+   * @param substitution  the parameters of the matched clause are added to this substitution.
+   * @return the matched clause or null if the arguments do not match any clause.
+   */
+  public ElimClause<Pattern> matchClause(ElimBody elimBody, List<? extends Expression> arguments, ExprSubstitution substitution) {
     Stack<Expression> stack = makeStack(arguments);
     List<Expression> result = new ArrayList<>();
 
@@ -396,9 +481,10 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
         for (DependentLink link = clause.getParameters(); link.hasNext(); link = link.getNext(), i++) {
           substitution.add(link, result.get(leafElimTree.getArgumentIndex(i)));
         }
-        return Objects.requireNonNull(clause.getExpression()).subst(substitution, levelSubstitution);
+        return clause;
       }
 
+      ReductionBudget.step();
       elimTree = updateStack(stack, result, (BranchElimTree) elimTree);
       if (elimTree == null) {
         return null;
@@ -520,7 +606,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
   public ClassCallExpression visitClassCall(ClassCallExpression expr, NormalizationMode mode) {
     if (mode == NormalizationMode.WHNF) return expr;
 
-    Map<ClassField, Expression> fieldSet = new HashMap<>();
+    Map<ClassField, Expression> fieldSet = new ClassFieldMap<>(expr.getDefinition());
     ClassCallExpression result = new ClassCallExpression(expr.getDefinition(), expr.getSortArgument(), fieldSet, expr.getSort(), expr.getUniverseKind());
     for (Map.Entry<ClassField, Expression> entry : expr.getImplementedHere().entrySet()) {
       fieldSet.put(entry.getKey(), entry.getValue().accept(this, mode).subst(expr.getThisBinding(), new ReferenceExpression(result.getThisBinding())));
@@ -546,7 +632,11 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
 
   @Override
   public Expression visitInferenceReference(InferenceReferenceExpression expr, NormalizationMode mode) {
-    return expr.getSubstExpression() != null ? expr.getSubstExpression().accept(this, mode) : expr;
+    if (expr.getSubstExpression() != null) {
+      return expr.getSubstExpression().accept(this, mode);
+    }
+    WhnfCache.stuckOnInferenceVariable();
+    return expr;
   }
 
   @Override
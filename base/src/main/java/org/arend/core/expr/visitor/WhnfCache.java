@@ -0,0 +1,175 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.expr.*;
+import org.arend.ext.core.ops.NormalizationMode;
+import org.arend.naming.reference.TCReferable;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes weak head normal forms of expressions during typechecking.
+ * A cache belongs to a typechecking session (see {@link org.arend.typechecking.order.listener.TypecheckingOrderingListener#setWhnfCache}).
+ * Every definition typechecked in the session gets its own table of results which is dropped when its typechecking finishes.
+ * Results are keyed by the identity of expressions, so only shared subterms benefit from the cache.
+ *
+ * A result that got stuck on an unsolved inference variable is valid only until the next inference variable is solved.
+ * Other results do not depend on inference variables since solved variables are shared by reference.
+ * When the body of a function changes, the generation of the session is incremented,
+ * which invalidates results of all definitions that are typechecked in the session.
+ */
+public class WhnfCache {
+  private static final ThreadLocal<Table> CURRENT = new ThreadLocal<>();
+
+  private final Map<TCReferable, Counters> myCounters = new ConcurrentHashMap<>();
+  private final AtomicInteger myGeneration = new AtomicInteger();
+
+  private static class Table {
+    final WhnfCache cache;
+    final Map<Expression, Entry> results = new IdentityHashMap<>();
+    int solvedVariables;
+    int stuckOnVariables;
+    int hits;
+    int misses;
+
+    Table(WhnfCache cache) {
+      this.cache = cache;
+    }
+  }
+
+  private static class Entry {
+    final Expression result;
+    final int generation;
+    final int solvedVariables; // -1 if the result does not depend on unsolved inference variables
+
+    Entry(Expression result, int generation, int solvedVariables) {
+      this.result = result;
+      this.generation = generation;
+      this.solvedVariables = solvedVariables;
+    }
+  }
+
+  public static class Counters {
+    private final int myHits;
+    private final int myMisses;
+
+    public Counters(int hits, int misses) {
+      myHits = hits;
+      myMisses = misses;
+    }
+
+    public int getHits() {
+      return myHits;
+    }
+
+    public int getMisses() {
+      return myMisses;
+    }
+
+    public Counters add(Counters counters) {
+      return new Counters(myHits + counters.myHits, myMisses + counters.myMisses);
+    }
+  }
+
+  /**
+   * @return hits and misses of the cache for every definition typechecked with it.
+   */
+  public Map<TCReferable, Counters> getCounters() {
+    return Collections.unmodifiableMap(myCounters);
+  }
+
+  public void clearCounters() {
+    myCounters.clear();
+  }
+
+  /**
+   * Runs a computation in the current thread with a fresh table of results.
+   *
+   * @param cache       the cache; if it is null, results are not cached.
+   * @param definition  the definition which is typechecked by the computation.
+   */
+  public static <T> T run(@Nullable WhnfCache cache, TCReferable definition, Supplier<T> supplier) {
+    Table previous = CURRENT.get();
+    if (cache == null && previous == null) {
+      return supplier.get();
+    }
+
+    Table table = cache == null ? null : new Table(cache);
+    CURRENT.set(table);
+    try {
+      return supplier.get();
+    } finally {
+      CURRENT.set(previous);
+      if (table != null && (table.hits != 0 || table.misses != 0)) {
+        cache.myCounters.merge(definition, new Counters(table.hits, table.misses), Counters::add);
+      }
+    }
+  }
+
+  /**
+   * Computes the weak head normal form of an expression using the cache of the current thread if there is one.
+   */
+  public static Expression normalize(Expression expr) {
+    Table table = CURRENT.get();
+    if (table == null || !isCacheable(expr)) {
+      return expr.accept(NormalizeVisitor.INSTANCE, NormalizationMode.WHNF);
+    }
+
+    int generation = table.cache.myGeneration.get();
+    Entry entry = table.results.get(expr);
+    if (entry != null && entry.generation == generation && (entry.solvedVariables == -1 || entry.solvedVariables == table.solvedVariables)) {
+      table.hits++;
+      if (entry.solvedVariables != -1) {
+        // Enclosing computations depend on the same inference variables
+        table.stuckOnVariables++;
+      }
+      return entry.result;
+    }
+
+    table.misses++;
+    int solvedVariables = table.solvedVariables;
+    int stuckOnVariables = table.stuckOnVariables;
+    Expression result = expr.accept(NormalizeVisitor.INSTANCE, NormalizationMode.WHNF);
+    table.results.put(expr, new Entry(result, generation, table.stuckOnVariables == stuckOnVariables ? -1 : solvedVariables));
+    return result;
+  }
+
+  private static boolean isCacheable(Expression expr) {
+    return expr instanceof FunCallExpression || expr instanceof AppExpression || expr instanceof CaseExpression || expr instanceof LetExpression || expr instanceof ProjExpression;
+  }
+
+  /**
+   * Should be invoked when normalization stops at an unsolved inference variable.
+   */
+  static void stuckOnInferenceVariable() {
+    Table table = CURRENT.get();
+    if (table != null) {
+      table.stuckOnVariables++;
+    }
+  }
+
+  /**
+   * Should be invoked when an inference variable is solved.
+   */
+  public static void inferenceVariableSolved() {
+    Table table = CURRENT.get();
+    if (table != null) {
+      table.solvedVariables++;
+    }
+  }
+
+  /**
+   * Should be invoked when the body of a definition changes.
+   */
+  public static void definitionChanged() {
+    Table table = CURRENT.get();
+    if (table != null) {
+      table.cache.myGeneration.incrementAndGet();
+    }
+  }
+}
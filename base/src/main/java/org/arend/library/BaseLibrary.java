@@ -59,30 +59,49 @@ public abstract class BaseLibrary implements Library {
 
   @Override
   public void reset() {
+    List<TCReferable> definitions = new ArrayList<>();
     for (ModulePath modulePath : getLoadedModules()) {
       Group group = getModuleGroup(modulePath);
       if (group != null) {
-        resetGroup(group);
+        collectDefinitions(group, definitions);
       }
     }
+    resetDefinitions(definitions);
   }
 
   public void resetGroup(Group group) {
-    resetDefinition(group.getReferable());
+    List<TCReferable> definitions = new ArrayList<>();
+    collectDefinitions(group, definitions);
+    resetDefinitions(definitions);
+  }
+
+  private static void collectDefinitions(Group group, List<TCReferable> definitions) {
+    LocatedReferable referable = group.getReferable();
+    if (referable instanceof TCReferable) {
+      definitions.add((TCReferable) referable);
+    }
     for (Group subgroup : group.getSubgroups()) {
-      resetGroup(subgroup);
+      collectDefinitions(subgroup, definitions);
     }
     for (Group subgroup : group.getDynamicSubgroups()) {
-      resetGroup(subgroup);
+      collectDefinitions(subgroup, definitions);
     }
   }
 
   public void resetDefinition(LocatedReferable referable) {
     if (referable instanceof TCReferable) {
-      myTypecheckerState.reset((TCReferable) referable);
+      resetDefinitions(Collections.singletonList((TCReferable) referable));
     }
   }
 
+  /**
+   * Resets typechecked definitions of this library.
+   * Every reset goes through this method, so subclasses can track resets by overriding it.
+   */
+  public void resetDefinitions(Collection<? extends TCReferable> definitions) {
+    myTypecheckerState.reset(definitions);
+  }
+
   @Override
   public boolean isLoaded() {
     return myLoaded;
@@ -13,6 +13,7 @@ import org.arend.module.scopeprovider.ModuleScopeProvider;
 import org.arend.module.scopeprovider.SimpleModuleScopeProvider;
 import org.arend.naming.scope.Scope;
 import org.arend.prelude.Prelude;
+import org.arend.typechecking.computation.TypecheckingMetrics;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
 import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
 import org.jetbrains.annotations.NotNull;
@@ -38,6 +39,8 @@ public class LibraryManager {
   private final SimpleModuleScopeProvider myInternalExtensionModuleScopeProvider = new SimpleModuleScopeProvider();
   private final DefinitionContributor myDefinitionContributor;
   private final DefinitionRequester myDefinitionRequester;
+  private int myNumberOfThreads = 1;
+  private TypecheckingMetrics myMetrics;
 
   /**
    * Constructs new {@code LibraryManager}.
@@ -134,6 +137,31 @@ public class LibraryManager {
     return myDefinitionRequester;
   }
 
+  public int getNumberOfThreads() {
+    return myNumberOfThreads;
+  }
+
+  /**
+   * Sets the number of threads that are used to read binary modules.
+   */
+  public void setNumberOfThreads(int numberOfThreads) {
+    myNumberOfThreads = numberOfThreads;
+  }
+
+  @Nullable
+  public TypecheckingMetrics getMetrics() {
+    return myMetrics;
+  }
+
+  /**
+   * Sets metrics in which times of deserialization of modules loaded by this library manager are recorded.
+   *
+   * @param metrics  the metrics; if it is null, times are not recorded.
+   */
+  public void setMetrics(@Nullable TypecheckingMetrics metrics) {
+    myMetrics = metrics;
+  }
+
   /**
    * Checks if a library is registered in this library manager.
    *
@@ -11,6 +11,7 @@ import org.arend.library.classLoader.FileClassLoaderDelegate;
 import org.arend.library.classLoader.MultiClassLoader;
 import org.arend.library.error.LibraryError;
 import org.arend.module.error.ExceptionError;
+import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.IdReferableConverter;
 import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.prelude.Prelude;
@@ -20,23 +21,34 @@ import org.arend.source.SourceLoader;
 import org.arend.source.error.PersistingError;
 import org.arend.term.group.ChildGroup;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.computation.TypecheckingMetrics;
 import org.arend.typechecking.order.dependency.DependencyListener;
 import org.arend.typechecking.order.dependency.DummyDependencyListener;
 import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a library which can load modules in the binary format (see {@link #getBinarySource})
  * as well as ordinary modules (see {@link #getRawSource}).
  */
 public abstract class SourceLibrary extends BaseLibrary {
-  public enum Flag { RECOMPILE }
+  /**
+   * {@code RECOMPILE} forces typechecking of modules even if they have binary sources.
+   * {@code LAZY_BODIES} defers reading of function bodies from binary sources until they are used.
+   * Definitions used in a deferred body are still reported as its dependencies when the module is loaded.
+   * Bodies are deferred only in modules that were persisted with this flag since only such modules record these dependencies.
+   */
+  public enum Flag { RECOMPILE, LAZY_BODIES }
   private final EnumSet<Flag> myFlags = EnumSet.noneOf(Flag.class);
+  private final Map<ModulePath, byte[]> mySourceHashes = new ConcurrentHashMap<>();
+  private final Map<ModulePath, byte[]> myInterfaceHashes = new ConcurrentHashMap<>();
   private ArendExtension myExtension;
 
   /**
@@ -55,6 +67,13 @@ public abstract class SourceLibrary extends BaseLibrary {
     myFlags.add(flag);
   }
 
+  /**
+   * Checks if the library has a flag.
+   */
+  public boolean hasFlag(Flag flag) {
+    return myFlags.contains(flag);
+  }
+
   /**
    * Removes a flag.
    */
@@ -149,6 +168,18 @@ public abstract class SourceLibrary extends BaseLibrary {
     return DummyDependencyListener.INSTANCE;
   }
 
+  /**
+   * Resets definitions through {@link #getDependencyListener}, so definitions that depend on them are reset as well.
+   */
+  @Override
+  public void resetDefinitions(Collection<? extends TCReferable> definitions) {
+    DependencyListener listener = getDependencyListener();
+    for (TCReferable definition : definitions) {
+      listener.update(definition);
+    }
+    super.resetDefinitions(definitions);
+  }
+
   /**
    * Indicates whether the library should be loaded if some errors occur.
    *
@@ -227,8 +258,9 @@ public abstract class SourceLibrary extends BaseLibrary {
     }
 
     try {
-      SourceLoader sourceLoader = new SourceLoader(this, libraryManager);
+      SourceLoader sourceLoader = new SourceLoader(this, libraryManager, typechecking);
       if (hasRawSources()) {
+        sourceLoader.prefetchRawSources(header.modules);
         for (ModulePath module : header.modules) {
           sourceLoader.preloadRaw(module);
         }
@@ -236,9 +268,11 @@ public abstract class SourceLibrary extends BaseLibrary {
       }
 
       if (!myFlags.contains(Flag.RECOMPILE)) {
+        sourceLoader.prefetchBinaries(header.modules);
         for (ModulePath module : header.modules) {
           sourceLoader.loadBinary(module);
         }
+        sourceLoader.loadDeferredBinaries();
       }
     } catch (Throwable e) {
       libraryManager.afterLibraryLoading(this, false);
@@ -261,6 +295,31 @@ public abstract class SourceLibrary extends BaseLibrary {
     return super.load(libraryManager, typechecking);
   }
 
+  /**
+   * Loads raw sources of some modules of a loaded library again.
+   * Other modules of the library are not loaded again even if the given modules import them.
+   * Since modules that import the given ones refer to their old definitions, they should be loaded again too.
+   *
+   * @param modules  modules to load; modules whose sources are not available anymore or cannot be loaded are removed from the library.
+   */
+  public void reloadRawSources(Collection<? extends ModulePath> modules, LibraryManager libraryManager) {
+    SourceLoader sourceLoader = new SourceLoader(this, libraryManager);
+    for (ModulePath module : getLoadedModules()) {
+      if (!modules.contains(module)) {
+        sourceLoader.markLoaded(module);
+      }
+    }
+
+    sourceLoader.prefetchRawSources(modules);
+    for (ModulePath module : modules) {
+      Source source = getRawSource(module);
+      if (source == null || !source.isAvailable() || !sourceLoader.preloadRaw(module)) {
+        onGroupLoaded(module, null, true);
+      }
+    }
+    sourceLoader.loadRawSources();
+  }
+
   @Override
   public boolean containsModule(ModulePath modulePath) {
     Source source = getRawSource(modulePath);
@@ -271,18 +330,74 @@ public abstract class SourceLibrary extends BaseLibrary {
     return source != null && source.isAvailable();
   }
 
+  /**
+   * Gets the hash of the text of a raw source as it was loaded.
+   *
+   * @return the hash or null if the raw source was not loaded.
+   */
+  @Nullable
+  public byte[] getSourceHash(ModulePath modulePath) {
+    return mySourceHashes.get(modulePath);
+  }
+
+  /**
+   * Invoked by a raw source after it reads its text.
+   */
+  public void setSourceHash(ModulePath modulePath, byte[] hash) {
+    mySourceHashes.put(modulePath, hash);
+  }
+
+  /**
+   * Gets the hash of the interface of a module, that is, of the fingerprints of its definitions.
+   * Binary modules record the hashes of their dependencies, so they become stale when the interface of one of them changes.
+   *
+   * @return the hash or null if the module was neither persisted nor loaded from a binary source.
+   */
+  @Nullable
+  public byte[] getInterfaceHash(ModulePath modulePath) {
+    return myInterfaceHashes.get(modulePath);
+  }
+
+  public void setInterfaceHash(ModulePath modulePath, byte[] hash) {
+    myInterfaceHashes.put(modulePath, hash);
+  }
+
+  @Override
+  public boolean unload() {
+    super.unload();
+    mySourceHashes.clear();
+    myInterfaceHashes.clear();
+    return true;
+  }
+
   public boolean supportsPersisting() {
     return true;
   }
 
   public boolean persistModule(ModulePath modulePath, ReferableConverter referableConverter, ErrorReporter errorReporter) {
+    return persistModule(modulePath, referableConverter, errorReporter, null);
+  }
+
+  /**
+   * Persists a module.
+   *
+   * @param metrics  if it is not null, the time of serialization of the module is recorded in it.
+   */
+  public boolean persistModule(ModulePath modulePath, ReferableConverter referableConverter, ErrorReporter errorReporter, @Nullable TypecheckingMetrics metrics) {
     BinarySource source = getBinarySource(modulePath);
     if (source == null) {
       errorReporter.report(new PersistingError(modulePath));
       return false;
-    } else {
-      return source.persist(this, referableConverter, errorReporter);
     }
+
+    long startTime = System.nanoTime();
+    if (!source.persist(this, referableConverter, errorReporter)) {
+      return false;
+    }
+    if (metrics != null) {
+      metrics.serialized(modulePath, System.nanoTime() - startTime);
+    }
+    return true;
   }
 
   public boolean deleteModule(ModulePath modulePath) {
@@ -5,8 +5,10 @@ import org.arend.ext.module.ModulePath;
 import org.arend.module.scopeprovider.ModuleScopeProvider;
 import org.arend.module.scopeprovider.SimpleModuleScopeProvider;
 import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.term.NamespaceCommand;
 import org.arend.term.group.ChildGroup;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.computation.TypecheckingMetrics;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -106,9 +108,19 @@ public abstract class UnmodifiableSourceLibrary extends SourceLibrary {
   }
 
   public boolean persistUpdateModules(ErrorReporter errorReporter) {
+    return persistUpdateModules(errorReporter, null);
+  }
+
+  /**
+   * Persists updated modules.
+   *
+   * @param metrics  if it is not null, times of serialization of modules are recorded in it.
+   */
+  public boolean persistUpdateModules(ErrorReporter errorReporter, @Nullable TypecheckingMetrics metrics) {
     boolean ok = true;
+    Set<ModulePath> visited = new HashSet<>();
     for (ModulePath module : myUpdatedModules) {
-      if (!persistModule(module, IdReferableConverter.INSTANCE, errorReporter)) {
+      if (!persistUpdatedModule(module, visited, errorReporter, metrics)) {
         ok = false;
       }
     }
@@ -116,6 +128,28 @@ public abstract class UnmodifiableSourceLibrary extends SourceLibrary {
     return ok;
   }
 
+  // Imported modules are persisted first so that their hashes are recorded in the importing module
+  private boolean persistUpdatedModule(ModulePath module, Set<ModulePath> visited, ErrorReporter errorReporter, TypecheckingMetrics metrics) {
+    if (!visited.add(module)) {
+      return true;
+    }
+
+    boolean ok = true;
+    ChildGroup group = myGroups.get(module);
+    if (group != null) {
+      for (NamespaceCommand command : group.getNamespaceCommands()) {
+        if (command.getKind() == NamespaceCommand.Kind.IMPORT) {
+          ModulePath importedModule = new ModulePath(command.getPath());
+          if (myUpdatedModules.contains(importedModule) && !persistUpdatedModule(importedModule, visited, errorReporter, metrics)) {
+            ok = false;
+          }
+        }
+      }
+    }
+
+    return persistModule(module, IdReferableConverter.INSTANCE, errorReporter, metrics) && ok;
+  }
+
   @Override
   public boolean isExternal() {
     return myExternal;
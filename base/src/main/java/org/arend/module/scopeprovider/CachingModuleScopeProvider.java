@@ -6,12 +6,12 @@ import org.arend.naming.scope.Scope;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CachingModuleScopeProvider implements ModuleScopeProvider {
   private final ModuleScopeProvider myModuleScopeProvider;
-  private final Map<ModulePath, Scope> myScopes = new HashMap<>();
+  private final Map<ModulePath, Scope> myScopes = new ConcurrentHashMap<>();
 
   private final static Scope NULL_SCOPE = new Scope() {};
 
@@ -42,7 +42,7 @@ public class CachingModuleScopeProvider implements ModuleScopeProvider {
     if (scope != null) {
       scope = CachingScope.make(scope);
     }
-    myScopes.put(module, scope == null ? NULL_SCOPE : scope);
-    return scope;
+    Scope prev = myScopes.putIfAbsent(module, scope == null ? NULL_SCOPE : scope);
+    return prev == null ? scope : prev == NULL_SCOPE ? null : prev;
   }
 }
@@ -11,10 +11,13 @@ import org.arend.core.sort.Sort;
 import org.arend.ext.core.definition.CoreFunctionDefinition;
 import org.arend.naming.reference.ClassReferableImpl;
 import org.arend.naming.reference.DataLocatedReferableImpl;
+import org.arend.ext.error.ErrorReporter;
+import org.arend.module.error.DeserializationError;
 import org.arend.naming.reference.TCClassReferable;
 import org.arend.naming.reference.TCReferable;
 import org.arend.prelude.Prelude;
 import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
 import org.arend.util.Pair;
 
 import java.util.*;
@@ -22,14 +25,22 @@ import java.util.*;
 public class DefinitionDeserialization {
   private final CallTargetProvider myCallTargetProvider;
   private final DependencyListener myDependencyListener;
+  private final ExpressionTableDeserialization myExpressionTable;
+  private final ErrorReporter myLazyBodyErrorReporter;
 
-  public DefinitionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener) {
+  DefinitionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener, ExpressionTableDeserialization expressionTable, ErrorReporter lazyBodyErrorReporter) {
     myCallTargetProvider = callTargetProvider;
     myDependencyListener = dependencyListener;
+    myExpressionTable = expressionTable;
+    myLazyBodyErrorReporter = lazyBodyErrorReporter;
+  }
+
+  public DefinitionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener) {
+    this(callTargetProvider, dependencyListener, null, null);
   }
 
   public void fillInDefinition(DefinitionProtos.Definition defProto, Definition def) throws DeserializationException {
-    final ExpressionDeserialization defDeserializer = new ExpressionDeserialization(myCallTargetProvider, myDependencyListener, def.getReferable());
+    final ExpressionDeserialization defDeserializer = new ExpressionDeserialization(myCallTargetProvider, myDependencyListener, def.getReferable(), myExpressionTable);
 
     switch (defProto.getDefinitionDataCase()) {
       case CLASS:
@@ -326,7 +337,28 @@ public class DefinitionDeserialization {
     functionDef.setKind(kind);
     functionDef.setVisibleParameter(functionProto.getVisibleParameter());
     if (functionProto.hasBody()) {
-      functionDef.setBody(readBody(defDeserializer, functionProto.getBody(), DependentLink.Helper.size(functionDef.getParameters())));
+      int numberOfParameters = DependentLink.Helper.size(functionDef.getParameters());
+      // The pattern of a defined constructor is read after its body, so the body cannot be deferred
+      if (myLazyBodyErrorReporter != null && !(functionDef instanceof DConstructor)) {
+        for (Integer index : functionProto.getBodyDependencyList()) {
+          myDependencyListener.dependsOn(functionDef.getReferable(), myCallTargetProvider.getCallTarget(index, Definition.class).getReferable());
+        }
+
+        ExpressionDeserialization bodyDeserializer = defDeserializer.copy(DummyDependencyListener.INSTANCE);
+        DefinitionProtos.Body bodyProto = functionProto.getBody();
+        ErrorReporter errorReporter = myLazyBodyErrorReporter;
+        functionDef.setBodyLoader(() -> {
+          try {
+            return readBody(bodyDeserializer, bodyProto, numberOfParameters);
+          } catch (DeserializationException e) {
+            errorReporter.report(new DeserializationError(functionDef.getReferable().getLocation(), e));
+            functionDef.setStatus(Definition.TypeCheckingStatus.HAS_ERRORS);
+            return null;
+          }
+        });
+      } else {
+        functionDef.setBody(readBody(defDeserializer, functionProto.getBody(), numberOfParameters));
+      }
     }
     // setTypeClassReference(functionDef.getReferable(), functionDef.getParameters(), functionDef.getResultType());
   }
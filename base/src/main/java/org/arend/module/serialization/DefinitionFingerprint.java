@@ -0,0 +1,81 @@
+package org.arend.module.serialization;
+
+import org.arend.core.definition.*;
+import org.arend.ext.module.ModulePath;
+import org.arend.naming.reference.LocatedReferable;
+import org.arend.util.Hashing;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes fingerprints of the interfaces of typechecked definitions.
+ * A fingerprint covers everything that dependent definitions can observe:
+ * parameters, result types, constructors and fields, and bodies that are visible to conversion.
+ */
+public class DefinitionFingerprint {
+  /**
+   * Computes the fingerprint of a definition.
+   *
+   * @return the fingerprint or null if the definition cannot be fingerprinted, for example, if it has errors.
+   */
+  public static @Nullable byte[] compute(Definition definition) {
+    return compute(definition, null);
+  }
+
+  /**
+   * Computes the fingerprint of a definition and collects definitions that it refers to.
+   *
+   * @param callTargets if it is not null, definitions that occur in the fingerprint are added to it.
+   * @return the fingerprint or null if the definition cannot be fingerprinted, for example, if it has errors.
+   */
+  public static @Nullable byte[] compute(Definition definition, @Nullable Collection<? super Definition> callTargets) {
+    return compute(definition, false, callTargets);
+  }
+
+  /**
+   * Computes the fingerprint of the whole core of a definition including bodies of lemmas and hidden bodies of functions,
+   * and collects definitions that it refers to.
+   *
+   * @param callTargets if it is not null, definitions that occur in the core are added to it.
+   * @return the fingerprint or null if the definition cannot be fingerprinted, for example, if it has errors.
+   */
+  public static @Nullable byte[] computeCore(Definition definition, @Nullable Collection<? super Definition> callTargets) {
+    return compute(definition, true, callTargets);
+  }
+
+  private static @Nullable byte[] compute(Definition definition, boolean withHiddenBodies, @Nullable Collection<? super Definition> callTargets) {
+    if (definition.status() != Definition.TypeCheckingStatus.NO_ERRORS || definition instanceof Constructor || definition instanceof ClassField) {
+      return null;
+    }
+
+    SimpleCallTargetIndexProvider callTargetIndexProvider = new SimpleCallTargetIndexProvider();
+    // If hidden bodies are not written, definitions that occur only in them are not counted either
+    DefinitionProtos.Definition proto = new DefinitionSerialization(callTargetIndexProvider, null, withHiddenBodies, false).writeDefinition(definition);
+
+    MessageDigest digest = Hashing.newDigest();
+    digest.update(proto.toByteArray());
+
+    // Call targets are identified by their indices in the proto, so their names are hashed in the order of indices
+    for (Map.Entry<Definition, Integer> entry : callTargetIndexProvider.getCallTargets()) {
+      List<String> longName = new ArrayList<>();
+      ModulePath modulePath = LocatedReferable.Helper.getLocation(entry.getKey().getReferable(), longName);
+      if (modulePath != null) {
+        digest.update(modulePath.toString().getBytes(StandardCharsets.UTF_8));
+      }
+      digest.update((byte) 1);
+      digest.update(String.join(".", longName).getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      if (callTargets != null) {
+        callTargets.add(entry.getKey());
+      }
+    }
+
+    return digest.digest();
+  }
+}
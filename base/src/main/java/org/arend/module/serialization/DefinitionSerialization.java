@@ -6,6 +6,7 @@ import org.arend.core.elimtree.Body;
 import org.arend.core.elimtree.ElimBody;
 import org.arend.core.elimtree.IntervalElim;
 import org.arend.core.expr.AbsExpression;
+import org.arend.core.expr.DefCallExpression;
 import org.arend.core.expr.Expression;
 import org.arend.core.expr.PiExpression;
 import org.arend.core.pattern.BindingPattern;
@@ -15,23 +16,39 @@ import org.arend.core.pattern.ExpressionPattern;
 import org.arend.core.sort.Sort;
 import org.arend.ext.reference.Precedence;
 import org.arend.naming.reference.GlobalReferable;
+import org.arend.typechecking.visitor.ProcessDefCallsVisitor;
 import org.arend.util.Pair;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class DefinitionSerialization {
   private final CallTargetIndexProvider myCallTargetIndexProvider;
+  private final ExpressionTableSerialization myExpressionTable;
+  private final boolean myWriteHiddenBodies;
+  private final boolean myWriteBodyDependencies;
+
+  /**
+   * @param writeHiddenBodies       if it is false, bodies of lemmas and hidden bodies of functions are omitted together with their call targets.
+   * @param writeBodyDependencies   if it is true, definitions used in bodies of functions are written, so that the bodies can be read lazily.
+   */
+  DefinitionSerialization(CallTargetIndexProvider callTargetIndexProvider, ExpressionTableSerialization expressionTable, boolean writeHiddenBodies, boolean writeBodyDependencies) {
+    myCallTargetIndexProvider = callTargetIndexProvider;
+    myExpressionTable = expressionTable;
+    myWriteHiddenBodies = writeHiddenBodies;
+    myWriteBodyDependencies = writeBodyDependencies;
+  }
 
   public DefinitionSerialization(CallTargetIndexProvider callTargetIndexProvider) {
-    myCallTargetIndexProvider = callTargetIndexProvider;
+    this(callTargetIndexProvider, null, true, false);
   }
 
   DefinitionProtos.Definition writeDefinition(Definition definition) {
-    final ExpressionSerialization defSerializer = new ExpressionSerialization(myCallTargetIndexProvider);
+    final ExpressionSerialization defSerializer = new ExpressionSerialization(myCallTargetIndexProvider, myExpressionTable);
 
     final DefinitionProtos.Definition.Builder out = DefinitionProtos.Definition.newBuilder();
     out.setHasTypeClassReference(definition.getReferable().getTypeClassReference() != null);
@@ -275,13 +292,56 @@ public class DefinitionSerialization {
     }
     builder.setKind(kind);
     builder.setVisibleParameter(definition.getVisibleParameter());
-    if (definition.getActualBody() != null) {
-      builder.setBody(writeBody(defSerializer, definition.getActualBody()));
+    Body body = myWriteHiddenBodies ? definition.getActualBody() : definition.getBody();
+    if (body != null) {
+      builder.setBody(writeBody(defSerializer, body));
+      if (myWriteBodyDependencies && !(definition instanceof DConstructor)) {
+        // Lazily read bodies report these dependencies when the module is loaded
+        BodyDependencyCollector collector = new BodyDependencyCollector();
+        collector.collect(body);
+        for (Definition dependency : collector.dependencies) {
+          builder.addBodyDependency(myCallTargetIndexProvider.getDefIndex(dependency));
+        }
+      }
     }
 
     return builder.build();
   }
 
+  /**
+   * Collects definitions that are reported as dependencies when a body is deserialized.
+   */
+  private static class BodyDependencyCollector extends ProcessDefCallsVisitor<Void> {
+    final Set<Definition> dependencies = new LinkedHashSet<>();
+
+    @Override
+    protected boolean processDefCall(DefCallExpression expression, Void param) {
+      Definition definition = expression.getDefinition();
+      dependencies.add(definition instanceof Constructor ? ((Constructor) definition).getDataType() : definition instanceof ClassField ? ((ClassField) definition).getParentClass() : definition);
+      return false;
+    }
+
+    void collect(Body body) {
+      if (body instanceof IntervalElim) {
+        for (Pair<Expression, Expression> pair : ((IntervalElim) body).getCases()) {
+          if (pair.proj1 != null) {
+            pair.proj1.accept(this, null);
+          }
+          if (pair.proj2 != null) {
+            pair.proj2.accept(this, null);
+          }
+        }
+        if (((IntervalElim) body).getOtherwise() != null) {
+          visitElimBody(((IntervalElim) body).getOtherwise(), null);
+        }
+      } else if (body instanceof ElimBody) {
+        visitElimBody((ElimBody) body, null);
+      } else if (body instanceof Expression) {
+        ((Expression) body).accept(this, null);
+      }
+    }
+  }
+
   private DefinitionProtos.Definition.DConstructorData writeDConstructor(ExpressionSerialization defSerializer, DConstructor definition) {
     DefinitionProtos.Definition.DConstructorData.Builder builder = DefinitionProtos.Definition.DConstructorData.newBuilder();
     builder.setFunction(writeFunctionDefinition(defSerializer, definition));
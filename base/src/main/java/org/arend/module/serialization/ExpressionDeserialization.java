@@ -30,11 +30,22 @@ class ExpressionDeserialization {
 
   private final DependencyListener myDependencyListener;
   private final TCReferable myDefinition;
+  private final ExpressionTableDeserialization myExpressionTable;
 
-  ExpressionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener, TCReferable definition) {
+  ExpressionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener, TCReferable definition, ExpressionTableDeserialization expressionTable) {
     myCallTargetProvider = callTargetProvider;
     myDependencyListener = dependencyListener;
     myDefinition = definition;
+    myExpressionTable = expressionTable;
+  }
+
+  /**
+   * Creates a deserializer with the same bindings that can be used to read the rest of a definition later.
+   */
+  ExpressionDeserialization copy(DependencyListener dependencyListener) {
+    ExpressionDeserialization result = new ExpressionDeserialization(myCallTargetProvider, dependencyListener, myDefinition, myExpressionTable);
+    result.myBindings.addAll(myBindings);
+    return result;
   }
 
   // Bindings
@@ -301,6 +312,8 @@ class ExpressionDeserialization {
         return readSmallInteger(proto.getSmallInteger());
       case BIG_INTEGER:
         return readBigInteger(proto.getBigInteger());
+      case SHARED:
+        return readShared(proto.getShared());
       default:
         throw new DeserializationException("Unknown Expression kind: " + proto.getKindCase());
     }
@@ -342,7 +355,7 @@ class ExpressionDeserialization {
     ClassDefinition classDefinition = myCallTargetProvider.getCallTarget(proto.getClassRef(), ClassDefinition.class);
     myDependencyListener.dependsOn(myDefinition, classDefinition.getReferable());
 
-    Map<ClassField, Expression> fieldSet = new HashMap<>();
+    Map<ClassField, Expression> fieldSet = new ClassFieldMap<>(classDefinition);
     ClassCallExpression classCall = new ClassCallExpression(classDefinition, new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())), fieldSet, readSort(proto.getSort()), readUniverseKind(proto.getUniverseKind()));
     registerBinding(classCall.getThisBinding());
     for (Map.Entry<Integer, ExpressionProtos.Expression> entry : proto.getFieldSetMap().entrySet()) {
@@ -472,4 +485,11 @@ class ExpressionDeserialization {
   private BigIntegerExpression readBigInteger(ExpressionProtos.Expression.BigInteger proto) {
     return new BigIntegerExpression(new BigInteger(proto.getValue().toByteArray()));
   }
+
+  private Expression readShared(ExpressionProtos.Expression.Shared proto) throws DeserializationException {
+    if (myExpressionTable == null) {
+      throw new DeserializationException("Missing expression table");
+    }
+    return myExpressionTable.readExpr(proto.getIndex(), myDependencyListener, myDefinition);
+  }
 }
@@ -30,11 +30,14 @@ import java.util.Map;
 
 class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProtos.Expression> {
   private final CallTargetIndexProvider myCallTargetIndexProvider;
+  private final ExpressionTableSerialization myExpressionTable;
   private final Map<Binding, Integer> myBindingsMap = new HashMap<>();
   private int myIndex;
+  private int myMinBindingRef = Integer.MAX_VALUE;
 
-  ExpressionSerialization(CallTargetIndexProvider callTargetIndexProvider) {
+  ExpressionSerialization(CallTargetIndexProvider callTargetIndexProvider, ExpressionTableSerialization expressionTable) {
     myCallTargetIndexProvider = callTargetIndexProvider;
+    myExpressionTable = expressionTable;
   }
 
   // Bindings
@@ -60,6 +63,9 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
       return 0;
     } else {
       Integer ref = myBindingsMap.get(binding);
+      if (ref < myMinBindingRef) {
+        myMinBindingRef = ref;
+      }
       return ref + 1;  // zero is reserved for null
     }
   }
@@ -158,6 +164,36 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   }
 
   ExpressionProtos.Expression writeExpr(Expression expr) {
+    if (myExpressionTable == null || !ExpressionTableSerialization.isShareable(expr)) {
+      return expr.accept(this, null);
+    }
+
+    Integer index = myExpressionTable.getIndex(expr);
+    if (index != null) {
+      return writeShared(index);
+    }
+
+    // The expression is closed if it refers only to bindings registered while it was written
+    int start = myIndex;
+    int minBindingRef = myMinBindingRef;
+    myMinBindingRef = Integer.MAX_VALUE;
+    ExpressionProtos.Expression result = expr.accept(this, null);
+    boolean isClosed = myMinBindingRef >= start;
+    myMinBindingRef = Math.min(minBindingRef, myMinBindingRef);
+    if (!isClosed) {
+      return result;
+    }
+
+    // Bindings of a shared expression are registered by the table, so they are not counted here
+    myIndex = start;
+    return writeShared(myExpressionTable.addExpression(expr));
+  }
+
+  private static ExpressionProtos.Expression writeShared(int index) {
+    return ExpressionProtos.Expression.newBuilder().setShared(ExpressionProtos.Expression.Shared.newBuilder().setIndex(index)).build();
+  }
+
+  ExpressionProtos.Expression writeTableEntry(Expression expr) {
     return expr.accept(this, null);
   }
 
@@ -265,8 +301,8 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   @Override
   public ExpressionProtos.Expression visitApp(AppExpression expr, Void params) {
     ExpressionProtos.Expression.App.Builder builder = ExpressionProtos.Expression.App.newBuilder();
-    builder.setFunction(expr.getFunction().accept(this, null));
-    builder.setArgument(expr.getArgument().accept(this, null));
+    builder.setFunction(writeExpr(expr.getFunction()));
+    builder.setArgument(writeExpr(expr.getArgument()));
     builder.setIsExplicit(expr.isExplicit());
     return ExpressionProtos.Expression.newBuilder().setApp(builder).build();
   }
@@ -277,7 +313,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Expression arg : expr.getDefCallArguments()) {
-      builder.addArgument(arg.accept(this, null));
+      builder.addArgument(writeExpr(arg));
     }
     return builder.build();
   }
@@ -294,10 +330,10 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Expression arg : expr.getDataTypeArguments()) {
-      builder.addDatatypeArgument(arg.accept(this, null));
+      builder.addDatatypeArgument(writeExpr(arg));
     }
     for (Expression arg : expr.getDefCallArguments()) {
-      builder.addArgument(arg.accept(this, null));
+      builder.addArgument(writeExpr(arg));
     }
     return ExpressionProtos.Expression.newBuilder().setConCall(builder).build();
   }
@@ -309,7 +345,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Expression arg : expr.getDefCallArguments()) {
-      builder.addArgument(arg.accept(this, null));
+      builder.addArgument(writeExpr(arg));
     }
     return ExpressionProtos.Expression.newBuilder().setDataCall(builder).build();
   }
@@ -367,7 +403,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     ExpressionProtos.Expression.Lam.Builder builder = ExpressionProtos.Expression.Lam.newBuilder();
     builder.setResultSort(writeSort(expr.getResultSort()));
     builder.setParam(writeSingleParameter(expr.getParameters()));
-    builder.setBody(expr.getBody().accept(this, null));
+    builder.setBody(writeExpr(expr.getBody()));
     return ExpressionProtos.Expression.newBuilder().setLam(builder).build();
   }
 
@@ -375,7 +411,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     ExpressionProtos.Expression.Pi.Builder builder = ExpressionProtos.Expression.Pi.newBuilder();
     builder.setResultSort(LevelProtos.Sort.newBuilder(writeSort(expr.getResultSort())));
     builder.setParam(writeSingleParameter(expr.getParameters()));
-    builder.setCodomain(expr.getCodomain().accept(this, null));
+    builder.setCodomain(writeExpr(expr.getCodomain()));
     return builder.build();
   }
 
@@ -395,7 +431,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitError(ErrorExpression expr, Void params) {
     ExpressionProtos.Expression.Error.Builder builder = ExpressionProtos.Expression.Error.newBuilder();
     if (expr.getExpression() != null && expr.isGoal()) {
-      builder.setExpression(expr.getExpression().accept(this, null));
+      builder.setExpression(writeExpr(expr.getExpression()));
     }
     builder.setIsGoal(expr.isGoal());
     return ExpressionProtos.Expression.newBuilder().setError(builder).build();
@@ -405,7 +441,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitTuple(TupleExpression expr, Void params) {
     ExpressionProtos.Expression.Tuple.Builder builder = ExpressionProtos.Expression.Tuple.newBuilder();
     for (Expression field : expr.getFields()) {
-      builder.addField(field.accept(this, null));
+      builder.addField(writeExpr(field));
     }
     builder.setType(writeSigma(expr.getSigmaType()));
     return ExpressionProtos.Expression.newBuilder().setTuple(builder).build();
@@ -427,7 +463,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   @Override
   public ExpressionProtos.Expression visitProj(ProjExpression expr, Void params) {
     ExpressionProtos.Expression.Proj.Builder builder = ExpressionProtos.Expression.Proj.newBuilder();
-    builder.setExpression(expr.getExpression().accept(this, null));
+    builder.setExpression(writeExpr(expr.getExpression()));
     builder.setField(expr.getField());
     return ExpressionProtos.Expression.newBuilder().setProj(builder).build();
   }
@@ -445,7 +481,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   @Override
   public ExpressionProtos.Expression visitPEval(PEvalExpression expr, Void params) {
     ExpressionProtos.Expression.PEval.Builder builder = ExpressionProtos.Expression.PEval.newBuilder();
-    builder.setExpression(expr.getExpression().accept(this, null));
+    builder.setExpression(writeExpr(expr.getExpression()));
     return ExpressionProtos.Expression.newBuilder().setPEval(builder).build();
   }
 
@@ -463,7 +499,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
       builder.addClause(letBuilder);
       registerBinding(letClause);
     }
-    builder.setExpression(letExpression.getExpression().accept(this, null));
+    builder.setExpression(writeExpr(letExpression.getExpression()));
     return ExpressionProtos.Expression.newBuilder().setLet(builder).build();
   }
 
@@ -531,7 +567,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     builder.setFieldRef(myCallTargetIndexProvider.getDefIndex(expr.getDefinition()));
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
-    builder.setExpression(expr.getArgument().accept(this, null));
+    builder.setExpression(writeExpr(expr.getArgument()));
     return ExpressionProtos.Expression.newBuilder().setFieldCall(builder).build();
   }
 }
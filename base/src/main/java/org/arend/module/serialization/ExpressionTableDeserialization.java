@@ -0,0 +1,59 @@
+package org.arend.module.serialization;
+
+import org.arend.core.expr.Expression;
+import org.arend.naming.reference.TCReferable;
+import org.arend.typechecking.order.dependency.DependencyListener;
+
+import java.util.*;
+
+/**
+ * Reads entries of the expression table of a module.
+ * Each entry is read once, so all references to it share the same expression.
+ * Entries can be read concurrently by lazily loaded bodies.
+ */
+class ExpressionTableDeserialization {
+  private final CallTargetProvider myCallTargetProvider;
+  private final List<ExpressionProtos.Expression> myProtos;
+  private final Entry[] myEntries;
+
+  private static class Entry implements DependencyListener {
+    Expression expression;
+    final Set<TCReferable> dependencies = new LinkedHashSet<>();
+
+    @Override
+    public void dependsOn(TCReferable def1, TCReferable def2) {
+      dependencies.add(def2);
+    }
+
+    @Override
+    public Set<? extends TCReferable> update(TCReferable definition) {
+      return Collections.emptySet();
+    }
+  }
+
+  ExpressionTableDeserialization(CallTargetProvider callTargetProvider, List<ExpressionProtos.Expression> protos) {
+    myCallTargetProvider = callTargetProvider;
+    myProtos = protos;
+    myEntries = new Entry[protos.size()];
+  }
+
+  synchronized Expression readExpr(int index, DependencyListener dependencyListener, TCReferable definition) throws DeserializationException {
+    if (index < 0 || index >= myEntries.length) {
+      throw new DeserializationException("Wrong expression table index");
+    }
+
+    Entry entry = myEntries[index];
+    if (entry == null) {
+      entry = new Entry();
+      myEntries[index] = entry;
+      entry.expression = new ExpressionDeserialization(myCallTargetProvider, entry, null, this).readExpr(myProtos.get(index));
+    } else if (entry.expression == null) {
+      throw new DeserializationException("Cyclic reference in the expression table");
+    }
+
+    for (TCReferable dependency : entry.dependencies) {
+      dependencyListener.dependsOn(definition, dependency);
+    }
+    return entry.expression;
+  }
+}
@@ -0,0 +1,55 @@
+package org.arend.module.serialization;
+
+import org.arend.core.expr.*;
+
+import java.util.*;
+
+/**
+ * A per-module table of closed expressions.
+ * Structurally equal closed subterms are written to the table once and referenced by their index.
+ */
+class ExpressionTableSerialization {
+  private final CallTargetIndexProvider myCallTargetIndexProvider;
+  private final List<ExpressionProtos.Expression> myEntries = new ArrayList<>();
+  private final Map<ExpressionProtos.Expression, Integer> myIndices = new HashMap<>();
+  private final Map<Expression, Integer> myExpressions = new IdentityHashMap<>();
+
+  ExpressionTableSerialization(CallTargetIndexProvider callTargetIndexProvider) {
+    myCallTargetIndexProvider = callTargetIndexProvider;
+  }
+
+  static boolean isShareable(Expression expr) {
+    return expr instanceof DefCallExpression || expr instanceof AppExpression || expr instanceof LamExpression || expr instanceof PiExpression || expr instanceof SigmaExpression || expr instanceof TupleExpression || expr instanceof ProjExpression || expr instanceof UniverseExpression;
+  }
+
+  Integer getIndex(Expression expr) {
+    return myExpressions.get(expr);
+  }
+
+  /**
+   * Adds a closed expression to the table.
+   * The expression is written with its own binding numbering so that alpha-equivalent expressions get the same entry.
+   *
+   * @return the index of the entry.
+   */
+  int addExpression(Expression expr) {
+    Integer index = myExpressions.get(expr);
+    if (index != null) {
+      return index;
+    }
+
+    ExpressionProtos.Expression proto = new ExpressionSerialization(myCallTargetIndexProvider, this).writeTableEntry(expr);
+    index = myIndices.get(proto);
+    if (index == null) {
+      index = myEntries.size();
+      myEntries.add(proto);
+      myIndices.put(proto, index);
+    }
+    myExpressions.put(expr, index);
+    return index;
+  }
+
+  List<ExpressionProtos.Expression> getEntries() {
+    return myEntries;
+  }
+}
@@ -1,6 +1,7 @@
 package org.arend.module.serialization;
 
 import org.arend.core.definition.*;
+import org.arend.ext.error.ErrorReporter;
 import org.arend.ext.module.ModulePath;
 import org.arend.ext.reference.Precedence;
 import org.arend.module.scopeprovider.ModuleScopeProvider;
@@ -12,6 +13,7 @@ import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.order.dependency.DependencyListener;
 import org.arend.util.Pair;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
@@ -21,6 +23,7 @@ public class ModuleDeserialization {
   private final TypecheckerState myState;
   private final ReferableConverter myReferableConverter;
   private final List<Pair<DefinitionProtos.Definition, Definition>> myDefinitions = new ArrayList<>();
+  private List<Pair<TCReferable, Definition>> myDeferredRecords;
 
   public ModuleDeserialization(ModuleProtos.Module moduleProto, TypecheckerState state, ReferableConverter referableConverter) {
     myModuleProto = moduleProto;
@@ -32,7 +35,51 @@ public class ModuleDeserialization {
     return myModuleProto;
   }
 
+  /**
+   * After this method is invoked, definitions read by {@link #readGroup} and {@link #readDefinitions}
+   * are not recorded in the typechecker state until {@link #recordDefinitions} is invoked.
+   * This allows reading groups on another thread before it is known whether the module will be used.
+   */
+  public void deferRecording() {
+    if (myDeferredRecords == null) {
+      myDeferredRecords = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Records definitions that were read after {@link #deferRecording} in the typechecker state.
+   */
+  public void recordDefinitions() {
+    if (myDeferredRecords != null) {
+      for (Pair<TCReferable, Definition> pair : myDeferredRecords) {
+        myState.record(pair.proj1, pair.proj2);
+      }
+      myDeferredRecords = null;
+    }
+  }
+
+  private void record(TCReferable referable, Definition definition) {
+    if (myDeferredRecords != null) {
+      myDeferredRecords.add(new Pair<>(referable, definition));
+    } else {
+      myState.record(referable, definition);
+    }
+  }
+
   public void readModule(ModuleScopeProvider moduleScopeProvider, DependencyListener dependencyListener) throws DeserializationException {
+    readModule(moduleScopeProvider, dependencyListener, null);
+  }
+
+  /**
+   * Fills in definitions of the module.
+   *
+   * @param lazyBodyErrorReporter  if it is not null and the module was written with lazy bodies,
+   *                               bodies of functions are read only when they are requested for the first time.
+   *                               Their dependencies are still reported to {@code dependencyListener} immediately.
+   *                               If such a body cannot be read, the error is reported to {@code lazyBodyErrorReporter}
+   *                               and the function is marked as having errors.
+   */
+  public void readModule(ModuleScopeProvider moduleScopeProvider, DependencyListener dependencyListener, @Nullable ErrorReporter lazyBodyErrorReporter) throws DeserializationException {
     if (myModuleProto.getVersion() != ModuleSerialization.VERSION) {
       throw new DeserializationException("Version mismatch");
     }
@@ -49,10 +96,16 @@ public class ModuleDeserialization {
       }
     }
 
-    DefinitionDeserialization defDeserialization = new DefinitionDeserialization(myCallTargetProvider, dependencyListener);
+    ExpressionTableDeserialization expressionTable = new ExpressionTableDeserialization(myCallTargetProvider, myModuleProto.getExpressionTableList());
+    // Dependencies of bodies are not written if the module was not written with lazy bodies, so its bodies cannot be deferred
+    DefinitionDeserialization defDeserialization = new DefinitionDeserialization(myCallTargetProvider, dependencyListener, expressionTable, myModuleProto.getLazyBodies() ? lazyBodyErrorReporter : null);
     for (Pair<DefinitionProtos.Definition, Definition> pair : myDefinitions) {
       defDeserialization.fillInDefinition(pair.proj1, pair.proj2);
     }
+    // Definitions can be reset by the listener before they are loaded, so their reverse dependencies are checked as after typechecking
+    for (Pair<DefinitionProtos.Definition, Definition> pair : myDefinitions) {
+      dependencyListener.checkInterface(pair.proj2.getReferable());
+    }
     myDefinitions.clear();
   }
 
@@ -98,7 +151,7 @@ public class ModuleDeserialization {
       }
 
       Definition def = readDefinition(groupProto.getDefinition(), tcReferable, false);
-      myState.record(tcReferable, def);
+      record(tcReferable, def);
       myCallTargetProvider.putCallTarget(groupProto.getReferable().getIndex(), def);
       myDefinitions.add(new Pair<>(groupProto.getDefinition(), def));
 
@@ -123,7 +176,7 @@ public class ModuleDeserialization {
           assert def instanceof ClassDefinition;
           ClassField res = new ClassField((TCFieldReferable) absField, (ClassDefinition) def);
           ((ClassDefinition) def).addPersonalField(res);
-          myState.record(absField, res);
+          record(absField, res);
           myCallTargetProvider.putCallTarget(fieldProto.getReferable().getIndex(), res);
         }
       }
@@ -146,7 +199,7 @@ public class ModuleDeserialization {
           assert def instanceof DataDefinition;
           Constructor res = new Constructor(absConstructor, (DataDefinition) def);
           ((DataDefinition) def).addConstructor(res);
-          myState.record(absConstructor, res);
+          record(absConstructor, res);
           myCallTargetProvider.putCallTarget(constructorProto.getReferable().getIndex(), res);
         }
       }
@@ -206,7 +259,7 @@ public class ModuleDeserialization {
     Definition def;
     if (referable instanceof TCReferable && groupProto.hasDefinition()) {
       def = readDefinition(groupProto.getDefinition(), (TCReferable) referable, true);
-      myState.record((TCReferable) referable, def);
+      record((TCReferable) referable, def);
       myCallTargetProvider.putCallTarget(referableProto.getIndex(), def);
       myDefinitions.add(new Pair<>(groupProto.getDefinition(), def));
     } else {
@@ -273,7 +326,7 @@ public class ModuleDeserialization {
             TCFieldReferable absField = new FieldReferableImpl(readPrecedence(fieldReferable.getPrecedence()), fieldReferable.getName(), fieldProto.getIsExplicit(), fieldProto.getIsParameter(), referable, null);
             ClassField res = new ClassField(absField, classDef);
             classDef.addPersonalField(res);
-            myState.record(absField, res);
+            record(absField, res);
             myCallTargetProvider.putCallTarget(fieldReferable.getIndex(), res);
           }
         }
@@ -287,7 +340,7 @@ public class ModuleDeserialization {
             TCReferable absConstructor = new LocatedReferableImpl(readPrecedence(conReferable.getPrecedence()), conReferable.getName(), referable, LocatedReferableImpl.Kind.CONSTRUCTOR);
             Constructor res = new Constructor(absConstructor, dataDef);
             dataDef.addConstructor(res);
-            myState.record(absConstructor, res);
+            record(absConstructor, res);
             myCallTargetProvider.putCallTarget(conReferable.getIndex(), res);
           }
         }
@@ -1,5 +1,6 @@
 package org.arend.module.serialization;
 
+import com.google.protobuf.ByteString;
 import org.arend.core.definition.ClassField;
 import org.arend.core.definition.Constructor;
 import org.arend.core.definition.Definition;
@@ -12,22 +13,37 @@ import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.source.error.LocationError;
 import org.arend.term.group.Group;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.util.Hashing;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
 
 public class ModuleSerialization {
   private final TypecheckerState myState;
   private final ErrorReporter myErrorReporter;
   private final SimpleCallTargetIndexProvider myCallTargetIndexProvider = new SimpleCallTargetIndexProvider();
-  private final DefinitionSerialization myDefinitionSerialization = new DefinitionSerialization(myCallTargetIndexProvider);
+  private final ExpressionTableSerialization myExpressionTable = new ExpressionTableSerialization(myCallTargetIndexProvider);
+  private final DefinitionSerialization myDefinitionSerialization;
+  private final boolean myLazyBodies;
   private final Set<Integer> myCurrentDefinitions = new HashSet<>();
+  private final MessageDigest myInterfaceDigest = Hashing.newDigest();
   private boolean myComplete;
 
-  static final int VERSION = 2;
+  static final int VERSION = 5;
 
-  public ModuleSerialization(TypecheckerState state, ErrorReporter errorReporter) {
+  /**
+   * @param lazyBodies  if it is true, definitions used in bodies of functions are written, so that the bodies can be read lazily.
+   */
+  public ModuleSerialization(TypecheckerState state, ErrorReporter errorReporter, boolean lazyBodies) {
     myState = state;
     myErrorReporter = errorReporter;
+    myLazyBodies = lazyBodies;
+    myDefinitionSerialization = new DefinitionSerialization(myCallTargetIndexProvider, myExpressionTable, true, lazyBodies);
+  }
+
+  public ModuleSerialization(TypecheckerState state, ErrorReporter errorReporter) {
+    this(state, errorReporter, false);
   }
 
   public ModuleProtos.Module writeModule(Group group, ModulePath modulePath, ReferableConverter referableConverter) {
@@ -38,9 +54,11 @@ public class ModuleSerialization {
     out.setVersion(VERSION);
     out.setGroup(writeGroup(group, referableConverter));
     out.setComplete(myComplete);
+    out.setLazyBodies(myLazyBodies);
+    out.addAllExpressionTable(myExpressionTable.getEntries());
 
     // Now write the call target tree
-    Map<ModulePath, Map<String, CallTargetTree>> moduleCallTargets = new HashMap<>();
+    Map<ModulePath, Map<String, CallTargetTree>> moduleCallTargets = new LinkedHashMap<>();
     for (Map.Entry<Definition, Integer> entry : myCallTargetIndexProvider.getCallTargets()) {
       if (myCurrentDefinitions.contains(entry.getValue())) {
         continue;
@@ -72,9 +90,19 @@ public class ModuleSerialization {
       out.addModuleCallTargets(builder.build());
     }
 
+    out.setInterfaceHash(ByteString.copyFrom(myInterfaceDigest.digest()));
     return out.build();
   }
 
+  /**
+   * Computes the interface hash of a module without writing it.
+   * The hash is the same as the one that {@link #writeModule} records.
+   */
+  public byte[] computeInterfaceHash(Group group, ReferableConverter referableConverter) {
+    writeGroup(group, referableConverter);
+    return myInterfaceDigest.digest();
+  }
+
   private ModuleProtos.Group writeGroup(Group group, ReferableConverter referableConverter) {
     ModuleProtos.Group.Builder builder = ModuleProtos.Group.newBuilder();
 
@@ -96,14 +124,17 @@ public class ModuleSerialization {
       myComplete = false;
     }
     builder.setReferable(refBuilder.build());
+    updateInterfaceDigest(refBuilder, typechecked);
 
     // Write subgroups
     for (Group subgroup : group.getSubgroups()) {
       builder.addSubgroup(writeGroup(subgroup, referableConverter));
     }
+    myInterfaceDigest.update((byte) 2);
     for (Group subgroup : group.getDynamicSubgroups()) {
       builder.addDynamicSubgroup(writeGroup(subgroup, referableConverter));
     }
+    myInterfaceDigest.update((byte) 3);
     for (Group.InternalReferable internalReferable : group.getInternalReferables()) {
       if (!internalReferable.isVisible()) {
         Definition def = myState.getTypechecked(referableConverter.toDataLocatedReferable(internalReferable.getReferable()));
@@ -116,6 +147,24 @@ public class ModuleSerialization {
     return builder.build();
   }
 
+  /*
+   * The interface hash of a module is computed from the names and the fingerprints of its definitions in the order of the group.
+   * Unlike the serialized module, it does not depend on the bodies of lemmas and on indices of call targets,
+   * so such changes do not invalidate dependent modules.
+   */
+  private void updateInterfaceDigest(DefinitionProtos.Referable.Builder referable, Definition typechecked) {
+    myInterfaceDigest.update(referable.getName().getBytes(StandardCharsets.UTF_8));
+    myInterfaceDigest.update((byte) 0);
+    myInterfaceDigest.update(referable.getPrecedence().toByteArray());
+    byte[] fingerprint = typechecked == null ? null : DefinitionFingerprint.compute(typechecked);
+    if (fingerprint != null) {
+      myInterfaceDigest.update((byte) 1);
+      myInterfaceDigest.update(fingerprint);
+    } else {
+      myInterfaceDigest.update((byte) 0);
+    }
+  }
+
   private static class CallTargetTree {
     Map<String, CallTargetTree> subtreeMap = new HashMap<>();
     int index;
@@ -522,25 +522,39 @@ public class DefinitionResolveNameVisitor implements ConcreteDefinitionVisitor<S
     resolveGroup(group, referableConverter, scope);
   }
 
-  private static Scope makeScope(Group group, Scope parentScope) {
-    if (parentScope == null) {
-      return null;
-    }
-
-    if (group.getNamespaceCommands().isEmpty()) {
-      return new MergeScope(LexicalScope.insideOf(group, EmptyScope.INSTANCE), parentScope);
+  private void resolveSubgroup(Group subgroup, ReferableConverter referableConverter, Scope parentScope, Scope convertedParentScope) {
+    // The local scope consists of elements of the scope that do not belong to the parent scope
+    Scope scope;
+    Scope localScope;
+    if (subgroup.getNamespaceCommands().isEmpty()) {
+      localScope = LexicalScope.insideOf(subgroup, EmptyScope.INSTANCE);
+      scope = new MergeScope(localScope, parentScope);
     } else {
-      return LexicalScope.insideOf(group, parentScope);
+      LexicalScope lexicalScope = LexicalScope.insideOf(subgroup, parentScope);
+      scope = lexicalScope;
+      localScope = lexicalScope.getLocalScope();
     }
+    resolveGroup(subgroup, referableConverter, scope, CachingScope.make(convertScope(referableConverter, scope), convertScope(referableConverter, localScope), convertedParentScope));
+  }
+
+  private static Scope convertScope(ReferableConverter referableConverter, Scope scope) {
+    return referableConverter == null ? scope : new ConvertingScope(referableConverter, scope);
   }
 
   public void resolveGroup(Group group, ReferableConverter referableConverter, Scope scope) {
+    resolveGroup(group, referableConverter, scope, CachingScope.make(convertScope(referableConverter, scope)));
+  }
+
+  /**
+   * @param convertedScope  the cached scope of the group.
+   *                        Scopes of subgroups are cached on top of it, so that each definition does not copy all visible names.
+   */
+  private void resolveGroup(Group group, ReferableConverter referableConverter, Scope scope, Scope convertedScope) {
     LocatedReferable groupRef = group.getReferable();
     Collection<? extends Group> subgroups = group.getSubgroups();
     Collection<? extends Group> dynamicSubgroups = group.getDynamicSubgroups();
 
     Concrete.ReferableDefinition def = myConcreteProvider.getConcrete(groupRef);
-    Scope convertedScope = CachingScope.make(referableConverter == null ? scope : new ConvertingScope(referableConverter, scope));
     if (def instanceof Concrete.Definition) {
       ((Concrete.Definition) def).accept(this, convertedScope);
     } else {
@@ -548,10 +562,10 @@ public class DefinitionResolveNameVisitor implements ConcreteDefinitionVisitor<S
     }
 
     for (Group subgroup : subgroups) {
-      resolveGroup(subgroup, referableConverter, makeScope(subgroup, scope));
+      resolveSubgroup(subgroup, referableConverter, scope, convertedScope);
     }
     for (Group subgroup : dynamicSubgroups) {
-      resolveGroup(subgroup, referableConverter, makeScope(subgroup, scope));
+      resolveSubgroup(subgroup, referableConverter, scope, convertedScope);
     }
 
     if (myResolveTypeClassReferences) {
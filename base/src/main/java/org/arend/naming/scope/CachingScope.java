@@ -6,33 +6,53 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CachingScope implements Scope {
   private final Map<String, Referable> myElements = new LinkedHashMap<>();
-  private final Map<String, Scope> myNamespaces = new HashMap<>();
-  private final Map<String, Scope> myOnlyInternalNamespaces = new HashMap<>();
+  private final Map<String, Scope> myNamespaces = new ConcurrentHashMap<>();
+  private final Map<String, Scope> myOnlyInternalNamespaces = new ConcurrentHashMap<>();
   private final Scope myScope;
+  private final CachingScope myParent;
   private final static Scope EMPTY_SCOPE = new Scope() {};
   private final boolean myWithModules;
 
-  private CachingScope(Scope scope, boolean withModules) {
+  private CachingScope(Scope scope, Scope localScope, CachingScope parent, boolean withModules) {
     myScope = scope;
+    myParent = parent;
     myWithModules = withModules;
-    scope.find(ref -> {
+    localScope.find(ref -> {
       if (withModules || !(ref instanceof ModuleReferable)) {
-        myElements.putIfAbsent(ref instanceof ModuleReferable ? ((ModuleReferable) ref).path.getLastName() : ref.textRepresentation(), ref);
+        myElements.putIfAbsent(getName(ref), ref);
       }
       return false;
     });
   }
 
+  private CachingScope(Scope scope, boolean withModules) {
+    this(scope, scope, null, withModules);
+  }
+
+  private static String getName(Referable ref) {
+    return ref instanceof ModuleReferable ? ((ModuleReferable) ref).path.getLastName() : ref.textRepresentation();
+  }
+
   public static Scope make(Scope scope) {
     return scope instanceof CachingScope || scope instanceof ImportedScope ? scope : new CachingScope(scope, false);
   }
 
+  /**
+   * Caches a scope whose elements are elements of {@code localScope} followed by elements of {@code parent}.
+   * If {@code parent} is already cached, its elements are not copied.
+   *
+   * @param scope the scope itself; it is used to resolve namespaces.
+   */
+  public static Scope make(Scope scope, Scope localScope, Scope parent) {
+    return parent instanceof CachingScope && !((CachingScope) parent).myWithModules && !(scope instanceof CachingScope || scope instanceof ImportedScope) ? new CachingScope(scope, localScope, (CachingScope) parent, false) : make(scope);
+  }
+
   public static Scope makeWithModules(Scope scope) {
     return scope instanceof CachingScope || scope instanceof ImportedScope ? scope : new CachingScope(scope, true);
   }
@@ -40,13 +60,22 @@ public class CachingScope implements Scope {
   @NotNull
   @Override
   public Collection<? extends Referable> getElements() {
-    return myElements.values();
+    if (myParent == null) {
+      return myElements.values();
+    }
+
+    Map<String, Referable> elements = new LinkedHashMap<>(myElements);
+    for (Referable ref : myParent.getElements()) {
+      elements.putIfAbsent(getName(ref), ref);
+    }
+    return elements.values();
   }
 
   @Nullable
   @Override
   public Referable resolveName(String name) {
-    return myElements.get(name);
+    Referable ref = myElements.get(name);
+    return ref == null && myParent != null ? myParent.resolveName(name) : ref;
   }
 
   @Nullable
@@ -57,7 +86,10 @@ public class CachingScope implements Scope {
     if (namespace == null) {
       namespace = myScope.resolveNamespace(name, onlyInternal);
       namespace = namespace == null ? EMPTY_SCOPE : namespace instanceof CachingScope || namespace instanceof ImportedScope ? namespace : new CachingScope(namespace, myWithModules);
-      namespaces.put(name, namespace);
+      Scope prev = namespaces.putIfAbsent(name, namespace);
+      if (prev != null) {
+        namespace = prev;
+      }
     }
 
     return namespace == EMPTY_SCOPE ? null : namespace;
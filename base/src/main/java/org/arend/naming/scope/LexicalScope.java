@@ -9,9 +9,9 @@ import org.arend.term.group.Group;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @SuppressWarnings("Duplicates")
 public class LexicalScope implements Scope {
@@ -20,15 +20,72 @@ public class LexicalScope implements Scope {
   private final ModulePath myModule;
   private final Kind myKind;
   private final boolean myOnlyExternal;
+  private final Cache myCache;
+  private volatile Index myIndex;
+  private volatile Commands myCommands;
+  private static final Object NOT_FOUND = new Object();
 
   private enum Kind { INSIDE, OPENED, OPENED_INTERNAL }
 
-  private LexicalScope(Scope parent, Group group, ModulePath module, Kind kind, boolean onlyExternal) {
+  /**
+   * Names defined directly in a group.
+   * The index is built on the first lookup, so a group must not change after that.
+   */
+  private static class Index {
+    final Map<String, GlobalReferable> internalReferables = new HashMap<>();
+    final Map<String, Referable> subgroupReferables = new HashMap<>();
+    final Map<String, Group> subgroups = new HashMap<>();
+  }
+
+  /**
+   * Namespaces of namespace commands of a group and memoized results of lookups in them.
+   * They depend on the parent scope, which is used to resolve paths of commands.
+   */
+  private static class Commands {
+    final Scope[] scopes;
+    final Map<String, Object> referables = new ConcurrentHashMap<>();
+    final Map<String, Object> namespaces = new ConcurrentHashMap<>();
+    final Map<String, Object> internalNamespaces = new ConcurrentHashMap<>();
+
+    Commands(Scope[] scopes) {
+      this.scopes = scopes;
+    }
+  }
+
+  /**
+   * Indices and lexical scopes of a group.
+   * The cache is shared by all lexical scopes of the group, so names of the group are indexed
+   * and its namespace commands are resolved only once for each parent scope.
+   * A group that provides a cache must not change after its names are resolved; a changed group should be replaced with a new one.
+   */
+  public static final class Cache {
+    private final AtomicReferenceArray<Index> myIndices = new AtomicReferenceArray<>(4);
+    // The last scope for each kind, value of onlyExternal, and whether the parent is empty
+    private final AtomicReferenceArray<LexicalScope> myScopes = new AtomicReferenceArray<>(Kind.values().length * 4);
+  }
+
+  private LexicalScope(Scope parent, Group group, ModulePath module, Kind kind, boolean onlyExternal, Cache cache) {
     myParent = parent;
     myGroup = group;
     myModule = module;
     myKind = kind;
     myOnlyExternal = onlyExternal;
+    myCache = cache;
+  }
+
+  private static LexicalScope make(Scope parent, Group group, ModulePath module, Kind kind, boolean onlyExternal) {
+    Cache cache = group.getScopeCache();
+    if (cache == null) {
+      return new LexicalScope(parent, group, module, kind, onlyExternal, null);
+    }
+
+    int slot = kind.ordinal() * 4 + (onlyExternal ? 2 : 0) + (parent == EmptyScope.INSTANCE ? 1 : 0);
+    LexicalScope scope = cache.myScopes.get(slot);
+    if (scope == null || scope.myParent != parent) {
+      scope = new LexicalScope(parent, group, module, kind, onlyExternal, cache);
+      cache.myScopes.set(slot, scope);
+    }
+    return scope;
   }
 
   private boolean ignoreOpens() {
@@ -36,7 +93,7 @@ public class LexicalScope implements Scope {
   }
 
   public static LexicalScope insideOf(Group group, Scope parent, boolean onlyExternal) {
-    return new LexicalScope(parent, group, group.getReferable().getLocation(), Kind.INSIDE, onlyExternal);
+    return make(parent, group, group.getReferable().getLocation(), Kind.INSIDE, onlyExternal);
   }
 
   public static LexicalScope insideOf(Group group, Scope parent) {
@@ -44,7 +101,7 @@ public class LexicalScope implements Scope {
   }
 
   private static LexicalScope opened(Group group, boolean onlyInternal) {
-    return new LexicalScope(EmptyScope.INSTANCE, group, null, onlyInternal ? Kind.OPENED_INTERNAL : Kind.OPENED, false);
+    return make(EmptyScope.INSTANCE, group, null, onlyInternal ? Kind.OPENED_INTERNAL : Kind.OPENED, false);
   }
 
   public static LexicalScope opened(Group group) {
@@ -69,9 +126,30 @@ public class LexicalScope implements Scope {
     }
   }
 
+  /**
+   * @return the scope that consists of elements of this scope that do not belong to its parent.
+   *         It allows to cache a scope without copying elements of its parent.
+   */
+  @NotNull
+  public Scope getLocalScope() {
+    return new Scope() {
+      @NotNull
+      @Override
+      public Collection<? extends Referable> getElements() {
+        return getLocalElements();
+      }
+    };
+  }
+
   @NotNull
   @Override
   public List<Referable> getElements() {
+    List<Referable> elements = getLocalElements();
+    elements.addAll(myParent.getElements());
+    return elements;
+  }
+
+  private List<Referable> getLocalElements() {
     List<Referable> elements = new ArrayList<>();
     if (!myOnlyExternal) {
       for (Group.InternalReferable constructor : myGroup.getConstructors()) {
@@ -92,124 +170,163 @@ public class LexicalScope implements Scope {
       addSubgroups(myGroup.getDynamicSubgroups(), elements);
     }
 
-    Scope cachingScope = null;
-    for (NamespaceCommand cmd : myGroup.getNamespaceCommands()) {
-      if (ignoreOpens() && cmd.getKind() == NamespaceCommand.Kind.OPEN) {
-        continue;
-      }
-
-      Scope scope;
-      if (cmd.getKind() == NamespaceCommand.Kind.IMPORT) {
-        if (myModule != null && cmd.getPath().equals(myModule.toList())) {
-          continue;
-        }
-        scope = getImportedSubscope();
-      } else {
-        if (cachingScope == null) {
-          cachingScope = CachingScope.make(new LexicalScope(myParent, myGroup, null, Kind.OPENED, myOnlyExternal));
-        }
-        scope = cachingScope;
-      }
-      elements.addAll(NamespaceCommandNamespace.resolveNamespace(scope, cmd).getElements());
+    for (Scope scope : getCommands().scopes) {
+      elements.addAll(scope.getElements());
     }
-
-    elements.addAll(myParent.getElements());
     return elements;
   }
 
-  private static GlobalReferable resolveInternal(Group group, String name, boolean onlyInternal) {
+  // Fields of a class are not indexed and resolved in ClassFieldImplScope since they depend on super classes
+  private static boolean resolvesClassFields(Group group, boolean onlyInternal) {
+    return !onlyInternal && group.getReferable() instanceof ClassReferable;
+  }
+
+  private static void indexInternal(Group group, boolean onlyInternal, Map<String, ? super GlobalReferable> map) {
     for (Group.InternalReferable internalReferable : group.getConstructors()) {
       if (!onlyInternal || internalReferable.isVisible()) {
         GlobalReferable constructor = internalReferable.getReferable();
-        if (constructor.textRepresentation().equals(name)) {
-          return constructor;
-        }
+        map.putIfAbsent(constructor.textRepresentation(), constructor);
       }
     }
 
-    if (onlyInternal || !(group.getReferable() instanceof ClassReferable)) {
+    if (!resolvesClassFields(group, onlyInternal)) {
       for (Group.InternalReferable internalReferable : group.getFields()) {
         if (!onlyInternal || internalReferable.isVisible()) {
           GlobalReferable field = internalReferable.getReferable();
-          if (field.textRepresentation().equals(name)) {
-            return field;
-          }
+          map.putIfAbsent(field.textRepresentation(), field);
         }
       }
-    } else {
-      Referable referable = new ClassFieldImplScope((ClassReferable) group.getReferable(), false).resolveName(name);
-      return referable instanceof GlobalReferable ? (GlobalReferable) referable : null;
     }
-
-    return null;
   }
 
-  private static Object resolveSubgroup(Group group, String name, ResolveType resolveType) {
-    Referable ref = group.getReferable();
-    if (ref.textRepresentation().equals(name)) {
-      return resolveType == ResolveType.REF ? ref : LexicalScope.opened(group, resolveType == ResolveType.INTERNAL_SCOPE);
+  private static void indexSubgroups(Collection<? extends Group> subgroups, Index index) {
+    for (Group subgroup : subgroups) {
+      Referable ref = subgroup.getReferable();
+      index.subgroups.putIfAbsent(ref.textRepresentation(), subgroup);
+      index.subgroupReferables.putIfAbsent(ref.textRepresentation(), ref);
+      indexInternal(subgroup, true, index.subgroupReferables);
     }
+  }
 
-    if (resolveType == ResolveType.REF) {
-      return resolveInternal(group, name, true);
+  private Index buildIndex() {
+    Index index = new Index();
+    if (!myOnlyExternal) {
+      indexInternal(myGroup, myKind == Kind.OPENED_INTERNAL, index.internalReferables);
     }
-
-    return null;
+    indexSubgroups(myGroup.getSubgroups(), index);
+    if (!myOnlyExternal) {
+      indexSubgroups(myGroup.getDynamicSubgroups(), index);
+    }
+    return index;
   }
 
-  private enum ResolveType { REF, SCOPE, INTERNAL_SCOPE }
+  private Index getIndex() {
+    if (myCache != null) {
+      int slot = (myOnlyExternal ? 2 : 0) + (myKind == Kind.OPENED_INTERNAL ? 1 : 0);
+      Index index = myCache.myIndices.get(slot);
+      if (index == null) {
+        index = buildIndex();
+        myCache.myIndices.set(slot, index);
+      }
+      return index;
+    }
 
-  private Object resolve(String name, ResolveType resolveType) {
-    if (name == null || name.isEmpty() || "_".equals(name)) {
-      return null;
+    Index index = myIndex;
+    if (index == null) {
+      index = buildIndex();
+      myIndex = index;
     }
+    return index;
+  }
 
-    if (resolveType == ResolveType.REF && !myOnlyExternal) {
-      Object result = resolveInternal(myGroup, name, myKind == Kind.OPENED_INTERNAL);
-      if (result != null) {
-        return result;
+  /**
+   * @return namespaces of namespace commands of the group with renamings, {@code using}, and {@code hiding} applied.
+   *         Commands that should be ignored are omitted.
+   */
+  private Commands getCommands() {
+    Commands commands = myCommands;
+    if (commands == null) {
+      List<Scope> list = new ArrayList<>();
+      Scope openedScope = null;
+      for (NamespaceCommand cmd : myGroup.getNamespaceCommands()) {
+        if (ignoreOpens() && cmd.getKind() == NamespaceCommand.Kind.OPEN) {
+          continue;
+        }
+
+        if (cmd.getKind() == NamespaceCommand.Kind.IMPORT) {
+          if (myModule != null && cmd.getPath().equals(myModule.toList())) {
+            continue;
+          }
+          list.add(NamespaceCommandNamespace.resolveNamespace(getImportedSubscope(), cmd));
+        } else if (cmd.getPath().isEmpty()) {
+          list.add(EmptyScope.INSTANCE);
+        } else {
+          if (openedScope == null) {
+            openedScope = make(myParent, myGroup, null, Kind.OPENED, myOnlyExternal);
+          }
+          // Only the opened namespace is cached; caching the opened scope would copy all names visible in the parent scope
+          Scope namespace = openedScope.resolveNamespace(cmd.getPath());
+          list.add(NamespaceCommandNamespace.makeNamespace(namespace == null ? null : CachingScope.make(namespace), cmd));
+        }
       }
+      commands = new Commands(list.toArray(new Scope[0]));
+      myCommands = commands;
     }
+    return commands;
+  }
+
+  private enum ResolveType { REF, SCOPE, INTERNAL_SCOPE }
 
-    for (Group subgroup : myGroup.getSubgroups()) {
-      Object result = resolveSubgroup(subgroup, name, resolveType);
+  private static Object resolveInCommands(Commands commands, String name, ResolveType resolveType) {
+    for (Scope scope : commands.scopes) {
+      Object result = resolveType == ResolveType.REF ? scope.resolveName(name) : scope.resolveNamespace(name, resolveType == ResolveType.INTERNAL_SCOPE);
       if (result != null) {
         return result;
       }
     }
-    if (!myOnlyExternal) {
-      for (Group subgroup : myGroup.getDynamicSubgroups()) {
-        Object result = resolveSubgroup(subgroup, name, resolveType);
-        if (result != null) {
-          return result;
-        }
-      }
-    }
+    return NOT_FOUND;
+  }
 
-    Scope cachingScope = null;
-    for (NamespaceCommand cmd : myGroup.getNamespaceCommands()) {
-      if (ignoreOpens() && cmd.getKind() == NamespaceCommand.Kind.OPEN) {
-        continue;
-      }
+  private Object resolve(String name, ResolveType resolveType) {
+    if (name == null || name.isEmpty() || "_".equals(name)) {
+      return null;
+    }
 
-      Scope scope;
-      if (cmd.getKind() == NamespaceCommand.Kind.IMPORT) {
-        if (myModule != null && cmd.getPath().equals(myModule.toList())) {
-          continue;
+    Index index = getIndex();
+    if (resolveType == ResolveType.REF) {
+      if (!myOnlyExternal) {
+        Referable result = index.internalReferables.get(name);
+        if (result == null && resolvesClassFields(myGroup, myKind == Kind.OPENED_INTERNAL)) {
+          result = new ClassFieldImplScope((ClassReferable) myGroup.getReferable(), false).resolveName(name);
+          if (!(result instanceof GlobalReferable)) {
+            result = null;
+          }
         }
-        scope = getImportedSubscope();
-      } else {
-        if (cachingScope == null) {
-          cachingScope = CachingScope.make(new LexicalScope(myParent, myGroup, null, Kind.OPENED, myOnlyExternal));
+        if (result != null) {
+          return result;
         }
-        scope = cachingScope;
       }
 
-      scope = NamespaceCommandNamespace.resolveNamespace(scope, cmd);
-      Object result = resolveType == ResolveType.REF ? scope.resolveName(name) : scope.resolveNamespace(name, resolveType == ResolveType.INTERNAL_SCOPE);
+      Referable result = index.subgroupReferables.get(name);
       if (result != null) {
         return result;
       }
+    } else {
+      Group subgroup = index.subgroups.get(name);
+      if (subgroup != null) {
+        return LexicalScope.opened(subgroup, resolveType == ResolveType.INTERNAL_SCOPE);
+      }
+    }
+
+    Commands commands = getCommands();
+    Map<String, Object> commandResults = resolveType == ResolveType.REF ? commands.referables : resolveType == ResolveType.SCOPE ? commands.namespaces : commands.internalNamespaces;
+    Object result = commandResults.get(name);
+    if (result == null) {
+      result = resolveInCommands(commands, name, resolveType);
+      commandResults.putIfAbsent(name, result);
+    }
+    if (result != NOT_FOUND) {
+      return result;
     }
 
     return resolveType == ResolveType.REF ? myParent.resolveName(name) : myParent.resolveNamespace(name, resolveType == ResolveType.INTERNAL_SCOPE);
@@ -232,7 +349,7 @@ public class LexicalScope implements Scope {
   @NotNull
   @Override
   public Scope getGlobalSubscopeWithoutOpens() {
-    return ignoreOpens() ? this : new LexicalScope(myParent, myGroup, null, Kind.OPENED, myOnlyExternal);
+    return ignoreOpens() ? this : make(myParent, myGroup, null, Kind.OPENED, myOnlyExternal);
   }
 
   @Nullable
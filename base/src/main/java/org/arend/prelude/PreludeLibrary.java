@@ -7,6 +7,7 @@ import org.arend.library.LibraryHeader;
 import org.arend.library.SourceLibrary;
 import org.arend.module.scopeprovider.ModuleScopeProvider;
 import org.arend.naming.reference.LocatedReferable;
+import org.arend.naming.reference.TCReferable;
 import org.arend.naming.scope.CachingScope;
 import org.arend.naming.scope.LexicalScope;
 import org.arend.naming.scope.Scope;
@@ -75,6 +76,9 @@ public abstract class PreludeLibrary extends SourceLibrary {
   @Override
   public void resetDefinition(LocatedReferable referable) {}
 
+  @Override
+  public void resetDefinitions(Collection<? extends TCReferable> definitions) {}
+
   @NotNull
   @Override
   public String getName() {
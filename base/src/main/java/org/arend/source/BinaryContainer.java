@@ -0,0 +1,228 @@
+package org.arend.source;
+
+import org.arend.ext.error.ErrorReporter;
+import org.arend.ext.module.ModulePath;
+import org.arend.library.SourceLibrary;
+import org.arend.module.error.ExceptionError;
+import org.arend.module.serialization.ModuleProtos;
+import org.arend.module.serialization.ModuleSerialization;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.source.error.LocationError;
+import org.arend.term.group.Group;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A single file that contains binary modules of a whole library.
+ * The file starts with an index that maps every module to the offset and the length of its data.
+ * The file is memory-mapped, so modules are read directly from the mapped buffer.
+ * A container should be closed before its file is replaced.
+ */
+public class BinaryContainer implements Closeable {
+  private static final int MAGIC = 0x41524353;
+  private static final int VERSION = 1;
+
+  private volatile ByteBuffer myBuffer;
+  private volatile Map<ModulePath, Entry> myEntries;
+  private final long myTimeStamp;
+
+  private static class Entry {
+    final int offset;
+    final int length;
+
+    Entry(int offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private BinaryContainer(ByteBuffer buffer, Map<ModulePath, Entry> entries, long timeStamp) {
+    myBuffer = buffer;
+    myEntries = entries;
+    myTimeStamp = timeStamp;
+  }
+
+  /**
+   * Opens a container.
+   *
+   * @param file  a path to the container.
+   *
+   * @return the container.
+   * @throws IOException if the file cannot be read or has a wrong format.
+   */
+  public static BinaryContainer open(Path file) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Container is too large: " + file);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a container: " + file);
+      }
+      if (buffer.getInt() != VERSION) {
+        throw new IOException("Version mismatch: " + file);
+      }
+
+      int numberOfModules = buffer.getInt();
+      Map<ModulePath, Entry> entries = new HashMap<>();
+      for (int i = 0; i < numberOfModules; i++) {
+        int size = buffer.getInt();
+        List<String> names = new ArrayList<>(size);
+        for (int j = 0; j < size; j++) {
+          byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+          buffer.get(bytes);
+          names.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        int offset = buffer.getInt();
+        int length = buffer.getInt();
+        if (offset < 0 || length < 0 || offset > buffer.limit() - length) {
+          throw new IOException("Corrupted index: " + file);
+        }
+        entries.put(new ModulePath(names), new Entry(offset, length));
+      }
+
+      return new BinaryContainer(buffer, entries, Files.getLastModifiedTime(file).toMillis());
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Corrupted index: " + file, e);
+    }
+  }
+
+  public Collection<? extends ModulePath> getModules() {
+    return myEntries.keySet();
+  }
+
+  public boolean containsModule(ModulePath modulePath) {
+    return myEntries.containsKey(modulePath);
+  }
+
+  /**
+   * Gets the data of a module.
+   *
+   * @return a read-only buffer that shares its content with the mapped file or null if the module is not in the container.
+   */
+  public ByteBuffer getModule(ModulePath modulePath) {
+    ByteBuffer buffer = myBuffer;
+    Entry entry = myEntries.get(modulePath);
+    if (entry == null || buffer == null) {
+      return null;
+    }
+
+    buffer = buffer.duplicate();
+    buffer.position(entry.offset);
+    buffer.limit(entry.offset + entry.length);
+    return buffer.slice();
+  }
+
+  public long getTimeStamp() {
+    return myTimeStamp;
+  }
+
+  /**
+   * Releases the mapped buffer.
+   * The container does not contain any modules after that, so sources that use it fall back to separate binary files.
+   * The file is unmapped when buffers returned by {@link #getModule} are no longer used.
+   */
+  @Override
+  public void close() {
+    myEntries = Collections.emptyMap();
+    myBuffer = null;
+  }
+
+  /**
+   * Writes a container.
+   * The file is replaced atomically if the file system supports it.
+   *
+   * @param file     a path to the container.
+   * @param modules  the data of modules.
+   */
+  public static void write(Path file, Map<ModulePath, byte[]> modules) throws IOException {
+    ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    DataOutputStream index = new DataOutputStream(indexBytes);
+    int indexSize = 12;
+    for (ModulePath modulePath : modules.keySet()) {
+      indexSize += 12;
+      for (String name : modulePath.toList()) {
+        indexSize += 2 + name.getBytes(StandardCharsets.UTF_8).length;
+      }
+    }
+
+    index.writeInt(MAGIC);
+    index.writeInt(VERSION);
+    index.writeInt(modules.size());
+    int offset = indexSize;
+    for (Map.Entry<ModulePath, byte[]> entry : modules.entrySet()) {
+      List<String> names = entry.getKey().toList();
+      index.writeInt(names.size());
+      for (String name : names) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        index.writeShort(bytes.length);
+        index.write(bytes);
+      }
+      index.writeInt(offset);
+      index.writeInt(entry.getValue().length);
+      offset += entry.getValue().length;
+    }
+    index.flush();
+
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmpFile))) {
+      indexBytes.writeTo(out);
+      for (byte[] bytes : modules.values()) {
+        out.write(bytes);
+      }
+    }
+    try {
+      Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Serializes all loaded modules of a library and writes them to a container.
+   *
+   * @return true if the operation is successful, false otherwise
+   */
+  public static boolean pack(SourceLibrary library, Path file, ErrorReporter errorReporter) {
+    Map<ModulePath, byte[]> modules = new LinkedHashMap<>();
+    for (ModulePath modulePath : library.getLoadedModules()) {
+      Group group = library.getModuleGroup(modulePath);
+      if (group == null) {
+        errorReporter.report(LocationError.module(modulePath));
+        return false;
+      }
+
+      ModuleProtos.Module module = new ModuleSerialization(library.getTypecheckerState(), errorReporter, library.hasFlag(SourceLibrary.Flag.LAZY_BODIES)).writeModule(group, modulePath, IdReferableConverter.INSTANCE);
+      if (module == null) {
+        return false;
+      }
+      modules.put(modulePath, module.toByteArray());
+    }
+
+    try {
+      write(file, modules);
+      return true;
+    } catch (IOException e) {
+      errorReporter.report(new ExceptionError(e, "packing"));
+      return false;
+    }
+  }
+}
@@ -3,6 +3,7 @@ package org.arend.source;
 import org.arend.ext.error.ErrorReporter;
 import org.arend.library.SourceLibrary;
 import org.arend.naming.reference.converter.ReferableConverter;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Represents a module persisted in a binary format.
@@ -27,4 +28,16 @@ public interface BinarySource extends Source {
    * @return true if the operation is successful, false otherwise
    */
   boolean delete(SourceLibrary library);
+
+  /**
+   * Checks if this source was built from the current version of the raw source.
+   *
+   * @param rawSource   the raw source of the same module.
+   * @param sourceHash  the hash of the text of the raw source as it was loaded or null if it is unknown.
+   *
+   * @return true if the source can be loaded instead of the raw source, false otherwise.
+   */
+  default boolean isUpToDate(Source rawSource, @Nullable byte[] sourceHash) {
+    return getTimeStamp() >= rawSource.getTimeStamp();
+  }
 }
@@ -0,0 +1,115 @@
+package org.arend.source;
+
+import com.google.protobuf.CodedInputStream;
+import org.arend.ext.module.ModulePath;
+import org.arend.library.SourceLibrary;
+import org.arend.module.serialization.ModuleProtos;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A source that loads a binary module from a {@link BinaryContainer}.
+ * If a separate binary file of the module is given, modules are persisted to it,
+ * and it takes precedence over the container when it is newer than the container.
+ */
+public class ContainerBinarySource extends StreamBinarySource {
+  private final BinaryContainer myContainer;
+  private final ModulePath myModulePath;
+  private final StreamBinarySource myModuleSource;
+
+  /**
+   * Creates a new {@code ContainerBinarySource}.
+   *
+   * @param container     the container.
+   * @param modulePath    a path to the module.
+   * @param moduleSource  a source of the separate binary file of the module or null if the source is read-only.
+   */
+  public ContainerBinarySource(BinaryContainer container, ModulePath modulePath, @Nullable StreamBinarySource moduleSource) {
+    myContainer = container;
+    myModulePath = modulePath;
+    myModuleSource = moduleSource;
+  }
+
+  public ContainerBinarySource(BinaryContainer container, ModulePath modulePath) {
+    this(container, modulePath, null);
+  }
+
+  @NotNull
+  @Override
+  public ModulePath getModulePath() {
+    return myModulePath;
+  }
+
+  private boolean isModuleSourceActual() {
+    return myModuleSource != null && myModuleSource.isAvailable() && (!myContainer.containsModule(myModulePath) || myModuleSource.getTimeStamp() >= myContainer.getTimeStamp());
+  }
+
+  @Nullable
+  @Override
+  protected ModuleProtos.Module readModuleProto() throws IOException {
+    if (isModuleSourceActual()) {
+      return myModuleSource.readModuleProto();
+    }
+
+    ByteBuffer buffer = myContainer.getModule(myModulePath);
+    if (buffer == null) {
+      return null;
+    }
+
+    CodedInputStream codedInputStream = CodedInputStream.newInstance(buffer);
+    codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
+    return ModuleProtos.Module.parseFrom(codedInputStream);
+  }
+
+  @Nullable
+  @Override
+  protected InputStream getInputStream() throws IOException {
+    if (isModuleSourceActual()) {
+      return myModuleSource.getInputStream();
+    }
+
+    ByteBuffer buffer = myContainer.getModule(myModulePath);
+    return buffer == null ? null : new InputStream() {
+      @Override
+      public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(@NotNull byte[] bytes, int off, int len) {
+        if (!buffer.hasRemaining()) {
+          return -1;
+        }
+        len = Math.min(len, buffer.remaining());
+        buffer.get(bytes, off, len);
+        return len;
+      }
+    };
+  }
+
+  @Nullable
+  @Override
+  protected OutputStream getOutputStream() throws IOException {
+    return myModuleSource == null ? null : myModuleSource.getOutputStream();
+  }
+
+  @Override
+  public long getTimeStamp() {
+    return isModuleSourceActual() ? myModuleSource.getTimeStamp() : myContainer.getTimeStamp();
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return myContainer.containsModule(myModulePath) || myModuleSource != null && myModuleSource.isAvailable();
+  }
+
+  @Override
+  public boolean delete(SourceLibrary library) {
+    return myModuleSource != null && myModuleSource.delete(library);
+  }
+}
@@ -1,9 +1,11 @@
 package org.arend.source;
 
+import org.arend.ext.error.ErrorReporter;
 import org.arend.ext.module.ModulePath;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.util.Collection;
 
 /**
  * Represents a persisted module.
@@ -38,6 +40,36 @@ public interface Source {
    */
   LoadResult load(SourceLoader sourceLoader);
 
+  /**
+   * Reads the data of the source in advance so that {@link #preload} does not have to.
+   * This method does not modify the library and can be invoked concurrently for different sources.
+   * It may read groups of already loaded modules and use the referable converter of the loader.
+   *
+   * @param sourceLoader    the state of the loading process.
+   */
+  default void prefetch(SourceLoader sourceLoader) {}
+
+  /**
+   * Gets modules that this source depends on.
+   * This method is called after the source was preloaded.
+   *
+   * @return the list of dependencies or null if names in this source cannot be resolved by {@link #resolveNames}.
+   */
+  @Nullable
+  default Collection<? extends ModulePath> getDependencies() {
+    return null;
+  }
+
+  /**
+   * Resolves names in the source before {@link #load} is called.
+   * This method is called after names in all dependencies of the source were resolved.
+   * It can be invoked concurrently for sources that do not depend on each other.
+   *
+   * @param sourceLoader    the state of the loading process.
+   * @param errorReporter   a reporter for errors that occur during resolving.
+   */
+  default void resolveNames(SourceLoader sourceLoader, ErrorReporter errorReporter) {}
+
   /**
    * Gets the timestamp for this source.
    *
@@ -1,17 +1,28 @@
 package org.arend.source;
 
+import org.arend.error.ListErrorReporter;
 import org.arend.ext.error.ErrorReporter;
 import org.arend.ext.module.ModulePath;
 import org.arend.library.LibraryManager;
 import org.arend.library.SourceLibrary;
 import org.arend.module.error.ModuleNotFoundError;
 import org.arend.module.scopeprovider.ModuleScopeProvider;
+import org.arend.module.serialization.ModuleSerialization;
+import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.ReferableConverter;
+import org.arend.term.group.ChildGroup;
+import org.arend.term.group.Group;
+import org.arend.typechecking.computation.TypecheckingMetrics;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Contains all necessary information for source loading.
@@ -20,19 +31,34 @@ public final class SourceLoader {
   private final SourceLibrary myLibrary;
   private final ReferableConverter myReferableConverter;
   private final LibraryManager myLibraryManager;
+  private final TypecheckingOrderingListener myTypechecking;
   private final Map<ModulePath, SourceType> myLoadedModules = new HashMap<>();
   private final Map<ModulePath, BinarySource> myLoadingBinaryModules = new HashMap<>();
-  private final Map<ModulePath, Source> myLoadingRawModules = new HashMap<>();
+  private final Map<ModulePath, Source> myLoadingRawModules = new LinkedHashMap<>();
+  private final Map<ModulePath, Source> myPrefetchedRawModules = new HashMap<>();
+  private final Map<ModulePath, BinarySource> myPrefetchedBinaryModules = new HashMap<>();
+  private final Set<ModulePath> myDeferredBinaryModules = new LinkedHashSet<>();
+  private final Set<ModulePath> myTypecheckedRawModules = new HashSet<>();
+  private boolean myLoadingDeferredBinaries;
   private ModuleScopeProvider myModuleScopeProvider;
 
   private enum SourceType { RAW, BINARY, BINARY_FAIL }
 
-  public SourceLoader(SourceLibrary library, LibraryManager libraryManager) {
+  /**
+   * @param typechecking  if it is not null, it is used to typecheck modules that are compiled from raw sources
+   *                      when binary modules that depend on them are loaded (see {@link #loadDeferredBinaries}).
+   */
+  public SourceLoader(SourceLibrary library, LibraryManager libraryManager, @Nullable TypecheckingOrderingListener typechecking) {
     myLibrary = library;
     myLibraryManager = libraryManager;
+    myTypechecking = typechecking;
     myReferableConverter = myLibrary.getReferableConverter();
   }
 
+  public SourceLoader(SourceLibrary library, LibraryManager libraryManager) {
+    this(library, libraryManager, null);
+  }
+
   public SourceLibrary getLibrary() {
     return myLibrary;
   }
@@ -60,6 +86,18 @@ public final class SourceLoader {
     return myLibraryManager.getLibraryErrorReporter();
   }
 
+  @Nullable
+  public TypecheckingMetrics getMetrics() {
+    return myLibraryManager.getMetrics();
+  }
+
+  /**
+   * Marks a module as loaded, so that it is not loaded again when other modules import it.
+   */
+  public void markLoaded(ModulePath modulePath) {
+    myLoadedModules.putIfAbsent(modulePath, SourceType.RAW);
+  }
+
   /**
    * Loads the structure of the source and its dependencies.
    *
@@ -74,7 +112,10 @@ public final class SourceLoader {
       return true;
     }
 
-    Source rawSource = myLibrary.getRawSource(modulePath);
+    Source rawSource = myPrefetchedRawModules.remove(modulePath);
+    if (rawSource == null) {
+      rawSource = myLibrary.getRawSource(modulePath);
+    }
     boolean rawSourceIsAvailable = rawSource != null && rawSource.isAvailable();
 
     if (!rawSourceIsAvailable) {
@@ -92,10 +133,44 @@ public final class SourceLoader {
     return true;
   }
 
+  /**
+   * Reads and parses raw sources of the given modules in parallel.
+   * Sources are only parsed here; they are added to the library by {@link #preloadRaw} as usual.
+   * Does nothing if the library manager is configured to use a single thread.
+   *
+   * @param modules  modules that will be loaded.
+   */
+  public void prefetchRawSources(Collection<? extends ModulePath> modules) {
+    int numberOfThreads = myLibraryManager.getNumberOfThreads();
+    if (numberOfThreads <= 1) {
+      return;
+    }
+
+    List<Source> sources = new ArrayList<>();
+    for (ModulePath modulePath : modules) {
+      if (myLoadedModules.containsKey(modulePath) || myLoadingRawModules.containsKey(modulePath) || myPrefetchedRawModules.containsKey(modulePath)) {
+        continue;
+      }
+      Source rawSource = myLibrary.getRawSource(modulePath);
+      if (rawSource != null && rawSource.isAvailable()) {
+        myPrefetchedRawModules.put(modulePath, rawSource);
+        sources.add(rawSource);
+      }
+    }
+    prefetch(sources, numberOfThreads);
+  }
+
   /**
    * Loads raw sources that were preloaded.
+   * If the library manager is configured to use several threads,
+   * names are resolved in parallel first (see {@link #resolveRawSources}).
    */
   public void loadRawSources() {
+    int numberOfThreads = myLibraryManager.getNumberOfThreads();
+    if (numberOfThreads > 1 && myLoadingRawModules.size() > 1) {
+      resolveRawSources(numberOfThreads);
+    }
+
     while (!myLoadingRawModules.isEmpty()) {
       for (Iterator<Source> it = myLoadingRawModules.values().iterator(); it.hasNext(); ) {
         Source source = it.next();
@@ -107,6 +182,87 @@ public final class SourceLoader {
     }
   }
 
+  /**
+   * Resolves names in preloaded raw sources on a pool of threads.
+   * Sources are processed level by level according to their imports,
+   * so a source is resolved only after all of its dependencies and sources resolved at the same time do not depend on each other.
+   * Sources from import cycles and sources that depend on them are left to {@link #loadRawSources}.
+   * Errors are reported in the order of levels.
+   */
+  private void resolveRawSources(int numberOfThreads) {
+    Map<ModulePath, Collection<? extends ModulePath>> pending = new LinkedHashMap<>();
+    for (Map.Entry<ModulePath, Source> entry : myLoadingRawModules.entrySet()) {
+      Collection<? extends ModulePath> dependencies = entry.getValue().getDependencies();
+      if (dependencies != null) {
+        pending.put(entry.getKey(), dependencies);
+      }
+    }
+    Set<ModulePath> unresolved = new HashSet<>(myLoadingRawModules.keySet());
+
+    // Shared state must be initialized before it is accessed concurrently
+    getModuleScopeProvider();
+    ErrorReporter errorReporter = getTypecheckingErrorReporter();
+
+    ExecutorService executor = null;
+    try {
+      while (true) {
+        List<ModulePath> level = new ArrayList<>();
+        for (Map.Entry<ModulePath, Collection<? extends ModulePath>> entry : pending.entrySet()) {
+          if (Collections.disjoint(entry.getValue(), unresolved)) {
+            level.add(entry.getKey());
+          }
+        }
+        if (level.isEmpty()) {
+          return;
+        }
+
+        if (executor == null) {
+          executor = Executors.newFixedThreadPool(Math.min(numberOfThreads, pending.size()));
+        }
+        List<Future<ListErrorReporter>> futures = new ArrayList<>(level.size());
+        for (ModulePath modulePath : level) {
+          Source source = myLoadingRawModules.get(modulePath);
+          futures.add(executor.submit(() -> {
+            ListErrorReporter listErrorReporter = new ListErrorReporter();
+            source.resolveNames(this, listErrorReporter);
+            return listErrorReporter;
+          }));
+        }
+
+        for (int i = 0; i < level.size(); i++) {
+          ListErrorReporter listErrorReporter;
+          try {
+            listErrorReporter = futures.get(i).get();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+              throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+              throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+          }
+          listErrorReporter.reportTo(errorReporter);
+          pending.remove(level.get(i));
+          unresolved.remove(level.get(i));
+        }
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+        try {
+          executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
   /**
    * Loads a binary source.
    *
@@ -152,16 +308,12 @@ public final class SourceLoader {
       return true;
     }
 
-    BinarySource binarySource = myLibrary.getBinarySource(modulePath);
-    if (binarySource == null || !binarySource.isAvailable()) {
-      return false;
+    BinarySource binarySource = myPrefetchedBinaryModules.remove(modulePath);
+    if (binarySource == null) {
+      binarySource = getAvailableBinarySource(modulePath);
     }
-
-    if (myLibrary.hasRawSources()) {
-      Source rawSource = myLibrary.getRawSource(modulePath);
-      if (rawSource != null && rawSource.isAvailable() && binarySource.getTimeStamp() < rawSource.getTimeStamp()) {
-        return false;
-      }
+    if (binarySource == null || !isUpToDate(modulePath, binarySource)) {
+      return false;
     }
 
     myLoadedModules.put(modulePath, SourceType.BINARY);
@@ -174,4 +326,152 @@ public final class SourceLoader {
 
     return true;
   }
+
+  /**
+   * Loads binary modules that were rejected because some of their dependencies were compiled from raw sources.
+   * Such a dependency is typechecked first and a binary module is loaded only if
+   * the interface hash of the dependency that it records coincides with the new one.
+   * Should be invoked after all binary modules were loaded by {@link #loadBinary}.
+   */
+  public void loadDeferredBinaries() {
+    myLoadingDeferredBinaries = true;
+    try {
+      while (!myDeferredBinaryModules.isEmpty()) {
+        Iterator<ModulePath> it = myDeferredBinaryModules.iterator();
+        ModulePath modulePath = it.next();
+        it.remove();
+
+        // The module could be typechecked as a dependency of another module
+        ChildGroup group = myLibrary.getModuleGroup(modulePath);
+        if (myLoadedModules.get(modulePath) != SourceType.BINARY_FAIL || group == null || hasTypecheckedDefinitions(group)) {
+          continue;
+        }
+        myLoadedModules.put(modulePath, SourceType.RAW);
+        loadBinary(modulePath);
+      }
+    } finally {
+      myLoadingDeferredBinaries = false;
+    }
+  }
+
+  /**
+   * Invoked by a binary source when one of its dependencies is not loaded from a binary source.
+   * The first time, the module is deferred until {@link #loadDeferredBinaries} is invoked.
+   * After that, the dependency is typechecked and its interface hash is updated,
+   * so that the binary source can compare it with the recorded one.
+   *
+   * @param modulePath  the module that is being loaded.
+   * @param dependency  a dependency of the module that is compiled from its raw source.
+   * @return true if the dependency was typechecked, false if the module should not be loaded from the binary source.
+   */
+  boolean typecheckRawDependency(ModulePath modulePath, ModulePath dependency) {
+    if (myTypechecking == null || !myLibrary.hasRawSources() || myLoadedModules.get(dependency) == SourceType.BINARY) {
+      return false;
+    }
+    if (!myLoadingDeferredBinaries) {
+      myDeferredBinaryModules.add(modulePath);
+      return false;
+    }
+    if (myTypecheckedRawModules.contains(dependency)) {
+      return true;
+    }
+
+    // Other binary modules are not filled in yet, so the dependency cannot be typechecked safely
+    ChildGroup group = myLibrary.getModuleGroup(dependency);
+    if (group == null || myLoadingBinaryModules.size() > 1) {
+      return false;
+    }
+
+    myTypecheckedRawModules.add(dependency);
+    myTypechecking.typecheckModules(Collections.singletonList(group), null);
+    // If the dependency imports the module, the module is typechecked too, so it cannot be loaded anymore
+    ChildGroup moduleGroup = myLibrary.getModuleGroup(modulePath);
+    if (moduleGroup != null && hasTypecheckedDefinitions(moduleGroup)) {
+      return false;
+    }
+    myLibrary.setInterfaceHash(dependency, new ModuleSerialization(myLibrary.getTypecheckerState(), getLibraryErrorReporter()).computeInterfaceHash(group, myReferableConverter));
+    return true;
+  }
+
+  private boolean hasTypecheckedDefinitions(Group group) {
+    TCReferable referable = myReferableConverter.toDataLocatedReferable(group.getReferable());
+    if (referable != null && myLibrary.getTypecheckerState().getTypechecked(referable) != null) {
+      return true;
+    }
+    for (Group subgroup : group.getSubgroups()) {
+      if (hasTypecheckedDefinitions(subgroup)) {
+        return true;
+      }
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      if (hasTypecheckedDefinitions(subgroup)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private BinarySource getAvailableBinarySource(ModulePath modulePath) {
+    BinarySource binarySource = myLibrary.getBinarySource(modulePath);
+    return binarySource != null && binarySource.isAvailable() ? binarySource : null;
+  }
+
+  private boolean isUpToDate(ModulePath modulePath, BinarySource binarySource) {
+    if (!myLibrary.hasRawSources()) {
+      return true;
+    }
+    Source rawSource = myLibrary.getRawSource(modulePath);
+    return rawSource == null || !rawSource.isAvailable() || binarySource.isUpToDate(rawSource, myLibrary.getSourceHash(modulePath));
+  }
+
+  /**
+   * Reads binary sources of the given modules and decodes their groups in parallel.
+   * Decoded definitions are recorded and linked into the library by {@link #loadBinary} as usual.
+   * Does nothing if the library manager is configured to use a single thread.
+   *
+   * @param modules  modules that will be loaded.
+   */
+  public void prefetchBinaries(Collection<? extends ModulePath> modules) {
+    int numberOfThreads = myLibraryManager.getNumberOfThreads();
+    if (numberOfThreads <= 1) {
+      return;
+    }
+
+    List<BinarySource> sources = new ArrayList<>();
+    for (ModulePath modulePath : modules) {
+      SourceType sourceType = myLoadedModules.get(modulePath);
+      if (sourceType == SourceType.BINARY || sourceType == SourceType.BINARY_FAIL || myLibrary.hasRawSources() && sourceType != SourceType.RAW || myLoadingBinaryModules.containsKey(modulePath) || myPrefetchedBinaryModules.containsKey(modulePath)) {
+        continue;
+      }
+      BinarySource binarySource = getAvailableBinarySource(modulePath);
+      if (binarySource != null) {
+        myPrefetchedBinaryModules.put(modulePath, binarySource);
+        sources.add(binarySource);
+      }
+    }
+    prefetch(sources, numberOfThreads);
+  }
+
+  private void prefetch(List<? extends Source> sources, int numberOfThreads) {
+    if (sources.size() <= 1) {
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(numberOfThreads, sources.size()));
+    List<Future<?>> futures = new ArrayList<>(sources.size());
+    for (Source source : sources) {
+      futures.add(executor.submit(() -> source.prefetch(this)));
+    }
+    executor.shutdown();
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException ignored) {
+        // Sources that failed to prefetch will be read again by preload
+      }
+    }
+  }
 }
@@ -1,5 +1,6 @@
 package org.arend.source;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedInputStream;
 import org.arend.ext.error.ErrorReporter;
 import org.arend.ext.module.ModulePath;
@@ -17,6 +18,7 @@ import org.arend.source.error.LocationError;
 import org.arend.source.error.PersistingError;
 import org.arend.term.group.ChildGroup;
 import org.arend.term.group.Group;
+import org.arend.typechecking.computation.TypecheckingMetrics;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -29,6 +31,9 @@ import java.io.OutputStream;
  */
 public abstract class StreamBinarySource implements BinarySource {
   private ModuleDeserialization myModuleDeserialization;
+  private volatile ModuleProtos.Module myPrefetchedModule;
+  private volatile ModuleDeserialization myPrefetchedDeserialization;
+  private volatile ChildGroup myPrefetchedGroup;
 
   @NotNull
   @Override
@@ -50,19 +55,122 @@ public abstract class StreamBinarySource implements BinarySource {
   @Nullable
   protected abstract OutputStream getOutputStream() throws IOException;
 
+  /**
+   * Reads the binary module.
+   *
+   * @return the module or null if the input stream is not available.
+   */
+  @Nullable
+  protected ModuleProtos.Module readModuleProto() throws IOException {
+    try (InputStream inputStream = getInputStream()) {
+      if (inputStream == null) {
+        return null;
+      }
+
+      CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
+      codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
+      return ModuleProtos.Module.parseFrom(codedInputStream);
+    }
+  }
+
+  @Override
+  public void prefetch(SourceLoader sourceLoader) {
+    try {
+      long startTime = System.nanoTime();
+      ModuleProtos.Module moduleProto = readModuleProto();
+      myPrefetchedDeserialization = moduleProto == null ? null : prefetchGroup(sourceLoader, moduleProto);
+      myPrefetchedModule = moduleProto;
+      recordDeserialization(sourceLoader, getModulePath(), System.nanoTime() - startTime);
+    } catch (IOException ignored) {
+      // The module will be read again by preload, which reports the error
+    }
+  }
+
+  /**
+   * Reads the group of the module or its definitions if the library has raw sources.
+   * Definitions are not recorded in the typechecker state yet since preload may still reject the module.
+   *
+   * @return the deserialization of the module or null if the group cannot be read now.
+   */
+  private ModuleDeserialization prefetchGroup(SourceLoader sourceLoader, ModuleProtos.Module moduleProto) {
+    SourceLibrary library = sourceLoader.getLibrary();
+    ModulePath modulePath = getModulePath();
+    ReferableConverter referableConverter = sourceLoader.getReferableConverter();
+    ModuleDeserialization moduleDeserialization = new ModuleDeserialization(moduleProto, library.getTypecheckerState(), referableConverter);
+    moduleDeserialization.deferRecording();
+    try {
+      if (referableConverter == null) {
+        myPrefetchedGroup = moduleDeserialization.readGroup(modulePath);
+      } else {
+        Group group = library.getModuleGroup(modulePath);
+        if (group == null) {
+          return null;
+        }
+        moduleDeserialization.readDefinitions(group);
+      }
+      return moduleDeserialization;
+    } catch (DeserializationException e) {
+      // The group will be read again by preload, which reports the error
+      myPrefetchedGroup = null;
+      return null;
+    }
+  }
+
+  private void clearPrefetched() {
+    myPrefetchedModule = null;
+    myPrefetchedDeserialization = null;
+    myPrefetchedGroup = null;
+  }
+
+  @Override
+  public boolean isUpToDate(Source rawSource, @Nullable byte[] sourceHash) {
+    if (sourceHash == null) {
+      return BinarySource.super.isUpToDate(rawSource, null);
+    }
+
+    ModuleProtos.Module moduleProto = myPrefetchedModule;
+    if (moduleProto == null) {
+      try {
+        moduleProto = readModuleProto();
+      } catch (IOException e) {
+        // The error will be reported by preload
+        return true;
+      }
+      if (moduleProto == null) {
+        return false;
+      }
+    }
+
+    ByteString binaryHash = moduleProto.getSourceHash();
+    boolean upToDate = binaryHash.isEmpty() ? BinarySource.super.isUpToDate(rawSource, sourceHash) : binaryHash.equals(ByteString.copyFrom(sourceHash));
+    if (upToDate) {
+      myPrefetchedModule = moduleProto;
+    } else {
+      clearPrefetched();
+    }
+    return upToDate;
+  }
+
   @Override
   public boolean preload(SourceLoader sourceLoader) {
     SourceLibrary library = sourceLoader.getLibrary();
     ModulePath modulePath = getModulePath();
     ChildGroup group = null;
-    try (InputStream inputStream = getInputStream()) {
-      if (inputStream == null) {
+    try {
+      long startTime = System.nanoTime();
+      ModuleProtos.Module moduleProto = myPrefetchedModule;
+      ModuleDeserialization prefetchedDeserialization = myPrefetchedDeserialization;
+      ChildGroup prefetchedGroup = myPrefetchedGroup;
+      clearPrefetched();
+      if (moduleProto == null) {
+        moduleProto = readModuleProto();
+        prefetchedDeserialization = null;
+      }
+      long time = System.nanoTime() - startTime;
+      if (moduleProto == null) {
         return false;
       }
 
-      CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
-      codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
-      ModuleProtos.Module moduleProto = ModuleProtos.Module.parseFrom(codedInputStream);
       boolean isComplete = moduleProto.getComplete();
       if (!isComplete && !library.hasRawSources()) {
         sourceLoader.getLibraryErrorReporter().report(new PartialModuleError(modulePath));
@@ -71,14 +179,38 @@ public abstract class StreamBinarySource implements BinarySource {
 
       for (ModuleProtos.ModuleCallTargets moduleCallTargets : moduleProto.getModuleCallTargetsList()) {
         ModulePath module = new ModulePath(moduleCallTargets.getNameList());
-        if (library.containsModule(module) && !sourceLoader.preloadBinary(module)) {
-          return false;
+        if (library.containsModule(module)) {
+          // If the dependency is compiled from its raw source, the module can be loaded only if the interface of the dependency did not change
+          if (!sourceLoader.preloadBinary(module) && (moduleCallTargets.getInterfaceHash().isEmpty() || !sourceLoader.typecheckRawDependency(modulePath, module))) {
+            return false;
+          }
+          // The module was built against another version of the dependency
+          byte[] interfaceHash = library.getInterfaceHash(module);
+          if (interfaceHash != null && !moduleCallTargets.getInterfaceHash().isEmpty() && !moduleCallTargets.getInterfaceHash().equals(ByteString.copyFrom(interfaceHash))) {
+            return false;
+          }
         }
       }
 
+      if (!moduleProto.getInterfaceHash().isEmpty()) {
+        library.setInterfaceHash(modulePath, moduleProto.getInterfaceHash().toByteArray());
+      }
+
+      // Dependencies are preloaded above, so their time is not counted
+      startTime = System.nanoTime();
       ReferableConverter referableConverter = sourceLoader.getReferableConverter();
-      myModuleDeserialization = new ModuleDeserialization(moduleProto, library.getTypecheckerState(), referableConverter);
+      if (prefetchedDeserialization != null) {
+        myModuleDeserialization = prefetchedDeserialization;
+        myModuleDeserialization.recordDefinitions();
+        if (referableConverter == null) {
+          group = prefetchedGroup;
+          library.onGroupLoaded(modulePath, group, false);
+        }
+        recordDeserialization(sourceLoader, modulePath, time + System.nanoTime() - startTime);
+        return true;
+      }
 
+      myModuleDeserialization = new ModuleDeserialization(moduleProto, library.getTypecheckerState(), referableConverter);
       if (referableConverter == null) {
         group = myModuleDeserialization.readGroup(modulePath);
         library.onGroupLoaded(modulePath, group, false);
@@ -92,6 +224,7 @@ public abstract class StreamBinarySource implements BinarySource {
         myModuleDeserialization.readDefinitions(group);
       }
 
+      recordDeserialization(sourceLoader, modulePath, time + System.nanoTime() - startTime);
       return true;
     } catch (IOException | DeserializationException e) {
       loadingFailed(sourceLoader, modulePath, group, e);
@@ -115,7 +248,9 @@ public abstract class StreamBinarySource implements BinarySource {
         }
       }
 
-      myModuleDeserialization.readModule(sourceLoader.getModuleScopeProvider(), library.getDependencyListener());
+      long startTime = System.nanoTime();
+      myModuleDeserialization.readModule(sourceLoader.getModuleScopeProvider(), library.getDependencyListener(), library.hasFlag(SourceLibrary.Flag.LAZY_BODIES) ? sourceLoader.getLibraryErrorReporter() : null);
+      recordDeserialization(sourceLoader, modulePath, System.nanoTime() - startTime);
       library.onBinaryLoaded(modulePath, myModuleDeserialization.getModuleProto().getComplete());
       myModuleDeserialization = null;
       return LoadResult.SUCCESS;
@@ -125,6 +260,13 @@ public abstract class StreamBinarySource implements BinarySource {
     }
   }
 
+  private static void recordDeserialization(SourceLoader sourceLoader, ModulePath modulePath, long time) {
+    TypecheckingMetrics metrics = sourceLoader.getMetrics();
+    if (metrics != null) {
+      metrics.deserialized(modulePath, time);
+    }
+  }
+
   private void loadingFailed(SourceLoader sourceLoader, ModulePath modulePath, Group group, Exception e) {
     sourceLoader.getLibraryErrorReporter().report(new DeserializationError(modulePath, e));
     if (!sourceLoader.getLibrary().hasRawSources()) {
@@ -137,6 +279,7 @@ public abstract class StreamBinarySource implements BinarySource {
 
   @Override
   public boolean persist(SourceLibrary library, ReferableConverter referableConverter, ErrorReporter errorReporter) {
+    clearPrefetched();
     ModulePath currentModulePath = getModulePath();
     Group group = library.getModuleGroup(currentModulePath);
     if (group == null) {
@@ -150,12 +293,25 @@ public abstract class StreamBinarySource implements BinarySource {
         return false;
       }
 
-      ModuleProtos.Module module = new ModuleSerialization(library.getTypecheckerState(), errorReporter).writeModule(group, currentModulePath, referableConverter);
+      ModuleProtos.Module module = new ModuleSerialization(library.getTypecheckerState(), errorReporter, library.hasFlag(SourceLibrary.Flag.LAZY_BODIES)).writeModule(group, currentModulePath, referableConverter);
       if (module == null) {
         return false;
       }
 
-      module.writeTo(outputStream);
+      ModuleProtos.Module.Builder builder = module.toBuilder();
+      byte[] sourceHash = library.getSourceHash(currentModulePath);
+      if (sourceHash != null) {
+        builder.setSourceHash(ByteString.copyFrom(sourceHash));
+      }
+      for (ModuleProtos.ModuleCallTargets.Builder moduleCallTargets : builder.getModuleCallTargetsBuilderList()) {
+        ModulePath dependency = new ModulePath(moduleCallTargets.getNameList());
+        byte[] interfaceHash = library.containsModule(dependency) ? library.getInterfaceHash(dependency) : null;
+        if (interfaceHash != null) {
+          moduleCallTargets.setInterfaceHash(ByteString.copyFrom(interfaceHash));
+        }
+      }
+      builder.build().writeTo(outputStream);
+      library.setInterfaceHash(currentModulePath, module.getInterfaceHash().toByteArray());
       return true;
     } catch (Exception e) {
       errorReporter.report(new ExceptionError(e, "persisting", currentModulePath));
@@ -1,8 +1,10 @@
 package org.arend.term.group;
 
 import org.arend.naming.reference.LocatedReferable;
+import org.arend.naming.scope.LexicalScope;
 import org.arend.term.NamespaceCommand;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -27,6 +29,14 @@ public interface Group {
     return Collections.emptyList();
   }
 
+  /**
+   * @return a cache of lexical scopes of this group or null if scopes of this group should not be cached.
+   *         A group that returns a cache must not change after its names are resolved.
+   */
+  default @Nullable LexicalScope.Cache getScopeCache() {
+    return null;
+  }
+
   interface InternalReferable {
     LocatedReferable getReferable();
     boolean isVisible();
@@ -1,6 +1,7 @@
 package org.arend.term.group;
 
 import org.arend.naming.reference.LocatedReferable;
+import org.arend.naming.scope.LexicalScope;
 import org.arend.term.ChildNamespaceCommand;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -14,6 +15,7 @@ public class StaticGroup implements ChildGroup {
   private final List<Group> myStaticGroups;
   private final List<ChildNamespaceCommand> myNamespaceCommands;
   private final ChildGroup myParent;
+  private final LexicalScope.Cache myScopeCache = new LexicalScope.Cache();
 
   public StaticGroup(LocatedReferable referable, List<Group> staticGroups, List<ChildNamespaceCommand> namespaceCommands, ChildGroup parent) {
     myReferable = referable;
@@ -51,4 +53,10 @@ public class StaticGroup implements ChildGroup {
   public ChildGroup getParentGroup() {
     return myParent;
   }
+
+  @NotNull
+  @Override
+  public LexicalScope.Cache getScopeCache() {
+    return myScopeCache;
+  }
 }
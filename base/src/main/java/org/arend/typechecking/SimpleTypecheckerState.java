@@ -4,14 +4,20 @@ import org.arend.core.definition.Definition;
 import org.arend.naming.reference.GlobalReferable;
 import org.arend.naming.reference.TCReferable;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * A thread-safe implementation of {@link TypecheckerState}.
+ * Reads do not block, and each operation on a single definition is atomic.
+ */
 public class SimpleTypecheckerState implements TypecheckerState {
   private final Map<GlobalReferable, Definition> myTypechecked;
+  private final AtomicLong myResetCount = new AtomicLong();
 
   public SimpleTypecheckerState() {
-    myTypechecked = new HashMap<>();
+    myTypechecked = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -32,11 +38,19 @@ public class SimpleTypecheckerState implements TypecheckerState {
 
   @Override
   public Definition reset(TCReferable def) {
-    return myTypechecked.remove(def);
+    Definition result = myTypechecked.remove(def);
+    myResetCount.incrementAndGet();
+    return result;
   }
 
   @Override
   public void reset() {
     myTypechecked.clear();
+    myResetCount.incrementAndGet();
+  }
+
+  @Override
+  public long getResetCount() {
+    return myResetCount.get();
   }
 }
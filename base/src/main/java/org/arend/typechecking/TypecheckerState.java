@@ -3,10 +3,25 @@ package org.arend.typechecking;
 import org.arend.core.definition.Definition;
 import org.arend.naming.reference.TCReferable;
 
+import java.util.Collection;
+
 public interface TypecheckerState {
   Definition record(TCReferable def, Definition res);
   void rewrite(TCReferable def, Definition res);
   Definition getTypechecked(TCReferable def);
   Definition reset(TCReferable def);
   void reset();
+
+  default void reset(Collection<? extends TCReferable> defs) {
+    for (TCReferable def : defs) {
+      reset(def);
+    }
+  }
+
+  /**
+   * @return a number that changes every time a typechecked definition is reset or -1 if such changes are not tracked.
+   */
+  default long getResetCount() {
+    return -1;
+  }
 }
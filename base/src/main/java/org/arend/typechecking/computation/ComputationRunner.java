@@ -5,18 +5,40 @@ import org.arend.util.ComputationInterruptedException;
 import java.util.function.Supplier;
 
 public class ComputationRunner<T> {
-  private static CancellationIndicator CANCELLATION_INDICATOR = ThreadCancellationIndicator.INSTANCE;
+  private static final ThreadLocal<CancellationIndicator> CANCELLATION_INDICATOR = ThreadLocal.withInitial(() -> ThreadCancellationIndicator.INSTANCE);
 
   public static void checkCanceled() throws ComputationInterruptedException {
-    CANCELLATION_INDICATOR.checkCanceled();
+    CANCELLATION_INDICATOR.get().checkCanceled();
   }
 
+  /**
+   * @return the cancellation indicator of the computation running in the current thread.
+   */
   public static CancellationIndicator getCancellationIndicator() {
-    return CANCELLATION_INDICATOR;
+    return CANCELLATION_INDICATOR.get();
   }
 
   public static void resetCancellationIndicator() {
-    CANCELLATION_INDICATOR = ThreadCancellationIndicator.INSTANCE;
+    CANCELLATION_INDICATOR.remove();
+  }
+
+  /**
+   * Runs a computation in the current thread with the given cancellation indicator.
+   * Unlike {@link #run}, this method does not catch {@link ComputationInterruptedException}.
+   * It can be used to propagate the cancellation indicator of a computation to worker threads.
+   */
+  public static <R> R runWithCancellationIndicator(CancellationIndicator cancellationIndicator, Supplier<R> supplier) {
+    if (cancellationIndicator == null) {
+      return supplier.get();
+    }
+
+    CancellationIndicator previous = CANCELLATION_INDICATOR.get();
+    CANCELLATION_INDICATOR.set(cancellationIndicator);
+    try {
+      return supplier.get();
+    } finally {
+      CANCELLATION_INDICATOR.set(previous);
+    }
   }
 
   protected T computationInterrupted() {
@@ -24,20 +46,10 @@ public class ComputationRunner<T> {
   }
 
   public T run(CancellationIndicator cancellationIndicator, Supplier<T> runnable) {
-    synchronized (ComputationRunner.class) {
-      if (cancellationIndicator != null) {
-        CANCELLATION_INDICATOR = cancellationIndicator;
-      }
-
-      try {
-        return runnable.get();
-      } catch (ComputationInterruptedException ignored) {
-        return computationInterrupted();
-      } finally {
-        if (cancellationIndicator != null) {
-          CANCELLATION_INDICATOR = ThreadCancellationIndicator.INSTANCE;
-        }
-      }
+    try {
+      return runWithCancellationIndicator(cancellationIndicator, runnable);
+    } catch (ComputationInterruptedException ignored) {
+      return computationInterrupted();
     }
   }
 }
@@ -0,0 +1,46 @@
+package org.arend.typechecking.computation;
+
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of reduction steps that normalization can make while a definition is typechecked.
+ * A step is an unfolding of a function or a step of pattern matching.
+ * The limit is a setting of a typechecking session (see {@link org.arend.typechecking.order.listener.TypecheckingOrderingListener#setMaxReductionSteps}).
+ */
+public class ReductionBudget {
+  private static final ThreadLocal<ReductionBudget> CURRENT = new ThreadLocal<>();
+
+  private final int myMaxSteps;
+  private int mySteps;
+
+  private ReductionBudget(int maxSteps) {
+    myMaxSteps = maxSteps;
+  }
+
+  /**
+   * Runs a computation in the current thread with a fresh budget.
+   *
+   * @param maxSteps  the maximum number of steps; 0 means that the number of steps is not limited.
+   */
+  public static <T> T run(int maxSteps, Supplier<T> supplier) throws ReductionLimitExceededException {
+    ReductionBudget previous = CURRENT.get();
+    if (maxSteps <= 0 && previous == null) {
+      return supplier.get();
+    }
+
+    CURRENT.set(maxSteps > 0 ? new ReductionBudget(maxSteps) : null);
+    try {
+      return supplier.get();
+    } finally {
+      CURRENT.set(previous);
+    }
+  }
+
+  public static void step() throws ReductionLimitExceededException {
+    TypecheckingMetrics.normalizationStep();
+    ReductionBudget budget = CURRENT.get();
+    if (budget != null && ++budget.mySteps > budget.myMaxSteps) {
+      throw new ReductionLimitExceededException(budget.myMaxSteps);
+    }
+  }
+}
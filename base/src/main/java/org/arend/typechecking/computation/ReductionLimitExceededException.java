@@ -0,0 +1,13 @@
+package org.arend.typechecking.computation;
+
+public class ReductionLimitExceededException extends RuntimeException {
+  private final int myMaxSteps;
+
+  public ReductionLimitExceededException(int maxSteps) {
+    myMaxSteps = maxSteps;
+  }
+
+  public int getMaxSteps() {
+    return myMaxSteps;
+  }
+}
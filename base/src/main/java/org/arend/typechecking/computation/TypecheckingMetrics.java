@@ -0,0 +1,216 @@
+package org.arend.typechecking.computation;
+
+import org.arend.ext.module.ModulePath;
+import org.arend.naming.reference.TCReferable;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collects timings and counters of typechecking for every definition and timings of serialization for every module.
+ * Metrics belong to a session: they are collected only for definitions typechecked by a listener they are attached to
+ * (see {@link org.arend.typechecking.order.listener.TypecheckingOrderingListener#setMetrics})
+ * and for modules loaded by a library manager they are attached to (see {@link org.arend.library.LibraryManager#setMetrics}).
+ */
+public class TypecheckingMetrics {
+  public enum Phase { HEADER, BODY, UNIT }
+
+  private static final ThreadLocal<Counters> CURRENT = new ThreadLocal<>();
+
+  private final Map<TCReferable, DefinitionMetrics> myDefinitions = new ConcurrentHashMap<>();
+  private final Map<ModulePath, ModuleMetrics> myModules = new ConcurrentHashMap<>();
+
+  private static class Counters {
+    private final long startTime = System.nanoTime();
+    private long headerEndTime = -1;
+    private int equations;
+    private int instanceSearches;
+    private long normalizationSteps;
+  }
+
+  public static class DefinitionMetrics {
+    private final long myHeaderTime;
+    private final long myBodyTime;
+    private final int myEquations;
+    private final int myInstanceSearches;
+    private final long myNormalizationSteps;
+
+    public DefinitionMetrics(long headerTime, long bodyTime, int equations, int instanceSearches, long normalizationSteps) {
+      myHeaderTime = headerTime;
+      myBodyTime = bodyTime;
+      myEquations = equations;
+      myInstanceSearches = instanceSearches;
+      myNormalizationSteps = normalizationSteps;
+    }
+
+    /**
+     * @return the time of typechecking of the header in nanoseconds.
+     *         It is 0 for classes since they are typechecked as a whole.
+     */
+    public long getHeaderTime() {
+      return myHeaderTime;
+    }
+
+    /**
+     * @return the time of typechecking of the body in nanoseconds.
+     */
+    public long getBodyTime() {
+      return myBodyTime;
+    }
+
+    public long getTotalTime() {
+      return myHeaderTime + myBodyTime;
+    }
+
+    /**
+     * @return the number of solved inference variables.
+     */
+    public int getEquations() {
+      return myEquations;
+    }
+
+    public int getInstanceSearches() {
+      return myInstanceSearches;
+    }
+
+    public long getNormalizationSteps() {
+      return myNormalizationSteps;
+    }
+
+    public DefinitionMetrics add(DefinitionMetrics metrics) {
+      return new DefinitionMetrics(myHeaderTime + metrics.myHeaderTime, myBodyTime + metrics.myBodyTime, myEquations + metrics.myEquations, myInstanceSearches + metrics.myInstanceSearches, myNormalizationSteps + metrics.myNormalizationSteps);
+    }
+  }
+
+  public static class ModuleMetrics {
+    private final long mySerializationTime;
+    private final long myDeserializationTime;
+
+    public ModuleMetrics(long serializationTime, long deserializationTime) {
+      mySerializationTime = serializationTime;
+      myDeserializationTime = deserializationTime;
+    }
+
+    /**
+     * @return the time of serialization in nanoseconds.
+     */
+    public long getSerializationTime() {
+      return mySerializationTime;
+    }
+
+    /**
+     * @return the time of deserialization in nanoseconds.
+     */
+    public long getDeserializationTime() {
+      return myDeserializationTime;
+    }
+
+    public ModuleMetrics add(ModuleMetrics metrics) {
+      return new ModuleMetrics(mySerializationTime + metrics.mySerializationTime, myDeserializationTime + metrics.myDeserializationTime);
+    }
+  }
+
+  public Map<TCReferable, DefinitionMetrics> getDefinitionMetrics() {
+    return Collections.unmodifiableMap(myDefinitions);
+  }
+
+  public Map<ModulePath, ModuleMetrics> getModuleMetrics() {
+    return Collections.unmodifiableMap(myModules);
+  }
+
+  public void clear() {
+    myDefinitions.clear();
+    myModules.clear();
+  }
+
+  /**
+   * Runs a computation that typechecks a definition in the current thread and records its metrics.
+   * Classes are typechecked as a whole, so the time of their typechecking is counted as the time of the body.
+   *
+   * @param metrics     the metrics of the session; if it is null, metrics are not collected.
+   * @param definition  the definition which is typechecked by the computation.
+   * @param phase       the part of the definition which is typechecked.
+   *                    If the whole definition is typechecked, the time before {@link #headerTypechecked} is the time of the header.
+   */
+  public static <T> T run(@Nullable TypecheckingMetrics metrics, TCReferable definition, Phase phase, Supplier<T> supplier) {
+    Counters previous = CURRENT.get();
+    if (metrics == null) {
+      if (previous == null) {
+        return supplier.get();
+      }
+      CURRENT.set(null);
+      try {
+        return supplier.get();
+      } finally {
+        CURRENT.set(previous);
+      }
+    }
+
+    Counters counters = new Counters();
+    CURRENT.set(counters);
+    try {
+      return supplier.get();
+    } finally {
+      CURRENT.set(previous);
+      long endTime = System.nanoTime();
+      long headerTime;
+      long bodyTime;
+      if (phase == Phase.HEADER) {
+        headerTime = endTime - counters.startTime;
+        bodyTime = 0;
+      } else if (phase == Phase.UNIT && counters.headerEndTime >= 0) {
+        headerTime = counters.headerEndTime - counters.startTime;
+        bodyTime = endTime - counters.headerEndTime;
+      } else {
+        headerTime = 0;
+        bodyTime = endTime - counters.startTime;
+      }
+      metrics.myDefinitions.merge(definition, new DefinitionMetrics(headerTime, bodyTime, counters.equations, counters.instanceSearches, counters.normalizationSteps), DefinitionMetrics::add);
+    }
+  }
+
+  /**
+   * Should be invoked when the header of a function or a data type is typechecked and typechecking of its body begins.
+   */
+  public static void headerTypechecked() {
+    Counters counters = CURRENT.get();
+    if (counters != null && counters.headerEndTime < 0) {
+      counters.headerEndTime = System.nanoTime();
+    }
+  }
+
+  /**
+   * Should be invoked when an inference variable is solved.
+   */
+  public static void equationSolved() {
+    Counters counters = CURRENT.get();
+    if (counters != null) {
+      counters.equations++;
+    }
+  }
+
+  public static void instanceSearched() {
+    Counters counters = CURRENT.get();
+    if (counters != null) {
+      counters.instanceSearches++;
+    }
+  }
+
+  static void normalizationStep() {
+    Counters counters = CURRENT.get();
+    if (counters != null) {
+      counters.normalizationSteps++;
+    }
+  }
+
+  public void serialized(ModulePath modulePath, long time) {
+    myModules.merge(modulePath, new ModuleMetrics(time, 0), ModuleMetrics::add);
+  }
+
+  public void deserialized(ModulePath modulePath, long time) {
+    myModules.merge(modulePath, new ModuleMetrics(0, time), ModuleMetrics::add);
+  }
+}
@@ -0,0 +1,65 @@
+package org.arend.typechecking.computation;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.util.Pair;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counts how many times normalization unfolds each function.
+ * A profiler belongs to a typechecking session (see {@link org.arend.typechecking.order.listener.TypecheckingOrderingListener#setUnfoldingProfiler})
+ * and counts only unfoldings made by computations run with it.
+ */
+public class UnfoldingProfiler {
+  private static final ThreadLocal<UnfoldingProfiler> CURRENT = new ThreadLocal<>();
+
+  private final Map<FunctionDefinition, LongAdder> myUnfoldings = new ConcurrentHashMap<>();
+
+  /**
+   * Runs a computation in the current thread so that its unfoldings are counted by {@code profiler}.
+   *
+   * @param profiler  the profiler; if it is null, unfoldings are not counted.
+   */
+  public static <T> T run(@Nullable UnfoldingProfiler profiler, Supplier<T> supplier) {
+    UnfoldingProfiler previous = CURRENT.get();
+    if (profiler == previous) {
+      return supplier.get();
+    }
+
+    CURRENT.set(profiler);
+    try {
+      return supplier.get();
+    } finally {
+      CURRENT.set(previous);
+    }
+  }
+
+  public static void unfolded(FunctionDefinition definition) {
+    UnfoldingProfiler profiler = CURRENT.get();
+    if (profiler != null) {
+      profiler.myUnfoldings.computeIfAbsent(definition, k -> new LongAdder()).increment();
+    }
+  }
+
+  /**
+   * @return at most {@code limit} functions with the largest numbers of unfoldings sorted by the number of unfoldings.
+   */
+  public List<Pair<FunctionDefinition, Long>> getMostUnfolded(int limit) {
+    List<Pair<FunctionDefinition, Long>> result = new ArrayList<>(myUnfoldings.size());
+    for (Map.Entry<FunctionDefinition, LongAdder> entry : myUnfoldings.entrySet()) {
+      result.add(new Pair<>(entry.getKey(), entry.getValue().sum()));
+    }
+    result.sort((p1, p2) -> Long.compare(p2.proj2, p1.proj2));
+    return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+  }
+
+  public void clear() {
+    myUnfoldings.clear();
+  }
+}
@@ -0,0 +1,181 @@
+package org.arend.typechecking.doubleChecker;
+
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.Constructor;
+import org.arend.core.definition.Definition;
+import org.arend.module.serialization.DefinitionFingerprint;
+import org.arend.util.Hashing;
+import org.jetbrains.annotations.Nullable;
+
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Computes hashes of the core of definitions.
+ * The core includes bodies of lemmas and hidden bodies of functions since the double checker checks them.
+ * The hash of a definition covers its own core and the cores of all definitions it refers to, directly or transitively,
+ * since the double checker may unfold any of them.
+ * Mutually recursive definitions share the hash of their strongly connected component.
+ */
+public class CoreHashes {
+  private static final byte[] NO_HASH = new byte[0];
+
+  private final Map<Definition, Node> myNodes = new HashMap<>();
+  private final Deque<Definition> myStack = new ArrayDeque<>();
+  private int myIndex;
+
+  private static class Node {
+    final int index;
+    int lowLink;
+    boolean onStack = true;
+    byte[] fingerprint;
+    final List<Definition> targets = new ArrayList<>();
+    byte[] hash;
+
+    Node(int index) {
+      this.index = index;
+      lowLink = index;
+    }
+  }
+
+  /**
+   * @return the hash of the core of a definition or null if the definition or one of its dependencies cannot be hashed,
+   *         for example, if it has errors.
+   */
+  public @Nullable byte[] getHash(Definition definition) {
+    definition = getOwner(definition);
+    Node node = myNodes.get(definition);
+    if (node == null) {
+      node = visit(definition);
+    }
+    return node.hash == NO_HASH ? null : node.hash;
+  }
+
+  // Constructors and fields are hashed as a part of their data types and classes
+  private static Definition getOwner(Definition definition) {
+    if (definition instanceof Constructor) {
+      return ((Constructor) definition).getDataType();
+    }
+    if (definition instanceof ClassField) {
+      return ((ClassField) definition).getParentClass();
+    }
+    return definition;
+  }
+
+  private static class Frame {
+    final Definition definition;
+    final Node node;
+    final List<Definition> callTargets = new ArrayList<>();
+    int next;
+
+    Frame(Definition definition, Node node) {
+      this.definition = definition;
+      this.node = node;
+    }
+  }
+
+  private Frame enter(Definition definition) {
+    Node node = new Node(myIndex++);
+    myNodes.put(definition, node);
+    myStack.push(definition);
+
+    Frame frame = new Frame(definition, node);
+    node.fingerprint = DefinitionFingerprint.computeCore(definition, frame.callTargets);
+    return frame;
+  }
+
+  // Tarjan's algorithm: a hash is computed when the strongly connected component of the definition is complete.
+  // It keeps its own stack of frames since chains of dependencies can be deeper than the call stack.
+  private Node visit(Definition definition) {
+    Deque<Frame> frames = new ArrayDeque<>();
+    Frame root = enter(definition);
+    frames.push(root);
+    while (!frames.isEmpty()) {
+      Frame frame = frames.peek();
+      Node node = frame.node;
+      if (frame.next < frame.callTargets.size()) {
+        Definition target = getOwner(frame.callTargets.get(frame.next++));
+        if (target == frame.definition) {
+          continue;
+        }
+        node.targets.add(target);
+        Node targetNode = myNodes.get(target);
+        if (targetNode == null) {
+          frames.push(enter(target));
+        } else if (targetNode.onStack) {
+          node.lowLink = Math.min(node.lowLink, targetNode.index);
+        }
+        continue;
+      }
+
+      frames.pop();
+      Frame parent = frames.peek();
+      if (parent != null) {
+        parent.node.lowLink = Math.min(parent.node.lowLink, node.lowLink);
+      }
+
+      if (node.lowLink == node.index) {
+        List<Node> component = new ArrayList<>();
+        Set<Definition> members = new HashSet<>();
+        Definition member;
+        do {
+          member = myStack.pop();
+          Node memberNode = myNodes.get(member);
+          memberNode.onStack = false;
+          component.add(memberNode);
+          members.add(member);
+        } while (member != frame.definition);
+
+        byte[] hash = computeHash(component, members);
+        for (Node memberNode : component) {
+          memberNode.hash = hash;
+        }
+      }
+    }
+
+    return root.node;
+  }
+
+  // Members and their dependencies are digested in a canonical order since the order of visiting depends on where the search started
+  private byte[] computeHash(List<Node> component, Set<Definition> members) {
+    List<byte[]> fingerprints = new ArrayList<>(component.size());
+    List<byte[]> targetHashes = new ArrayList<>();
+    for (Node node : component) {
+      if (node.fingerprint == null) {
+        return NO_HASH;
+      }
+      fingerprints.add(node.fingerprint);
+      for (Definition target : node.targets) {
+        if (members.contains(target)) {
+          continue;
+        }
+        byte[] targetHash = myNodes.get(target).hash;
+        if (targetHash == NO_HASH) {
+          return NO_HASH;
+        }
+        targetHashes.add(targetHash);
+      }
+    }
+
+    fingerprints.sort(CoreHashes::compare);
+    targetHashes.sort(CoreHashes::compare);
+    MessageDigest digest = Hashing.newDigest();
+    for (byte[] fingerprint : fingerprints) {
+      digest.update(fingerprint);
+    }
+    for (byte[] targetHash : targetHashes) {
+      digest.update(targetHash);
+    }
+    return digest.digest();
+  }
+
+  private static int compare(byte[] array1, byte[] array2) {
+    for (int i = 0; i < array1.length && i < array2.length; i++) {
+      int cmp = Integer.compare(array1[i] & 0xFF, array2[i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(array1.length, array2.length);
+  }
+}
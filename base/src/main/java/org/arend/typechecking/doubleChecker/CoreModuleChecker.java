@@ -1,17 +1,30 @@
 package org.arend.typechecking.doubleChecker;
 
 import org.arend.core.definition.Definition;
+import org.arend.error.ListErrorReporter;
 import org.arend.ext.error.ErrorReporter;
 import org.arend.naming.reference.LocatedReferable;
 import org.arend.naming.reference.TCReferable;
 import org.arend.term.group.Group;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.error.local.LocalErrorReporter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class CoreModuleChecker {
   private final ErrorReporter myErrorReporter;
   private final TypecheckerState myState;
   private final CoreDefinitionChecker myChecker;
+  private int myNumberOfThreads = 1;
+  private Map<TCReferable, byte[]> myVerifiedHashes;
+  private CoreHashes myCoreHashes;
+  private int myNumberOfSkipped;
 
   public CoreModuleChecker(ErrorReporter errorReporter, TypecheckerState state) {
     myErrorReporter = errorReporter;
@@ -19,28 +32,171 @@ public class CoreModuleChecker {
     myChecker = new CoreDefinitionChecker(errorReporter);
   }
 
+  /**
+   * Sets the number of threads used to check independent definitions.
+   * Errors are still reported on the calling thread in the same order as in sequential mode.
+   */
+  public void setNumberOfThreads(int numberOfThreads) {
+    myNumberOfThreads = Math.max(numberOfThreads, 1);
+  }
+
+  /**
+   * Enables incremental checking.
+   * A definition is skipped if its core hash (see {@link CoreHashes}) coincides with the hash in {@code verifiedHashes}.
+   * After checking, {@code verifiedHashes} contains the current hashes of checked definitions that are correct.
+   */
+  public void setVerifiedHashes(@Nullable Map<TCReferable, byte[]> verifiedHashes) {
+    myVerifiedHashes = verifiedHashes;
+    myCoreHashes = verifiedHashes == null ? null : new CoreHashes();
+  }
+
+  /**
+   * @return the number of definitions that were skipped because their core did not change.
+   */
+  public int getNumberOfSkipped() {
+    return myNumberOfSkipped;
+  }
+
   public boolean checkGroup(Group group) {
+    return checkGroups(Collections.singletonList(group));
+  }
+
+  public boolean checkGroups(Collection<? extends Group> groups) {
+    List<TCReferable> referables = new ArrayList<>();
+    List<Definition> definitions = new ArrayList<>();
+    for (Group group : groups) {
+      collectDefinitions(group, referables, definitions);
+    }
+
+    List<byte[]> hashes = new ArrayList<>(definitions.size());
+    if (myVerifiedHashes != null) {
+      for (int i = 0; i < definitions.size(); i++) {
+        byte[] hash = myCoreHashes.getHash(definitions.get(i));
+        if (hash != null && Arrays.equals(hash, myVerifiedHashes.get(referables.get(i)))) {
+          myNumberOfSkipped++;
+          hash = null;
+          referables.set(i, null);
+        }
+        hashes.add(hash);
+      }
+    }
+
+    boolean ok = myNumberOfThreads <= 1 || definitions.size() <= 1
+      ? checkSequentially(referables, definitions, hashes)
+      : checkInParallel(referables, definitions, hashes);
+    myChecker.setErrorReporter(myErrorReporter);
+    return ok;
+  }
+
+  private void collectDefinitions(Group group, List<TCReferable> referables, List<Definition> definitions) {
     LocatedReferable ref = group.getReferable();
     Definition def = ref instanceof TCReferable ? myState.getTypechecked((TCReferable) ref) : null;
-    boolean ok = true;
     if (def != null) {
-      myChecker.setErrorReporter(new LocalErrorReporter(ref, myErrorReporter));
-      if (!myChecker.check(def)) {
-        ok = false;
-      }
+      referables.add((TCReferable) ref);
+      definitions.add(def);
     }
 
     for (Group subgroup : group.getSubgroups()) {
-      if (!checkGroup(subgroup)) {
-        ok = false;
-      }
+      collectDefinitions(subgroup, referables, definitions);
     }
     for (Group subgroup : group.getDynamicSubgroups()) {
-      if (!checkGroup(subgroup)) {
-        ok = false;
+      collectDefinitions(subgroup, referables, definitions);
+    }
+  }
+
+  private void checked(TCReferable referable, List<byte[]> hashes, int index, boolean ok) {
+    if (myVerifiedHashes != null) {
+      byte[] hash = hashes.get(index);
+      if (ok && hash != null) {
+        myVerifiedHashes.put(referable, hash);
+      } else {
+        myVerifiedHashes.remove(referable);
       }
     }
+  }
 
+  private boolean checkSequentially(List<TCReferable> referables, List<Definition> definitions, List<byte[]> hashes) {
+    boolean ok = true;
+    for (int i = 0; i < definitions.size(); i++) {
+      TCReferable referable = referables.get(i);
+      if (referable == null) {
+        continue;
+      }
+      myChecker.setErrorReporter(new LocalErrorReporter(referable, myErrorReporter));
+      boolean defOk = myChecker.check(definitions.get(i));
+      checked(referable, hashes, i, defOk);
+      if (!defOk) {
+        ok = false;
+      }
+    }
     return ok;
   }
+
+  private static class Result {
+    final boolean ok;
+    final ListErrorReporter errorReporter;
+
+    Result(boolean ok, ListErrorReporter errorReporter) {
+      this.ok = ok;
+      this.errorReporter = errorReporter;
+    }
+  }
+
+  /**
+   * Checks definitions on a pool of threads.
+   * Every definition is checked by its own {@link CoreDefinitionChecker} since checkers are not thread-safe.
+   */
+  private boolean checkInParallel(List<TCReferable> referables, List<Definition> definitions, List<byte[]> hashes) {
+    List<Future<Result>> results = new ArrayList<>(definitions.size());
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(myNumberOfThreads, definitions.size()));
+    try {
+      for (int i = 0; i < definitions.size(); i++) {
+        TCReferable referable = referables.get(i);
+        Definition definition = definitions.get(i);
+        results.add(referable == null ? null : executor.submit(() -> {
+          ListErrorReporter errorReporter = new ListErrorReporter();
+          boolean ok = new CoreDefinitionChecker(new LocalErrorReporter(referable, errorReporter)).check(definition);
+          return new Result(ok, errorReporter);
+        }));
+      }
+
+      boolean ok = true;
+      for (int i = 0; i < results.size(); i++) {
+        Future<Result> future = results.get(i);
+        if (future == null) {
+          continue;
+        }
+
+        Result result;
+        try {
+          result = future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+        result.errorReporter.reportTo(myErrorReporter);
+        checked(referables.get(i), hashes, i, result.ok);
+        if (!result.ok) {
+          ok = false;
+        }
+      }
+      return ok;
+    } finally {
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
 }
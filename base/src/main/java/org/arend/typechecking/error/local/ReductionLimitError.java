@@ -0,0 +1,14 @@
+package org.arend.typechecking.error.local;
+
+import org.arend.ext.error.TypecheckingError;
+import org.arend.term.concrete.Concrete;
+import org.jetbrains.annotations.NotNull;
+
+public class ReductionLimitError extends TypecheckingError {
+  public final int maxSteps;
+
+  public ReductionLimitError(int maxSteps, @NotNull Concrete.SourceNode cause) {
+    super("Normalization exceeded the limit of " + maxSteps + " reduction steps", cause);
+    this.maxSteps = maxSteps;
+  }
+}
@@ -1,9 +1,6 @@
 package org.arend.typechecking.implicitargs.equations;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class LevelEquations<Var> {
   private final List<Var> myVariables = new ArrayList<>();
@@ -40,42 +37,102 @@ public class LevelEquations<Var> {
     return myVariables.isEmpty() && myEquations.isEmpty();
   }
 
+  /**
+   * Solves the equations by the Bellman-Ford algorithm.
+   * Variables are numbered densely and the solution is kept in arrays; the map is updated only at the end.
+   * The base variable {@code null} has number 0 and its initial value is 0.
+   *
+   * @return null if the equations are solved; otherwise, the path of equations that forms a negative cycle.
+   */
   public List<LevelEquation<Var>> solve(Map<Var, Integer> solution) {
-    Map<Var, List<LevelEquation<Var>>> paths = new HashMap<>();
-
-    solution.put(null, 0);
-    paths.put(null, new ArrayList<>());
+    Map<Var, Integer> indices = new HashMap<>();
+    List<Var> variables = new ArrayList<>();
+    indices.put(null, 0);
+    variables.add(null);
     for (Var var : myVariables) {
-      solution.put(var, 0);
-      paths.put(var, new ArrayList<>());
+      if (indices.putIfAbsent(var, variables.size()) == null) {
+        variables.add(var);
+      }
+    }
+    int numberOfBound = variables.size();
+
+    int size = myEquations.size();
+    int[] vars1 = new int[size];
+    int[] vars2 = new int[size];
+    int[] constants = new int[size];
+    int[] maxConstants = new int[size];
+    boolean[] infinities = new boolean[size];
+    boolean[] hasMax = new boolean[size];
+    for (int j = 0; j < size; j++) {
+      LevelEquation<Var> equation = myEquations.get(j);
+      if (equation.isInfinity()) {
+        infinities[j] = true;
+        vars2[j] = getIndex(equation.getVariable(), indices, variables);
+      } else {
+        vars1[j] = getIndex(equation.getVariable1(), indices, variables);
+        vars2[j] = getIndex(equation.getVariable2(), indices, variables);
+        constants[j] = equation.getConstant();
+        Integer m = equation.getMaxConstant();
+        if (m != null) {
+          hasMax[j] = true;
+          maxConstants[j] = m;
+        }
+      }
+    }
+
+    // Variables that are not bound by this system keep their previous values
+    int[] values = new int[variables.size()];
+    for (int k = numberOfBound; k < variables.size(); k++) {
+      Integer value = solution.get(variables.get(k));
+      if (value != null) {
+        values[k] = value;
+      }
     }
 
+    // Paths are persistent lists stored in arrays: a path is the number of its last step or -1 if it is empty
+    int[] paths = new int[variables.size()];
+    Arrays.fill(paths, -1);
+    PathSteps steps = new PathSteps();
+
+    // An equation can be relaxed only if its first variable has changed since the last time the equation was examined
+    int[] changed = new int[variables.size()];
+    int[] examined = new int[size];
+    Arrays.fill(examined, -1);
+    int time = 0;
+
     for (int i = myVariables.size(); i >= 0; i--) {
       boolean updated = false;
-      for (LevelEquation<Var> equation : myEquations) {
-        if (equation.isInfinity()) {
-          Integer prev = solution.put(equation.getVariable(), INFINITY);
-          if (prev == null || prev != INFINITY) {
+      for (int j = 0; j < size; j++) {
+        int var2 = vars2[j];
+        if (infinities[j]) {
+          if (values[var2] != INFINITY) {
+            values[var2] = INFINITY;
+            changed[var2] = ++time;
             updated = true;
           }
-        } else {
-          int a = solution.get(equation.getVariable1());
-          int b = solution.get(equation.getVariable2());
-          Integer m = equation.getMaxConstant();
-          if (b != INFINITY && (a == INFINITY || (m == null || a + m < 0) && b > a + equation.getConstant())) {
-            if (a != INFINITY) {
-              List<LevelEquation<Var>> newPath = new ArrayList<>(paths.get(equation.getVariable1()));
-              newPath.add(equation);
-              paths.put(equation.getVariable2(), newPath);
-            }
-            if (i == 0 || equation.getVariable2() == null && a != INFINITY) {
-              solution.remove(null);
-              return paths.get(equation.getVariable2());
-            }
-
-            solution.put(equation.getVariable2(), a == INFINITY ? INFINITY : a + equation.getConstant());
-            updated = true;
+          continue;
+        }
+
+        int var1 = vars1[j];
+        if (examined[j] >= 0 && changed[var1] <= examined[j]) {
+          continue;
+        }
+        examined[j] = ++time;
+
+        int a = values[var1];
+        int b = values[var2];
+        if (b != INFINITY && (a == INFINITY || (!hasMax[j] || a + maxConstants[j] < 0) && b > a + constants[j])) {
+          if (a != INFINITY) {
+            paths[var2] = steps.add(j, paths[var1]);
           }
+          if (i == 0 || var2 == 0 && a != INFINITY) {
+            storeSolution(solution, variables, values);
+            return steps.toList(paths[var2], myEquations);
+          }
+
+          values[var2] = a == INFINITY ? INFINITY : a + constants[j];
+          changed[var2] = ++time;
+          updated = true;
         }
       }
       if (!updated) {
@@ -83,7 +140,47 @@ public class LevelEquations<Var> {
       }
     }
 
-    solution.remove(null);
+    storeSolution(solution, variables, values);
     return null;
   }
+
+  private static <Var> int getIndex(Var var, Map<Var, Integer> indices, List<Var> variables) {
+    Integer index = indices.putIfAbsent(var, variables.size());
+    if (index != null) {
+      return index;
+    }
+    variables.add(var);
+    return variables.size() - 1;
+  }
+
+  private static <Var> void storeSolution(Map<Var, Integer> solution, List<Var> variables, int[] values) {
+    for (int k = 1; k < variables.size(); k++) {
+      solution.put(variables.get(k), values[k]);
+    }
+  }
+
+  private static class PathSteps {
+    private int[] myEquations = new int[16];
+    private int[] myPrevious = new int[16];
+    private int mySize;
+
+    int add(int equation, int previous) {
+      if (mySize == myEquations.length) {
+        myEquations = Arrays.copyOf(myEquations, mySize * 2);
+        myPrevious = Arrays.copyOf(myPrevious, mySize * 2);
+      }
+      myEquations[mySize] = equation;
+      myPrevious[mySize] = previous;
+      return mySize++;
+    }
+
+    <Var> List<LevelEquation<Var>> toList(int step, List<LevelEquation<Var>> equations) {
+      List<LevelEquation<Var>> result = new ArrayList<>();
+      for (; step >= 0; step = myPrevious[step]) {
+        result.add(equations.get(myEquations[step]));
+      }
+      Collections.reverse(result);
+      return result;
+    }
+  }
 }
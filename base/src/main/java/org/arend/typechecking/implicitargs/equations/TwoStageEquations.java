@@ -9,6 +9,7 @@ import org.arend.core.context.binding.inference.TypeClassInferenceVariable;
 import org.arend.core.context.param.SingleDependentLink;
 import org.arend.core.definition.ClassDefinition;
 import org.arend.core.definition.ClassField;
+import org.arend.core.definition.ClassFieldMap;
 import org.arend.core.definition.UniverseKind;
 import org.arend.core.expr.*;
 import org.arend.core.expr.type.Type;
@@ -744,7 +745,7 @@ public class TwoStageEquations implements Equations {
       if (cmp == CMP.LE) {
         Equations wrapper = new LevelEquationsWrapper(this);
         Sort sortArg = Sort.generateInferVars(this, universeKind, pair.proj1.getSourceNode());
-        Map<ClassField, Expression> implementations = new HashMap<>();
+        Map<ClassField, Expression> implementations = new ClassFieldMap<>(classDef);
         solution = new ClassCallExpression(classDef, sortArg, implementations, classDef.getSort(), universeKind);
         ReferenceExpression thisExpr = new ReferenceExpression(solution.getThisBinding());
         boolean first = true;
@@ -10,7 +10,10 @@ import org.arend.core.sort.Sort;
 import org.arend.core.subst.ExprSubstitution;
 import org.arend.ext.core.ops.NormalizationMode;
 import org.arend.naming.reference.TCClassReferable;
+import org.arend.prelude.Prelude;
 import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.computation.TypecheckingMetrics;
+import org.arend.typechecking.instance.provider.InstanceHeadFunction;
 import org.arend.typechecking.instance.provider.InstanceProvider;
 import org.arend.typechecking.result.TypecheckingResult;
 import org.arend.typechecking.visitor.CheckTypeVisitor;
@@ -52,6 +55,61 @@ public class GlobalInstancePool implements InstancePool {
     return myInstancePool.getLocalInstancePool();
   }
 
+  private FunctionDefinition getTypechecked(Concrete.FunctionDefinition instance) {
+    FunctionDefinition instanceDef = (FunctionDefinition) myCheckTypeVisitor.getTypecheckingState().getTypechecked(instance.getData());
+    return instanceDef == null || !instanceDef.status().headerIsOK() || !(instanceDef.getResultType() instanceof ClassCallExpression) ? null : instanceDef;
+  }
+
+  private static Expression getClassifyingExpression(FunctionDefinition instanceDef, ClassField classifyingField) {
+    Expression instanceClassifyingExpr = ((ClassCallExpression) instanceDef.getResultType()).getAbsImplementationHere(classifyingField);
+    if (instanceClassifyingExpr != null) {
+      instanceClassifyingExpr = instanceClassifyingExpr.normalize(NormalizationMode.WHNF);
+    }
+    while (instanceClassifyingExpr instanceof LamExpression) {
+      instanceClassifyingExpr = ((LamExpression) instanceClassifyingExpr).getBody();
+    }
+    return instanceClassifyingExpr;
+  }
+
+  // Classifying expressions with different heads are never matched by MyPredicate in getInstance
+  private static Object getHead(Expression classifyingExpr) {
+    if (classifyingExpr instanceof UniverseExpression) {
+      return UniverseExpression.class;
+    }
+    if (classifyingExpr instanceof SigmaExpression) {
+      return SigmaExpression.class;
+    }
+    if (classifyingExpr instanceof IntegerExpression) {
+      return ((IntegerExpression) classifyingExpr).isZero() ? Prelude.ZERO : Prelude.SUC;
+    }
+    if (classifyingExpr instanceof DefCallExpression) {
+      return ((DefCallExpression) classifyingExpr).getDefinition();
+    }
+    return null;
+  }
+
+  // The result of a search depends only on the head of a classifying expression and the value of a numeral
+  private static Object getCacheKey(Expression classifyingExpr) {
+    return classifyingExpr instanceof IntegerExpression ? ((IntegerExpression) classifyingExpr).getBigInteger() : getHead(classifyingExpr);
+  }
+
+  private class MyHeadFunction implements InstanceHeadFunction {
+    @Override
+    public FunctionDefinition getTypechecked(Concrete.FunctionDefinition instance) {
+      return GlobalInstancePool.this.getTypechecked(instance);
+    }
+
+    @Override
+    public Object getHead(FunctionDefinition instance, ClassField classifyingField) {
+      return GlobalInstancePool.getHead(getClassifyingExpression(instance, classifyingField));
+    }
+
+    @Override
+    public long getStamp() {
+      return myCheckTypeVisitor.getTypecheckingState().getResetCount();
+    }
+  }
+
   @Override
   public Expression getInstance(Expression classifyingExpression, Expression expectedType, TCClassReferable classRef, Concrete.SourceNode sourceNode, RecursiveInstanceHoleExpression recursiveHoleExpression) {
     if (myInstancePool != null) {
@@ -94,8 +152,8 @@ public class GlobalInstancePool implements InstancePool {
 
       @Override
       public boolean test(Concrete.FunctionDefinition instance) {
-        instanceDef = (FunctionDefinition) myCheckTypeVisitor.getTypecheckingState().getTypechecked(instance.getData());
-        if (instanceDef == null || !instanceDef.status().headerIsOK() || !(instanceDef.getResultType() instanceof ClassCallExpression)) {
+        instanceDef = getTypechecked(instance);
+        if (instanceDef == null) {
           return false;
         }
 
@@ -103,13 +161,7 @@ public class GlobalInstancePool implements InstancePool {
           return true;
         }
 
-        Expression instanceClassifyingExpr = ((ClassCallExpression) instanceDef.getResultType()).getAbsImplementationHere(classifyingField);
-        if (instanceClassifyingExpr != null) {
-          instanceClassifyingExpr = instanceClassifyingExpr.normalize(NormalizationMode.WHNF);
-        }
-        while (instanceClassifyingExpr instanceof LamExpression) {
-          instanceClassifyingExpr = ((LamExpression) instanceClassifyingExpr).getBody();
-        }
+        Expression instanceClassifyingExpr = getClassifyingExpression(instanceDef, classifyingField);
         return
           instanceClassifyingExpr instanceof UniverseExpression && finalClassifyingExpression instanceof UniverseExpression ||
           instanceClassifyingExpr instanceof SigmaExpression && finalClassifyingExpression instanceof SigmaExpression ||
@@ -120,7 +172,10 @@ public class GlobalInstancePool implements InstancePool {
     }
 
     MyPredicate predicate = new MyPredicate();
-    Concrete.FunctionDefinition instance = myInstanceProvider.findInstance(classRef, predicate);
+    TypecheckingMetrics.instanceSearched();
+    Concrete.FunctionDefinition instance = finalClassifyingExpression == null
+      ? myInstanceProvider.findInstance(classRef, predicate)
+      : myInstanceProvider.findInstance(classRef, classifyingField, getHead(finalClassifyingExpression), getCacheKey(finalClassifyingExpression), new MyHeadFunction(), predicate);
     if (instance == null || predicate.instanceDef == null) {
       return null;
     }
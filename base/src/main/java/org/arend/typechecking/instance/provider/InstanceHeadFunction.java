@@ -0,0 +1,32 @@
+package org.arend.typechecking.instance.provider;
+
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.term.concrete.Concrete;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes heads of implementations of classifying fields of instances.
+ * A head is an object such that instances with different heads cannot match the same classifying expression.
+ */
+public interface InstanceHeadFunction {
+  /**
+   * @return the typechecked instance or null if the instance cannot be used.
+   */
+  @Nullable FunctionDefinition getTypechecked(Concrete.FunctionDefinition instance);
+
+  /**
+   * @return the head of the implementation of the classifying field in a typechecked instance
+   *         or null if the instance does not match any classifying expression.
+   */
+  @Nullable Object getHead(FunctionDefinition instance, ClassField classifyingField);
+
+  /**
+   * Results of searches may be cached while the stamp does not change.
+   *
+   * @return the current stamp of the typechecker state or -1 if results of searches cannot be cached.
+   */
+  default long getStamp() {
+    return -1;
+  }
+}
@@ -1,10 +1,27 @@
 package org.arend.typechecking.instance.provider;
 
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.FunctionDefinition;
 import org.arend.naming.reference.ClassReferable;
 import org.arend.term.concrete.Concrete;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.function.Predicate;
 
 public interface InstanceProvider {
   Concrete.FunctionDefinition findInstance(ClassReferable classRef, Predicate<Concrete.FunctionDefinition> pred);
+
+  /**
+   * Finds the first instance that {@link #findInstance(ClassReferable, Predicate)} would find
+   * among instances with the given head of the classifying field.
+   *
+   * @param cacheKey  determines the result of the search together with {@code classRef} and {@code classifyingField},
+   *                  so that the result can be reused by later searches; null if the result should not be cached.
+   */
+  default Concrete.FunctionDefinition findInstance(ClassReferable classRef, ClassField classifyingField, Object head, @Nullable Object cacheKey, InstanceHeadFunction headFunction, Predicate<Concrete.FunctionDefinition> pred) {
+    return findInstance(classRef, instance -> {
+      FunctionDefinition typechecked = headFunction.getTypechecked(instance);
+      return typechecked != null && head.equals(headFunction.getHead(typechecked, classifyingField)) && pred.test(instance);
+    });
+  }
 }
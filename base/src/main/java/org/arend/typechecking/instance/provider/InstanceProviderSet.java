@@ -5,7 +5,6 @@ import org.arend.naming.reference.LocatedReferable;
 import org.arend.naming.reference.Referable;
 import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.ReferableConverter;
-import org.arend.naming.scope.CachingScope;
 import org.arend.naming.scope.LexicalScope;
 import org.arend.naming.scope.NamespaceCommandNamespace;
 import org.arend.naming.scope.Scope;
@@ -96,7 +95,8 @@ public class InstanceProviderSet {
       return;
     }
 
-    parentScope = CachingScope.make(LexicalScope.insideOf(group, parentScope));
+    // Lexical scopes are indexed and resolve namespaces of commands once, so they are not wrapped in a CachingScope
+    parentScope = LexicalScope.insideOf(group, parentScope);
     for (NamespaceCommand command : namespaceCommands) {
       NamespaceCommandNamespace.resolveNamespace(command.getKind() == NamespaceCommand.Kind.IMPORT ? parentScope.getImportedSubscope() : parentScope, command).find(predicate);
     }
@@ -1,15 +1,107 @@
 package org.arend.typechecking.instance.provider;
 
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
 import org.arend.naming.reference.ClassReferable;
 import org.arend.naming.reference.Referable;
 import org.arend.term.concrete.Concrete;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
+/**
+ * Keeps instances in the order in which they were added.
+ * Instances are indexed by every superclass of their classes, and heads of their classifying fields are cached,
+ * so that a search looks only at instances of subclasses of the requested class.
+ * The index is rebuilt when super classes of some class it visited change.
+ * Successful searches are cached until an instance is added or a definition is reset.
+ */
 public class SimpleInstanceProvider implements InstanceProvider {
   private List<Concrete.FunctionDefinition> myInstances;
+  private volatile Index myIndex;
+  private final Map<SearchKey, SearchResult> mySearchResults = new ConcurrentHashMap<>();
+
+  private static class Index {
+    final Map<ClassReferable, List<Entry>> instances = new IdentityHashMap<>();
+    // Instances whose classes were not resolved when the index was built; they are checked by every search
+    final List<Entry> unresolved = new ArrayList<>();
+    // Super classes of every visited class at the time the index was built
+    final Map<ClassReferable, List<ClassReferable>> superClasses = new IdentityHashMap<>();
+
+    boolean isValid() {
+      for (Map.Entry<ClassReferable, List<ClassReferable>> entry : superClasses.entrySet()) {
+        if (!entry.getKey().getSuperClassReferences().equals(entry.getValue())) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static class Entry {
+    final Concrete.FunctionDefinition instance;
+    final boolean resolved;
+    volatile Head head;
+
+    Entry(Concrete.FunctionDefinition instance, boolean resolved) {
+      this.instance = instance;
+      this.resolved = resolved;
+    }
+  }
+
+  private static class Head {
+    final FunctionDefinition typechecked;
+    final Expression resultType;
+    final ClassField classifyingField;
+    final Object head;
+
+    Head(FunctionDefinition typechecked, ClassField classifyingField, Object head) {
+      this.typechecked = typechecked;
+      this.resultType = typechecked.getResultType();
+      this.classifyingField = classifyingField;
+      this.head = head;
+    }
+  }
+
+  private static class SearchKey {
+    final ClassReferable classRef;
+    final ClassField classifyingField;
+    final Object key;
+
+    SearchKey(ClassReferable classRef, ClassField classifyingField, Object key) {
+      this.classRef = classRef;
+      this.classifyingField = classifyingField;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      SearchKey searchKey = (SearchKey) o;
+      return classRef == searchKey.classRef && classifyingField == searchKey.classifyingField && key.equals(searchKey.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(classRef), System.identityHashCode(classifyingField), key);
+    }
+  }
+
+  private static class SearchResult {
+    final Concrete.FunctionDefinition instance;
+    final FunctionDefinition typechecked;
+    final long stamp;
+
+    SearchResult(Concrete.FunctionDefinition instance, FunctionDefinition typechecked, long stamp) {
+      this.instance = instance;
+      this.typechecked = typechecked;
+      this.stamp = stamp;
+    }
+  }
 
   public SimpleInstanceProvider() {
     myInstances = new ArrayList<>();
@@ -21,15 +113,127 @@ public class SimpleInstanceProvider implements InstanceProvider {
 
   public void put(Concrete.FunctionDefinition instance) {
     myInstances.add(instance);
+    myIndex = null;
+    mySearchResults.clear();
+  }
+
+  private static ClassReferable getClassReferable(Concrete.FunctionDefinition instance) {
+    Concrete.Expression type = instance.getResultType();
+    Referable ref = type == null ? null : type.getUnderlyingReferable();
+    return ref instanceof ClassReferable ? (ClassReferable) ref : null;
+  }
+
+  private Index getIndex() {
+    Index index = myIndex;
+    if (index != null) {
+      if (index.isValid()) {
+        return index;
+      }
+      mySearchResults.clear();
+    }
+
+    Index newIndex = new Index();
+    Map<ClassReferable, Set<ClassReferable>> superClasses = new IdentityHashMap<>();
+    for (Concrete.FunctionDefinition instance : myInstances) {
+      ClassReferable classRef = getClassReferable(instance);
+      if (classRef == null) {
+        Entry entry = new Entry(instance, false);
+        newIndex.unresolved.add(entry);
+        for (List<Entry> entries : newIndex.instances.values()) {
+          entries.add(entry);
+        }
+        continue;
+      }
+
+      Entry entry = new Entry(instance, true);
+      for (ClassReferable superClass : superClasses.computeIfAbsent(classRef, ref -> getSuperClasses(ref, newIndex.superClasses))) {
+        newIndex.instances.computeIfAbsent(superClass, k -> new ArrayList<>(newIndex.unresolved)).add(entry);
+      }
+    }
+
+    myIndex = newIndex;
+    return newIndex;
+  }
+
+  // The same classes that ClassReferable.isSubClassOf visits
+  private static Set<ClassReferable> getSuperClasses(ClassReferable classRef, Map<ClassReferable, List<ClassReferable>> visited) {
+    Set<ClassReferable> result = Collections.newSetFromMap(new IdentityHashMap<>());
+    Deque<ClassReferable> toVisit = new ArrayDeque<>();
+    toVisit.add(classRef);
+    while (!toVisit.isEmpty()) {
+      ClassReferable ref = toVisit.pop();
+      if (result.add(ref)) {
+        List<ClassReferable> superClasses = visited.computeIfAbsent(ref, k -> new ArrayList<>(k.getSuperClassReferences()));
+        toVisit.addAll(superClasses);
+      }
+    }
+    return result;
+  }
+
+  private static List<Entry> getEntries(Index index, ClassReferable classRef) {
+    List<Entry> entries = index.instances.get(classRef);
+    return entries != null ? entries : index.unresolved;
+  }
+
+  private static boolean isInstanceOf(Entry entry, ClassReferable classRef) {
+    if (entry.resolved) {
+      return true;
+    }
+    ClassReferable ref = getClassReferable(entry.instance);
+    return ref != null && ref.isSubClassOf(classRef);
   }
 
   @Override
   public Concrete.FunctionDefinition findInstance(ClassReferable classRef, Predicate<Concrete.FunctionDefinition> pred) {
-    for (Concrete.FunctionDefinition instance : myInstances) {
-      Concrete.Expression type = instance.getResultType();
-      Referable ref = type == null ? null : type.getUnderlyingReferable();
-      if (ref instanceof ClassReferable && ((ClassReferable) ref).isSubClassOf(classRef) && pred.test(instance)) {
-        return instance;
+    for (Entry entry : getEntries(getIndex(), classRef)) {
+      if (isInstanceOf(entry, classRef) && pred.test(entry.instance)) {
+        return entry.instance;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Concrete.FunctionDefinition findInstance(ClassReferable classRef, ClassField classifyingField, Object head, @Nullable Object cacheKey, InstanceHeadFunction headFunction, Predicate<Concrete.FunctionDefinition> pred) {
+    Index index = getIndex();
+    long stamp = cacheKey == null ? -1 : headFunction.getStamp();
+    SearchKey searchKey = stamp < 0 ? null : new SearchKey(classRef, classifyingField, cacheKey);
+    if (searchKey != null) {
+      SearchResult result = mySearchResults.get(searchKey);
+      if (result != null && result.stamp == stamp && headFunction.getTypechecked(result.instance) == result.typechecked && pred.test(result.instance)) {
+        return result.instance;
+      }
+    }
+
+    // The result is cached only if it cannot be changed by typechecking of the instances that were skipped
+    boolean cacheable = searchKey != null;
+    for (Entry entry : getEntries(index, classRef)) {
+      if (!entry.resolved) {
+        cacheable = false;
+      }
+      if (!isInstanceOf(entry, classRef)) {
+        continue;
+      }
+
+      FunctionDefinition typechecked = headFunction.getTypechecked(entry.instance);
+      if (typechecked == null || typechecked.status().needsTypeChecking()) {
+        cacheable = false;
+      }
+      if (typechecked == null) {
+        continue;
+      }
+      // The head is recomputed if the instance was typechecked again, its result type was updated by the body,
+      // or the instance is requested as an instance of a class with another classifying field
+      Head entryHead = entry.head;
+      if (entryHead == null || entryHead.typechecked != typechecked || entryHead.resultType != typechecked.getResultType() || entryHead.classifyingField != classifyingField) {
+        entryHead = new Head(typechecked, classifyingField, headFunction.getHead(typechecked, classifyingField));
+        entry.head = entryHead;
+      }
+      if (head.equals(entryHead.head) && pred.test(entry.instance)) {
+        if (cacheable) {
+          mySearchResults.put(searchKey, new SearchResult(entry.instance, typechecked, stamp));
+        }
+        return entry.instance;
       }
     }
     return null;
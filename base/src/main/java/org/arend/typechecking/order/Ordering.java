@@ -2,6 +2,7 @@ package org.arend.typechecking.order;
 
 import org.arend.core.definition.Definition;
 import org.arend.naming.reference.LocatedReferable;
+import org.arend.naming.reference.Referable;
 import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.term.concrete.Concrete;
@@ -110,6 +111,12 @@ public class Ordering extends BellmanFord<Concrete.Definition> {
       if (definition instanceof Concrete.UseDefinition) {
         visitor.addDependency(((Concrete.UseDefinition) definition).getUseParent());
       }
+      if (definition instanceof Concrete.CoClauseFunctionDefinition) {
+        Referable implementedField = ((Concrete.CoClauseFunctionDefinition) definition).getImplementedField();
+        if (implementedField instanceof TCReferable) {
+          visitor.addDependency((TCReferable) implementedField);
+        }
+      }
       for (TCReferable usedDefinition : definition.getUsedDefinitions()) {
         visitor.addDependency(usedDefinition);
       }
@@ -0,0 +1,184 @@
+package org.arend.typechecking.order;
+
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.reference.converter.ReferableConverter;
+import org.arend.term.concrete.Concrete;
+import org.arend.term.group.Group;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.listener.CollectingOrderingListener;
+import org.arend.typechecking.order.listener.OrderingListener;
+import org.arend.typechecking.provider.ConcreteProvider;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * An ordering that does not pass definitions to a listener immediately.
+ * Instead, it collects the strongly connected components into a graph of {@link Unit}s.
+ * A unit can be typechecked as soon as all units it depends on are typechecked.
+ * Collected units are passed to {@link #typecheckUnits} when {@link #typecheckCollected} is invoked.
+ */
+public abstract class ParallelOrdering extends Ordering {
+  public static class Unit {
+    private final int myIndex;
+    private final CollectingOrderingListener myCollector = new CollectingOrderingListener();
+    private final List<Unit> myDependents = new ArrayList<>();
+    private final AtomicInteger myDependencies = new AtomicInteger();
+
+    private Unit(int index) {
+      myIndex = index;
+    }
+
+    /**
+     * @return the position of this unit in the order in which a sequential ordering would find it.
+     */
+    public int getIndex() {
+      return myIndex;
+    }
+
+    public CollectingOrderingListener getCollector() {
+      return myCollector;
+    }
+
+    public List<Unit> getDependents() {
+      return myDependents;
+    }
+
+    public int getNumberOfDependencies() {
+      return myDependencies.get();
+    }
+
+    /**
+     * Should be invoked when one of the dependencies of this unit is typechecked.
+     *
+     * @return true if this unit does not have unfinished dependencies anymore.
+     */
+    public boolean dependencyFinished() {
+      return myDependencies.decrementAndGet() == 0;
+    }
+  }
+
+  private static class MyListener implements OrderingListener {
+    private CollectingOrderingListener collector;
+
+    @Override
+    public void unitFound(Concrete.Definition definition, boolean recursive) {
+      collector.unitFound(definition, recursive);
+    }
+
+    @Override
+    public void cycleFound(List<Concrete.Definition> definitions) {
+      collector.cycleFound(definitions);
+    }
+
+    @Override
+    public void headerFound(Concrete.Definition definition) {
+      collector.headerFound(definition);
+    }
+
+    @Override
+    public void bodiesFound(List<Concrete.Definition> definitions) {
+      collector.bodiesFound(definitions);
+    }
+
+    @Override
+    public void useFound(List<Concrete.UseDefinition> definitions) {
+      collector.useFound(definitions);
+    }
+  }
+
+  private final MyListener myListener;
+  private final List<Unit> myUnits = new ArrayList<>();
+  private final Map<TCReferable, Unit> myUnitMap = new HashMap<>();
+  private final Map<TCReferable, List<TCReferable>> myDependencies = new HashMap<>();
+
+  private ParallelOrdering(InstanceProviderSet instanceProviderSet, ConcreteProvider concreteProvider, MyListener listener, DependencyListener dependencyListener, ReferableConverter referableConverter, TypecheckerState state, PartialComparator<TCReferable> comparator) {
+    super(instanceProviderSet, concreteProvider, listener, dependencyListener, referableConverter, state, comparator);
+    myListener = listener;
+  }
+
+  public ParallelOrdering(InstanceProviderSet instanceProviderSet, ConcreteProvider concreteProvider, DependencyListener dependencyListener, ReferableConverter referableConverter, TypecheckerState state, PartialComparator<TCReferable> comparator) {
+    this(instanceProviderSet, concreteProvider, new MyListener(), dependencyListener, referableConverter, state, comparator);
+  }
+
+  /**
+   * Typechecks units.
+   *
+   * @param units collected units in the order in which a sequential ordering would find them.
+   *              Every unit appears after all of its dependencies.
+   */
+  protected abstract void typecheckUnits(List<Unit> units);
+
+  public void typecheckCollected() {
+    if (myUnits.isEmpty()) {
+      return;
+    }
+
+    List<Unit> units = new ArrayList<>(myUnits);
+    myUnits.clear();
+    myUnitMap.clear();
+    typecheckUnits(units);
+  }
+
+  @Override
+  public void orderModules(Collection<? extends Group> modules) {
+    super.orderModules(modules);
+    typecheckCollected();
+  }
+
+  @Override
+  protected boolean forDependencies(Concrete.Definition definition, Consumer<Concrete.Definition> consumer) {
+    List<TCReferable> dependencies = new ArrayList<>();
+    boolean withLoops = super.forDependencies(definition, dependency -> {
+      dependencies.add(dependency.getData());
+      consumer.accept(dependency);
+    });
+    myDependencies.put(definition.getData(), dependencies);
+    return withLoops;
+  }
+
+  private Unit startUnit() {
+    Unit unit = new Unit(myUnits.size());
+    myListener.collector = unit.myCollector;
+    return unit;
+  }
+
+  private void finishUnit(Unit unit, List<Concrete.Definition> definitions) {
+    myListener.collector = null;
+    Set<Unit> dependencies = new HashSet<>();
+    for (Concrete.Definition definition : definitions) {
+      List<TCReferable> definitionDependencies = myDependencies.remove(definition.getData());
+      if (definitionDependencies != null) {
+        for (TCReferable dependency : definitionDependencies) {
+          Unit dependencyUnit = myUnitMap.get(dependency);
+          if (dependencyUnit != null && dependencies.add(dependencyUnit)) {
+            dependencyUnit.myDependents.add(unit);
+          }
+        }
+      }
+    }
+    unit.myDependencies.set(dependencies.size());
+
+    for (Concrete.Definition definition : definitions) {
+      myUnitMap.put(definition.getData(), unit);
+    }
+    myUnits.add(unit);
+  }
+
+  @Override
+  protected void unitFound(Concrete.Definition definition, boolean withLoops) {
+    Unit unit = startUnit();
+    super.unitFound(definition, withLoops);
+    finishUnit(unit, Collections.singletonList(definition));
+  }
+
+  @Override
+  protected void sccFound(List<Concrete.Definition> scc) {
+    Unit unit = startUnit();
+    super.sccFound(scc);
+    finishUnit(unit, scc);
+  }
+}
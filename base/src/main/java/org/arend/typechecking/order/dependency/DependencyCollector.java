@@ -1,14 +1,18 @@
 package org.arend.typechecking.order.dependency;
 
 import org.arend.core.definition.*;
+import org.arend.module.serialization.DefinitionFingerprint;
 import org.arend.naming.reference.TCReferable;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.visitor.FindDefCallVisitor;
 
 import java.util.*;
 
 public class DependencyCollector implements DependencyListener {
   private final Map<TCReferable, Set<TCReferable>> myDependencies = new HashMap<>();
   private final Map<TCReferable, Set<TCReferable>> myReverseDependencies = new HashMap<>();
+  private final Map<TCReferable, Definition> myOldDefinitions = new HashMap<>();
+  private final Map<TCReferable, Set<TCReferable>> myOldReverseDependencies = new HashMap<>();
   private final TypecheckerState myState;
 
   public DependencyCollector(TypecheckerState state) {
@@ -16,20 +20,214 @@ public class DependencyCollector implements DependencyListener {
   }
 
   @Override
-  public void dependsOn(TCReferable def1, TCReferable def2) {
+  public synchronized void dependsOn(TCReferable def1, TCReferable def2) {
     myDependencies.computeIfAbsent(def1, k -> new HashSet<>()).add(def2);
     myReverseDependencies.computeIfAbsent(def2, k -> new HashSet<>()).add(def1);
   }
 
+  /**
+   * Resets a definition.
+   * Functions whose bodies are not visible to conversion are reset by {@link #updateDefinition},
+   * so their reverse dependencies are reset only if their interface changes.
+   * Other definitions are reset together with their reverse dependencies.
+   *
+   * @return the set of reset definitions.
+   */
   @Override
-  public Set<? extends TCReferable> update(TCReferable definition) {
-    if (myState.getTypechecked(definition) == null) {
+  public synchronized Set<? extends TCReferable> update(TCReferable definition) {
+    Definition typechecked = myState.getTypechecked(definition);
+    if (typechecked == null) {
       return Collections.emptySet();
     }
+    if (hasHiddenBody(typechecked)) {
+      return updateDefinition(definition);
+    }
+
+    myOldDefinitions.remove(definition);
+    List<TCReferable> definitions = new ArrayList<>();
+    definitions.add(definition);
+    Set<TCReferable> oldReverseDependencies = myOldReverseDependencies.remove(definition);
+    if (oldReverseDependencies != null) {
+      definitions.addAll(oldReverseDependencies);
+    }
+    return updateReverseDependencies(definitions);
+  }
+
+  /**
+   * Resets a definition without its reverse dependencies.
+   * After the definition is typechecked again, {@link #checkInterface} must be invoked
+   * to reset its reverse dependencies if the interface of the definition has changed.
+   * {@link org.arend.typechecking.order.listener.TypecheckingOrderingListener} does this automatically.
+   *
+   * @return the set of reset definitions.
+   */
+  public synchronized Set<? extends TCReferable> updateDefinition(TCReferable definition) {
+    Definition typechecked = myState.getTypechecked(definition);
+    if (typechecked == null) {
+      return Collections.emptySet();
+    }
+
+    myOldDefinitions.putIfAbsent(definition, typechecked);
+    // Definitions that depend on the new version are recorded separately, so they are not reset by checkInterface
+    Set<TCReferable> reverseDependencies = myReverseDependencies.remove(definition);
+    if (reverseDependencies != null) {
+      myOldReverseDependencies.computeIfAbsent(definition, k -> new HashSet<>()).addAll(reverseDependencies);
+    }
+    removeDependencies(definition);
+    reset(definition);
+    return Collections.singleton(definition);
+  }
+
+  /**
+   * Compares the fingerprint of a typechecked definition with the fingerprint it had before {@link #updateDefinition}.
+   * If the fingerprints are equal and nothing refers to the new definition yet,
+   * the new content is moved to the old definition so that reverse dependencies remain valid.
+   * Otherwise, reverse dependencies are reset.
+   *
+   * @return the set of reset definitions.
+   */
+  @Override
+  public synchronized Set<? extends TCReferable> checkInterface(TCReferable definition) {
+    Definition oldDef = myOldDefinitions.remove(definition);
+    if (oldDef == null) {
+      return Collections.emptySet();
+    }
+
+    Set<TCReferable> oldReverseDependencies = myOldReverseDependencies.remove(definition);
+    Definition newDef = myState.getTypechecked(definition);
+    if (newDef != null && !isReferredTo(definition, newDef) && reuseDefinition(oldDef, newDef)) {
+      myState.rewrite(definition, oldDef);
+      if (oldReverseDependencies != null) {
+        myReverseDependencies.computeIfAbsent(definition, k -> new HashSet<>()).addAll(oldReverseDependencies);
+      }
+      return Collections.emptySet();
+    }
+
+    return oldReverseDependencies == null ? Collections.emptySet() : updateReverseDependencies(oldReverseDependencies);
+  }
+
+  /**
+   * Replaces a referable with another one that denotes the same definition,
+   * for example, when the module of the definition is parsed again.
+   * Dependencies of the old referable and a definition stashed by {@link #updateDefinition} are moved to the new one.
+   */
+  public synchronized void replaceReferable(TCReferable oldRef, TCReferable newRef) {
+    if (oldRef.equals(newRef)) {
+      return;
+    }
+
+    Set<TCReferable> dependencies = myDependencies.remove(oldRef);
+    if (dependencies != null) {
+      myDependencies.computeIfAbsent(newRef, k -> new HashSet<>()).addAll(dependencies);
+      for (TCReferable dependency : dependencies) {
+        replace(myReverseDependencies.get(dependency), oldRef, newRef);
+        replace(myOldReverseDependencies.get(dependency), oldRef, newRef);
+      }
+    }
+
+    replaceReverseDependencies(myReverseDependencies, oldRef, newRef);
+    replaceReverseDependencies(myOldReverseDependencies, oldRef, newRef);
 
+    Definition oldDefinition = myOldDefinitions.remove(oldRef);
+    if (oldDefinition != null) {
+      myOldDefinitions.put(newRef, oldDefinition);
+    }
+  }
+
+  private void replaceReverseDependencies(Map<TCReferable, Set<TCReferable>> reverseDependencies, TCReferable oldRef, TCReferable newRef) {
+    Set<TCReferable> definitions = reverseDependencies.remove(oldRef);
+    if (definitions != null) {
+      reverseDependencies.computeIfAbsent(newRef, k -> new HashSet<>()).addAll(definitions);
+      for (TCReferable definition : definitions) {
+        replace(myDependencies.get(definition), oldRef, newRef);
+      }
+    }
+  }
+
+  private static void replace(Set<TCReferable> set, TCReferable oldRef, TCReferable newRef) {
+    if (set != null && set.remove(oldRef)) {
+      set.add(newRef);
+    }
+  }
+
+  // Definitions that refer to the new version would refer to an orphan if its content were moved to the old one
+  private boolean isReferredTo(TCReferable definition, Definition newDef) {
+    Set<TCReferable> reverseDependencies = myReverseDependencies.get(definition);
+    if (reverseDependencies != null) {
+      for (TCReferable dependency : reverseDependencies) {
+        Definition typechecked = myState.getTypechecked(dependency);
+        if (typechecked != null && typechecked.status() != Definition.TypeCheckingStatus.HEADER_NEEDS_TYPE_CHECKING) {
+          return true;
+        }
+      }
+    }
+
+    if (newDef instanceof FunctionDefinition) {
+      FindDefCallVisitor<Definition> visitor = new FindDefCallVisitor<>(Collections.singleton(newDef), false);
+      visitor.findDefinition(((FunctionDefinition) newDef).getActualBody());
+      return visitor.getFoundDefinition() != null;
+    }
+    return false;
+  }
+
+  private static boolean hasHiddenBody(Definition definition) {
+    return definition instanceof FunctionDefinition && !(definition instanceof DConstructor) && ((FunctionDefinition) definition).getBody() == null;
+  }
+
+  // Only functions whose bodies are not visible to conversion can take over new content;
+  // other definitions are referred to by their own parameters and bodies.
+  private static boolean reuseDefinition(Definition oldDef, Definition newDef) {
+    if (!hasHiddenBody(oldDef) || !hasHiddenBody(newDef)) {
+      return false;
+    }
+    FunctionDefinition oldFunction = (FunctionDefinition) oldDef;
+    FunctionDefinition newFunction = (FunctionDefinition) newDef;
+
+    byte[] oldFingerprint = DefinitionFingerprint.compute(oldFunction);
+    if (oldFingerprint == null || !Arrays.equals(oldFingerprint, DefinitionFingerprint.compute(newFunction))) {
+      return false;
+    }
+
+    oldFunction.setParameters(newFunction.getParameters());
+    oldFunction.setResultType(newFunction.getResultType());
+    oldFunction.setResultTypeLevel(newFunction.getResultTypeLevel());
+    oldFunction.setBody(newFunction.getActualBody());
+    return true;
+  }
+
+  private void removeDependencies(TCReferable definition) {
+    Set<TCReferable> dependencies = myDependencies.remove(definition);
+    if (dependencies != null) {
+      for (TCReferable dependency : dependencies) {
+        Set<TCReferable> definitions = myReverseDependencies.get(dependency);
+        if (definitions != null) {
+          definitions.remove(definition);
+        }
+        definitions = myOldReverseDependencies.get(dependency);
+        if (definitions != null) {
+          definitions.remove(definition);
+        }
+      }
+    }
+  }
+
+  private void reset(TCReferable definition) {
+    Definition def = myState.reset(definition);
+    if (def instanceof ClassDefinition) {
+      for (ClassField field : ((ClassDefinition) def).getPersonalFields()) {
+        myState.reset(field.getReferable());
+      }
+    } else if (def instanceof DataDefinition) {
+      for (Constructor constructor : ((DataDefinition) def).getConstructors()) {
+        myState.reset(constructor.getReferable());
+      }
+    }
+  }
+
+  private Set<TCReferable> updateReverseDependencies(Collection<? extends TCReferable> definitions) {
     Set<TCReferable> updated = new HashSet<>();
     Stack<TCReferable> stack = new Stack<>();
-    stack.push(definition);
+    stack.addAll(definitions);
 
     while (!stack.isEmpty()) {
       TCReferable toUpdate = stack.pop();
@@ -37,15 +235,7 @@ public class DependencyCollector implements DependencyListener {
         continue;
       }
 
-      Set<TCReferable> dependencies = myDependencies.remove(toUpdate);
-      if (dependencies != null) {
-        for (TCReferable dependency : dependencies) {
-          Set<TCReferable> definitions = myReverseDependencies.get(dependency);
-          if (definitions != null) {
-            definitions.remove(definition);
-          }
-        }
-      }
+      removeDependencies(toUpdate);
 
       Set<TCReferable> reverseDependencies = myReverseDependencies.remove(toUpdate);
       if (reverseDependencies != null) {
@@ -54,16 +244,7 @@ public class DependencyCollector implements DependencyListener {
     }
 
     for (TCReferable updatedDef : updated) {
-      Definition def = myState.reset(updatedDef);
-      if (def instanceof ClassDefinition) {
-        for (ClassField field : ((ClassDefinition) def).getPersonalFields()) {
-          myState.reset(field.getReferable());
-        }
-      } else if (def instanceof DataDefinition) {
-        for (Constructor constructor : ((DataDefinition) def).getConstructors()) {
-          myState.reset(constructor.getReferable());
-        }
-      }
+      reset(updatedDef);
     }
 
     return updated;
@@ -2,9 +2,20 @@ package org.arend.typechecking.order.dependency;
 
 import org.arend.naming.reference.TCReferable;
 
+import java.util.Collections;
 import java.util.Set;
 
 public interface DependencyListener {
   void dependsOn(TCReferable def1, TCReferable def2);
   Set<? extends TCReferable> update(TCReferable definition);
+
+  /**
+   * Invoked after a definition is typechecked.
+   * A listener that postponed resetting of reverse dependencies in {@link #update} can reset them here.
+   *
+   * @return the set of reset definitions.
+   */
+  default Set<? extends TCReferable> checkInterface(TCReferable definition) {
+    return Collections.emptySet();
+  }
 }
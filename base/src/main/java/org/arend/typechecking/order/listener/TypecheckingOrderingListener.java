@@ -7,9 +7,12 @@ import org.arend.core.definition.*;
 import org.arend.core.expr.ClassCallExpression;
 import org.arend.core.expr.ErrorExpression;
 import org.arend.core.expr.PiExpression;
+import org.arend.core.expr.visitor.EnvironmentMachine;
+import org.arend.core.expr.visitor.WhnfCache;
 import org.arend.core.sort.Sort;
 import org.arend.error.CompositeErrorReporter;
 import org.arend.error.CountingErrorReporter;
+import org.arend.error.ListErrorReporter;
 import org.arend.ext.error.ErrorReporter;
 import org.arend.ext.error.TypecheckingError;
 import org.arend.library.Library;
@@ -23,12 +26,18 @@ import org.arend.term.group.Group;
 import org.arend.typechecking.*;
 import org.arend.typechecking.computation.CancellationIndicator;
 import org.arend.typechecking.computation.ComputationRunner;
+import org.arend.typechecking.computation.ReductionBudget;
+import org.arend.typechecking.computation.ReductionLimitExceededException;
+import org.arend.typechecking.computation.TypecheckingMetrics;
+import org.arend.typechecking.computation.UnfoldingProfiler;
 import org.arend.typechecking.error.CycleError;
 import org.arend.typechecking.error.TerminationCheckError;
 import org.arend.typechecking.error.local.LocalErrorReporter;
+import org.arend.typechecking.error.local.ReductionLimitError;
 import org.arend.typechecking.instance.pool.GlobalInstancePool;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
 import org.arend.typechecking.order.Ordering;
+import org.arend.typechecking.order.ParallelOrdering;
 import org.arend.typechecking.order.PartialComparator;
 import org.arend.typechecking.order.dependency.DependencyListener;
 import org.arend.typechecking.order.dependency.DummyDependencyListener;
@@ -37,23 +46,77 @@ import org.arend.typechecking.provider.ConcreteProvider;
 import org.arend.typechecking.termination.DefinitionCallGraph;
 import org.arend.typechecking.termination.RecursiveBehavior;
 import org.arend.typechecking.visitor.*;
+import org.arend.util.ComputationInterruptedException;
 import org.arend.util.Pair;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 public class TypecheckingOrderingListener extends ComputationRunner<Boolean> implements OrderingListener {
   private final TypecheckerState myState;
   private final DependencyListener myDependencyListener;
-  private final Map<GlobalReferable, Pair<CheckTypeVisitor,Boolean>> mySuspensions = new HashMap<>();
+  private final Map<GlobalReferable, Pair<CheckTypeVisitor,Boolean>> mySuspensions = new ConcurrentHashMap<>();
   private final ErrorReporter myErrorReporter;
   private final InstanceProviderSet myInstanceProviderSet;
   private final ConcreteProvider myConcreteProvider;
   private final ReferableConverter myReferableConverter;
   private final PartialComparator<TCReferable> myComparator;
   private final TypecheckingListener myTypecheckingListener;
-  private List<TCReferable> myCurrentDefinitions = Collections.emptyList();
-  private boolean myHeadersAreOK = true;
+  private final MyContext myContext;
+  private int myNumberOfThreads = 1;
+  private int myMaxReductionSteps = 0;
+  private UnfoldingProfiler myUnfoldingProfiler;
+  private WhnfCache myWhnfCache;
+  private boolean myEnvironmentMachineEnabled;
+  private TypecheckingMetrics myMetrics;
+
+  /**
+   * The state of a typechecking unit.
+   * Units typechecked in parallel have their own contexts which collect errors separately.
+   */
+  private class MyContext implements OrderingListener {
+    private final ErrorReporter errorReporter;
+    private List<TCReferable> currentDefinitions = Collections.emptyList();
+    private boolean headersAreOK = true;
+
+    MyContext(ErrorReporter errorReporter) {
+      this.errorReporter = errorReporter;
+    }
+
+    @Override
+    public void unitFound(Concrete.Definition definition, boolean recursive) {
+      TypecheckingOrderingListener.this.unitFound(definition, recursive, this);
+    }
+
+    @Override
+    public void cycleFound(List<Concrete.Definition> definitions) {
+      TypecheckingOrderingListener.this.cycleFound(definitions, this);
+    }
+
+    @Override
+    public void headerFound(Concrete.Definition definition) {
+      TypecheckingOrderingListener.this.headerFound(definition, this);
+    }
+
+    @Override
+    public void bodiesFound(List<Concrete.Definition> definitions) {
+      TypecheckingOrderingListener.this.bodiesFound(definitions, this);
+    }
+
+    @Override
+    public void useFound(List<Concrete.UseDefinition> definitions) {
+      TypecheckingOrderingListener.this.useFound(definitions, this);
+    }
+
+    void interrupted() {
+      for (TCReferable currentDefinition : currentDefinitions) {
+        typecheckingInterrupted(currentDefinition, myState.reset(currentDefinition));
+      }
+      currentDefinitions = Collections.emptyList();
+    }
+  }
 
   public TypecheckingOrderingListener(InstanceProviderSet instanceProviderSet, TypecheckerState state, ConcreteProvider concreteProvider, ReferableConverter referableConverter, ErrorReporter errorReporter, DependencyListener dependencyListener, PartialComparator<TCReferable> comparator, TypecheckingListener typecheckingListener) {
     myState = state;
@@ -64,6 +127,7 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
     myReferableConverter = referableConverter;
     myComparator = comparator;
     myTypecheckingListener = typecheckingListener;
+    myContext = new MyContext(errorReporter);
   }
 
   public TypecheckingOrderingListener(InstanceProviderSet instanceProviderSet, TypecheckerState state, ConcreteProvider concreteProvider, ReferableConverter referableConverter, ErrorReporter errorReporter, PartialComparator<TCReferable> comparator) {
@@ -82,34 +146,129 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
     return myState;
   }
 
+  public int getNumberOfThreads() {
+    return myNumberOfThreads;
+  }
+
+  /**
+   * Sets the number of threads used to typecheck independent definitions.
+   * If it is greater than 1, the typechecker state must be thread-safe,
+   * and typechecking callbacks such as {@link #typecheckingUnitFinished} may be invoked concurrently from worker threads.
+   * Errors are still reported on the calling thread in the same order as in sequential mode.
+   */
+  public void setNumberOfThreads(int numberOfThreads) {
+    myNumberOfThreads = Math.max(numberOfThreads, 1);
+  }
+
+  public int getMaxReductionSteps() {
+    return myMaxReductionSteps;
+  }
+
+  /**
+   * Sets the maximum number of reduction steps that normalization can make while a single definition is typechecked.
+   *
+   * @param maxSteps  the maximum number of steps; 0 means that the number of steps is not limited.
+   */
+  public void setMaxReductionSteps(int maxSteps) {
+    myMaxReductionSteps = Math.max(maxSteps, 0);
+  }
+
+  @Nullable
+  public UnfoldingProfiler getUnfoldingProfiler() {
+    return myUnfoldingProfiler;
+  }
+
+  /**
+   * Sets the profiler that counts unfoldings made while definitions are typechecked by this listener.
+   *
+   * @param profiler  the profiler; if it is null, unfoldings are not counted.
+   */
+  public void setUnfoldingProfiler(@Nullable UnfoldingProfiler profiler) {
+    myUnfoldingProfiler = profiler;
+  }
+
+  public boolean isEnvironmentMachineEnabled() {
+    return myEnvironmentMachineEnabled;
+  }
+
+  /**
+   * Selects the evaluator of function calls used while definitions are typechecked by this listener.
+   *
+   * @param enabled  if it is true, calls are evaluated by {@link EnvironmentMachine}; otherwise, arguments are substituted into bodies.
+   */
+  public void setEnvironmentMachineEnabled(boolean enabled) {
+    myEnvironmentMachineEnabled = enabled;
+  }
+
+  @Nullable
+  public WhnfCache getWhnfCache() {
+    return myWhnfCache;
+  }
+
+  /**
+   * Sets the cache of weak head normal forms used while definitions are typechecked by this listener.
+   *
+   * @param cache  the cache; if it is null, normal forms are not cached.
+   */
+  public void setWhnfCache(@Nullable WhnfCache cache) {
+    myWhnfCache = cache;
+  }
+
+  @Nullable
+  public TypecheckingMetrics getMetrics() {
+    return myMetrics;
+  }
+
+  /**
+   * Sets metrics in which timings and counters of definitions typechecked by this listener are recorded.
+   *
+   * @param metrics  the metrics; if it is null, metrics are not collected.
+   */
+  public void setMetrics(@Nullable TypecheckingMetrics metrics) {
+    myMetrics = metrics;
+  }
+
   @Override
   protected Boolean computationInterrupted() {
-    for (TCReferable currentDefinition : myCurrentDefinitions) {
-      typecheckingInterrupted(currentDefinition, myState.reset(currentDefinition));
-    }
-    myCurrentDefinitions = Collections.emptyList();
+    myContext.interrupted();
     return false;
   }
 
+  private Ordering newOrdering() {
+    if (myNumberOfThreads <= 1) {
+      return new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, myReferableConverter, myState, myComparator);
+    }
+
+    return new ParallelOrdering(myInstanceProviderSet, myConcreteProvider, myDependencyListener, myReferableConverter, myState, myComparator) {
+      @Override
+      protected void typecheckUnits(List<Unit> units) {
+        TypecheckingOrderingListener.this.typecheckUnits(units);
+      }
+    };
+  }
+
   public boolean typecheckDefinitions(final Collection<? extends Concrete.Definition> definitions, CancellationIndicator cancellationIndicator) {
     return run(cancellationIndicator, () -> {
-      Ordering ordering = new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, myReferableConverter, myState, myComparator);
+      Ordering ordering = newOrdering();
       for (Concrete.Definition definition : definitions) {
         ordering.order(definition);
       }
+      if (ordering instanceof ParallelOrdering) {
+        ((ParallelOrdering) ordering).typecheckCollected();
+      }
       return true;
     });
   }
 
   public boolean typecheckModules(final Collection<? extends Group> modules, CancellationIndicator cancellationIndicator) {
     return run(cancellationIndicator, () -> {
-      new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, myReferableConverter, myState, myComparator).orderModules(modules);
+      newOrdering().orderModules(modules);
       return true;
     });
   }
 
   public boolean typecheckLibrary(Library library, CancellationIndicator cancellationIndicator) {
-    return run(cancellationIndicator, () -> library.orderModules(new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, myReferableConverter, myState, myComparator)));
+    return run(cancellationIndicator, () -> library.orderModules(newOrdering()));
   }
 
   public boolean typecheckLibrary(Library library) {
@@ -151,6 +310,114 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
 
   }
 
+  /**
+   * Typechecks units on a pool of {@link #getNumberOfThreads()} threads.
+   * A unit is submitted as soon as all of its dependencies are typechecked.
+   * Errors of each unit are collected separately and reported in the order of units.
+   */
+  private void typecheckUnits(List<ParallelOrdering.Unit> units) {
+    List<CompletableFuture<ListErrorReporter>> results = new ArrayList<>(units.size());
+    for (ParallelOrdering.Unit ignored : units) {
+      results.add(new CompletableFuture<>());
+    }
+
+    List<ParallelOrdering.Unit> readyUnits = new ArrayList<>();
+    for (ParallelOrdering.Unit unit : units) {
+      if (unit.getNumberOfDependencies() == 0) {
+        readyUnits.add(unit);
+      }
+    }
+
+    CancellationIndicator cancellationIndicator = getCancellationIndicator();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(myNumberOfThreads, units.size()));
+    try {
+      for (ParallelOrdering.Unit unit : readyUnits) {
+        submitUnit(executor, cancellationIndicator, unit, results);
+      }
+
+      for (CompletableFuture<ListErrorReporter> result : results) {
+        ListErrorReporter errorReporter;
+        try {
+          errorReporter = result.get();
+        } catch (InterruptedException e) {
+          throw new ComputationInterruptedException();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+        errorReporter.reportTo(myErrorReporter);
+      }
+    } finally {
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void submitUnit(ExecutorService executor, CancellationIndicator cancellationIndicator, ParallelOrdering.Unit unit, List<CompletableFuture<ListErrorReporter>> results) {
+    executor.execute(() -> {
+      CompletableFuture<ListErrorReporter> result = results.get(unit.getIndex());
+      ListErrorReporter errorReporter = new ListErrorReporter();
+      MyContext context = new MyContext(errorReporter);
+      try {
+        runWithCancellationIndicator(cancellationIndicator, () -> {
+          unit.getCollector().feed(context);
+          return null;
+        });
+      } catch (Throwable e) {
+        if (e instanceof ComputationInterruptedException) {
+          context.interrupted();
+        }
+        result.completeExceptionally(e);
+        return;
+      }
+
+      result.complete(errorReporter);
+      try {
+        for (ParallelOrdering.Unit dependent : unit.getDependents()) {
+          if (dependent.dependencyFinished()) {
+            submitUnit(executor, cancellationIndicator, dependent, results);
+          }
+        }
+      } catch (RejectedExecutionException ignored) {
+        // Typechecking was stopped
+      }
+    });
+  }
+
+  // Typechecking of every definition gets its own WHNF cache, reduction budget, and metrics
+  private <T> T runTypechecking(TCReferable definition, TypecheckingMetrics.Phase phase, Supplier<T> supplier) {
+    return TypecheckingMetrics.run(myMetrics, definition, phase, () -> WhnfCache.run(myWhnfCache, definition, () -> ReductionBudget.run(myMaxReductionSteps, () -> UnfoldingProfiler.run(myUnfoldingProfiler, () -> EnvironmentMachine.run(myEnvironmentMachineEnabled, supplier)))));
+  }
+
+  // Definitions whose typechecking was aborted keep whatever was typechecked before and are marked as erroneous
+  private Definition reductionLimitExceeded(Concrete.Definition definition, int maxSteps, ErrorReporter errorReporter) {
+    errorReporter.report(new ReductionLimitError(maxSteps, definition));
+    Definition typechecked = myState.getTypechecked(definition.getData());
+    if (typechecked == null) {
+      typechecked = newDefinition(definition);
+    } else if (typechecked instanceof FunctionDefinition) {
+      FunctionDefinition function = (FunctionDefinition) typechecked;
+      function.setBody(null);
+      if (function.getResultType() == null) {
+        function.setResultType(new ErrorExpression());
+      }
+    } else if (typechecked instanceof DataDefinition && ((DataDefinition) typechecked).getSort() == null) {
+      ((DataDefinition) typechecked).setSort(Sort.SET0);
+    }
+    typechecked.addStatus(Definition.TypeCheckingStatus.HAS_ERRORS);
+    return typechecked;
+  }
+
   private Definition newDefinition(Concrete.Definition definition) {
     Definition typechecked;
     if (definition instanceof Concrete.DataDefinition) {
@@ -186,17 +453,26 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
     return typechecked;
   }
 
+  private void unitFinished(TCReferable referable, Definition typechecked) {
+    typecheckingUnitFinished(referable, typechecked);
+    myDependencyListener.checkInterface(referable);
+  }
+
   @Override
   public void unitFound(Concrete.Definition definition, boolean recursive) {
-    myHeadersAreOK = true;
+    unitFound(definition, recursive, myContext);
+  }
+
+  private void unitFound(Concrete.Definition definition, boolean recursive, MyContext context) {
+    context.headersAreOK = true;
 
     if (recursive) {
       Set<TCReferable> dependencies = new HashSet<>();
       definition.accept(new CollectDefCallsVisitor(myConcreteProvider, myInstanceProviderSet.get(definition.getData()), dependencies, false), null);
       if (dependencies.contains(definition.getData())) {
         typecheckingUnitStarted(definition.getData());
-        myErrorReporter.report(new CycleError(Collections.singletonList(definition.getData())));
-        typecheckingUnitFinished(definition.getData(), newDefinition(definition));
+        context.errorReporter.report(new CycleError(Collections.singletonList(definition.getData())));
+        unitFinished(definition.getData(), newDefinition(definition));
         return;
       }
     }
@@ -205,25 +481,36 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
 
     List<ExtElimClause> clauses;
     Definition typechecked;
-    CheckTypeVisitor checkTypeVisitor = new CheckTypeVisitor(myState, new LocalErrorReporter(definition.getData(), myErrorReporter), null);
+    CheckTypeVisitor checkTypeVisitor = new CheckTypeVisitor(myState, new LocalErrorReporter(definition.getData(), context.errorReporter), null);
     checkTypeVisitor.setListener(myTypecheckingListener);
     checkTypeVisitor.setInstancePool(new GlobalInstancePool(myInstanceProviderSet.get(definition.getData()), checkTypeVisitor));
     DesugarVisitor.desugar(definition, myConcreteProvider, checkTypeVisitor.getErrorReporter());
-    myCurrentDefinitions = Collections.singletonList(definition.getData());
+    context.currentDefinitions = Collections.singletonList(definition.getData());
     typecheckingUnitStarted(definition.getData());
-    clauses = definition.accept(new DefinitionTypechecker(checkTypeVisitor), null);
+    try {
+      clauses = runTypechecking(definition.getData(), TypecheckingMetrics.Phase.UNIT, () -> definition.accept(new DefinitionTypechecker(checkTypeVisitor), null));
+    } catch (ReductionLimitExceededException e) {
+      typechecked = reductionLimitExceeded(definition, e.getMaxSteps(), checkTypeVisitor.getErrorReporter());
+      unitFinished(definition.getData(), typechecked);
+      context.currentDefinitions = Collections.emptyList();
+      return;
+    }
     typechecked = myState.getTypechecked(definition.getData());
 
     if (definition.isRecursive() && typechecked instanceof FunctionDefinition && clauses != null) {
-      checkRecursiveFunctions(Collections.singletonMap((FunctionDefinition) typechecked, definition), Collections.singletonMap((FunctionDefinition) typechecked, clauses));
+      checkRecursiveFunctions(Collections.singletonMap((FunctionDefinition) typechecked, definition), Collections.singletonMap((FunctionDefinition) typechecked, clauses), context.errorReporter);
     }
 
-    typecheckingUnitFinished(definition.getData(), typechecked);
-    myCurrentDefinitions = Collections.emptyList();
+    unitFinished(definition.getData(), typechecked);
+    context.currentDefinitions = Collections.emptyList();
   }
 
   @Override
   public void cycleFound(List<Concrete.Definition> definitions) {
+    cycleFound(definitions, myContext);
+  }
+
+  private void cycleFound(List<Concrete.Definition> definitions, MyContext context) {
     List<TCReferable> cycle = new ArrayList<>();
     for (Concrete.Definition definition : definitions) {
       if (cycle.isEmpty() || cycle.get(cycle.size() - 1) != definition.getData()) {
@@ -238,37 +525,50 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
 
       typecheckingUnitStarted(definition.getData());
       mySuspensions.remove(definition.getData());
-      typecheckingUnitFinished(definition.getData(), typechecked);
+      unitFinished(definition.getData(), typechecked);
     }
-    myErrorReporter.report(new CycleError(cycle));
+    context.errorReporter.report(new CycleError(cycle));
   }
 
   @Override
   public void headerFound(Concrete.Definition definition) {
-    myCurrentDefinitions = Collections.singletonList(definition.getData());
+    headerFound(definition, myContext);
+  }
+
+  private void headerFound(Concrete.Definition definition, MyContext context) {
+    context.currentDefinitions = Collections.singletonList(definition.getData());
     typecheckingHeaderStarted(definition.getData());
 
     CountingErrorReporter countingErrorReporter = new CountingErrorReporter();
-    CheckTypeVisitor visitor = new CheckTypeVisitor(myState, new LocalErrorReporter(definition.getData(), new CompositeErrorReporter(myErrorReporter, countingErrorReporter)), null);
+    CheckTypeVisitor visitor = new CheckTypeVisitor(myState, new LocalErrorReporter(definition.getData(), new CompositeErrorReporter(context.errorReporter, countingErrorReporter)), null);
     visitor.setListener(myTypecheckingListener);
     visitor.setStatus(definition.getStatus().getTypecheckingStatus());
     DesugarVisitor.desugar(definition, myConcreteProvider, visitor.getErrorReporter());
     Definition oldTypechecked = visitor.getTypecheckingState().getTypechecked(definition.getData());
     definition.setRecursive(true);
-    Definition typechecked = new DefinitionTypechecker(visitor).typecheckHeader(oldTypechecked, new GlobalInstancePool(myInstanceProviderSet.get(definition.getData()), visitor), definition);
+    Definition typechecked;
+    try {
+      typechecked = runTypechecking(definition.getData(), TypecheckingMetrics.Phase.HEADER, () -> new DefinitionTypechecker(visitor).typecheckHeader(oldTypechecked, new GlobalInstancePool(myInstanceProviderSet.get(definition.getData()), visitor), definition));
+    } catch (ReductionLimitExceededException e) {
+      typechecked = reductionLimitExceeded(definition, e.getMaxSteps(), visitor.getErrorReporter());
+    }
     if (typechecked.status() == Definition.TypeCheckingStatus.BODY_NEEDS_TYPE_CHECKING) {
       mySuspensions.put(definition.getData(), new Pair<>(visitor, oldTypechecked == null));
     }
 
     typecheckingHeaderFinished(definition.getData(), typechecked);
-    myCurrentDefinitions = Collections.emptyList();
+    context.currentDefinitions = Collections.emptyList();
     if (!typechecked.status().headerIsOK()) {
-      myHeadersAreOK = false;
+      context.headersAreOK = false;
     }
   }
 
   @Override
   public void bodiesFound(List<Concrete.Definition> definitions) {
+    bodiesFound(definitions, myContext);
+  }
+
+  private void bodiesFound(List<Concrete.Definition> definitions, MyContext context) {
     Map<FunctionDefinition,Concrete.Definition> functionDefinitions = new HashMap<>();
     Map<FunctionDefinition, List<ExtElimClause>> clausesMap = new HashMap<>();
     Set<DataDefinition> dataDefinitions = new HashSet<>();
@@ -286,27 +586,33 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
     orderedDefinitions.addAll(otherDefs);
 
     DefinitionTypechecker typechecking = new DefinitionTypechecker(null);
-    myCurrentDefinitions = new ArrayList<>();
+    context.currentDefinitions = new ArrayList<>();
     for (Concrete.Definition definition : orderedDefinitions) {
-      myCurrentDefinitions.add(definition.getData());
+      context.currentDefinitions.add(definition.getData());
     }
     for (Concrete.Definition definition : orderedDefinitions) {
       typecheckingBodyStarted(definition.getData());
 
       Definition def = myState.getTypechecked(definition.getData());
       Pair<CheckTypeVisitor, Boolean> pair = mySuspensions.remove(definition.getData());
-      if (myHeadersAreOK && pair != null) {
+      if (context.headersAreOK && pair != null) {
         typechecking.setTypechecker(pair.proj1);
-        List<ExtElimClause> clauses = typechecking.typecheckBody(def, definition, dataDefinitions, pair.proj2);
+        List<ExtElimClause> clauses;
+        try {
+          clauses = runTypechecking(definition.getData(), TypecheckingMetrics.Phase.BODY, () -> typechecking.typecheckBody(def, definition, dataDefinitions, pair.proj2));
+        } catch (ReductionLimitExceededException e) {
+          reductionLimitExceeded(definition, e.getMaxSteps(), pair.proj1.getErrorReporter());
+          clauses = null;
+        }
         if (clauses != null) {
           functionDefinitions.put((FunctionDefinition) def, definition);
           clausesMap.put((FunctionDefinition) def, clauses);
         }
       }
     }
-    myCurrentDefinitions = Collections.emptyList();
+    context.currentDefinitions = Collections.emptyList();
 
-    myHeadersAreOK = true;
+    context.headersAreOK = true;
 
     if (!functionDefinitions.isEmpty()) {
       FindDefCallVisitor<DataDefinition> visitor = new FindDefCallVisitor<>(dataDefinitions, false);
@@ -318,34 +624,39 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
         if (found != null) {
           entry.getKey().setBody(null);
           entry.getKey().addStatus(Definition.TypeCheckingStatus.HAS_ERRORS);
-          myErrorReporter.report(new TypecheckingError("Mutually recursive function refers to data type '" + found.getName() + "'", entry.getValue()).withDefinition(entry.getKey().getReferable()));
+          context.errorReporter.report(new TypecheckingError("Mutually recursive function refers to data type '" + found.getName() + "'", entry.getValue()).withDefinition(entry.getKey().getReferable()));
           it.remove();
           visitor.clear();
         }
       }
 
       if (!functionDefinitions.isEmpty()) {
-        checkRecursiveFunctions(functionDefinitions, clausesMap);
+        checkRecursiveFunctions(functionDefinitions, clausesMap, context.errorReporter);
       }
     }
 
     for (Concrete.Definition definition : orderedDefinitions) {
       typecheckingBodyFinished(definition.getData(), myState.getTypechecked(definition.getData()));
+      myDependencyListener.checkInterface(definition.getData());
     }
   }
 
   @Override
   public void useFound(List<Concrete.UseDefinition> definitions) {
-    myCurrentDefinitions = new ArrayList<>();
+    useFound(definitions, myContext);
+  }
+
+  private void useFound(List<Concrete.UseDefinition> definitions, MyContext context) {
+    context.currentDefinitions = new ArrayList<>();
     for (Concrete.UseDefinition definition : definitions) {
-      myCurrentDefinitions.add(definition.getData());
-      myCurrentDefinitions.add(definition.getUseParent());
+      context.currentDefinitions.add(definition.getData());
+      context.currentDefinitions.add(definition.getUseParent());
     }
-    UseTypechecking.typecheck(definitions, myState, myErrorReporter);
-    myCurrentDefinitions = Collections.emptyList();
+    UseTypechecking.typecheck(definitions, myState, context.errorReporter);
+    context.currentDefinitions = Collections.emptyList();
   }
 
-  private void checkRecursiveFunctions(Map<FunctionDefinition,Concrete.Definition> definitions, Map<FunctionDefinition, List<ExtElimClause>> clauses) {
+  private void checkRecursiveFunctions(Map<FunctionDefinition,Concrete.Definition> definitions, Map<FunctionDefinition, List<ExtElimClause>> clauses, ErrorReporter errorReporter) {
     DefinitionCallGraph definitionCallGraph = new DefinitionCallGraph();
     for (Map.Entry<FunctionDefinition, Concrete.Definition> entry : definitions.entrySet()) {
       List<ExtElimClause> functionClauses = clauses.get(entry.getKey());
@@ -355,7 +666,7 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
       for (DependentLink link = entry.getKey().getParameters(); link.hasNext(); link = link.getNext()) {
         link = link.getNextTyped(null);
         if (FindDefCallVisitor.findDefinition(link.getTypeExpr(), definitions.keySet()) != null) {
-          myErrorReporter.report(new TypecheckingError("Mutually recursive functions are not allowed in parameters", entry.getValue()).withDefinition(entry.getKey().getReferable()));
+          errorReporter.report(new TypecheckingError("Mutually recursive functions are not allowed in parameters", entry.getValue()).withDefinition(entry.getKey().getReferable()));
         }
       }
     }
@@ -367,7 +678,7 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
         definition.setBody(null);
       }
       for (Map.Entry<Definition, Set<RecursiveBehavior<Definition>>> entry : callCategory.myErrorInfo.entrySet()) {
-        myErrorReporter.report(new TerminationCheckError(entry.getKey(), entry.getValue()));
+        errorReporter.report(new TerminationCheckError(entry.getKey(), entry.getValue()));
       }
     }
   }
@@ -5,54 +5,68 @@ package org.arend.typechecking.termination;
 import java.util.*;
 
 public abstract class BaseCallGraph<T> {
-  private HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> myGraph = new HashMap<>();
+  private final HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> myGraph = new HashMap<>();
   private boolean isCompositionClosed = false;
 
   BaseCallGraph() {
   }
 
   BaseCallGraph(BaseCallGraph<T> g) {
-    HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> newGraph;
-    HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> oldGraph = g.myGraph;
-    int myNewEdges;
-
-    do {
-      myNewEdges = 0;
-      newGraph = new HashMap<>();
-
-      for (T vDom : oldGraph.keySet()) {
-        HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges = oldGraph.get(vDom);
-        for (T vCodom : outboundEdges.keySet()) {
-          for (BaseCallMatrix<T> edge : outboundEdges.get(vCodom)) {
-            append(edge, newGraph);
+    // Computes the closure under composition semi-naively:
+    // every round composes only those pairs of edges in which at least one edge was added in the previous round
+    List<BaseCallMatrix<T>> newEdges = new ArrayList<>();
+    for (HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges : g.myGraph.values()) {
+      for (HashSet<BaseCallMatrix<T>> edges : outboundEdges.values()) {
+        for (BaseCallMatrix<T> edge : edges) {
+          if (append(edge, myGraph)) {
+            newEdges.add(edge);
           }
         }
       }
+    }
 
-      for (T vDom : oldGraph.keySet()) {
-        HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges = oldGraph.get(vDom);
-        for (T vCodom : outboundEdges.keySet()) {
-          for (BaseCallMatrix<T> edge : outboundEdges.get(vCodom)) {
-            HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges2 = oldGraph.get(edge.getCodomain());
-            if (outboundEdges2 != null) {
-              for (HashSet<BaseCallMatrix<T>> edgesSheaf : outboundEdges2.values()) {
-                for (BaseCallMatrix<T> edge2 : edgesSheaf) {
-                  if (append(new CompositeCallMatrix<>(edge, edge2), newGraph)) {
-                    myNewEdges++;
-                  }
-                }
-              }
+    ProductMatrix<T> product = new ProductMatrix<>();
+    while (!newEdges.isEmpty()) {
+      HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> roundGraph = new HashMap<>();
+      List<BaseCallMatrix<T>> roundEdges = new ArrayList<>();
+      for (BaseCallMatrix<T> edge : newEdges) {
+        HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges = myGraph.get(edge.getCodomain());
+        if (outboundEdges != null) {
+          for (HashSet<BaseCallMatrix<T>> edges : outboundEdges.values()) {
+            for (BaseCallMatrix<T> edge2 : edges) {
+              compose(edge, edge2, product, roundGraph, roundEdges);
+            }
+          }
+        }
+        for (HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges1 : myGraph.values()) {
+          HashSet<BaseCallMatrix<T>> edges = outboundEdges1.get(edge.getDomain());
+          if (edges != null) {
+            for (BaseCallMatrix<T> edge1 : edges) {
+              compose(edge1, edge, product, roundGraph, roundEdges);
             }
           }
         }
       }
-      oldGraph = newGraph;
-    } while (myNewEdges > 0);
+      for (BaseCallMatrix<T> edge : roundEdges) {
+        append(edge, myGraph);
+      }
+      newEdges = roundEdges;
+    }
 
-    myGraph = newGraph;
     isCompositionClosed = true;
   }
 
+  private void compose(BaseCallMatrix<T> m1, BaseCallMatrix<T> m2, ProductMatrix<T> product, HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> roundGraph, List<BaseCallMatrix<T>> roundEdges) {
+    // The product is computed in a reusable matrix, so that a new matrix is allocated only if it does not belong to the graph yet
+    product.setFactors(m1, m2);
+    if (contains(product, myGraph) || contains(product, roundGraph)) {
+      return;
+    }
+    CompositeCallMatrix<T> composite = new CompositeCallMatrix<>(m1, m2, product);
+    append(composite, roundGraph);
+    roundEdges.add(composite);
+  }
+
   public void add(Set<BaseCallMatrix<T>> set) {
     for (BaseCallMatrix<T> cm : set) {
       append(cm, myGraph);
@@ -78,40 +92,13 @@ public abstract class BaseCallGraph<T> {
   }
 
   private static <T> boolean append(BaseCallMatrix<T> cm, HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> graph) {
-    HashSet<BaseCallMatrix<T>> set;
-    HashMap<T, HashSet<BaseCallMatrix<T>>> map;
-    if (!(graph.containsKey(cm.getDomain()))) {
-      map = new HashMap<>();
-      set = new HashSet<>();
-      set.add(cm);
-      map.put(cm.getCodomain(), set);
-      graph.put(cm.getDomain(), map);
-      return true;
-    } else {
-      map = graph.get(cm.getDomain());
-      if (!(map.containsKey(cm.getCodomain()))) {
-        set = new HashSet<>();
-        set.add(cm);
-        map.put(cm.getCodomain(), set);
-        return true;
-      } else {
-        set = map.get(cm.getCodomain());
-        boolean alreadyContainsEqual = false;
-
-        for (BaseCallMatrix<T> c : set) {
-          if (cm.equals(c)) {
-            alreadyContainsEqual = true;
-            break;
-          }
-        }
-
-        if (!(alreadyContainsEqual)) {
-          set.add(cm);
-        }
+    return graph.computeIfAbsent(cm.getDomain(), k -> new HashMap<>()).computeIfAbsent(cm.getCodomain(), k -> new HashSet<>()).add(cm);
+  }
 
-        return !alreadyContainsEqual;
-      }
-    }
+  private static <T> boolean contains(BaseCallMatrix<T> cm, HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> graph) {
+    HashMap<T, HashSet<BaseCallMatrix<T>>> map = graph.get(cm.getDomain());
+    HashSet<BaseCallMatrix<T>> set = map == null ? null : map.get(cm.getCodomain());
+    return set != null && set.contains(cm);
   }
 
   public boolean checkTermination() {
@@ -131,6 +118,36 @@ public abstract class BaseCallGraph<T> {
     return result;
   }
 
+  private static class ProductMatrix<T> extends BaseCallMatrix<T> {
+    private BaseCallMatrix<T> myM1;
+    private BaseCallMatrix<T> myM2;
+
+    ProductMatrix() {
+      super(0, 0);
+    }
+
+    void setFactors(BaseCallMatrix<T> m1, BaseCallMatrix<T> m2) {
+      myM1 = m1;
+      myM2 = m2;
+      multiply(m1, m2);
+    }
+
+    @Override
+    public T getCodomain() {
+      return myM2.getCodomain();
+    }
+
+    @Override
+    public T getDomain() {
+      return myM1.getDomain();
+    }
+
+    @Override
+    public int getCompositeLength() {
+      return myM1.getCompositeLength() + myM2.getCompositeLength();
+    }
+  }
+
   private static class RecursiveBehaviors<T> {
     private T myBasepoint = null;
     private final Set<RecursiveBehavior<T>> myBehaviors = new HashSet<>();
@@ -9,7 +9,6 @@ import org.arend.ext.prettyprinting.doc.DocStringBuilder;
 import org.arend.util.StringFormat;
 
 import java.util.Arrays;
-import java.util.HashMap;
 
 public abstract class BaseCallMatrix<T> {
   public enum R {
@@ -18,98 +17,104 @@ public abstract class BaseCallMatrix<T> {
     LessThan()
   }
 
-  private static BaseCallMatrix.R rmul(BaseCallMatrix.R a, BaseCallMatrix.R b) {
-    switch (a) {
+  // Every cell takes two bits: Unknown is 00, Equal is 01, and LessThan is 11.
+  // Then the sum of relations is the bitwise disjunction and a ≤ b iff the bits of a are contained in the bits of b.
+  private static final int CELLS_PER_WORD = 32;
+  private static final long LOW_BITS = 0x5555555555555555L;
+  private static final BaseCallMatrix.R[] VALUES = { R.Unknown, R.Equal, R.Unknown, R.LessThan };
+
+  private static long toBits(BaseCallMatrix.R r) {
+    switch (r) {
       case Equal:
-        switch (b) {
-          case Equal:
-            return BaseCallMatrix.R.Equal;
-          case LessThan:
-            return BaseCallMatrix.R.LessThan;
-          default:
-            return BaseCallMatrix.R.Unknown;
-        }
+        return 1;
       case LessThan:
-        switch (b) {
-          case Equal:
-          case LessThan:
-            return BaseCallMatrix.R.LessThan;
-          default:
-            return BaseCallMatrix.R.Unknown;
-        }
+        return 3;
       default:
-        return BaseCallMatrix.R.Unknown;
+        return 0;
     }
   }
 
-  private static BaseCallMatrix.R radd(BaseCallMatrix.R a, BaseCallMatrix.R b) {
-    if (a == R.LessThan || b == R.LessThan) return R.LessThan;
-    if (a == R.Equal || b == R.Equal) return R.Equal;
-    return R.Unknown;
-  }
-
   static boolean rleq(BaseCallMatrix.R a, BaseCallMatrix.R b) {
-    switch (a) {
-      case LessThan:
-        return (b == BaseCallMatrix.R.LessThan);
-      case Equal:
-        return (b == BaseCallMatrix.R.LessThan || b == BaseCallMatrix.R.Equal);
-      default:
-        return true;
-    }
+    return (toBits(a) & ~toBits(b)) == 0;
   }
 
-  private HashMap<Integer, BaseCallMatrix.CallMatrixEntry> myMatrixMap = new HashMap<>();
-  private BaseCallMatrix.R[][] fallbackMatrix = null;
-
-  private final int myWidth;
-  private final int myHeight;
+  private int myWidth;
+  private int myHeight;
+  private int myRowLength;
+  // Rows are stored one after another; every row occupies myRowLength words
+  private long[] myCells;
 
   BaseCallMatrix(int width, int height) {
     myWidth = width;
     myHeight = height;
+    myRowLength = getRowLength(width);
+    myCells = new long[height * myRowLength];
   }
 
   BaseCallMatrix(BaseCallMatrix<T> m) {
-    // copy constructor 
+    // copy constructor
     myWidth = m.myWidth;
     myHeight = m.myHeight;
-    if (m.myMatrixMap != null) {
-      for (Integer j : m.myMatrixMap.keySet()) {
-        BaseCallMatrix.CallMatrixEntry cme = m.myMatrixMap.get(j);
-        myMatrixMap.put(j, new BaseCallMatrix.CallMatrixEntry(cme.myIndex, cme.myRel));
-      }
-    } else {
-      fallbackMatrix = new BaseCallMatrix.R[myHeight][myWidth];
-      for (int i = 0; i < myHeight; i++) System.arraycopy(m.fallbackMatrix[i], 0, fallbackMatrix[i], 0, myWidth);
-    }
+    myRowLength = m.myRowLength;
+    myCells = Arrays.copyOf(m.myCells, m.getSize());
   }
 
   BaseCallMatrix(BaseCallMatrix<T> m1, BaseCallMatrix<T> m2) {
-    // multiplication constructor 
+    // multiplication constructor
+    myCells = new long[0];
+    multiply(m1, m2);
+  }
+
+  private static int getRowLength(int width) {
+    return (width + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+  }
+
+  private int getSize() {
+    return myHeight * myRowLength;
+  }
+
+  /**
+   * Replaces this matrix with the product of {@code m1} and {@code m2}.
+   * The array of cells is reused if it is large enough.
+   */
+  final void multiply(BaseCallMatrix<T> m1, BaseCallMatrix<T> m2) {
     if (m1.myWidth != m2.myHeight) {
       throw new IllegalArgumentException();
     }
     myHeight = m1.myHeight;
     myWidth = m2.myWidth;
+    myRowLength = m2.myRowLength;
+    int size = getSize();
+    if (myCells.length < size) {
+      myCells = new long[size];
+    } else {
+      Arrays.fill(myCells, 0, size, 0L);
+    }
 
-    if (m1.myMatrixMap != null && m2.myMatrixMap != null) {
-      for (int j = 0; j < myWidth; j++) {
-        BaseCallMatrix.CallMatrixEntry cme2 = m2.myMatrixMap.get(j);
-        if (cme2 != null) {
-          BaseCallMatrix.CallMatrixEntry cme = m1.myMatrixMap.get(cme2.myIndex);
-          if (cme != null) {
-            myMatrixMap.put(j, new BaseCallMatrix.CallMatrixEntry(cme.myIndex, rmul(cme.myRel, cme2.myRel)));
+    long[] cells1 = m1.myCells;
+    long[] cells2 = m2.myCells;
+    for (int i = 0; i < myHeight; i++) {
+      int row = i * myRowLength;
+      for (int w = 0; w < m1.myRowLength; w++) {
+        long word = cells1[i * m1.myRowLength + w];
+        while (word != 0) {
+          int shift = Long.numberOfTrailingZeros(word) & ~1;
+          long rel = (word >>> shift) & 3;
+          word &= ~(3L << shift);
+          int row2 = (w * CELLS_PER_WORD + shift / 2) * myRowLength;
+          // Equal preserves relations of the second matrix and LessThan turns all of them into LessThan
+          if (rel == 1) {
+            for (int j = 0; j < myRowLength; j++) {
+              myCells[row + j] |= cells2[row2 + j];
+            }
+          } else {
+            for (int j = 0; j < myRowLength; j++) {
+              long cell = cells2[row2 + j];
+              myCells[row + j] |= cell | ((cell & LOW_BITS) << 1);
+            }
           }
         }
       }
-    } else {
-      for (int i = 0; i < myHeight; i++)
-        for (int j = 0; j < myWidth; j++) {
-          BaseCallMatrix.R s = R.Unknown;
-          for (int k = 0; k < m1.myWidth; k++) s = radd(s, rmul(m1.getValue(i, k), m2.getValue(k, j)));
-          set(i, j, s);
-        }
     }
   }
 
@@ -128,61 +133,28 @@ public abstract class BaseCallMatrix<T> {
   public abstract int getCompositeLength();
 
   public void set(int i, int j, BaseCallMatrix.R v) {
-    if (myMatrixMap != null) {
-      BaseCallMatrix.CallMatrixEntry cm = myMatrixMap.get(j);
-      if (cm != null) {
-        if (cm.myIndex != i && v != R.Unknown) {
-          enterFallBackMode();
-          fallbackMatrix[i][j] = v;
-        } else if (cm.myIndex == i) {
-          if (v == R.Unknown) myMatrixMap.put(j, null);
-          else cm.myRel = v;
-        }
-      } else if (v != R.Unknown) {
-        myMatrixMap.put(j, new BaseCallMatrix.CallMatrixEntry(i, v));
-      }
-    } else {
-      fallbackMatrix[i][j] = v;
-    }
+    int index = i * myRowLength + j / CELLS_PER_WORD;
+    int shift = (j % CELLS_PER_WORD) * 2;
+    myCells[index] = myCells[index] & ~(3L << shift) | toBits(v) << shift;
   }
 
   public BaseCallMatrix.R getValue(int i, int j) {
-    if (myMatrixMap != null) {
-      BaseCallMatrix.CallMatrixEntry cme = myMatrixMap.get(j);
-      BaseCallMatrix.R result2 = BaseCallMatrix.R.Unknown;
-      if (cme != null && cme.myIndex == i) {
-        result2 = cme.myRel;
-      }
-      return result2;
-    } else {
-      return fallbackMatrix[i][j];
-    }
+    return VALUES[(int) (myCells[i * myRowLength + j / CELLS_PER_WORD] >>> (j % CELLS_PER_WORD) * 2) & 3];
   }
 
-  private void enterFallBackMode() {
-    fallbackMatrix = new BaseCallMatrix.R[myHeight][myWidth];
-    for (int i = 0; i < myHeight; i++) for (int j = 0; j < myWidth; j++) fallbackMatrix[i][j] = getValue(i, j);
-    myMatrixMap = null;
+  private boolean hasSameShape(BaseCallMatrix<?> cm) {
+    return getCodomain() == cm.getCodomain() && getDomain() == cm.getDomain() && myWidth == cm.myWidth && myHeight == cm.myHeight;
   }
 
   public final boolean leq(BaseCallMatrix<T> cm) {
-    if (getCodomain() != cm.getCodomain() || getDomain() != cm.getDomain()) {
+    if (!hasSameShape(cm)) {
       return false;
     }
-    if (myMatrixMap != null && cm.myMatrixMap != null) {
-      for (int k : myMatrixMap.keySet()) {
-        BaseCallMatrix.CallMatrixEntry cme = cm.myMatrixMap.get(k);
-        BaseCallMatrix.CallMatrixEntry mme = myMatrixMap.get(k);
-        if (cme == null || cme.myIndex != mme.myIndex || !(BaseCallMatrix.rleq(mme.myRel, cme.myRel))) {
-          return false;
-        }
+    for (int k = getSize() - 1; k >= 0; k--) {
+      if ((myCells[k] & ~cm.myCells[k]) != 0) {
+        return false;
       }
-    } else {
-      for (int i = 0; i < myHeight; i++)
-        for (int j = 0; j < myWidth; j++)
-          if (!rleq(getValue(i, j), cm.getValue(i, j))) return false;
     }
-
     return true;
   }
 
@@ -190,11 +162,9 @@ public abstract class BaseCallMatrix<T> {
   public final boolean equals(Object object) {
     if (object instanceof BaseCallMatrix) {
       BaseCallMatrix<?> cm = (BaseCallMatrix<?>) object;
-      if (getCodomain() != cm.getCodomain() || getDomain() != cm.getDomain()) return false;
-      if (myMatrixMap != null && cm.myMatrixMap != null) return myMatrixMap.equals(cm.myMatrixMap);
-      for (int i = 0; i < myHeight; i++)
-        for (int j = 0; j < myWidth; j++)
-          if (getValue(i, j) != cm.getValue(i, j)) return false;
+      if (!hasSameShape(cm)) return false;
+      for (int k = getSize() - 1; k >= 0; k--)
+        if (myCells[k] != cm.myCells[k]) return false;
       return true;
     } else {
       return false;
@@ -204,7 +174,10 @@ public abstract class BaseCallMatrix<T> {
   @Override
   public final int hashCode() {
     int result = getCodomain().hashCode() * 31 + getDomain().hashCode();
-    return result * 31 + (myMatrixMap != null ? myMatrixMap.hashCode() : Arrays.deepHashCode(fallbackMatrix));
+    for (int k = 0; k < getSize(); k++) {
+      result = result * 31 + Long.hashCode(myCells[k]);
+    }
+    return result;
   }
 
   protected String[] getColumnLabels() {
@@ -266,28 +239,4 @@ public abstract class BaseCallMatrix<T> {
 
     return result.toString();
   }
-
-  private static class CallMatrixEntry {
-    final int myIndex;
-    BaseCallMatrix.R myRel;
-
-    CallMatrixEntry(int index, BaseCallMatrix.R rel) {
-      myIndex = index;
-      myRel = rel;
-    }
-
-    @Override
-    public int hashCode() {
-      return myIndex * 31 + myRel.hashCode();
-    }
-
-    @Override
-    public boolean equals(Object object) {
-      if (object instanceof BaseCallMatrix.CallMatrixEntry) {
-        BaseCallMatrix.CallMatrixEntry cm = (BaseCallMatrix.CallMatrixEntry) object;
-        return cm.myIndex == myIndex && cm.myRel == myRel;
-      }
-      return false;
-    }
-  }
 }
@@ -14,6 +14,15 @@ public class CompositeCallMatrix<T> extends BaseCallMatrix<T> {
     myM2 = m2;
   }
 
+  /**
+   * @param product the product of {@code m1} and {@code m2}; its cells are copied.
+   */
+  CompositeCallMatrix(BaseCallMatrix<T> m1, BaseCallMatrix<T> m2, BaseCallMatrix<T> product) {
+    super(product);
+    myM1 = m1;
+    myM2 = m2;
+  }
+
   @Override
   public Doc getMatrixLabel(PrettyPrinterConfig ppConfig) {
     return DocFactory.vList(myM1.getMatrixLabel(ppConfig), myM2.getMatrixLabel(ppConfig));
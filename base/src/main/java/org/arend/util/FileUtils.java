@@ -16,7 +16,9 @@ import java.util.List;
 public class FileUtils {
   public static final String EXTENSION = ".ard";
   public static final String SERIALIZED_EXTENSION = ".arc";
+  public static final String VERIFIED_HASHES_EXTENSION = ".arcv";
   public static final String LIBRARY_CONFIG_FILE = "arend.yaml";
+  public static final String BINARY_CONTAINER_FILE = "library.arcs";
 
   private static Path baseFile(Path root, ModulePath modulePath) {
     return root.resolve(Paths.get("", modulePath.toArray()));
@@ -32,6 +34,11 @@ public class FileUtils {
     return base.resolveSibling(base.getFileName() + FileUtils.SERIALIZED_EXTENSION);
   }
 
+  public static Path verifiedHashesFile(Path root, ModulePath modulePath) {
+    Path base = baseFile(root, modulePath);
+    return base.resolveSibling(base.getFileName() + FileUtils.VERIFIED_HASHES_EXTENSION);
+  }
+
   private static final String MODULE_NAME_START_SYMBOL_REGEX = "a-zA-Z_"; // "~!@#$%^&*\\-+=<>?/|:;\\[\\]a-zA-Z_"
   private static final String MODULE_NAME_REGEX = "[" + MODULE_NAME_START_SYMBOL_REGEX + "][" + MODULE_NAME_START_SYMBOL_REGEX + "0-9']*";
   private static final String LIBRARY_NAME_REGEX = "[" + MODULE_NAME_START_SYMBOL_REGEX + "][" + MODULE_NAME_START_SYMBOL_REGEX + "0-9\\-.']*";
@@ -0,0 +1,17 @@
+package org.arend.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class Hashing {
+  private static final String ALGORITHM = "SHA-256";
+
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // Every implementation of the Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
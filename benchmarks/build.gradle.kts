@@ -0,0 +1,30 @@
+plugins {
+    java
+    id("me.champeau.gradle.jmh") version "0.5.0"
+}
+
+dependencies {
+    val annotationsVersion: String by rootProject.ext
+    val protobufVersion: String by rootProject.ext
+    val antlrVersion: String by rootProject.ext
+    "jmh"("org.jetbrains:annotations:$annotationsVersion")
+    "jmh"("com.google.protobuf:protobuf-java:$protobufVersion")
+    "jmh"("org.antlr:antlr4-runtime:$antlrVersion")
+    "jmh"(project(":api"))
+    "jmh"(project(":base"))
+    "jmh"(project(":cli"))
+    "jmh"(project(":parser"))
+    "jmh"(project(":proto"))
+}
+
+sourceSets {
+    named("jmh") {
+        resources.srcDir(rootProject.file("lib"))
+    }
+}
+
+jmh {
+    jmhVersion = "1.23"
+    resultFormat = "JSON"
+    resultsFile = buildDir.resolve("reports/jmh/results.json")
+}
@@ -0,0 +1,151 @@
+package org.arend.benchmarks;
+
+import org.arend.core.definition.Definition;
+import org.arend.error.ListErrorReporter;
+import org.arend.ext.error.GeneralError;
+import org.arend.ext.module.ModulePath;
+import org.arend.extImpl.DefinitionRequester;
+import org.arend.extImpl.definitionContributor.EmptyDefinitionContributor;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.frontend.source.StreamRawSource;
+import org.arend.library.LibraryManager;
+import org.arend.naming.reference.Referable;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.naming.scope.Scope;
+import org.arend.prelude.Prelude;
+import org.arend.prelude.PreludeTypecheckingLibrary;
+import org.arend.source.BinarySource;
+import org.arend.source.Source;
+import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Loads prelude and provides methods to load and typecheck generated libraries.
+ * Prelude is read from the resources of the benchmarks.
+ */
+public class BenchmarkEnvironment {
+  private static class ResourcePreludeLibrary extends PreludeTypecheckingLibrary {
+    ResourcePreludeLibrary(TypecheckerState typecheckerState) {
+      super(typecheckerState);
+    }
+
+    @Nullable
+    @Override
+    public Source getRawSource(ModulePath modulePath) {
+      return modulePath.equals(Prelude.MODULE_PATH) ? new StreamRawSource(modulePath) {
+        @NotNull
+        @Override
+        protected InputStream getInputStream() throws IOException {
+          InputStream stream = BenchmarkEnvironment.class.getResourceAsStream("/Prelude.ard");
+          if (stream == null) {
+            throw new IOException("Cannot find prelude");
+          }
+          return stream;
+        }
+
+        @Override
+        public long getTimeStamp() {
+          return 0;
+        }
+
+        @Override
+        public boolean isAvailable() {
+          return true;
+        }
+      } : null;
+    }
+
+    @Nullable
+    @Override
+    public BinarySource getBinarySource(ModulePath modulePath) {
+      return null;
+    }
+  }
+
+  private final TypecheckerState myTypecheckerState = new SimpleTypecheckerState();
+  private final ListErrorReporter myErrorReporter = new ListErrorReporter();
+  private final LibraryManager myLibraryManager;
+
+  public BenchmarkEnvironment() {
+    myLibraryManager = new LibraryManager((lib, name) -> null, new InstanceProviderSet(), myErrorReporter, myErrorReporter, EmptyDefinitionContributor.INSTANCE, DefinitionRequester.INSTANCE);
+    PreludeTypecheckingLibrary preludeLibrary = new ResourcePreludeLibrary(myTypecheckerState);
+    myLibraryManager.loadLibrary(preludeLibrary, null);
+    new Prelude.PreludeTypechecking(new InstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, PositionComparator.INSTANCE).typecheckLibrary(preludeLibrary);
+    checkErrors();
+  }
+
+  public TypecheckerState getTypecheckerState() {
+    return myTypecheckerState;
+  }
+
+  public LibraryManager getLibraryManager() {
+    return myLibraryManager;
+  }
+
+  public TypecheckingOrderingListener newTypechecking() {
+    return new TypecheckingOrderingListener(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, myErrorReporter, PositionComparator.INSTANCE);
+  }
+
+  public GeneratedLibrary newLibrary(String name) {
+    return new GeneratedLibrary(name, myTypecheckerState);
+  }
+
+  public void loadLibrary(GeneratedLibrary library) {
+    myLibraryManager.loadLibrary(library, null);
+    checkErrors();
+  }
+
+  public void typecheckLibrary(GeneratedLibrary library) {
+    typecheckLibrary(library, newTypechecking());
+  }
+
+  public void typecheckLibrary(GeneratedLibrary library, TypecheckingOrderingListener typechecking) {
+    typechecking.typecheckLibrary(library);
+    checkErrors();
+  }
+
+  public void unloadLibrary(GeneratedLibrary library) {
+    myLibraryManager.unloadLibrary(library);
+  }
+
+  /**
+   * Loads and typechecks a library consisting of a single module.
+   */
+  public GeneratedLibrary typecheckModule(String name, String text) {
+    GeneratedLibrary library = newLibrary(name);
+    library.addModule(new ModulePath(name), text);
+    loadLibrary(library);
+    typecheckLibrary(library);
+    return library;
+  }
+
+  public Definition getDefinition(GeneratedLibrary library, String module, String path) {
+    Scope scope = library.getModuleScopeProvider().forModule(new ModulePath(module));
+    Referable referable = scope == null ? null : Scope.Utils.resolveName(scope, Arrays.asList(path.split("\\.")));
+    Definition definition = referable instanceof TCReferable ? myTypecheckerState.getTypechecked((TCReferable) referable) : null;
+    if (definition == null) {
+      throw new IllegalStateException("Cannot find definition " + path + " in module " + module);
+    }
+    return definition;
+  }
+
+  private void checkErrors() {
+    if (!myErrorReporter.getErrorList().isEmpty()) {
+      StringBuilder builder = new StringBuilder("Unexpected errors:");
+      for (GeneralError error : myErrorReporter.getErrorList()) {
+        builder.append('\n').append(error);
+      }
+      throw new IllegalStateException(builder.toString());
+    }
+  }
+}
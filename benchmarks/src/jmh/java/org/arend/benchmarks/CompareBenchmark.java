@@ -0,0 +1,75 @@
+package org.arend.benchmarks;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.CompareVisitor;
+import org.arend.ext.core.ops.CMP;
+import org.arend.typechecking.implicitargs.equations.DummyEquations;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CompareVisitor#compare} on syntactically equal terms and on terms that are equal only after evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompareBenchmark {
+  private static final int DEPTH = 200;
+
+  private static String iterate(String name) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("\\func ").append(name).append(" => \\lam (f : Nat -> Nat) (x : Nat) =>");
+    for (int i = 0; i < DEPTH; i++) {
+      builder.append(" f (");
+    }
+    builder.append("x");
+    for (int i = 0; i < DEPTH; i++) {
+      builder.append(")");
+    }
+    builder.append("\n");
+    return builder.toString();
+  }
+
+  private static String moduleText() {
+    return NormalizeBenchmark.moduleText() +
+      iterate("iter1") +
+      iterate("iter2") +
+      "\\func type => (Nat -> Nat) -> Nat -> Nat\n" +
+      "\\func value1 => fib 12\n" +
+      "\\func value2 => 144\n";
+  }
+
+  private Expression myIter1;
+  private Expression myIter2;
+  private Expression myIterType;
+  private Expression myValue1;
+  private Expression myValue2;
+  private Expression myValueType;
+
+  @Setup
+  public void setup() {
+    BenchmarkEnvironment environment = new BenchmarkEnvironment();
+    GeneratedLibrary library = environment.typecheckModule("Compare", moduleText());
+    myIter1 = NormalizeBenchmark.getBody(environment, library, "iter1");
+    myIter2 = NormalizeBenchmark.getBody(environment, library, "iter2");
+    myIterType = NormalizeBenchmark.getBody(environment, library, "type");
+    myValue1 = NormalizeBenchmark.getBody(environment, library, "value1");
+    myValue2 = NormalizeBenchmark.getBody(environment, library, "value2");
+    myValueType = ((FunctionDefinition) environment.getDefinition(library, library.getName(), "value2")).getResultType();
+  }
+
+  @Benchmark
+  public boolean compareSyntactic() {
+    return CompareVisitor.compare(DummyEquations.getInstance(), CMP.EQ, myIter1, myIter2, myIterType, null);
+  }
+
+  @Benchmark
+  public boolean compareEvaluated() {
+    return CompareVisitor.compare(DummyEquations.getInstance(), CMP.EQ, myValue1, myValue2, myValueType, null);
+  }
+}
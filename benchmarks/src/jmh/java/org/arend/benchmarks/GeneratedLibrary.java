@@ -0,0 +1,84 @@
+package org.arend.benchmarks;
+
+import org.arend.ext.error.ErrorReporter;
+import org.arend.ext.module.ModulePath;
+import org.arend.frontend.source.StreamRawSource;
+import org.arend.library.LibraryDependency;
+import org.arend.library.LibraryHeader;
+import org.arend.library.UnmodifiableSourceLibrary;
+import org.arend.source.BinarySource;
+import org.arend.source.Source;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.util.Range;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A library whose modules are given as strings.
+ */
+public class GeneratedLibrary extends UnmodifiableSourceLibrary {
+  private static class TextRawSource extends StreamRawSource {
+    private final String myText;
+
+    TextRawSource(ModulePath modulePath, String text) {
+      super(modulePath);
+      myText = text;
+    }
+
+    @NotNull
+    @Override
+    protected InputStream getInputStream() {
+      return new ByteArrayInputStream(myText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public long getTimeStamp() {
+      return 0;
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+  }
+
+  private final Map<ModulePath, String> myModules = new LinkedHashMap<>();
+
+  public GeneratedLibrary(String name, TypecheckerState typecheckerState) {
+    super(name, typecheckerState);
+  }
+
+  public void addModule(ModulePath module, String text) {
+    myModules.put(module, text);
+  }
+
+  @Nullable
+  @Override
+  public Source getRawSource(ModulePath modulePath) {
+    String text = myModules.get(modulePath);
+    return text == null ? null : new TextRawSource(modulePath, text);
+  }
+
+  @Nullable
+  @Override
+  public BinarySource getBinarySource(ModulePath modulePath) {
+    return null;
+  }
+
+  @Nullable
+  @Override
+  protected LibraryHeader loadHeader(ErrorReporter errorReporter) {
+    return new LibraryHeader(new ArrayList<>(myModules.keySet()), Collections.emptyList(), Range.unbound(), null, null);
+  }
+
+  @NotNull
+  @Override
+  public List<? extends LibraryDependency> getDependencies() {
+    return Collections.emptyList();
+  }
+}
@@ -0,0 +1,59 @@
+package org.arend.benchmarks;
+
+import org.arend.core.context.binding.LevelVariable;
+import org.arend.core.context.binding.inference.InferenceLevelVariable;
+import org.arend.core.sort.Level;
+import org.arend.core.subst.LevelSubstitution;
+import org.arend.ext.core.ops.CMP;
+import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.implicitargs.equations.TwoStageEquations;
+import org.arend.typechecking.visitor.CheckTypeVisitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures solving of level equations in {@link TwoStageEquations}.
+ * Variables form a chain {@code ?v_i <= ?v_{i+1} + 1} with constant lower bounds and back edges that make the graph strongly connected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelEquationsBenchmark {
+  @Param({"100", "1000"})
+  public int size;
+
+  private CheckTypeVisitor myVisitor;
+
+  @Setup
+  public void setup() {
+    myVisitor = new CheckTypeVisitor(new SimpleTypecheckerState(), error -> { throw new IllegalStateException(error.toString()); }, null);
+  }
+
+  @Benchmark
+  public LevelSubstitution solve() {
+    TwoStageEquations equations = new TwoStageEquations(myVisitor);
+    List<InferenceLevelVariable> variables = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      InferenceLevelVariable variable = new InferenceLevelVariable(LevelVariable.LvlType.PLVL, false, null);
+      equations.addVariable(variable);
+      variables.add(variable);
+    }
+    for (int i = 0; i < size; i++) {
+      Level level = new Level(variables.get(i));
+      if (i + 1 < size) {
+        equations.addEquation(level, new Level(variables.get(i + 1), 1), CMP.LE, null);
+      }
+      if (i % 10 == 0) {
+        equations.addEquation(new Level(i % 7), level, CMP.LE, null);
+        equations.addEquation(level, new Level(variables.get(i / 2), size), CMP.LE, null);
+      }
+    }
+    return equations.solveLevels(null);
+  }
+}
@@ -0,0 +1,126 @@
+package org.arend.benchmarks;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.EnvironmentMachine;
+import org.arend.ext.core.ops.NormalizationMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link org.arend.core.expr.visitor.NormalizeVisitor} on Nat arithmetic, recursive functions, and deep elim trees.
+ * The {@code engine} parameter selects whether calls are evaluated by substitution or by {@link EnvironmentMachine}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizeBenchmark {
+  private static final int SELECT_CLAUSES = 32;
+  private static final int UNUSED_SUMMANDS = 64;
+  private static final int RECURSION_DEPTH = 200;
+
+  @Param({"substitution", "environment"})
+  public String engine;
+
+  static String moduleText() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(
+      "\\func fib (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | 1 => 1\n" +
+      "  | suc (suc n) => fib n Nat.+ fib (suc n)\n" +
+      "\\func fact (n : Nat) : Nat\n" +
+      "  | 0 => 1\n" +
+      "  | suc n => suc n Nat.* fact n\n" +
+      "\\func arith => fib 15 Nat.+ fact 10 Nat.* 3\n" +
+      "\\func whnfArith => suc (fib 15)\n" +
+      "\\data Tree | leaf | node Tree Tree\n" +
+      "\\func build (n : Nat) : Tree\n" +
+      "  | 0 => leaf\n" +
+      "  | suc n => node (build n) (build n)\n" +
+      "\\func size (t : Tree) : Nat\n" +
+      "  | leaf => 1\n" +
+      "  | node l r => size l Nat.+ size r\n" +
+      "\\func tree => size (build 10)\n" +
+      "\\func select (n : Nat) : Nat\n");
+    for (int i = 0; i < SELECT_CLAUSES; i++) {
+      builder.append("  | ").append(i).append(" => ").append(i * i).append("\n");
+    }
+    builder.append("  | suc n => select n\n");
+    builder.append("\\func elimTree =>");
+    for (int i = 0; i < SELECT_CLAUSES * 2; i++) {
+      builder.append(i == 0 ? " " : " Nat.+ ").append("select ").append(i);
+    }
+    builder.append("\n");
+    // The second branch is never taken, but substitution copies it on every recursive call
+    builder.append(
+      "\\func count (n : Nat) (t : Tree) : Nat\n" +
+      "  | 0, _ => 0\n" +
+      "  | suc n, t => \\case t \\with {\n" +
+      "    | leaf => count n t\n" +
+      "    | node l r =>");
+    for (int i = 0; i < UNUSED_SUMMANDS; i++) {
+      builder.append(i == 0 ? " " : " Nat.+ ").append("size ").append(i % 2 == 0 ? "l" : "r");
+    }
+    builder.append("\n  }\n");
+    builder.append("\\func deepRecursion => count ").append(RECURSION_DEPTH).append(" leaf\n");
+    return builder.toString();
+  }
+
+  private Expression myArith;
+  private Expression myWhnfArith;
+  private Expression myTree;
+  private Expression myElimTree;
+  private Expression myDeepRecursion;
+  private boolean myEnvironmentMachine;
+
+  @Setup
+  public void setup() {
+    myEnvironmentMachine = engine.equals("environment");
+    BenchmarkEnvironment environment = new BenchmarkEnvironment();
+    GeneratedLibrary library = environment.typecheckModule("Normalize", moduleText());
+    myArith = getBody(environment, library, "arith");
+    myWhnfArith = getBody(environment, library, "whnfArith");
+    myTree = getBody(environment, library, "tree");
+    myElimTree = getBody(environment, library, "elimTree");
+    myDeepRecursion = getBody(environment, library, "deepRecursion");
+  }
+
+  static Expression getBody(BenchmarkEnvironment environment, GeneratedLibrary library, String name) {
+    FunctionDefinition definition = (FunctionDefinition) environment.getDefinition(library, library.getName(), name);
+    return (Expression) definition.getActualBody();
+  }
+
+  private Expression normalize(Expression expr, NormalizationMode mode) {
+    return EnvironmentMachine.run(myEnvironmentMachine, () -> expr.normalize(mode));
+  }
+
+  @Benchmark
+  public Expression arithWHNF() {
+    return normalize(myWhnfArith, NormalizationMode.WHNF);
+  }
+
+  @Benchmark
+  public Expression deepRecursionWHNF() {
+    return normalize(myDeepRecursion, NormalizationMode.WHNF);
+  }
+
+  @Benchmark
+  public Expression arithNF() {
+    return normalize(myArith, NormalizationMode.NF);
+  }
+
+  @Benchmark
+  public Expression treeNF() {
+    return normalize(myTree, NormalizationMode.NF);
+  }
+
+  @Benchmark
+  public Expression elimTreeNF() {
+    return normalize(myElimTree, NormalizationMode.NF);
+  }
+}
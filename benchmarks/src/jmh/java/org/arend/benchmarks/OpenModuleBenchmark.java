@@ -0,0 +1,67 @@
+package org.arend.benchmarks;
+
+import org.arend.ext.module.ModulePath;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading and typechecking of a module with many {@code \open} commands.
+ * Module {@code Opens} defines {@code M_i} for every {@code i} and opens all of them, some with renamings and hidden names;
+ * every definition refers to names from opened modules and has a {@code \where} block with its own {@code \open}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenModuleBenchmark {
+  @Param({"200", "800"})
+  public int modules;
+
+  private BenchmarkEnvironment myEnvironment;
+  private String myText;
+
+  static String moduleText(int modules) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < modules; i++) {
+      builder.append("\\module M_").append(i).append(" \\where {\n")
+        .append("  \\func f_").append(i).append(" => ").append(i % 7).append("\n")
+        .append("  \\func h_").append(i).append(" => f_").append(i).append("\n")
+        .append("}\n");
+    }
+    for (int i = 0; i < modules; i++) {
+      builder.append("\\open M_").append(i);
+      if (i % 3 == 0) {
+        builder.append(" \\using (f_").append(i).append(" \\as g_").append(i).append(") \\hiding (h_").append(i).append(")");
+      }
+      builder.append("\n");
+    }
+    for (int i = 0; i < modules; i++) {
+      // Renamed functions are available only under their new names
+      int j = i * 7 % modules;
+      builder.append("\\func k_").append(i).append(" => ").append(j % 3 == 0 ? "g_" : "f_").append(j).append(" Nat.+ g_").append(i / 3 * 3).append(" Nat.+ l_").append(i).append("\n")
+        .append("  \\where {\n")
+        .append("    \\open M_").append((i + 1) % modules).append("\n")
+        .append("    \\func l_").append(i).append(" => h_").append((i + 1) % modules).append("\n")
+        .append("  }\n");
+    }
+    return builder.toString();
+  }
+
+  @Setup(Level.Trial)
+  public void setupEnvironment() {
+    myEnvironment = new BenchmarkEnvironment();
+    myText = moduleText(modules);
+  }
+
+  @Benchmark
+  public void loadAndTypecheck() {
+    GeneratedLibrary library = myEnvironment.newLibrary("opens");
+    library.addModule(new ModulePath("Opens"), myText);
+    myEnvironment.loadLibrary(library);
+    myEnvironment.typecheckLibrary(library);
+    myEnvironment.unloadLibrary(library);
+  }
+}
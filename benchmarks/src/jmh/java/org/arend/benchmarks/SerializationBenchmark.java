@@ -0,0 +1,74 @@
+package org.arend.benchmarks;
+
+import com.google.protobuf.CodedInputStream;
+import org.arend.error.DummyErrorReporter;
+import org.arend.ext.module.ModulePath;
+import org.arend.module.serialization.DeserializationException;
+import org.arend.module.serialization.ModuleDeserialization;
+import org.arend.module.serialization.ModuleProtos;
+import org.arend.module.serialization.ModuleSerialization;
+import org.arend.module.scopeprovider.ModuleScopeProvider;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.prelude.Prelude;
+import org.arend.term.group.Group;
+import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link org.arend.module.serialization.ExpressionSerialization} and {@link org.arend.module.serialization.ExpressionDeserialization}
+ * through serialization and deserialization of a whole module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+  private static final ModulePath MODULE_PATH = new ModulePath("Serialization");
+
+  @Param({"false", "true"})
+  public boolean lazyBodies;
+
+  private TypecheckerState myTypecheckerState;
+  private Group myGroup;
+  private ModuleScopeProvider myModuleScopeProvider;
+  private byte[] myBytes;
+
+  @Setup
+  public void setup() {
+    BenchmarkEnvironment environment = new BenchmarkEnvironment();
+    GeneratedLibrary library = environment.newLibrary(MODULE_PATH.toString());
+    library.addModule(MODULE_PATH, NormalizeBenchmark.moduleText() + TypecheckLibraryBenchmark.moduleText(0, 20));
+    environment.loadLibrary(library);
+    environment.typecheckLibrary(library);
+    myTypecheckerState = environment.getTypecheckerState();
+    myGroup = library.getModuleGroup(MODULE_PATH);
+    myModuleScopeProvider = environment.getLibraryManager().getAvailableModuleScopeProvider(library);
+    myBytes = serialize();
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return new ModuleSerialization(myTypecheckerState, DummyErrorReporter.INSTANCE).writeModule(myGroup, MODULE_PATH, IdReferableConverter.INSTANCE).toByteArray();
+  }
+
+  @Benchmark
+  public TypecheckerState deserialize() throws IOException, DeserializationException {
+    CodedInputStream codedInputStream = CodedInputStream.newInstance(myBytes);
+    codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
+    ModuleProtos.Module moduleProto = ModuleProtos.Module.parseFrom(codedInputStream);
+
+    TypecheckerState state = new SimpleTypecheckerState();
+    Prelude.fillInTypecheckerState(state);
+    ModuleDeserialization deserialization = new ModuleDeserialization(moduleProto, state, IdReferableConverter.INSTANCE);
+    deserialization.readDefinitions(myGroup);
+    deserialization.readModule(myModuleScopeProvider, DummyDependencyListener.INSTANCE, lazyBodies ? DummyErrorReporter.INSTANCE : null);
+    return state;
+  }
+}
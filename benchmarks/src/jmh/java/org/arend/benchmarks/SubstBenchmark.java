@@ -0,0 +1,52 @@
+package org.arend.benchmarks;
+
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.LamExpression;
+import org.arend.core.subst.ExprSubstitution;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link org.arend.core.expr.visitor.SubstVisitor} on a large lambda body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubstBenchmark {
+  private static final int DEPTH = 100;
+
+  private static String moduleText() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("\\func iter => \\lam (f : Nat -> Nat -> Nat) (x : Nat) =>");
+    for (int i = 0; i < DEPTH; i++) {
+      builder.append(" f x (");
+    }
+    builder.append("x");
+    for (int i = 0; i < DEPTH; i++) {
+      builder.append(")");
+    }
+    builder.append("\n\\func plus => \\lam (n m : Nat) => n Nat.+ m\n");
+    return builder.toString();
+  }
+
+  private Expression myBody;
+  private ExprSubstitution mySubstitution;
+
+  @Setup
+  public void setup() {
+    BenchmarkEnvironment environment = new BenchmarkEnvironment();
+    GeneratedLibrary library = environment.typecheckModule("Subst", moduleText());
+    LamExpression iter = (LamExpression) NormalizeBenchmark.getBody(environment, library, "iter");
+    myBody = iter.getBody();
+    mySubstitution = new ExprSubstitution(iter.getParameters(), NormalizeBenchmark.getBody(environment, library, "plus"));
+  }
+
+  @Benchmark
+  public Expression subst() {
+    return myBody.subst(mySubstitution);
+  }
+}
@@ -0,0 +1,61 @@
+package org.arend.benchmarks;
+
+import org.arend.ext.module.ModulePath;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures typechecking of a large group of mutually recursive functions, which is dominated by the termination check.
+ * Every function {@code f_i} calls {@code f_(i+1)} and {@code f_(i+2)} and permutes its last arguments,
+ * so that the closure of the call graph contains many different call matrices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerminationBenchmark {
+  @Param({"8", "16"})
+  public int functions;
+
+  private BenchmarkEnvironment myEnvironment;
+  private GeneratedLibrary myLibrary;
+
+  static String moduleText(int functions) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < functions; i++) {
+      String next = "f" + (i + 1) % functions;
+      String next2 = "f" + (i + 2) % functions;
+      builder.append("\\func f").append(i).append(" (x y a b c : Nat) : Nat\n")
+        .append("  | 0, _, a, _, _ => a\n")
+        .append("  | suc x, 0, a, b, c => ").append(next).append(" x x b c a\n")
+        .append("  | suc x, suc y, a, b, c => ").append(next2).append(" (suc x) y b a c\n");
+    }
+    return builder.toString();
+  }
+
+  @Setup(Level.Trial)
+  public void setupEnvironment() {
+    myEnvironment = new BenchmarkEnvironment();
+  }
+
+  @Setup(Level.Invocation)
+  public void loadLibrary() {
+    myLibrary = myEnvironment.newLibrary("termination");
+    myLibrary.addModule(new ModulePath("Termination"), moduleText(functions));
+    myEnvironment.loadLibrary(myLibrary);
+  }
+
+  @TearDown(Level.Invocation)
+  public void unloadLibrary() {
+    myEnvironment.unloadLibrary(myLibrary);
+    myLibrary = null;
+  }
+
+  @Benchmark
+  public void typecheck() {
+    myEnvironment.typecheckLibrary(myLibrary);
+  }
+}
@@ -0,0 +1,84 @@
+package org.arend.benchmarks;
+
+import org.arend.ext.module.ModulePath;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TypecheckingOrderingListener#typecheckLibrary} on a generated library.
+ * Module {@code M_i} imports {@code M_(i-1)}, so the library has both independent and dependent definitions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypecheckLibraryBenchmark {
+  @Param({"10"})
+  public int modules;
+
+  @Param({"20"})
+  public int definitions;
+
+  @Param({"1", "4"})
+  public int threads;
+
+  private BenchmarkEnvironment myEnvironment;
+  private GeneratedLibrary myLibrary;
+
+  static String moduleText(int index, int definitions) {
+    String m = String.valueOf(index);
+    StringBuilder builder = new StringBuilder();
+    if (index > 0) {
+      builder.append("\\import M_").append(index - 1).append("\n");
+    }
+    builder.append(
+      "\\data L" + m + " (A : \\Type) | nil" + m + " | cons" + m + " A (L" + m + " A)\n" +
+      "\\func map" + m + " {A B : \\Type} (f : A -> B) (xs : L" + m + " A) : L" + m + " B \\elim xs\n" +
+      "  | nil" + m + " => nil" + m + "\n" +
+      "  | cons" + m + " x xs => cons" + m + " (f x) (map" + m + " f xs)\n" +
+      "\\func len" + m + " {A : \\Type} (xs : L" + m + " A) : Nat \\elim xs\n" +
+      "  | nil" + m + " => 0\n" +
+      "  | cons" + m + " _ xs => suc (len" + m + " xs)\n" +
+      "\\class Pointed" + m + " (E : \\Set) | pt" + m + " : E\n" +
+      "\\instance natPointed" + m + " : Pointed" + m + " Nat | pt" + m + " => " + m + "\n");
+    for (int j = 0; j < definitions; j++) {
+      String f = "f" + m + "_" + j;
+      String prev = index > 0 ? "(f" + (index - 1) + "_" + j + " 1)" : String.valueOf(j);
+      builder.append("\\func ").append(f).append(" (n : Nat) : Nat => len").append(m).append(" (map").append(m)
+        .append(" (\\lam x => x Nat.+ ").append(j).append(") (cons").append(m).append(" n (cons").append(m).append(" ").append(prev).append(" (cons").append(m).append(" pt").append(m).append(" nil").append(m).append("))))\n");
+      builder.append("\\func p").append(m).append("_").append(j).append(" : ").append(f).append(" 0 = 3 => idp\n");
+    }
+    return builder.toString();
+  }
+
+  @Setup(Level.Trial)
+  public void setupEnvironment() {
+    myEnvironment = new BenchmarkEnvironment();
+  }
+
+  @Setup(Level.Invocation)
+  public void loadLibrary() {
+    myLibrary = myEnvironment.newLibrary("generated");
+    for (int i = 0; i < modules; i++) {
+      myLibrary.addModule(new ModulePath("M_" + i), moduleText(i, definitions));
+    }
+    myEnvironment.loadLibrary(myLibrary);
+  }
+
+  @TearDown(Level.Invocation)
+  public void unloadLibrary() {
+    myEnvironment.unloadLibrary(myLibrary);
+    myLibrary = null;
+  }
+
+  @Benchmark
+  public void typecheckLibrary() {
+    TypecheckingOrderingListener typechecking = myEnvironment.newTypechecking();
+    typechecking.setNumberOfThreads(threads);
+    myEnvironment.typecheckLibrary(myLibrary, typechecking);
+  }
+}
@@ -0,0 +1,114 @@
+package org.arend.benchmarks;
+
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.ext.module.ModulePath;
+import org.arend.ext.reference.Precedence;
+import org.arend.naming.reference.GlobalReferable;
+import org.arend.naming.reference.LocatedReferableImpl;
+import org.arend.naming.reference.TCReferable;
+import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.TypecheckerState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SimpleTypecheckerState} with a state guarded by a single lock under contention.
+ * Each thread mostly reads definitions and sometimes rewrites or resets them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypecheckerStateBenchmark {
+  private static class LockingTypecheckerState implements TypecheckerState {
+    private final Map<GlobalReferable, Definition> myTypechecked = new HashMap<>();
+
+    @Override
+    public synchronized Definition record(TCReferable def, Definition res) {
+      return myTypechecked.putIfAbsent(def, res);
+    }
+
+    @Override
+    public synchronized void rewrite(TCReferable def, Definition res) {
+      myTypechecked.put(def, res);
+    }
+
+    @Override
+    public synchronized Definition getTypechecked(TCReferable def) {
+      return myTypechecked.get(def);
+    }
+
+    @Override
+    public synchronized Definition reset(TCReferable def) {
+      return myTypechecked.remove(def);
+    }
+
+    @Override
+    public synchronized void reset() {
+      myTypechecked.clear();
+    }
+  }
+
+  @Param({"simple", "locking"})
+  public String implementation;
+
+  @Param({"10000"})
+  public int size;
+
+  private TypecheckerState myState;
+  private TCReferable[] myReferables;
+  private Definition[] myDefinitions;
+
+  @Setup
+  public void setup() {
+    myState = implementation.equals("simple") ? new SimpleTypecheckerState() : new LockingTypecheckerState();
+    ModulePath module = new ModulePath("Bench");
+    myReferables = new TCReferable[size];
+    myDefinitions = new Definition[size];
+    for (int i = 0; i < size; i++) {
+      myReferables[i] = new LocatedReferableImpl(Precedence.DEFAULT, "f" + i, module, GlobalReferable.Kind.TYPECHECKABLE);
+      myDefinitions[i] = new FunctionDefinition(myReferables[i]);
+      myState.record(myReferables[i], myDefinitions[i]);
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Definition read() {
+    return myState.getTypechecked(myReferables[ThreadLocalRandom.current().nextInt(size)]);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Definition mixed() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int index = random.nextInt(size);
+    int op = random.nextInt(100);
+    if (op < 90) {
+      return myState.getTypechecked(myReferables[index]);
+    }
+    if (op < 95) {
+      myState.rewrite(myReferables[index], myDefinitions[index]);
+      return null;
+    }
+    Definition definition = myState.reset(myReferables[index]);
+    myState.record(myReferables[index], myDefinitions[index]);
+    return definition;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void bulkReset() {
+    List<TCReferable> referables = Arrays.asList(myReferables);
+    myState.reset(referables);
+    for (int i = 0; i < size; i++) {
+      myState.record(myReferables[i], myDefinitions[i]);
+    }
+  }
+}
@@ -2,6 +2,8 @@ package org.arend.frontend;
 
 import org.apache.commons.cli.*;
 import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.visitor.WhnfCache;
 import org.arend.error.ListErrorReporter;
 import org.arend.ext.error.GeneralError;
 import org.arend.ext.module.ModulePath;
@@ -10,6 +12,7 @@ import org.arend.ext.prettyprinting.PrettyPrinterFlag;
 import org.arend.extImpl.DefinitionRequester;
 import org.arend.extImpl.definitionContributor.EmptyDefinitionContributor;
 import org.arend.frontend.library.FileSourceLibrary;
+import org.arend.frontend.library.LibraryUpdater;
 import org.arend.library.*;
 import org.arend.library.error.LibraryError;
 import org.arend.naming.reference.LocatedReferable;
@@ -20,11 +23,18 @@ import org.arend.prelude.PreludeResourceLibrary;
 import org.arend.term.group.Group;
 import org.arend.typechecking.SimpleTypecheckerState;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.TypecheckingListener;
+import org.arend.typechecking.computation.TypecheckingMetrics;
+import org.arend.typechecking.computation.UnfoldingProfiler;
 import org.arend.typechecking.doubleChecker.CoreModuleChecker;
 import org.arend.typechecking.error.local.GoalError;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
 import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
 import org.arend.util.FileUtils;
+import org.arend.util.Pair;
 import org.arend.util.Range;
 import org.jetbrains.annotations.NotNull;
 
@@ -36,6 +46,11 @@ import java.nio.file.Paths;
 import java.util.*;
 
 public abstract class BaseCliFrontend {
+  // Changes that follow each other within this number of milliseconds are processed together
+  private static final long WATCH_DELAY = 200;
+  // The number of milliseconds the JVM waits for the watching thread to stop on shutdown
+  private static final long SHUTDOWN_TIMEOUT = 5000;
+
   // Typechecking
   private final TypecheckerState myTypecheckerState = new SimpleTypecheckerState();
   private final ListErrorReporter myErrorReporter = new ListErrorReporter();
@@ -44,6 +59,7 @@ public abstract class BaseCliFrontend {
   // Libraries
   private final FileLibraryResolver myLibraryResolver = new FileLibraryResolver(new ArrayList<>(), myTypecheckerState, System.err::println);
   private final LibraryManager myLibraryManager = new MyLibraryManager();
+  private volatile Thread myWatchingThread;
 
   private static String timeToString(long time) {
     if (time < 10000) {
@@ -57,6 +73,35 @@ public abstract class BaseCliFrontend {
     return (seconds / 60) + "m" + (seconds % 60) + "s";
   }
 
+  private static void reportUnfoldings(UnfoldingProfiler profiler) {
+    List<Pair<FunctionDefinition, Long>> unfoldings = profiler.getMostUnfolded(20);
+    if (!unfoldings.isEmpty()) {
+      System.out.println("Most unfolded functions:");
+      for (Pair<FunctionDefinition, Long> pair : unfoldings) {
+        System.out.println("  " + pair.proj1.getReferable().getRefLongName() + ": " + pair.proj2);
+      }
+    }
+    profiler.clear();
+  }
+
+  private static void reportWhnfCacheCounters(WhnfCache cache) {
+    int hits = 0;
+    int misses = 0;
+    List<Map.Entry<TCReferable, WhnfCache.Counters>> entries = new ArrayList<>(cache.getCounters().entrySet());
+    for (Map.Entry<TCReferable, WhnfCache.Counters> entry : entries) {
+      hits += entry.getValue().getHits();
+      misses += entry.getValue().getMisses();
+    }
+    System.out.println("WHNF cache: " + hits + " hits, " + misses + " misses");
+
+    entries.sort((e1, e2) -> Integer.compare(e2.getValue().getHits(), e1.getValue().getHits()));
+    for (int i = 0; i < entries.size() && i < 10 && entries.get(i).getValue().getHits() > 0; i++) {
+      WhnfCache.Counters counters = entries.get(i).getValue();
+      System.out.println("  " + entries.get(i).getKey().getRefLongName() + ": " + counters.getHits() + " hits, " + counters.getMisses() + " misses");
+    }
+    cache.clearCounters();
+  }
+
   private class MyLibraryManager extends LibraryManager {
     private final Stack<Long> times = new Stack<>();
 
@@ -89,8 +134,12 @@ public abstract class BaseCliFrontend {
 
 
   private class MyTypechecking extends TypecheckingOrderingListener {
-    MyTypechecking() {
-      super(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, myErrorReporter, PositionComparator.INSTANCE);
+    MyTypechecking(DependencyListener dependencyListener) {
+      super(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, error -> {
+        synchronized (myErrorReporter) {
+          myErrorReporter.report(error);
+        }
+      }, dependencyListener, PositionComparator.INSTANCE, TypecheckingListener.DEFAULT);
     }
 
     @Override
@@ -116,6 +165,16 @@ public abstract class BaseCliFrontend {
       cmdOptions.addOption(Option.builder("m").longOpt("extension-main").hasArg().argName("class").desc("main extension class").build());
       cmdOptions.addOption(Option.builder().longOpt("recompile").desc("recompile files").build());
       cmdOptions.addOption(Option.builder().longOpt("double-check").desc("double check correctness of the result").build());
+      cmdOptions.addOption(Option.builder().longOpt("incremental-double-check").desc("double check only definitions whose core changed since the last successful check").build());
+      cmdOptions.addOption(Option.builder().longOpt("pack").desc("write binary files of a library into a single container").build());
+      cmdOptions.addOption(Option.builder().longOpt("lazy").desc("load bodies of functions from binary files only when they are used").build());
+      cmdOptions.addOption(Option.builder().longOpt("env-machine").desc("evaluate function calls with an environment machine").build());
+      cmdOptions.addOption(Option.builder().longOpt("whnf-cache").desc("cache weak head normal forms and report cache hits for each definition").build());
+      cmdOptions.addOption(Option.builder().longOpt("max-reduction-steps").hasArg().argName("num").desc("maximum number of reduction steps during typechecking of a single definition").build());
+      cmdOptions.addOption(Option.builder().longOpt("profile-unfoldings").desc("report functions that are unfolded most often during typechecking").build());
+      cmdOptions.addOption(Option.builder().longOpt("metrics").hasArg().argName("file").desc("write typechecking metrics of definitions and modules to a file (CSV if the file ends with .csv, JSON otherwise)").build());
+      cmdOptions.addOption(Option.builder("w").longOpt("watch").desc("keep running and typecheck modules again when their sources change").build());
+      cmdOptions.addOption(Option.builder("t").longOpt("threads").hasArg().argName("num").desc("number of threads used for typechecking and loading modules").build());
       cmdOptions.addOption("v", "version", false, "print language version");
       addCommandOptions(cmdOptions);
       CommandLine cmdLine = new DefaultParser().parse(cmdOptions, args);
@@ -149,6 +208,14 @@ public abstract class BaseCliFrontend {
       return null;
     }
 
+    boolean lazy = cmdLine.hasOption("lazy");
+    if (lazy) {
+      myLibraryResolver.addLibraryFlag(SourceLibrary.Flag.LAZY_BODIES);
+    }
+    String metricsFile = cmdLine.getOptionValue("metrics");
+    TypecheckingMetrics metrics = metricsFile != null ? new TypecheckingMetrics() : null;
+    myLibraryManager.setMetrics(metrics);
+
     // Get library directories
     String[] libDirStrings = cmdLine.getOptionValues("L");
     if (libDirStrings != null) {
@@ -238,78 +305,297 @@ public abstract class BaseCliFrontend {
       return cmdLine;
     }
 
-    MyTypechecking typechecking = new MyTypechecking();
+    // Dependencies are collected only in the watch mode since they are used to update libraries when their sources change
+    DependencyCollector dependencyCollector = cmdLine.hasOption("w") ? new DependencyCollector(myTypecheckerState) : null;
+    MyTypechecking typechecking = new MyTypechecking(dependencyCollector != null ? dependencyCollector : DummyDependencyListener.INSTANCE);
+    String threadsStr = cmdLine.getOptionValue("t");
+    if (threadsStr != null) {
+      try {
+        int numberOfThreads = Integer.parseInt(threadsStr);
+        typechecking.setNumberOfThreads(numberOfThreads);
+        myLibraryManager.setNumberOfThreads(numberOfThreads);
+      } catch (NumberFormatException e) {
+        System.err.println("[ERROR] " + threadsStr + " is not a number");
+      }
+    }
+    String maxStepsStr = cmdLine.getOptionValue("max-reduction-steps");
+    if (maxStepsStr != null) {
+      try {
+        typechecking.setMaxReductionSteps(Integer.parseInt(maxStepsStr));
+      } catch (NumberFormatException e) {
+        System.err.println("[ERROR] " + maxStepsStr + " is not a number");
+      }
+    }
+    if (cmdLine.hasOption("profile-unfoldings")) {
+      typechecking.setUnfoldingProfiler(new UnfoldingProfiler());
+    }
+    if (cmdLine.hasOption("whnf-cache")) {
+      typechecking.setWhnfCache(new WhnfCache());
+    }
+    typechecking.setEnvironmentMachineEnabled(cmdLine.hasOption("env-machine"));
+    typechecking.setMetrics(metrics);
     boolean recompile = cmdLine.hasOption("recompile");
-    boolean doubleCheck = cmdLine.hasOption("double-check");
+    boolean incrementalDoubleCheck = cmdLine.hasOption("incremental-double-check");
+    boolean doubleCheck = incrementalDoubleCheck || cmdLine.hasOption("double-check");
+    boolean pack = cmdLine.hasOption("pack");
     for (UnmodifiableSourceLibrary library : requestedLibraries) {
       myModuleResults.clear();
       if (recompile) {
         library.addFlag(SourceLibrary.Flag.RECOMPILE);
       }
+      if (lazy) {
+        library.addFlag(SourceLibrary.Flag.LAZY_BODIES);
+      }
+      if (dependencyCollector != null && library instanceof FileSourceLibrary) {
+        ((FileSourceLibrary) library).setDependencyListener(dependencyCollector);
+      }
       if (!myLibraryManager.loadLibrary(library, typechecking)) {
         continue;
       }
 
-      Collection<? extends ModulePath> modules = library.getUpdatedModules();
-      if (modules.isEmpty()) {
-        continue;
-      }
+      typecheckLibrary(library, typechecking, doubleCheck, incrementalDoubleCheck, pack);
+    }
 
-      System.out.println("--- Typechecking " + library.getName() + " ---");
-      long time = System.currentTimeMillis();
-      typechecking.typecheckLibrary(library);
-      time = System.currentTimeMillis() - time;
-      flushErrors();
+    if (metrics != null) {
+      writeMetrics(Paths.get(metricsFile), metrics);
+    }
 
-      // Output nice per-module typechecking results
-      int numWithErrors = 0;
-      int numWithGoals = 0;
-      for (ModulePath module : modules) {
-        GeneralError.Level result = myModuleResults.get(module);
-        if (result == null && library.getModuleGroup(module) == null) {
-          result = GeneralError.Level.ERROR;
+    if (dependencyCollector != null) {
+      watch(requestedLibraries, typechecking, new LibraryUpdater(myLibraryManager, myTypecheckerState, dependencyCollector), doubleCheck, incrementalDoubleCheck);
+    }
+
+    return cmdLine;
+  }
+
+  /**
+   * Typechecks libraries again whenever their sources change.
+   * Libraries stay loaded; changed modules and modules that import them are parsed again,
+   * and only definitions affected by the changes are typechecked again.
+   * Watching stops when the watching thread is interrupted, when {@link #stopWatching} is invoked, or when the JVM shuts down.
+   */
+  private void watch(List<UnmodifiableSourceLibrary> libraries, MyTypechecking typechecking, LibraryUpdater updater, boolean doubleCheck, boolean incrementalDoubleCheck) {
+    Thread watchingThread = Thread.currentThread();
+    myWatchingThread = watchingThread;
+    Thread shutdownHook = new Thread(() -> {
+      stopWatching();
+      try {
+        watchingThread.join(SHUTDOWN_TIMEOUT);
+      } catch (InterruptedException ignored) {}
+    });
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+    try (SourceWatcher watcher = new SourceWatcher()) {
+      for (UnmodifiableSourceLibrary library : libraries) {
+        library.removeFlag(SourceLibrary.Flag.RECOMPILE);
+        library.clearUpdateModules();
+        if (library instanceof FileSourceLibrary) {
+          watcher.register((FileSourceLibrary) library);
         }
-        reportTypeCheckResult(module, result);
-        if (result == GeneralError.Level.ERROR) numWithErrors++;
-        if (result == GeneralError.Level.GOAL) numWithGoals++;
       }
 
-      if (numWithErrors > 0) {
-        System.out.println("Number of modules with errors: " + numWithErrors);
+      while (myWatchingThread == watchingThread) {
+        System.out.println("[INFO] Watching for changes");
+        Map<FileSourceLibrary, Set<ModulePath>> changes = watcher.waitForChanges(WATCH_DELAY);
+        for (Set<ModulePath> modules : changes.values()) {
+          for (ModulePath module : modules) {
+            System.out.println("[INFO] Changed " + module);
+          }
+        }
+        updater.update(libraries, changes);
+
+        for (UnmodifiableSourceLibrary library : libraries) {
+          myModuleResults.clear();
+          if (!typecheckLibrary(library, typechecking, doubleCheck, incrementalDoubleCheck, false)) {
+            return;
+          }
+          // Definitions whose dependencies changed their interfaces during typechecking are typechecked again
+          if (updater.hasResetDefinitions(library) && !typecheckLibrary(library, typechecking, doubleCheck, incrementalDoubleCheck, false)) {
+            return;
+          }
+          library.clearUpdateModules();
+        }
       }
-      if (numWithGoals > 0) {
-        System.out.println("Number of modules with goals: " + numWithGoals);
+    } catch (IOException e) {
+      System.err.println("[ERROR] Cannot watch sources: " + e.getMessage());
+    } catch (InterruptedException ignored) {
+    } finally {
+      myWatchingThread = null;
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException ignored) {
+        // The JVM is already shutting down
       }
-      System.out.println("--- Done (" + timeToString(time) + ") ---");
+    }
+  }
 
-      // Persist updated modules
-      if (library.supportsPersisting()) {
-        library.persistUpdateModules(System.err::println);
-        library.clearUpdateModules();
+  /**
+   * Stops watching for changes started by the {@code -w} option.
+   * Typechecking that is in progress is interrupted.
+   */
+  public void stopWatching() {
+    Thread thread = myWatchingThread;
+    myWatchingThread = null;
+    if (thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  /**
+   * @return false if typechecking was interrupted, true otherwise.
+   */
+  private boolean typecheckLibrary(UnmodifiableSourceLibrary library, MyTypechecking typechecking, boolean doubleCheck, boolean incrementalDoubleCheck, boolean pack) {
+    Collection<? extends ModulePath> modules = library.getUpdatedModules();
+    if (modules.isEmpty()) {
+      if (pack) {
+        packLibrary(library);
       }
+      return true;
+    }
+
+    System.out.println("--- Typechecking " + library.getName() + " ---");
+    long time = System.currentTimeMillis();
+    boolean completed = typechecking.typecheckLibrary(library);
+    time = System.currentTimeMillis() - time;
+    flushErrors();
+    if (!completed) {
+      // Modules are not persisted since some of their definitions are not typechecked
+      System.out.println("--- Interrupted ---");
+      return false;
+    }
 
-      if (doubleCheck && numWithErrors == 0) {
-        System.out.println("--- Checking " + library.getName() + " ---");
-        time = System.currentTimeMillis();
+    // Output nice per-module typechecking results
+    int numWithErrors = 0;
+    int numWithGoals = 0;
+    for (ModulePath module : modules) {
+      GeneralError.Level result = myModuleResults.get(module);
+      if (result == null && library.getModuleGroup(module) == null) {
+        result = GeneralError.Level.ERROR;
+      }
+      reportTypeCheckResult(module, result);
+      if (result == GeneralError.Level.ERROR) numWithErrors++;
+      if (result == GeneralError.Level.GOAL) numWithGoals++;
+    }
 
-        CoreModuleChecker checker = new CoreModuleChecker(myErrorReporter, myTypecheckerState);
-        for (ModulePath module : library.getLoadedModules()) {
-          Group group = library.getModuleGroup(module);
-          if (group != null) {
-            checker.checkGroup(group);
+    if (numWithErrors > 0) {
+      System.out.println("Number of modules with errors: " + numWithErrors);
+    }
+    if (numWithGoals > 0) {
+      System.out.println("Number of modules with goals: " + numWithGoals);
+    }
+    System.out.println("--- Done (" + timeToString(time) + ") ---");
+    WhnfCache whnfCache = typechecking.getWhnfCache();
+    if (whnfCache != null) {
+      reportWhnfCacheCounters(whnfCache);
+    }
+    UnfoldingProfiler profiler = typechecking.getUnfoldingProfiler();
+    if (profiler != null) {
+      reportUnfoldings(profiler);
+    }
+
+    // Persist updated modules
+    if (library.supportsPersisting()) {
+      library.persistUpdateModules(System.err::println, typechecking.getMetrics());
+      library.clearUpdateModules();
+    }
+
+    if (pack && numWithErrors == 0) {
+      packLibrary(library);
+    }
+
+    if (doubleCheck && numWithErrors == 0) {
+      System.out.println("--- Checking " + library.getName() + " ---");
+      time = System.currentTimeMillis();
+
+      CoreModuleChecker checker = new CoreModuleChecker(myErrorReporter, myTypecheckerState);
+      checker.setNumberOfThreads(typechecking.getNumberOfThreads());
+      FileSourceLibrary fileLibrary = incrementalDoubleCheck && library instanceof FileSourceLibrary && ((FileSourceLibrary) library).getBinaryBasePath() != null ? (FileSourceLibrary) library : null;
+      Map<TCReferable, byte[]> verifiedHashes = fileLibrary == null ? null : new HashMap<>();
+      Map<ModulePath, Group> groups = new LinkedHashMap<>();
+      for (ModulePath module : library.getLoadedModules()) {
+        Group group = library.getModuleGroup(module);
+        if (group != null) {
+          groups.put(module, group);
+          if (fileLibrary != null) {
+            loadVerifiedHashes(group, fileLibrary.loadVerifiedHashes(module), verifiedHashes);
           }
         }
+      }
+      checker.setVerifiedHashes(verifiedHashes);
+      checker.checkGroups(groups.values());
+
+      if (fileLibrary != null) {
+        for (Map.Entry<ModulePath, Group> entry : groups.entrySet()) {
+          Map<String, byte[]> moduleHashes = new HashMap<>();
+          collectVerifiedHashes(entry.getValue(), verifiedHashes, moduleHashes);
+          fileLibrary.persistVerifiedHashes(entry.getKey(), moduleHashes, myErrorReporter);
+        }
+      }
+
+      time = System.currentTimeMillis() - time;
+      flushErrors();
+      System.out.println("--- Done (" + timeToString(time) + ") ---");
+      if (fileLibrary != null) {
+        System.out.println("[INFO] Skipped " + checker.getNumberOfSkipped() + " definitions with unchanged core");
+      }
+    }
+    return true;
+  }
 
-        time = System.currentTimeMillis() - time;
-        flushErrors();
-        System.out.println("--- Done (" + timeToString(time) + ") ---");
+  private static void loadVerifiedHashes(Group group, Map<String, byte[]> storedHashes, Map<TCReferable, byte[]> verifiedHashes) {
+    LocatedReferable ref = group.getReferable();
+    if (ref instanceof TCReferable) {
+      byte[] hash = storedHashes.get(ref.getRefLongName().toString());
+      if (hash != null) {
+        verifiedHashes.put((TCReferable) ref, hash);
       }
     }
+    for (Group subgroup : group.getSubgroups()) {
+      loadVerifiedHashes(subgroup, storedHashes, verifiedHashes);
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      loadVerifiedHashes(subgroup, storedHashes, verifiedHashes);
+    }
+  }
 
-    return cmdLine;
+  private static void collectVerifiedHashes(Group group, Map<TCReferable, byte[]> verifiedHashes, Map<String, byte[]> moduleHashes) {
+    LocatedReferable ref = group.getReferable();
+    byte[] hash = ref instanceof TCReferable ? verifiedHashes.get(ref) : null;
+    if (hash != null) {
+      moduleHashes.put(ref.getRefLongName().toString(), hash);
+    }
+    for (Group subgroup : group.getSubgroups()) {
+      collectVerifiedHashes(subgroup, verifiedHashes, moduleHashes);
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      collectVerifiedHashes(subgroup, verifiedHashes, moduleHashes);
+    }
+  }
+
+  private static void writeMetrics(Path file, TypecheckingMetrics metrics) {
+    try {
+      new MetricsExporter(metrics.getDefinitionMetrics(), metrics.getModuleMetrics()).write(file);
+      System.out.println("[INFO] Written metrics to " + file);
+    } catch (IOException e) {
+      System.err.println("[ERROR] Cannot write metrics to " + file + ": " + e.getMessage());
+    }
+    metrics.clear();
+  }
+
+  private static void packLibrary(UnmodifiableSourceLibrary library) {
+    if (library instanceof FileSourceLibrary && ((FileSourceLibrary) library).packBinaries(System.err::println)) {
+      System.out.println("[INFO] Packed " + library.getName());
+    } else {
+      System.err.println("[ERROR] Cannot pack " + library.getName());
+    }
   }
 
   private void flushErrors() {
+    synchronized (myErrorReporter) {
+      doFlushErrors();
+    }
+  }
+
+  private void doFlushErrors() {
     for (GeneralError error : myErrorReporter.getErrorList()) {
       error.forAffectedDefinitions((referable, err) -> {
         if (referable instanceof LocatedReferable) {
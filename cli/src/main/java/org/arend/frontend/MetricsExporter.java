@@ -0,0 +1,121 @@
+package org.arend.frontend;
+
+import org.arend.ext.module.ModulePath;
+import org.arend.naming.reference.TCReferable;
+import org.arend.typechecking.computation.TypecheckingMetrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes metrics collected by {@link TypecheckingMetrics} as JSON or CSV.
+ * Definitions are sorted by the total time of typechecking, starting from the slowest one.
+ * Times are written in microseconds.
+ */
+public class MetricsExporter {
+  private final List<Map.Entry<TCReferable, TypecheckingMetrics.DefinitionMetrics>> myDefinitions;
+  private final List<Map.Entry<ModulePath, TypecheckingMetrics.ModuleMetrics>> myModules;
+
+  public MetricsExporter(Map<TCReferable, TypecheckingMetrics.DefinitionMetrics> definitions, Map<ModulePath, TypecheckingMetrics.ModuleMetrics> modules) {
+    myDefinitions = new ArrayList<>(definitions.entrySet());
+    myDefinitions.sort((e1, e2) -> Long.compare(e2.getValue().getTotalTime(), e1.getValue().getTotalTime()));
+    myModules = new ArrayList<>(modules.entrySet());
+    myModules.sort((e1, e2) -> e1.getKey().toString().compareTo(e2.getKey().toString()));
+  }
+
+  /**
+   * Writes metrics to a file.
+   * The format is CSV if the name of the file ends with .csv and JSON otherwise.
+   */
+  public void write(Path file) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      if (file.getFileName().toString().endsWith(".csv")) {
+        writeCsv(writer);
+      } else {
+        writeJson(writer);
+      }
+    }
+  }
+
+  public void writeJson(Writer writer) throws IOException {
+    writer.write("{\n  \"definitions\": [");
+    boolean first = true;
+    for (Map.Entry<TCReferable, TypecheckingMetrics.DefinitionMetrics> entry : myDefinitions) {
+      TypecheckingMetrics.DefinitionMetrics metrics = entry.getValue();
+      writer.write(first ? "\n" : ",\n");
+      first = false;
+      writer.write("    {\"module\": " + jsonString(getModule(entry.getKey())) +
+        ", \"name\": " + jsonString(entry.getKey().getRefLongName().toString()) +
+        ", \"headerTime\": " + toMicros(metrics.getHeaderTime()) +
+        ", \"bodyTime\": " + toMicros(metrics.getBodyTime()) +
+        ", \"equations\": " + metrics.getEquations() +
+        ", \"instanceSearches\": " + metrics.getInstanceSearches() +
+        ", \"normalizationSteps\": " + metrics.getNormalizationSteps() + "}");
+    }
+    writer.write(first ? "],\n" : "\n  ],\n");
+
+    writer.write("  \"modules\": [");
+    first = true;
+    for (Map.Entry<ModulePath, TypecheckingMetrics.ModuleMetrics> entry : myModules) {
+      writer.write(first ? "\n" : ",\n");
+      first = false;
+      writer.write("    {\"module\": " + jsonString(entry.getKey().toString()) +
+        ", \"serializationTime\": " + toMicros(entry.getValue().getSerializationTime()) +
+        ", \"deserializationTime\": " + toMicros(entry.getValue().getDeserializationTime()) + "}");
+    }
+    writer.write(first ? "]\n}\n" : "\n  ]\n}\n");
+  }
+
+  /**
+   * Writes a row for every definition and every module.
+   * Columns that do not apply to the kind of a row are left empty.
+   */
+  public void writeCsv(Writer writer) throws IOException {
+    writer.write("kind,module,name,headerTime,bodyTime,equations,instanceSearches,normalizationSteps,serializationTime,deserializationTime\n");
+    for (Map.Entry<TCReferable, TypecheckingMetrics.DefinitionMetrics> entry : myDefinitions) {
+      TypecheckingMetrics.DefinitionMetrics metrics = entry.getValue();
+      writer.write("definition," + csvString(getModule(entry.getKey())) + "," + csvString(entry.getKey().getRefLongName().toString()) + "," +
+        toMicros(metrics.getHeaderTime()) + "," + toMicros(metrics.getBodyTime()) + "," +
+        metrics.getEquations() + "," + metrics.getInstanceSearches() + "," + metrics.getNormalizationSteps() + ",,\n");
+    }
+    for (Map.Entry<ModulePath, TypecheckingMetrics.ModuleMetrics> entry : myModules) {
+      writer.write("module," + csvString(entry.getKey().toString()) + ",,,,,,," +
+        toMicros(entry.getValue().getSerializationTime()) + "," + toMicros(entry.getValue().getDeserializationTime()) + "\n");
+    }
+  }
+
+  private static String getModule(TCReferable referable) {
+    ModulePath modulePath = referable.getLocation();
+    return modulePath == null ? "" : modulePath.toString();
+  }
+
+  private static long toMicros(long nanos) {
+    return nanos / 1000;
+  }
+
+  private static String jsonString(String str) {
+    StringBuilder builder = new StringBuilder(str.length() + 2);
+    builder.append('"');
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      } else if (c < 0x20) {
+        builder.append(String.format("\\u%04x", (int) c));
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  private static String csvString(String str) {
+    return str.indexOf(',') >= 0 || str.indexOf('"') >= 0 || str.indexOf('\n') >= 0 ? '"' + str.replace("\"", "\"\"") + '"' : str;
+  }
+}
@@ -0,0 +1,114 @@
+package org.arend.frontend;
+
+import org.arend.ext.module.ModulePath;
+import org.arend.frontend.library.FileSourceLibrary;
+import org.arend.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches source directories of libraries and collects modules whose files were created, modified, or deleted.
+ */
+public class SourceWatcher implements AutoCloseable {
+  private final WatchService myWatchService;
+  private final Map<WatchKey, Directory> myDirectories = new HashMap<>();
+
+  private static class Directory {
+    final FileSourceLibrary library;
+    final Path path;
+
+    Directory(FileSourceLibrary library, Path path) {
+      this.library = library;
+      this.path = path;
+    }
+  }
+
+  public SourceWatcher() throws IOException {
+    myWatchService = FileSystems.getDefault().newWatchService();
+  }
+
+  /**
+   * Watches the source directory of a library and all of its subdirectories.
+   */
+  public void register(FileSourceLibrary library) throws IOException {
+    Path sourcePath = library.getSourceBasePath();
+    if (sourcePath != null && Files.isDirectory(sourcePath)) {
+      registerDirectory(library, sourcePath);
+    }
+  }
+
+  // Directories that cannot contain modules, such as the default binary directory .bin, are not watched
+  private void registerDirectory(FileSourceLibrary library, Path directory) throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        if (!dir.equals(library.getSourceBasePath()) && !FileUtils.isModuleName(dir.getFileName().toString())) {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        myDirectories.put(dir.register(myWatchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), new Directory(library, dir));
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Waits until sources of some of the watched libraries change.
+   * Changes that follow each other within {@code delay} milliseconds are collected together,
+   * so that saving several files at once triggers a single update.
+   *
+   * @return changed modules of every library that has changes.
+   *         The set of modules is empty if the library has changed, but it is not known which modules are affected.
+   */
+  public Map<FileSourceLibrary, Set<ModulePath>> waitForChanges(long delay) throws InterruptedException, IOException {
+    Map<FileSourceLibrary, Set<ModulePath>> result = new LinkedHashMap<>();
+    while (result.isEmpty()) {
+      WatchKey key = myWatchService.take();
+      while (key != null) {
+        processEvents(key, result);
+        key = myWatchService.poll(delay, TimeUnit.MILLISECONDS);
+      }
+    }
+    return result;
+  }
+
+  private void processEvents(WatchKey key, Map<FileSourceLibrary, Set<ModulePath>> result) throws IOException {
+    Directory directory = myDirectories.get(key);
+    if (directory == null) {
+      key.cancel();
+      return;
+    }
+
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        result.computeIfAbsent(directory.library, k -> new LinkedHashSet<>());
+        continue;
+      }
+
+      Path file = directory.path.resolve((Path) event.context());
+      if (event.kind() == ENTRY_CREATE && Files.isDirectory(file)) {
+        registerDirectory(directory.library, file);
+        continue;
+      }
+
+      ModulePath modulePath = FileUtils.modulePath(directory.library.getSourceBasePath().relativize(file), FileUtils.EXTENSION);
+      if (modulePath != null) {
+        result.computeIfAbsent(directory.library, k -> new LinkedHashSet<>()).add(modulePath);
+      }
+    }
+
+    if (!key.reset()) {
+      myDirectories.remove(key);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    myWatchService.close();
+  }
+}
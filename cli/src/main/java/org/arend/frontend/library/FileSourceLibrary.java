@@ -6,19 +6,27 @@ import org.arend.frontend.source.FileRawSource;
 import org.arend.library.LibraryDependency;
 import org.arend.library.LibraryHeader;
 import org.arend.library.UnmodifiableSourceLibrary;
+import org.arend.module.error.ExceptionError;
+import org.arend.source.BinaryContainer;
 import org.arend.source.BinarySource;
+import org.arend.source.ContainerBinarySource;
 import org.arend.source.FileBinarySource;
 import org.arend.source.GZIPStreamBinarySource;
 import org.arend.source.Source;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
+import org.arend.util.FileUtils;
 import org.arend.util.Range;
 import org.arend.util.Version;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public class FileSourceLibrary extends UnmodifiableSourceLibrary {
   protected Path mySourceBasePath;
@@ -29,6 +37,10 @@ public class FileSourceLibrary extends UnmodifiableSourceLibrary {
   protected List<LibraryDependency> myDependencies;
   protected Range<Version> myLanguageVersion;
   protected boolean myComplete;
+  private BinaryContainer myBinaryContainer;
+  private IOException myBinaryContainerException;
+  private boolean myBinaryContainerLoaded;
+  private DependencyListener myDependencyListener = DummyDependencyListener.INSTANCE;
 
   /**
    * Creates a new {@code UnmodifiableFileSourceLibrary}
@@ -63,6 +75,26 @@ public class FileSourceLibrary extends UnmodifiableSourceLibrary {
     return myBinaryBasePath;
   }
 
+  /**
+   * @return modules of the library listed in its header or found in its source directory.
+   */
+  public Set<ModulePath> getModules() {
+    return myModules;
+  }
+
+  @NotNull
+  @Override
+  public DependencyListener getDependencyListener() {
+    return myDependencyListener;
+  }
+
+  /**
+   * Sets a dependency listener which is notified about dependencies of definitions loaded from binary sources.
+   */
+  public void setDependencyListener(@NotNull DependencyListener dependencyListener) {
+    myDependencyListener = dependencyListener;
+  }
+
   @Nullable
   @Override
   public final Source getRawSource(ModulePath modulePath) {
@@ -72,12 +104,164 @@ public class FileSourceLibrary extends UnmodifiableSourceLibrary {
   @Nullable
   @Override
   public BinarySource getBinarySource(ModulePath modulePath) {
-    return myBinaryBasePath == null ? null : new GZIPStreamBinarySource(new FileBinarySource(myBinaryBasePath, modulePath));
+    if (myBinaryBasePath == null) {
+      return null;
+    }
+    BinaryContainer container = getBinaryContainer();
+    GZIPStreamBinarySource moduleSource = new GZIPStreamBinarySource(new FileBinarySource(myBinaryBasePath, modulePath));
+    return container != null ? new ContainerBinarySource(container, modulePath, moduleSource) : moduleSource;
+  }
+
+  /**
+   * Gets the container with binary modules of this library.
+   * If the container exists, binary modules are loaded from it unless the binary file of a module is newer than the container.
+   * Updated modules are persisted to separate binary files, so they take precedence over the container until it is packed again.
+   *
+   * @return the container or null if the binary directory does not contain it or it cannot be read.
+   */
+  @Nullable
+  public synchronized BinaryContainer getBinaryContainer() {
+    if (!myBinaryContainerLoaded) {
+      myBinaryContainerLoaded = true;
+      closeBinaryContainer();
+      myBinaryContainerException = null;
+      Path file = myBinaryBasePath == null ? null : myBinaryBasePath.resolve(FileUtils.BINARY_CONTAINER_FILE);
+      if (file != null && Files.exists(file)) {
+        try {
+          myBinaryContainer = BinaryContainer.open(file);
+        } catch (IOException e) {
+          myBinaryContainerException = e;
+        }
+      }
+    }
+    return myBinaryContainer;
+  }
+
+  private void closeBinaryContainer() {
+    if (myBinaryContainer != null) {
+      myBinaryContainer.close();
+      myBinaryContainer = null;
+    }
+  }
+
+  /**
+   * Writes all loaded modules of this library to a container in the binary directory.
+   * The current container is closed before its file is replaced.
+   *
+   * @return true if the operation is successful, false otherwise
+   */
+  public synchronized boolean packBinaries(ErrorReporter errorReporter) {
+    if (myBinaryBasePath == null) {
+      return false;
+    }
+    closeBinaryContainer();
+    myBinaryContainerLoaded = false;
+    return BinaryContainer.pack(this, myBinaryBasePath.resolve(FileUtils.BINARY_CONTAINER_FILE), errorReporter);
+  }
+
+  /**
+   * Collects modules of a complete library from its source directory again.
+   * It should be invoked when files in the source directory are created or deleted.
+   */
+  public void refreshModules(ErrorReporter errorReporter) {
+    if (myComplete && mySourceBasePath != null) {
+      Set<ModulePath> modules = new LinkedHashSet<>();
+      FileUtils.getModules(mySourceBasePath, FileUtils.EXTENSION, modules, errorReporter);
+      myModules = modules;
+    }
+  }
+
+  /**
+   * Reads hashes of definitions of a module that were verified by the double checker.
+   * They are stored next to the binary file of the module.
+   *
+   * @return a map from long names of definitions to their core hashes; it is empty if there are no stored hashes.
+   */
+  @NotNull
+  public Map<String, byte[]> loadVerifiedHashes(ModulePath modulePath) {
+    Map<String, byte[]> result = new HashMap<>();
+    if (myBinaryBasePath == null) {
+      return result;
+    }
+    Path file = FileUtils.verifiedHashesFile(myBinaryBasePath, modulePath);
+    if (!Files.exists(file)) {
+      return result;
+    }
+
+    try {
+      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+        int index = line.lastIndexOf(' ');
+        byte[] hash = index < 0 ? null : fromHex(line.substring(index + 1));
+        if (hash != null) {
+          result.put(line.substring(0, index), hash);
+        }
+      }
+    } catch (IOException e) {
+      result.clear();
+    }
+    return result;
+  }
+
+  /**
+   * Writes hashes of definitions of a module that were verified by the double checker.
+   */
+  public void persistVerifiedHashes(ModulePath modulePath, Map<String, byte[]> hashes, ErrorReporter errorReporter) {
+    if (myBinaryBasePath == null) {
+      return;
+    }
+
+    Path file = FileUtils.verifiedHashesFile(myBinaryBasePath, modulePath);
+    try {
+      if (hashes.isEmpty()) {
+        Files.deleteIfExists(file);
+        return;
+      }
+      List<String> lines = new ArrayList<>(hashes.size());
+      for (Map.Entry<String, byte[]> entry : hashes.entrySet()) {
+        lines.add(entry.getKey() + " " + toHex(entry.getValue()));
+      }
+      Collections.sort(lines);
+      Files.createDirectories(file.getParent());
+      Files.write(file, lines, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      errorReporter.report(new ExceptionError(e, "persisting of verified hashes", modulePath));
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  private static byte[] fromHex(String str) {
+    if (str.length() % 2 != 0) {
+      return null;
+    }
+    byte[] result = new byte[str.length() / 2];
+    for (int i = 0; i < result.length; i++) {
+      int high = Character.digit(str.charAt(2 * i), 16);
+      int low = Character.digit(str.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) {
+        return null;
+      }
+      result[i] = (byte) (high << 4 | low);
+    }
+    return result;
   }
 
   @Nullable
   @Override
   protected LibraryHeader loadHeader(ErrorReporter errorReporter) {
+    synchronized (this) {
+      myBinaryContainerLoaded = false;
+      getBinaryContainer();
+      if (myBinaryContainerException != null) {
+        errorReporter.report(new ExceptionError(myBinaryContainerException, "loading of the binary container"));
+      }
+    }
     return new LibraryHeader(myModules, myDependencies, myLanguageVersion, myExtBasePath, myExtMainClass);
   }
 
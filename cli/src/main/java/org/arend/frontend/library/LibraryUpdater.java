@@ -0,0 +1,229 @@
+package org.arend.frontend.library;
+
+import org.arend.core.definition.Definition;
+import org.arend.ext.module.ModulePath;
+import org.arend.library.LibraryDependency;
+import org.arend.library.LibraryManager;
+import org.arend.library.UnmodifiableSourceLibrary;
+import org.arend.naming.reference.LocatedReferable;
+import org.arend.naming.reference.TCReferable;
+import org.arend.term.NamespaceCommand;
+import org.arend.term.group.Group;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+
+import java.util.*;
+
+/**
+ * Updates loaded libraries when sources of some of their modules change.
+ * Changed modules and modules that import them, directly or transitively, are parsed again while the rest of the libraries stays loaded.
+ * Parsing creates new referables, so definitions are matched with their previous versions by long names.
+ * Definitions from changed modules are reset through a {@link DependencyCollector} together with definitions that depend on them;
+ * other typechecked definitions are moved to their new referables.
+ */
+public class LibraryUpdater {
+  private final LibraryManager myLibraryManager;
+  private final TypecheckerState myState;
+  private final DependencyCollector myDependencyCollector;
+
+  /**
+   * @param dependencyCollector  the collector that was used to typecheck and load libraries that will be updated.
+   */
+  public LibraryUpdater(LibraryManager libraryManager, TypecheckerState state, DependencyCollector dependencyCollector) {
+    myLibraryManager = libraryManager;
+    myState = state;
+    myDependencyCollector = dependencyCollector;
+  }
+
+  /**
+   * Loads changed modules again and resets definitions that must be typechecked again.
+   * Loaded modules are marked as updated in their libraries.
+   *
+   * @param libraries  libraries that can be affected by the changes.
+   * @param changes    changed modules of libraries.
+   *                   If the set of modules of a library is empty, all modules of the library are considered changed.
+   */
+  public void update(Collection<? extends UnmodifiableSourceLibrary> libraries, Map<? extends FileSourceLibrary, ? extends Set<ModulePath>> changes) {
+    Set<ModulePath> changedModules = new LinkedHashSet<>();
+    for (Map.Entry<? extends FileSourceLibrary, ? extends Set<ModulePath>> entry : changes.entrySet()) {
+      FileSourceLibrary library = entry.getKey();
+      library.refreshModules(myLibraryManager.getLibraryErrorReporter());
+      if (entry.getValue().isEmpty()) {
+        changedModules.addAll(library.getLoadedModules());
+        changedModules.addAll(library.getModules());
+      } else {
+        changedModules.addAll(entry.getValue());
+      }
+    }
+
+    // Modules that import reloaded ones refer to their old definitions, so they are reloaded too
+    List<UnmodifiableSourceLibrary> orderedLibraries = orderLibraries(libraries);
+    Set<ModulePath> reloadedModules = new LinkedHashSet<>(changedModules);
+    boolean added = true;
+    while (added) {
+      added = false;
+      for (UnmodifiableSourceLibrary library : orderedLibraries) {
+        for (ModulePath module : library.getLoadedModules()) {
+          if (!reloadedModules.contains(module) && importsAny(library.getModuleGroup(module), reloadedModules)) {
+            reloadedModules.add(module);
+            added = true;
+          }
+        }
+      }
+    }
+
+    Map<ModulePath, Map<String, LocatedReferable>> oldReferables = new HashMap<>();
+    for (UnmodifiableSourceLibrary library : orderedLibraries) {
+      for (ModulePath module : library.getLoadedModules()) {
+        if (reloadedModules.contains(module)) {
+          Map<String, LocatedReferable> referables = new HashMap<>();
+          collectReferables(library.getModuleGroup(module), referables);
+          oldReferables.put(module, referables);
+        }
+      }
+    }
+
+    for (ModulePath module : changedModules) {
+      Map<String, LocatedReferable> referables = oldReferables.get(module);
+      if (referables != null) {
+        for (LocatedReferable referable : referables.values()) {
+          if (referable instanceof TCReferable) {
+            myDependencyCollector.update((TCReferable) referable);
+          }
+        }
+      }
+    }
+
+    for (UnmodifiableSourceLibrary library : orderedLibraries) {
+      List<ModulePath> modules = new ArrayList<>();
+      for (ModulePath module : reloadedModules) {
+        if (oldReferables.containsKey(module) ? library.getModuleGroup(module) != null : library.containsModule(module) && changes.containsKey(library)) {
+          modules.add(module);
+        }
+      }
+      if (modules.isEmpty()) {
+        continue;
+      }
+
+      library.reloadRawSources(modules, myLibraryManager);
+      for (ModulePath module : modules) {
+        Map<String, LocatedReferable> referables = oldReferables.remove(module);
+        if (referables == null) {
+          continue;
+        }
+
+        Group group = library.getModuleGroup(module);
+        if (group != null) {
+          Map<String, LocatedReferable> newReferables = new HashMap<>();
+          collectReferables(group, newReferables);
+          for (Map.Entry<String, LocatedReferable> entry : newReferables.entrySet()) {
+            LocatedReferable oldRef = referables.remove(entry.getKey());
+            if (oldRef instanceof TCReferable && entry.getValue() instanceof TCReferable) {
+              replaceReferable((TCReferable) oldRef, (TCReferable) entry.getValue());
+            }
+          }
+        }
+        removeReferables(referables.values());
+      }
+    }
+
+    // Modules that were removed from all libraries
+    for (Map<String, LocatedReferable> referables : oldReferables.values()) {
+      removeReferables(referables.values());
+    }
+  }
+
+  private void replaceReferable(TCReferable oldRef, TCReferable newRef) {
+    myDependencyCollector.replaceReferable(oldRef, newRef);
+    Definition definition = myState.reset(oldRef);
+    if (definition != null) {
+      // Constructors and fields are moved by their own referables
+      definition.setReferable(newRef);
+      myState.rewrite(newRef, definition);
+    }
+  }
+
+  private void removeReferables(Collection<? extends LocatedReferable> referables) {
+    for (LocatedReferable referable : referables) {
+      if (referable instanceof TCReferable) {
+        myDependencyCollector.update((TCReferable) referable);
+        myState.reset((TCReferable) referable);
+      }
+    }
+  }
+
+  /**
+   * Checks if some definitions of updated modules of a library are not typechecked.
+   * This happens when typechecking of a lemma changes its interface after definitions that depend on it were ordered.
+   */
+  public boolean hasResetDefinitions(UnmodifiableSourceLibrary library) {
+    for (ModulePath module : library.getUpdatedModules()) {
+      Map<String, LocatedReferable> referables = new HashMap<>();
+      collectReferables(library.getModuleGroup(module), referables);
+      for (LocatedReferable referable : referables.values()) {
+        if (referable instanceof TCReferable && referable.getKind().isTypecheckable() && myState.getTypechecked((TCReferable) referable) == null) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean importsAny(Group group, Set<ModulePath> modules) {
+    if (group == null) {
+      return false;
+    }
+    for (NamespaceCommand command : group.getNamespaceCommands()) {
+      if (command.getKind() == NamespaceCommand.Kind.IMPORT && modules.contains(new ModulePath(command.getPath()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void collectReferables(Group group, Map<String, LocatedReferable> referables) {
+    if (group == null) {
+      return;
+    }
+
+    LocatedReferable referable = group.getReferable();
+    referables.put(referable.getRefLongName().toString(), referable);
+    for (Group.InternalReferable internalReferable : group.getInternalReferables()) {
+      LocatedReferable ref = internalReferable.getReferable();
+      referables.put(ref.getRefLongName().toString(), ref);
+    }
+    for (Group subgroup : group.getSubgroups()) {
+      collectReferables(subgroup, referables);
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      collectReferables(subgroup, referables);
+    }
+  }
+
+  // Libraries are reloaded after their dependencies so that reloaded modules refer to the new versions of imported modules
+  private static List<UnmodifiableSourceLibrary> orderLibraries(Collection<? extends UnmodifiableSourceLibrary> libraries) {
+    Map<String, UnmodifiableSourceLibrary> byName = new LinkedHashMap<>();
+    for (UnmodifiableSourceLibrary library : libraries) {
+      byName.put(library.getName(), library);
+    }
+    List<UnmodifiableSourceLibrary> result = new ArrayList<>(libraries.size());
+    Set<UnmodifiableSourceLibrary> visited = new HashSet<>();
+    for (UnmodifiableSourceLibrary library : libraries) {
+      orderLibrary(library, byName, visited, result);
+    }
+    return result;
+  }
+
+  private static void orderLibrary(UnmodifiableSourceLibrary library, Map<String, UnmodifiableSourceLibrary> byName, Set<UnmodifiableSourceLibrary> visited, List<UnmodifiableSourceLibrary> result) {
+    if (!visited.add(library)) {
+      return;
+    }
+    for (LibraryDependency dependency : library.getDependencies()) {
+      UnmodifiableSourceLibrary dependencyLibrary = byName.get(dependency.name);
+      if (dependencyLibrary != null) {
+        orderLibrary(dependencyLibrary, byName, visited, result);
+      }
+    }
+    result.add(library);
+  }
+}
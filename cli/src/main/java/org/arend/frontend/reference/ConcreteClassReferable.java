@@ -58,14 +58,14 @@ public class ConcreteClassReferable extends ConcreteLocatedReferable implements
     return mySuperClasses;
   }
 
-  protected void resolve() {
+  protected synchronized void resolve() {
     if (!myResolved) {
       resolve(CachingScope.make(myGroup.getGroupScope()));
       myResolved = true;
     }
   }
 
-  protected void resolve(Scope scope) {
+  protected synchronized void resolve(Scope scope) {
     mySuperClasses.clear();
     for (Reference superClass : myUnresolvedSuperClasses) {
       Referable ref = ExpressionResolveNameVisitor.resolve(superClass.getReferent(), scope, true, null);
@@ -3,6 +3,7 @@ package org.arend.frontend.source;
 import org.antlr.v4.runtime.*;
 import org.arend.error.CompositeErrorReporter;
 import org.arend.error.CountingErrorReporter;
+import org.arend.error.ListErrorReporter;
 import org.arend.ext.error.ErrorReporter;
 import org.arend.ext.module.ModulePath;
 import org.arend.frontend.ConcreteReferableProvider;
@@ -16,10 +17,17 @@ import org.arend.source.Source;
 import org.arend.source.SourceLoader;
 import org.arend.term.NamespaceCommand;
 import org.arend.term.group.FileGroup;
+import org.arend.util.Hashing;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents a source that loads a raw module from an {@link InputStream}.
@@ -28,6 +36,7 @@ public abstract class StreamRawSource implements Source {
   private final ModulePath myModulePath;
   private FileGroup myGroup;
   private byte myPass = 0;
+  private volatile ParseResult myPrefetchedResult;
 
   protected StreamRawSource(ModulePath modulePath) {
     myModulePath = modulePath;
@@ -47,14 +56,31 @@ public abstract class StreamRawSource implements Source {
   @NotNull
   protected abstract InputStream getInputStream() throws IOException;
 
-  @Override
-  public boolean preload(SourceLoader sourceLoader) {
-    SourceLibrary library = sourceLoader.getLibrary();
+  private static class ParseResult {
+    final byte[] hash;
+    final FileGroup group;
+    final ListErrorReporter errorReporter;
+    final IOException exception;
+
+    ParseResult(byte[] hash, FileGroup group, ListErrorReporter errorReporter, IOException exception) {
+      this.hash = hash;
+      this.group = group;
+      this.errorReporter = errorReporter;
+      this.exception = exception;
+    }
+  }
+
+  /**
+   * Parses the source.
+   * This method does not modify the library; errors are collected and reported by {@link #preload}.
+   */
+  private ParseResult parse() {
     ModulePath modulePath = getModulePath();
-    ErrorReporter errorReporter = sourceLoader.getTypecheckingErrorReporter();
+    ListErrorReporter errorReporter = new ListErrorReporter();
     CountingErrorReporter countingErrorReporter = new CountingErrorReporter();
     final CompositeErrorReporter compositeErrorReporter = new CompositeErrorReporter(errorReporter, countingErrorReporter);
 
+    byte[] hash = null;
     try {
       BaseErrorListener errorListener = new BaseErrorListener() {
         @Override
@@ -63,7 +89,9 @@ public abstract class StreamRawSource implements Source {
         }
       };
 
-      ArendLexer lexer = new ArendLexer(CharStreams.fromStream(getInputStream()));
+      MessageDigest digest = Hashing.newDigest();
+      ArendLexer lexer = new ArendLexer(CharStreams.fromStream(new DigestInputStream(getInputStream(), digest)));
+      hash = digest.digest();
       lexer.removeErrorListeners();
       lexer.addErrorListener(errorListener);
 
@@ -73,29 +101,87 @@ public abstract class StreamRawSource implements Source {
 
       ArendParser.StatementsContext tree = parser.statements();
       if (countingErrorReporter.getErrorsNumber() > 0) {
-        return false;
-      }
-
-      myGroup = new BuildVisitor(modulePath, errorReporter).visitStatements(tree);
-      library.onGroupLoaded(modulePath, myGroup, true);
-
-      for (NamespaceCommand command : myGroup.getNamespaceCommands()) {
-        if (command.getKind() == NamespaceCommand.Kind.IMPORT) {
-          ModulePath module = new ModulePath(command.getPath());
-          if (library.containsModule(module) && !sourceLoader.preloadRaw(module)) {
-            library.onGroupLoaded(modulePath, null, true);
-            myGroup = null;
-            return false;
-          }
-        }
+        return new ParseResult(hash, null, errorReporter, null);
       }
 
-      return true;
+      return new ParseResult(hash, new BuildVisitor(modulePath, errorReporter).visitStatements(tree), errorReporter, null);
     } catch (IOException e) {
-      errorReporter.report(new ExceptionError(e, "loading", modulePath));
+      return new ParseResult(hash, null, errorReporter, e);
+    }
+  }
+
+  @Override
+  public void prefetch(SourceLoader sourceLoader) {
+    myPrefetchedResult = parse();
+  }
+
+  @Override
+  public boolean preload(SourceLoader sourceLoader) {
+    SourceLibrary library = sourceLoader.getLibrary();
+    ModulePath modulePath = getModulePath();
+    ErrorReporter errorReporter = sourceLoader.getTypecheckingErrorReporter();
+
+    ParseResult result = myPrefetchedResult;
+    myPrefetchedResult = null;
+    if (result == null) {
+      result = parse();
+    }
+    myPass = 0;
+
+    if (result.hash != null) {
+      library.setSourceHash(modulePath, result.hash);
+    }
+    result.errorReporter.reportTo(errorReporter);
+    if (result.exception != null) {
+      errorReporter.report(new ExceptionError(result.exception, "loading", modulePath));
       library.onGroupLoaded(modulePath, null, true);
       return false;
     }
+    if (result.group == null) {
+      return false;
+    }
+
+    myGroup = result.group;
+    library.onGroupLoaded(modulePath, myGroup, true);
+
+    for (NamespaceCommand command : myGroup.getNamespaceCommands()) {
+      if (command.getKind() == NamespaceCommand.Kind.IMPORT) {
+        ModulePath module = new ModulePath(command.getPath());
+        if (library.containsModule(module) && !sourceLoader.preloadRaw(module)) {
+          library.onGroupLoaded(modulePath, null, true);
+          myGroup = null;
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public Collection<? extends ModulePath> getDependencies() {
+    if (myGroup == null) {
+      return Collections.emptyList();
+    }
+
+    List<ModulePath> result = new ArrayList<>();
+    for (NamespaceCommand command : myGroup.getNamespaceCommands()) {
+      if (command.getKind() == NamespaceCommand.Kind.IMPORT) {
+        result.add(new ModulePath(command.getPath()));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void resolveNames(SourceLoader sourceLoader, ErrorReporter errorReporter) {
+    if (myGroup == null || myPass != 0) {
+      return;
+    }
+
+    myGroup.setModuleScopeProvider(sourceLoader.getModuleScopeProvider());
+    new DefinitionResolveNameVisitor(ConcreteReferableProvider.INSTANCE, errorReporter).resolveGroupWithTypes(myGroup, null, myGroup.getGroupScope());
+    myPass = 3;
   }
 
   @Override
@@ -110,10 +196,13 @@ public abstract class StreamRawSource implements Source {
       return LoadResult.CONTINUE;
     }
 
-    new DefinitionResolveNameVisitor(ConcreteReferableProvider.INSTANCE, myPass == 1, sourceLoader.getTypecheckingErrorReporter()).resolveGroup(myGroup, null, myGroup.getGroupScope());
-    if (myPass == 1) {
-      myPass = 2;
-      return LoadResult.CONTINUE;
+    // Pass 3 means that names were already resolved by resolveNames
+    if (myPass < 3) {
+      new DefinitionResolveNameVisitor(ConcreteReferableProvider.INSTANCE, myPass == 1, sourceLoader.getTypecheckingErrorReporter()).resolveGroup(myGroup, null, myGroup.getGroupScope());
+      if (myPass == 1) {
+        myPass = 2;
+        return LoadResult.CONTINUE;
+      }
     }
     sourceLoader.getInstanceProviderSet().collectInstances(myGroup, CachingScope.make(ScopeFactory.parentScopeForGroup(myGroup, sourceLoader.getModuleScopeProvider(), true)), ConcreteReferableProvider.INSTANCE, null);
     return LoadResult.SUCCESS;
@@ -0,0 +1,125 @@
+package org.arend.classes;
+
+import org.arend.core.definition.ClassDefinition;
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.ClassFieldMap;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ClassFieldMapTest extends TypeCheckingTestCase {
+  @Test
+  public void mapTest() {
+    typeCheckModule(
+      "\\class A (X : \\Type)\n" +
+      "  | x : X\n" +
+      "\\class B \\extends A\n" +
+      "  | y : X\n" +
+      "\\class C\n" +
+      "  | z : Nat");
+    ClassDefinition b = (ClassDefinition) getDefinition("B");
+    ClassField fieldX = (ClassField) getDefinition("A.X");
+    ClassField x = (ClassField) getDefinition("A.x");
+    ClassField y = (ClassField) getDefinition("B.y");
+    ClassField z = (ClassField) getDefinition("C.z");
+
+    Map<ClassField, String> map = new ClassFieldMap<>(b);
+    assertTrue(map.isEmpty());
+    assertNull(map.put(y, "y"));
+    assertNull(map.put(fieldX, "X"));
+    assertNull(map.put(z, "z"));
+    assertNull(map.put(x, null));
+    assertEquals(4, map.size());
+    assertTrue(map.containsKey(x));
+    assertNull(map.get(x));
+    assertEquals("z", map.get(z));
+    assertEquals(Arrays.asList(fieldX, x, y, z), new ArrayList<>(map.keySet()));
+
+    Map<ClassField, String> expected = new HashMap<>();
+    expected.put(fieldX, "X");
+    expected.put(x, null);
+    expected.put(y, "y");
+    expected.put(z, "z");
+    assertEquals(expected, map);
+    assertEquals(map, new ClassFieldMap<>(b, expected));
+
+    assertEquals("y", map.remove(y));
+    assertEquals("z", map.remove(z));
+    assertFalse(map.containsKey(y));
+    assertEquals(2, map.size());
+    for (Map.Entry<ClassField, String> entry : map.entrySet()) {
+      entry.setValue(entry.getKey().getName());
+    }
+    assertEquals("x", map.get(x));
+    assertNotEquals(map, new ClassFieldMap<>(b, expected));
+  }
+
+  @Test
+  public void ordinalTest() {
+    typeCheckModule(
+      "\\class A | a : Nat\n" +
+      "\\class B | b : Nat\n" +
+      "\\class C \\extends A | c : Nat\n" +
+      "\\class D \\extends B, C");
+    ClassField a = (ClassField) getDefinition("A.a");
+    ClassField b = (ClassField) getDefinition("B.b");
+    ClassField c = (ClassField) getDefinition("C.c");
+    ClassDefinition classC = (ClassDefinition) getDefinition("C");
+    ClassDefinition classD = (ClassDefinition) getDefinition("D");
+
+    assertEquals(0, a.getOrdinal());
+    assertEquals(0, b.getOrdinal());
+    assertEquals(1, c.getOrdinal());
+    assertEquals(0, classC.getFieldIndex(a));
+    assertEquals(1, classC.getFieldIndex(c));
+    assertEquals(-1, classC.getFieldIndex(b));
+    // Fields of D are not stored at their ordinals since fields of B come first
+    for (int i = 0; i < classD.getNumberOfFields(); i++) {
+      assertEquals(i, classD.getFieldIndex(classD.getField(i)));
+    }
+    assertEquals(3, classD.getNumberOfFields());
+    assertNotEquals(a.getOrdinal(), classD.getFieldIndex(a));
+  }
+
+  @Test
+  public void failFastTest() {
+    typeCheckModule(
+      "\\class A | x : Nat | y : Nat\n" +
+      "\\class C | z : Nat");
+    ClassDefinition a = (ClassDefinition) getDefinition("A");
+    ClassField x = (ClassField) getDefinition("A.x");
+    ClassField y = (ClassField) getDefinition("A.y");
+    ClassField z = (ClassField) getDefinition("C.z");
+
+    Map<ClassField, String> map = new ClassFieldMap<>(a);
+    map.put(x, "x");
+    map.put(y, "y");
+    Iterator<ClassField> iterator = map.keySet().iterator();
+    iterator.next();
+    map.put(y, "y'");
+    iterator.next();
+
+    iterator = map.keySet().iterator();
+    iterator.next();
+    map.put(z, "z");
+    try {
+      iterator.next();
+      fail();
+    } catch (ConcurrentModificationException ignored) {
+    }
+
+    iterator = map.keySet().iterator();
+    iterator.next();
+    iterator.remove();
+    iterator.next();
+    map.remove(z);
+    try {
+      iterator.remove();
+      fail();
+    } catch (ConcurrentModificationException ignored) {
+    }
+  }
+}
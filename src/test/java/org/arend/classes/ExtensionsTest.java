@@ -14,8 +14,7 @@ import java.util.Collections;
 import static org.arend.Matchers.*;
 import static org.arend.core.expr.ExpressionFactory.Suc;
 import static org.arend.core.expr.ExpressionFactory.Zero;
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class ExtensionsTest extends TypeCheckingTestCase {
   @Test
@@ -430,4 +429,72 @@ public class ExtensionsTest extends TypeCheckingTestCase {
       "  | y : X\n" +
       "\\func test (d : D) => d.x = {d.X} y");
   }
+
+  @Test
+  public void subClassTest() {
+    typeCheckModule(
+      "\\class A (X : \\Type)\n" +
+      "\\class B \\extends A\n" +
+      "\\class C \\extends A\n" +
+      "\\class D \\extends B, C\n" +
+      "\\class E");
+    ClassDefinition a = (ClassDefinition) getDefinition("A");
+    ClassDefinition b = (ClassDefinition) getDefinition("B");
+    ClassDefinition c = (ClassDefinition) getDefinition("C");
+    ClassDefinition d = (ClassDefinition) getDefinition("D");
+    ClassDefinition e = (ClassDefinition) getDefinition("E");
+    assertTrue(d.isSubClassOf(a));
+    assertTrue(d.isSubClassOf(b));
+    assertTrue(d.isSubClassOf(c));
+    assertTrue(d.isSubClassOf(d));
+    assertFalse(b.isSubClassOf(c));
+    assertFalse(a.isSubClassOf(d));
+    assertFalse(d.isSubClassOf(e));
+  }
+
+  @Test
+  public void subClassChangedTest() {
+    typeCheckModule(
+      "\\class A (X : \\Type)\n" +
+      "\\class B \\extends A\n" +
+      "\\class C \\extends A\n" +
+      "\\class D \\extends B, C\n" +
+      "\\class E");
+    ClassDefinition a = (ClassDefinition) getDefinition("A");
+    ClassDefinition b = (ClassDefinition) getDefinition("B");
+    ClassDefinition c = (ClassDefinition) getDefinition("C");
+    ClassDefinition d = (ClassDefinition) getDefinition("D");
+    ClassDefinition e = (ClassDefinition) getDefinition("E");
+    assertTrue(d.isSubClassOf(a));
+    assertFalse(d.isSubClassOf(e));
+    // Changes of super classes of an ancestor are visible in subclasses
+    c.addSuperClass(e);
+    assertTrue(d.isSubClassOf(e));
+    b.clear();
+    assertTrue(d.isSubClassOf(a));
+    c.clear();
+    assertFalse(d.isSubClassOf(a));
+    assertFalse(d.isSubClassOf(e));
+    assertTrue(d.isSubClassOf(c));
+  }
+
+  @Test
+  public void fieldIndicesTest() {
+    typeCheckModule(
+      "\\class A (X : \\Type)\n" +
+      "  | x : X\n" +
+      "\\class B \\extends A\n" +
+      "  | y : X");
+    ClassDefinition a = (ClassDefinition) getDefinition("A");
+    ClassDefinition b = (ClassDefinition) getDefinition("B");
+    assertEquals(3, b.getNumberOfFields());
+    int i = 0;
+    for (ClassField field : b.getFields()) {
+      assertEquals(i, b.getFieldIndex(field));
+      assertEquals(field, b.getField(i));
+      i++;
+    }
+    assertEquals(a.getFieldIndex((ClassField) getDefinition("A.x")), b.getFieldIndex((ClassField) getDefinition("A.x")));
+    assertEquals(-1, a.getFieldIndex((ClassField) getDefinition("B.y")));
+  }
 }
@@ -0,0 +1,149 @@
+package org.arend.library;
+
+import org.arend.ext.module.ModulePath;
+import org.arend.frontend.library.FileSourceLibrary;
+import org.arend.module.error.ExceptionError;
+import org.arend.naming.scope.Scope;
+import org.arend.source.BinaryContainer;
+import org.arend.source.ContainerBinarySource;
+import org.arend.util.FileUtils;
+import org.arend.util.Range;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class BinaryContainerTest extends LibraryTestCase {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void packAndLoad() throws IOException {
+    ModulePath modulePathA = new ModulePath("A");
+    ModulePath modulePathB = new ModulePath("B", "C");
+    library.addModule(modulePathA, "\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (suc (f n))");
+    library.addModule(modulePathB, "\\import A \\func g => f 3");
+    assertTrue(libraryManager.loadLibrary(library, null));
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+
+    Path file = folder.getRoot().toPath().resolve(FileUtils.BINARY_CONTAINER_FILE);
+    assertTrue(BinaryContainer.pack(library, file, errorReporter));
+    libraryManager.unloadLibrary(library);
+
+    BinaryContainer container = BinaryContainer.open(file);
+    assertEquals(new HashSet<>(Arrays.asList(modulePathA, modulePathB)), new HashSet<>(container.getModules()));
+    library.setBinarySource(modulePathA, new ContainerBinarySource(container, modulePathA));
+    library.setBinarySource(modulePathB, new ContainerBinarySource(container, modulePathB));
+    library.addModule(new ModulePath("D"), "\\import A \\import B.C \\func h : g = 6 => idp");
+
+    assertTrue(libraryManager.loadLibrary(library, null));
+    Scope scope = library.getModuleScopeProvider().forModule(modulePathB);
+    assertThat(typecheckerState.getTypechecked(get(scope, "g")), is(notNullValue()));
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void corruptedContainer() throws IOException {
+    Path file = folder.getRoot().toPath().resolve(FileUtils.BINARY_CONTAINER_FILE);
+    Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+    try {
+      BinaryContainer.open(file);
+      fail();
+    } catch (IOException ignored) {
+    }
+  }
+
+  private FileSourceLibrary createFileLibrary(Path sourceDir, Path binaryDir, ModulePath modulePath) {
+    return new FileSourceLibrary("test", sourceDir, binaryDir, null, null, Collections.singleton(modulePath), true, Collections.emptyList(), Range.unbound(), typecheckerState);
+  }
+
+  @Test
+  public void persistOverContainer() throws IOException {
+    Path sourceDir = folder.newFolder("src").toPath();
+    Path binaryDir = folder.newFolder("bin").toPath();
+    ModulePath modulePath = new ModulePath("A");
+    Path sourceFile = FileUtils.sourceFile(sourceDir, modulePath);
+    Files.write(sourceFile, "\\func f => 0".getBytes(StandardCharsets.UTF_8));
+
+    FileSourceLibrary fileLibrary = createFileLibrary(sourceDir, binaryDir, modulePath);
+    assertTrue(libraryManager.loadLibrary(fileLibrary, null));
+    typechecking.typecheckLibrary(fileLibrary);
+    assertTrue(fileLibrary.packBinaries(errorReporter));
+    libraryManager.unloadLibrary(fileLibrary);
+
+    Path containerFile = binaryDir.resolve(FileUtils.BINARY_CONTAINER_FILE);
+    Files.write(sourceFile, "\\func f => 0 \\func g => 1".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(sourceFile, FileTime.fromMillis(Files.getLastModifiedTime(containerFile).toMillis() + 1000));
+    assertTrue(libraryManager.loadLibrary(fileLibrary, null));
+    assertTrue(fileLibrary.supportsPersisting());
+    typechecking.typecheckLibrary(fileLibrary);
+    assertTrue(fileLibrary.persistUpdateModules(errorReporter));
+    libraryManager.unloadLibrary(fileLibrary);
+
+    // The module is loaded from its binary file, which is newer than the container
+    assertTrue(libraryManager.loadLibrary(fileLibrary, null));
+    assertThat(fileLibrary.getUpdatedModules(), is(empty()));
+    Scope scope = fileLibrary.getModuleScopeProvider().forModule(modulePath);
+    assertThat(typecheckerState.getTypechecked(get(scope, "g")), is(notNullValue()));
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void repackOpenContainer() throws IOException {
+    Path sourceDir = folder.newFolder("src").toPath();
+    Path binaryDir = folder.newFolder("bin").toPath();
+    ModulePath modulePath = new ModulePath("A");
+    Files.write(FileUtils.sourceFile(sourceDir, modulePath), "\\func f => 0".getBytes(StandardCharsets.UTF_8));
+
+    FileSourceLibrary fileLibrary = createFileLibrary(sourceDir, binaryDir, modulePath);
+    assertTrue(libraryManager.loadLibrary(fileLibrary, null));
+    typechecking.typecheckLibrary(fileLibrary);
+    assertTrue(fileLibrary.packBinaries(errorReporter));
+    libraryManager.unloadLibrary(fileLibrary);
+
+    // The library loads modules from the container, so it is mapped when the library is packed again
+    assertTrue(libraryManager.loadLibrary(fileLibrary, null));
+    BinaryContainer container = fileLibrary.getBinaryContainer();
+    assertThat(container, is(notNullValue()));
+    assertTrue(container.containsModule(modulePath));
+    assertTrue(fileLibrary.packBinaries(errorReporter));
+    assertThat(container.getModules(), is(empty()));
+    assertThat(container.getModule(modulePath), is(nullValue()));
+    assertThat(Files.exists(binaryDir.resolve(FileUtils.BINARY_CONTAINER_FILE + ".tmp")), is(false));
+    libraryManager.unloadLibrary(fileLibrary);
+
+    assertTrue(libraryManager.loadLibrary(fileLibrary, null));
+    assertTrue(fileLibrary.getBinaryContainer().containsModule(modulePath));
+    Scope scope = fileLibrary.getModuleScopeProvider().forModule(modulePath);
+    assertThat(typecheckerState.getTypechecked(get(scope, "f")), is(notNullValue()));
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void corruptedContainerReported() throws IOException {
+    Path sourceDir = folder.newFolder("src").toPath();
+    Path binaryDir = folder.newFolder("bin").toPath();
+    ModulePath modulePath = new ModulePath("A");
+    Files.write(FileUtils.sourceFile(sourceDir, modulePath), "\\func f => 0".getBytes(StandardCharsets.UTF_8));
+    Files.write(binaryDir.resolve(FileUtils.BINARY_CONTAINER_FILE), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+
+    FileSourceLibrary fileLibrary = createFileLibrary(sourceDir, binaryDir, modulePath);
+    assertTrue(libraryManager.loadLibrary(fileLibrary, null));
+    assertThat(fileLibrary.getBinaryContainer(), is(nullValue()));
+    assertThat(errorList, hasSize(1));
+    assertThat(errorList.get(0), is(instanceOf(ExceptionError.class)));
+  }
+}
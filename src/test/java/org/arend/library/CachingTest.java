@@ -1,15 +1,27 @@
 package org.arend.library;
 
 import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
 import org.arend.ext.module.ModulePath;
+import org.arend.module.error.DeserializationError;
+import org.arend.module.serialization.ExpressionProtos;
+import org.arend.module.serialization.ModuleProtos;
+import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.naming.scope.Scope;
 import org.arend.source.Source;
+import org.arend.source.SourceLoader;
 import org.arend.term.group.ChildGroup;
 import org.arend.term.group.Group;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
 
 import static org.arend.Matchers.goal;
 import static org.arend.Matchers.typecheckingError;
@@ -163,6 +175,369 @@ public class CachingTest extends LibraryTestCase {
     assertThat(errorList, is(empty()));
   }
 
+  @Test
+  public void sourceTouched() {
+    library.addModule(new ModulePath("A"), "\\func f => 0");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(new ModulePath("A"), "\\func f => 0", true);
+    libraryManager.loadLibrary(library, null);
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("A")), "f")), is(notNullValue()));
+    assertThat(library.getUpdatedModules(), is(empty()));
+  }
+
+  @Test
+  public void dependencyInterfaceChanged() {
+    library.addModule(new ModulePath("A"), "\\func a => 0");
+    library.addModule(new ModulePath("B"), "\\import A \\func b : a = 0 => idp");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(new ModulePath("A"), "\\func a => 1", true);
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    assertThatErrorsAre(typecheckingError());
+    errorList.clear();
+    library.persistModule(new ModulePath("A"), IdReferableConverter.INSTANCE, errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    libraryManager.loadLibrary(library, null);
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("A")), "a")), is(notNullValue()));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("B")), "b")), is(nullValue()));
+    typechecking.typecheckLibrary(library);
+    assertThatErrorsAre(typecheckingError());
+  }
+
+  @Test
+  public void dependencyLemmaBodyChanged() {
+    library.addModule(new ModulePath("A"), "\\lemma a : 0 = 0 => idp");
+    library.addModule(new ModulePath("B"), "\\import A \\func b : 0 = 0 => a");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(new ModulePath("A"), "\\lemma a : 0 = 0 => path (\\lam _ => 0)", true);
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistModule(new ModulePath("A"), IdReferableConverter.INSTANCE, errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    // The interface of A did not change, so the binary of B is still up to date
+    libraryManager.loadLibrary(library, null);
+    assertThat(library.getUpdatedModules(), is(empty()));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("B")), "b")), is(notNullValue()));
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void dependencyBodyChangedOnLoading() {
+    library.addModule(new ModulePath("A"), "\\lemma a : 0 = 0 => idp");
+    library.addModule(new ModulePath("B"), "\\import A \\func b : 0 = 0 => a");
+    libraryManager.loadLibrary(library, typechecking);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    // A is typechecked while the library is loaded and its interface did not change, so B is loaded from its binary
+    library.updateModule(new ModulePath("A"), "\\lemma a : 0 = 0 => path (\\lam _ => 0)", true);
+    libraryManager.loadLibrary(library, typechecking);
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(new ModulePath("A")));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("A")), "a")), is(notNullValue()));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("B")), "b")), is(notNullValue()));
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void dependencyInterfaceChangedOnLoading() {
+    library.addModule(new ModulePath("A"), "\\func a => 0");
+    library.addModule(new ModulePath("B"), "\\import A \\func b : a = 0 => idp");
+    libraryManager.loadLibrary(library, typechecking);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(new ModulePath("A"), "\\func a => 1", true);
+    libraryManager.loadLibrary(library, typechecking);
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(new ModulePath("A"), new ModulePath("B")));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("B")), "b")), is(nullValue()));
+    typechecking.typecheckLibrary(library);
+    assertThatErrorsAre(typecheckingError());
+  }
+
+  @Test
+  public void sharedExpressions() {
+    library.addModule(new ModulePath("A"),
+      "\\data D (n : Nat) | con\n" +
+      "\\func f (x : \\Pi (n : Nat) -> D n) : \\Pi (n : Nat) -> D n => x\n" +
+      "\\func g (x : \\Pi (n : Nat) -> D n) : \\Pi (n : Nat) -> D n => x");
+    library.addModule(new ModulePath("B"), "\\import A \\func h : \\Pi (n : Nat) -> D n => g (f (\\lam n => con))");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(new ModulePath("B"), "\\import A \\func h : \\Pi (n : Nat) -> D n => f (g (\\lam n => con))", true);
+    libraryManager.loadLibrary(library, null);
+    Scope scope = library.getModuleScopeProvider().forModule(new ModulePath("A"));
+    FunctionDefinition f = (FunctionDefinition) typecheckerState.getTypechecked(get(scope, "f"));
+    FunctionDefinition g = (FunctionDefinition) typecheckerState.getTypechecked(get(scope, "g"));
+    assertThat(f, is(notNullValue()));
+    assertThat(g, is(notNullValue()));
+    assertSame(f.getResultType(), g.getResultType());
+    assertSame(f.getResultType(), f.getParameters().getTypeExpr());
+    assertSame(f.getParameters().getTypeExpr(), g.getParameters().getTypeExpr());
+
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void lazyBodies() {
+    library.addFlag(SourceLibrary.Flag.LAZY_BODIES);
+    library.addModule(new ModulePath("A"),
+      "\\func f (n : Nat) : Nat | 0 => 0 | suc n => suc (suc (f n))\n" +
+      "\\func g => f 2");
+    library.addModule(new ModulePath("B"), "\\import A \\func h : g = 4 => idp");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(new ModulePath("B"), "\\import A \\func h : f 3 = 6 => idp", true);
+    libraryManager.loadLibrary(library, null);
+    Scope scope = library.getModuleScopeProvider().forModule(new ModulePath("A"));
+    FunctionDefinition f = (FunctionDefinition) typecheckerState.getTypechecked(get(scope, "f"));
+    FunctionDefinition g = (FunctionDefinition) typecheckerState.getTypechecked(get(scope, "g"));
+    assertFalse(f.isBodyLoaded());
+    assertFalse(g.isBodyLoaded());
+
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+    assertTrue(f.isBodyLoaded());
+    assertFalse(g.isBodyLoaded());
+  }
+
+  @Test
+  public void lazyBodyDependencies() {
+    Set<String> dependencies = new LinkedHashSet<>();
+    MemoryLibrary library = new MemoryLibrary(typecheckerState) {
+      @NotNull
+      @Override
+      public DependencyListener getDependencyListener() {
+        return new DependencyListener() {
+          @Override
+          public void dependsOn(TCReferable def1, TCReferable def2) {
+            dependencies.add(def1.textRepresentation() + " -> " + def2.textRepresentation());
+          }
+
+          @Override
+          public Set<? extends TCReferable> update(TCReferable definition) {
+            return Collections.emptySet();
+          }
+        };
+      }
+    };
+    library.addFlag(SourceLibrary.Flag.LAZY_BODIES);
+    library.addModule(new ModulePath("A"),
+      "\\func f => 0\n" +
+      "\\func g : Nat => f");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    libraryManager.loadLibrary(library, null);
+    Scope scope = library.getModuleScopeProvider().forModule(new ModulePath("A"));
+    assertFalse(((FunctionDefinition) typecheckerState.getTypechecked(get(scope, "g"))).isBodyLoaded());
+    assertThat(dependencies, hasItem("g -> f"));
+  }
+
+  @Test
+  public void eagerBodiesWithoutBodyDependencies() throws IOException {
+    ModulePath modulePath = new ModulePath("A");
+    library.addModule(modulePath,
+      "\\func f => 0\n" +
+      "\\func g : Nat => f");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    MemoryBinarySource binarySource = (MemoryBinarySource) library.getBinarySource(modulePath);
+    assertThat(binarySource, is(notNullValue()));
+    ModuleProtos.Module moduleProto = ModuleProtos.Module.parseFrom(binarySource.getInputStream());
+    assertFalse(moduleProto.getLazyBodies());
+    for (ModuleProtos.Group subgroup : moduleProto.getGroup().getSubgroupList()) {
+      assertThat(subgroup.getDefinition().getFunction().getBodyDependencyList(), is(empty()));
+    }
+
+    // The module does not record dependencies of bodies, so they are not deferred
+    library.addFlag(SourceLibrary.Flag.LAZY_BODIES);
+    libraryManager.loadLibrary(library, null);
+    Scope scope = library.getModuleScopeProvider().forModule(modulePath);
+    assertTrue(((FunctionDefinition) typecheckerState.getTypechecked(get(scope, "g"))).isBodyLoaded());
+  }
+
+  @Test
+  public void resetDefinitionResetsDependencies() {
+    DependencyCollector dependencyCollector = new DependencyCollector(typecheckerState);
+    MemoryLibrary library = new MemoryLibrary(typecheckerState) {
+      @NotNull
+      @Override
+      public DependencyListener getDependencyListener() {
+        return dependencyCollector;
+      }
+    };
+    library.addModule(new ModulePath("A"), "\\func f => 0");
+    library.addModule(new ModulePath("B"), "\\import A \\func g : f = 0 => idp");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    libraryManager.loadLibrary(library, null);
+    TCReferable f = get(library.getModuleScopeProvider().forModule(new ModulePath("A")), "f");
+    TCReferable g = get(library.getModuleScopeProvider().forModule(new ModulePath("B")), "g");
+    assertThat(typecheckerState.getTypechecked(g), is(notNullValue()));
+    library.resetDefinition(f);
+    assertThat(typecheckerState.getTypechecked(f), is(nullValue()));
+    assertThat(typecheckerState.getTypechecked(g), is(nullValue()));
+  }
+
+  @Test
+  public void updatedLemmaLoadedFromBinary() {
+    DependencyCollector dependencyCollector = new DependencyCollector(typecheckerState);
+    MemoryLibrary library = new MemoryLibrary(typecheckerState) {
+      @NotNull
+      @Override
+      public DependencyListener getDependencyListener() {
+        return dependencyCollector;
+      }
+    };
+    ModulePath modulePath = new ModulePath("A");
+    library.addModule(modulePath, "\\lemma l : 0 = 0 => idp");
+    library.addModule(new ModulePath("B"), "\\import A \\func f : 0 = 0 => l");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    libraryManager.loadLibrary(library, null);
+    TCReferable l = get(library.getModuleScopeProvider().forModule(modulePath), "l");
+    TCReferable f = get(library.getModuleScopeProvider().forModule(new ModulePath("B")), "f");
+    Definition lemma = typecheckerState.getTypechecked(l);
+    Definition function = typecheckerState.getTypechecked(f);
+    assertThat(dependencyCollector.updateDefinition(l), contains(l));
+
+    // The interface of the lemma is checked after it is loaded, so the old definition is kept
+    SourceLoader sourceLoader = new SourceLoader(library, libraryManager);
+    sourceLoader.markLoaded(modulePath);
+    assertTrue(sourceLoader.loadBinary(modulePath));
+    assertSame(lemma, typecheckerState.getTypechecked(l));
+    assertSame(function, typecheckerState.getTypechecked(f));
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void corruptLazyBody() throws IOException {
+    library.addFlag(SourceLibrary.Flag.LAZY_BODIES);
+    ModulePath modulePath = new ModulePath("A");
+    library.addModule(modulePath,
+      "\\func f => 0\n" +
+      "\\func g : Nat => f");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    // Replace the body of g with a call to a definition that does not exist
+    MemoryBinarySource binarySource = (MemoryBinarySource) library.getBinarySource(modulePath);
+    assertThat(binarySource, is(notNullValue()));
+    ModuleProtos.Module moduleProto = ModuleProtos.Module.parseFrom(binarySource.getInputStream());
+    ModuleProtos.Group.Builder groupBuilder = moduleProto.getGroup().toBuilder();
+    for (ModuleProtos.Group.Builder subgroup : groupBuilder.getSubgroupBuilderList()) {
+      if (subgroup.getReferable().getName().equals("g")) {
+        subgroup.getDefinitionBuilder().getFunctionBuilder().getBodyBuilder().setExpression(ExpressionProtos.Expression.newBuilder().setFunCall(ExpressionProtos.Expression.FunCall.newBuilder().setFunRef(1000)));
+      }
+    }
+    byte[] bytes = moduleProto.toBuilder().setGroup(groupBuilder).build().toByteArray();
+    library.setBinarySource(modulePath, new MemoryBinarySource(modulePath) {
+      @Override
+      protected InputStream getInputStream() {
+        return new ByteArrayInputStream(bytes);
+      }
+
+      @Override
+      public boolean isAvailable() {
+        return true;
+      }
+    });
+
+    libraryManager.loadLibrary(library, null);
+    assertThat(errorList, is(empty()));
+    Scope scope = library.getModuleScopeProvider().forModule(modulePath);
+    FunctionDefinition g = (FunctionDefinition) typecheckerState.getTypechecked(get(scope, "g"));
+    assertThat(g.getBody(), is(nullValue()));
+    assertThat(g.status(), is(Definition.TypeCheckingStatus.HAS_ERRORS));
+    assertThat(errorList, hasSize(1));
+    assertThat(errorList.get(0), is(instanceOf(DeserializationError.class)));
+  }
+
+  @Test
+  public void parallelLoading() {
+    library.addModule(new ModulePath("A"), "\\func a : Nat => 0");
+    library.addModule(new ModulePath("B"), "\\import A \\func b : Nat => a");
+    library.addModule(new ModulePath("C"), "\\import A \\func c : Nat => a");
+    library.addModule(new ModulePath("D"), "\\import B \\import C \\func d : b = c => idp");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    libraryManager.setNumberOfThreads(4);
+    libraryManager.loadLibrary(library, null);
+    assertThat(errorList, is(empty()));
+    for (String module : new String[] { "A", "B", "C", "D" }) {
+      Scope scope = library.getModuleScopeProvider().forModule(new ModulePath(module));
+      Definition definition = typecheckerState.getTypechecked(get(scope, module.toLowerCase()));
+      assertThat(definition, is(notNullValue()));
+      assertThat(definition.status(), is(Definition.TypeCheckingStatus.NO_ERRORS));
+    }
+  }
+
+  @Test
+  public void parallelLoadingRejectedModule() {
+    library.addModule(new ModulePath("A"), "\\func a : Nat => 0");
+    library.addModule(new ModulePath("B"), "\\import A \\func b => a");
+    library.addModule(new ModulePath("C"), "\\func c : Nat => 0");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    // B is prefetched, but it is rejected since A was changed, so its definitions must not be recorded
+    library.updateModule(new ModulePath("A"), "\\func a : Int => 0", true);
+    libraryManager.setNumberOfThreads(4);
+    libraryManager.loadLibrary(library, null);
+    assertThat(errorList, is(empty()));
+    Scope scopeB = library.getModuleScopeProvider().forModule(new ModulePath("B"));
+    assertThat(typecheckerState.getTypechecked(get(scopeB, "b")), is(nullValue()));
+    Scope scopeC = library.getModuleScopeProvider().forModule(new ModulePath("C"));
+    assertThat(typecheckerState.getTypechecked(get(scopeC, "c")), is(notNullValue()));
+
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+    assertThat(typecheckerState.getTypechecked(get(scopeB, "b")), is(notNullValue()));
+  }
+
   /* These tests does not make sense with the current implementation of libraries.
   @Test
   public void removeRawSource() {
@@ -1,11 +1,16 @@
 package org.arend.library;
 
 import org.arend.ext.module.ModulePath;
+import org.arend.naming.reference.TCReferable;
 import org.arend.source.Source;
 import org.arend.source.SourceLoader;
 import org.arend.term.group.Group;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -69,4 +74,27 @@ public class LibraryLoadingTest extends LibraryTestCase {
     assertThat(library.getModuleGroup(modulePath), is(nullValue()));
     assertThat(errorList, is(not(empty())));
   }
+
+  @Test
+  public void resetInBulk() {
+    List<List<String>> reset = new ArrayList<>();
+    MemoryLibrary library = new MemoryLibrary(typecheckerState) {
+      @Override
+      public void resetDefinitions(Collection<? extends TCReferable> definitions) {
+        List<String> names = new ArrayList<>();
+        for (TCReferable definition : definitions) {
+          names.add(definition.textRepresentation());
+        }
+        reset.add(names);
+        super.resetDefinitions(definitions);
+      }
+    };
+    library.addModule(new ModulePath("A"), "\\func f => 0 \\where \\func g => 1");
+    assertTrue(libraryManager.loadLibrary(library, null));
+    reset.clear();
+    libraryManager.unloadLibrary(library);
+    // All definitions of the library are reset in one call
+    assertThat(reset, hasSize(1));
+    assertThat(reset.get(0), hasItems("f", "g"));
+  }
 }
@@ -0,0 +1,170 @@
+package org.arend.library;
+
+import org.arend.ArendTestCase;
+import org.arend.core.definition.Definition;
+import org.arend.ext.module.ModulePath;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.frontend.library.FileSourceLibrary;
+import org.arend.frontend.library.LibraryUpdater;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.scope.Scope;
+import org.arend.typechecking.TypecheckingListener;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.util.FileUtils;
+import org.arend.util.Range;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LibraryUpdaterTest extends ArendTestCase {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final ModulePath moduleA = new ModulePath("A");
+  private final ModulePath moduleB = new ModulePath("B");
+  private final ModulePath moduleC = new ModulePath("C");
+  private final DependencyCollector dependencyCollector = new DependencyCollector(typecheckerState);
+  private final TypecheckingOrderingListener collectingTypechecking = new TypecheckingOrderingListener(new InstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, errorReporter, dependencyCollector, PositionComparator.INSTANCE, TypecheckingListener.DEFAULT);
+  private Path sourceDir;
+  private FileSourceLibrary fileLibrary;
+  private LibraryUpdater updater;
+
+  @Before
+  public void initializeLibrary() throws IOException {
+    sourceDir = folder.newFolder("src").toPath();
+    fileLibrary = new FileSourceLibrary("test", sourceDir, folder.newFolder("bin").toPath(), null, null, new LinkedHashSet<>(Arrays.asList(moduleA, moduleB, moduleC)), true, Collections.emptyList(), Range.unbound(), typecheckerState);
+    fileLibrary.setDependencyListener(dependencyCollector);
+    updater = new LibraryUpdater(libraryManager, typecheckerState, dependencyCollector);
+  }
+
+  private void write(ModulePath module, String text) throws IOException {
+    Files.write(FileUtils.sourceFile(sourceDir, module), text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private Definition getDefinition(ModulePath module, String name) {
+    Scope scope = fileLibrary.getModuleScopeProvider().forModule(module);
+    assertNotNull(scope);
+    return typecheckerState.getTypechecked(get(scope, name));
+  }
+
+  private void update(ModulePath module) {
+    updater.update(Collections.singletonList(fileLibrary), Collections.singletonMap(fileLibrary, Collections.singleton(module)));
+    collectingTypechecking.typecheckLibrary(fileLibrary);
+    if (updater.hasResetDefinitions(fileLibrary)) {
+      collectingTypechecking.typecheckLibrary(fileLibrary);
+    }
+    assertFalse(updater.hasResetDefinitions(fileLibrary));
+    fileLibrary.clearUpdateModules();
+  }
+
+  private void load() {
+    assertTrue(libraryManager.loadLibrary(fileLibrary, null));
+    collectingTypechecking.typecheckLibrary(fileLibrary);
+    fileLibrary.clearUpdateModules();
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void lemmaBodyChangedTest() throws IOException {
+    write(moduleA, "\\lemma lem : 0 = 0 => idp \\func f => 1");
+    write(moduleB, "\\import A \\func g : 0 = 0 => lem \\func h : f = 1 => idp");
+    write(moduleC, "\\func k => 0");
+    load();
+    Definition lem = getDefinition(moduleA, "lem");
+    Definition g = getDefinition(moduleB, "g");
+    Definition h = getDefinition(moduleB, "h");
+    Definition k = getDefinition(moduleC, "k");
+
+    write(moduleA, "\\lemma lem : 0 = 0 => idp {Nat} {0} \\func f => 1");
+    update(moduleA);
+    assertThat(errorList, is(empty()));
+    // The interface of the lemma did not change, so definitions that use it are kept
+    assertSame(lem, getDefinition(moduleA, "lem"));
+    assertSame(g, getDefinition(moduleB, "g"));
+    // Other definitions of the changed module are typechecked again together with their dependencies
+    assertNotSame(h, getDefinition(moduleB, "h"));
+    assertNotNull(getDefinition(moduleB, "h"));
+    assertSame(k, getDefinition(moduleC, "k"));
+  }
+
+  @Test
+  public void persistAfterUpdateTest() throws IOException {
+    write(moduleA, "\\lemma lem : 0 = 0 => idp");
+    write(moduleB, "\\import A \\data D | con \\func g : 0 = 0 => lem");
+    write(moduleC, "\\import B \\func h : D => con");
+    load();
+    Definition g = getDefinition(moduleB, "g");
+
+    write(moduleA, "\\lemma lem : 0 = 0 => idp {Nat} {0}");
+    update(moduleA);
+    assertThat(errorList, is(empty()));
+    // Kept definitions refer to the new referables
+    Scope scope = fileLibrary.getModuleScopeProvider().forModule(moduleB);
+    assertNotNull(scope);
+    for (String name : Arrays.asList("D", "con", "g")) {
+      TCReferable referable = (TCReferable) get(scope, name);
+      assertSame(referable, typecheckerState.getTypechecked(referable).getReferable());
+    }
+    assertSame(g, getDefinition(moduleB, "g"));
+
+    for (ModulePath module : Arrays.asList(moduleA, moduleB, moduleC)) {
+      assertTrue(fileLibrary.persistModule(module, IdReferableConverter.INSTANCE, errorReporter));
+    }
+    libraryManager.unloadLibrary(fileLibrary);
+    assertTrue(libraryManager.loadLibrary(fileLibrary, null));
+    assertThat(fileLibrary.getUpdatedModules(), is(empty()));
+    assertNotNull(getDefinition(moduleB, "g"));
+    assertNotNull(getDefinition(moduleC, "h"));
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void functionChangedTest() throws IOException {
+    write(moduleA, "\\func f => 1");
+    write(moduleB, "\\import A \\func g => f");
+    write(moduleC, "\\import B \\func h => g \\func k => 0");
+    load();
+    Definition k = getDefinition(moduleC, "k");
+
+    write(moduleA, "\\func f => 2");
+    update(moduleA);
+    assertThat(errorList, is(empty()));
+    assertSame(k, getDefinition(moduleC, "k"));
+
+    // The new body is visible in a module that imports the changed one transitively
+    write(moduleC, "\\import A \\import B \\func h : g = 2 => idp \\func k => 0");
+    update(moduleC);
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void definitionRemovedTest() throws IOException {
+    write(moduleA, "\\func f => 1 \\func f' => 2");
+    write(moduleB, "\\import A \\func g => f'");
+    write(moduleC, "\\import A \\func h => f");
+    load();
+    Definition h = getDefinition(moduleC, "h");
+
+    write(moduleA, "\\func f => 1");
+    update(moduleA);
+    // B refers to a removed definition
+    assertThat(errorList, is(not(empty())));
+    assertNull(get(fileLibrary.getModuleScopeProvider().forModule(moduleA), "f'"));
+    assertNotSame(h, getDefinition(moduleC, "h"));
+    assertNotNull(getDefinition(moduleC, "h"));
+  }
+}
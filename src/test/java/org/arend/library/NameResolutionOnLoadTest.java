@@ -2,11 +2,15 @@ package org.arend.library;
 
 import org.arend.ext.module.ModulePath;
 import org.arend.frontend.reference.ConcreteLocatedReferable;
+import org.arend.naming.reference.ClassReferable;
 import org.arend.naming.scope.Scope;
 import org.arend.source.SourceLoader;
 import org.arend.term.concrete.Concrete;
 import org.junit.Test;
 
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
@@ -91,6 +95,31 @@ public class NameResolutionOnLoadTest extends LibraryTestCase {
     assertThat(defCall2.getReferent(), is(get(moduleX, "f")));
   }
 
+  @Test
+  public void parallelResolution() {
+    setupSources();
+    library.addModule(new ModulePath("P"), "\\class P (x : Nat)");
+    library.addModule(new ModulePath("Q"), "\\import P \\class Q \\extends P");
+    library.addModule(new ModulePath("R"), "\\import Q \\import B \\func r (q : Q) => q.x Nat.+ b");
+    libraryManager.setNumberOfThreads(4);
+    assertTrue(libraryManager.loadLibrary(library, null));
+    assertThat(errorList, is(empty()));
+
+    Scope moduleA = library.getModuleScopeProvider().forModule(new ModulePath("A"));
+    Scope moduleB = library.getModuleScopeProvider().forModule(new ModulePath("B"));
+    Concrete.ReferenceExpression defCall1 = (Concrete.ReferenceExpression) ((Concrete.TermFunctionBody) ((Concrete.FunctionDefinition) ((ConcreteLocatedReferable) get(moduleA, "a")).getDefinition()).getBody()).getTerm();
+    assertThat(defCall1.getReferent(), is(get(moduleB, "b")));
+
+    Scope moduleX = library.getModuleScopeProvider().forModule(new ModulePath("X"));
+    Scope moduleY = library.getModuleScopeProvider().forModule(new ModulePath("Y"));
+    Concrete.ReferenceExpression defCall2 = (Concrete.ReferenceExpression) ((Concrete.TermFunctionBody) ((Concrete.FunctionDefinition) ((ConcreteLocatedReferable) get(moduleX, "f")).getDefinition()).getBody()).getTerm();
+    assertThat(defCall2.getReferent(), is(get(moduleY, "f")));
+
+    Scope moduleP = library.getModuleScopeProvider().forModule(new ModulePath("P"));
+    Scope moduleQ = library.getModuleScopeProvider().forModule(new ModulePath("Q"));
+    assertThat(((ClassReferable) get(moduleQ, "Q")).getSuperClassReferences(), is(Collections.singletonList(get(moduleP, "P"))));
+  }
+
   @Test
   public void duplicateNamesOnTopLevel() {
     library.addModule(new ModulePath("Test"), "\\func a => 0 \n \\func a => 0");
@@ -6,13 +6,12 @@ import org.arend.frontend.reference.ConcreteLocatedReferable;
 import org.arend.naming.reference.GlobalReferable;
 import org.arend.naming.reference.LocatedReferableImpl;
 import org.arend.naming.reference.Referable;
-import org.arend.naming.scope.EmptyScope;
-import org.arend.naming.scope.ListScope;
-import org.arend.naming.scope.SingletonScope;
+import org.arend.naming.scope.*;
 import org.arend.prelude.Prelude;
 import org.arend.term.FunctionKind;
 import org.arend.term.concrete.Concrete;
 import org.arend.term.group.ChildGroup;
+import org.arend.term.group.Group;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -620,6 +619,26 @@ public class NameResolverTest extends NameResolverTestCase {
     assertEquals(Arrays.asList("X", "g", "f"), names);
   }
 
+  @Test
+  public void groupScopeResolveTest() {
+    ChildGroup group = resolveNamesModule(
+      "\\import Prelude()\n" +
+      "\\module X \\where { \\func f => 0 \\func h => 1 }\n" +
+      "\\open X \\using (f \\as f') \\hiding (h)\n" +
+      "\\data D | con\n" +
+      "\\func g => f'");
+    Scope scope = group.getGroupScope();
+    Referable con = scope.resolveName("con");
+    assertNotNull(con);
+    assertSame(con, scope.resolveName("con"));
+    assertEquals("f'", scope.resolveName("f'").textRepresentation());
+    assertNull(scope.resolveName("f"));
+    assertNull(scope.resolveName("h"));
+    assertNotNull(scope.resolveNamespace("X", false));
+    assertNotNull(scope.resolveNamespace("X", false).resolveName("h"));
+    assertNull(scope.resolveNamespace("D", true).resolveName("g"));
+  }
+
   @Test
   public void importTest() {
     resolveNamesModule("\\import Foo", 1);
@@ -675,4 +694,39 @@ public class NameResolverTest extends NameResolverTestCase {
       "\\import Mod\n" +
       "\\func bar => foo");
   }
+
+  @Test
+  public void lexicalScopeCache() {
+    ChildGroup group = resolveNamesModule(
+      "\\module M \\where {\n" +
+      "  \\func f => 0\n" +
+      "  \\func h => f\n" +
+      "}\n" +
+      "\\open M \\using (f \\as g) \\hiding (h)\n" +
+      "\\func k => g \\where {\n" +
+      "  \\open M\n" +
+      "  \\func l => h\n" +
+      "}");
+    Scope parentScope = ScopeFactory.parentScopeForGroup(group, moduleScopeProvider, true);
+    LexicalScope scope = LexicalScope.insideOf(group, parentScope);
+    assertSame(scope, LexicalScope.insideOf(group, parentScope));
+    assertNotNull(scope.resolveName("g"));
+    assertSame(scope.resolveName("g"), scope.resolveName("g"));
+    assertNull(scope.resolveName("f"));
+    assertNull(scope.resolveName("h"));
+
+    Group k = null;
+    for (Group subgroup : group.getSubgroups()) {
+      if (subgroup.getReferable().textRepresentation().equals("k")) {
+        k = subgroup;
+      }
+    }
+    assertNotNull(k);
+    LexicalScope kScope = LexicalScope.insideOf(k, scope);
+    assertSame(kScope, LexicalScope.insideOf(k, scope));
+    assertNotNull(kScope.resolveName("h"));
+    assertNotNull(kScope.resolveName("g"));
+    // A different parent scope replaces the cached scope
+    assertNotSame(kScope, LexicalScope.insideOf(k, EmptyScope.INSTANCE));
+  }
 }
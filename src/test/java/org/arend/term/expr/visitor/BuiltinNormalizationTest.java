@@ -16,6 +16,7 @@ import java.util.List;
 
 import static org.arend.core.expr.ExpressionFactory.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class BuiltinNormalizationTest extends TypeCheckingTestCase {
   private static Expression funCall(FunctionDefinition definition, Expression arg1, Expression arg2) {
@@ -153,4 +154,51 @@ public class BuiltinNormalizationTest extends TypeCheckingTestCase {
     // mod 1000000000000 98765 = 29340
     assertEquals(new BigIntegerExpression(new BigInteger("29340")), funCall(Prelude.MOD, new BigIntegerExpression(new BigInteger("1000000000000")), val(98765)).normalize(NormalizationMode.WHNF));
   }
+
+  @Test
+  public void testLargeOffsets() {
+    ReferenceExpression x = new ReferenceExpression(new TypedBinding("x", Nat()));
+    ReferenceExpression y = new ReferenceExpression(new TypedBinding("y", Nat()));
+    // x + 1000000000 = suc (x + 999999999)
+    assertEquals(Suc(plus(x, val(999999999))), plus(x, val(1000000000)).normalize(NormalizationMode.WHNF));
+    // (x + 1000000000) - 999999999 = +(suc x)
+    assertEquals(Pos(Suc(x)), minus(plus(x, val(1000000000)), val(999999999)).normalize(NormalizationMode.WHNF));
+    // 1000000000 - (x + 999999999) = 1 - x
+    assertEquals(minus(val(1), x), minus(val(1000000000), plus(x, val(999999999))).normalize(NormalizationMode.WHNF));
+    // (x + 1000000000) - (y + 999999998) = suc (x + 1) - y
+    assertEquals(minus(Suc(plus(x, val(1))), y), minus(plus(x, val(1000000000)), plus(y, val(999999998))).normalize(NormalizationMode.WHNF));
+  }
+
+  @Test
+  public void testMulOverflow() {
+    // 100000 * 100000 = 10000000000
+    assertEquals(new BigIntegerExpression(new BigInteger("10000000000")), funCall(Prelude.MUL, val(100000), val(100000)).normalize(NormalizationMode.WHNF));
+    // 46341 * 46340 = 2147441940
+    assertEquals(val(2147441940), funCall(Prelude.MUL, val(46341), val(46340)).normalize(NormalizationMode.WHNF));
+  }
+
+  @Test
+  public void largeNumeralProof() {
+    typeCheckModule(
+      "\\func f (x : Nat) : x Nat.+ 1000000000 = suc (x Nat.+ 999999999) => idp\n" +
+      "\\func g (x y : Nat) : (x Nat.+ 1000000000) Nat.- (y Nat.+ 999999999) = suc x Nat.- y => idp");
+  }
+
+  @Test
+  public void largeNumeralPatternMatching() {
+    ReferenceExpression x = new ReferenceExpression(new TypedBinding("x", Nat()));
+    // suc (x + 999999999) is already in WHNF and keeps its shape
+    Expression expr = Suc(plus(x, val(999999999)));
+    assertSame(expr, expr.normalize(NormalizationMode.WHNF));
+
+    typeCheckModule(
+      "\\func pred (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | suc n => n\n" +
+      "\\func pred2 (n : Nat) : Nat\n" +
+      "  | suc (suc n) => n\n" +
+      "  | _ => 0\n" +
+      "\\func f (x : Nat) : pred (x Nat.+ 1000000000) = x Nat.+ 999999999 => idp\n" +
+      "\\func g (x : Nat) : pred2 (x Nat.+ 1000000000) = x Nat.+ 999999998 => idp");
+  }
 }
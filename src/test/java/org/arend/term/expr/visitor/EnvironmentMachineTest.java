@@ -0,0 +1,111 @@
+package org.arend.term.expr.visitor;
+
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.SmallIntegerExpression;
+import org.arend.core.expr.visitor.EnvironmentMachine;
+import org.arend.core.sort.Sort;
+import org.arend.ext.core.ops.NormalizationMode;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.runners.model.Statement;
+
+import java.util.Collections;
+
+import static org.arend.ExpressionFactory.*;
+import static org.arend.core.expr.ExpressionFactory.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class EnvironmentMachineTest extends NormalizationTest {
+  // Inherited tests normalize expressions outside of typechecking, so they are run with the machine explicitly
+  @Rule
+  public final TestRule environmentMachine = (base, description) -> new Statement() {
+    @Override
+    public void evaluate() throws Throwable {
+      Throwable error = EnvironmentMachine.run(true, () -> {
+        try {
+          base.evaluate();
+          return null;
+        } catch (Throwable e) {
+          return e;
+        }
+      });
+      if (error != null) {
+        throw error;
+      }
+    }
+  };
+
+  @Override
+  protected TypecheckingOrderingListener newTypechecking() {
+    TypecheckingOrderingListener typechecking = super.newTypechecking();
+    typechecking.setEnvironmentMachineEnabled(true);
+    return typechecking;
+  }
+
+  @Test
+  public void sessionOption() {
+    String text =
+      "\\data Tree | leaf | node Tree Tree\n" +
+      "\\func count (n : Nat) (t : Tree) : Nat\n" +
+      "  | 0, _ => 7\n" +
+      "  | suc n, t => \\case t \\with {\n" +
+      "    | leaf => count n t\n" +
+      "    | node l r => 0\n" +
+      "  }\n" +
+      "\\func test : count 100000 leaf = 7 => idp";
+    // Typechecking uses the evaluator of the session rather than the one of the calling thread
+    lastGroup = resolveNamesModule(text);
+    assertTrue(EnvironmentMachine.run(false, () -> newTypechecking().typecheckModules(Collections.singletonList(lastGroup), null)));
+    assertThat(errorList, is(empty()));
+    assertEquals(Definition.TypeCheckingStatus.NO_ERRORS, getDefinition("test").status());
+  }
+
+  @Test
+  public void deepRecursion() {
+    typeCheckModule(
+      "\\data Tree | leaf | node Tree Tree\n" +
+      "\\func size (t : Tree) : Nat\n" +
+      "  | leaf => 1\n" +
+      "  | node l r => size l Nat.+ size r\n" +
+      "\\func count (n : Nat) (t : Tree) : Nat\n" +
+      "  | 0, _ => 7\n" +
+      "  | suc n, t => \\case t \\with {\n" +
+      "    | leaf => count n t\n" +
+      "    | node l r => size l Nat.+ size r\n" +
+      "  }\n" +
+      "\\func test => count 100000 leaf");
+    Expression body = (Expression) ((FunctionDefinition) getDefinition("test")).getBody();
+    assertEquals(new SmallIntegerExpression(7), body.normalize(NormalizationMode.WHNF));
+  }
+
+  @Test
+  public void stuckCall() {
+    typeCheckModule(
+      "\\func pred (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | suc n => n\n" +
+      "\\func twice (n : Nat) => pred (pred n)");
+    DependentLink x = param("x", Nat());
+    FunctionDefinition pred = (FunctionDefinition) getDefinition("pred");
+    Expression expr = FunCall((FunctionDefinition) getDefinition("twice"), Sort.SET0, Ref(x));
+    assertEquals(FunCall(pred, Sort.SET0, FunCall(pred, Sort.SET0, Ref(x))), expr.normalize(NormalizationMode.WHNF));
+  }
+
+  @Test
+  public void caseUsesFunctionParameters() {
+    typeCheckModule(
+      "\\func f (n m : Nat) : Nat => \\case n \\with {\n" +
+      "  | 0 => m\n" +
+      "  | suc k => suc (m Nat.+ k)\n" +
+      "}\n" +
+      "\\func test => f 2 3");
+    Expression body = (Expression) ((FunctionDefinition) getDefinition("test")).getBody();
+    assertEquals(new SmallIntegerExpression(5), body.normalize(NormalizationMode.WHNF));
+  }
+}
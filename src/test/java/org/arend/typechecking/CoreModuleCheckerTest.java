@@ -0,0 +1,117 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.Definition;
+import org.arend.module.serialization.DefinitionFingerprint;
+import org.arend.naming.reference.TCReferable;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.doubleChecker.CoreHashes;
+import org.arend.typechecking.doubleChecker.CoreModuleChecker;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CoreModuleCheckerTest extends TypeCheckingTestCase {
+  private static String definitions(int n) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      builder.append("\\func a").append(i).append(" (x : Nat) : Nat | 0 => ").append(i).append(" | suc x => suc (a").append(i).append(" x)\n");
+      builder.append("\\func b").append(i).append(" : a").append(i).append(" 3 = ").append(i + 3).append(" => idp\n");
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void parallelTest() {
+    typeCheckModule(definitions(20));
+    CoreModuleChecker checker = new CoreModuleChecker(errorReporter, typecheckerState);
+    checker.setNumberOfThreads(4);
+    assertTrue(checker.checkGroups(Collections.singletonList(lastGroup)));
+    assertTrue(errorList.isEmpty());
+  }
+
+  @Test
+  public void incrementalTest() {
+    typeCheckModule(definitions(5));
+    Map<TCReferable, byte[]> verifiedHashes = new HashMap<>();
+    CoreModuleChecker checker = new CoreModuleChecker(errorReporter, typecheckerState);
+    checker.setVerifiedHashes(verifiedHashes);
+    assertTrue(checker.checkGroup(lastGroup));
+    assertEquals(0, checker.getNumberOfSkipped());
+    assertEquals(10, verifiedHashes.size());
+
+    Map<TCReferable, byte[]> previousHashes = new HashMap<>(verifiedHashes);
+    checker = new CoreModuleChecker(errorReporter, typecheckerState);
+    checker.setNumberOfThreads(4);
+    checker.setVerifiedHashes(verifiedHashes);
+    assertTrue(checker.checkGroup(lastGroup));
+    assertEquals(10, checker.getNumberOfSkipped());
+    assertEquals(previousHashes.keySet(), verifiedHashes.keySet());
+  }
+
+  @Test
+  public void dependencyChangedTest() {
+    typeCheckModule("\\func f => 0\n\\func g => f");
+    Definition g1 = getDefinition("g");
+    typeCheckModule("\\func f => 1\n\\func g => f");
+    Definition g2 = getDefinition("g");
+    assertArrayEquals(DefinitionFingerprint.compute(g1), DefinitionFingerprint.compute(g2));
+    assertFalse(Arrays.equals(new CoreHashes().getHash(g1), new CoreHashes().getHash(g2)));
+  }
+
+  @Test
+  public void mutualRecursionTest() {
+    typeCheckModule(
+      "\\func isEven (n : Nat) : Nat\n" +
+      "  | 0 => 1\n" +
+      "  | suc n => isOdd n\n" +
+      "\\func isOdd (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | suc n => isEven n");
+    CoreHashes hashes = new CoreHashes();
+    byte[] hash = hashes.getHash(getDefinition("isEven"));
+    assertNotNull(hash);
+    assertArrayEquals(hash, hashes.getHash(getDefinition("isOdd")));
+  }
+
+  @Test
+  public void mutualRecursionOrderTest() {
+    typeCheckModule(
+      "\\func one => 1\n" +
+      "\\func zero => 0\n" +
+      "\\func isEven (n : Nat) : Nat\n" +
+      "  | 0 => one\n" +
+      "  | suc n => isOdd n\n" +
+      "\\func isOdd (n : Nat) : Nat\n" +
+      "  | 0 => zero\n" +
+      "  | suc n => isEven n");
+    // The hash of a component does not depend on the member it is reached from
+    byte[] hash = new CoreHashes().getHash(getDefinition("isEven"));
+    assertNotNull(hash);
+    assertArrayEquals(hash, new CoreHashes().getHash(getDefinition("isOdd")));
+  }
+
+  @Test
+  public void lemmaBodyChangedTest() {
+    ChildGroup group1 = typeCheckModule("\\lemma f : 0 = 0 => idp\n\\func g => 0");
+    Map<TCReferable, byte[]> verifiedHashes = new HashMap<>();
+    CoreModuleChecker checker = new CoreModuleChecker(errorReporter, typecheckerState);
+    checker.setVerifiedHashes(verifiedHashes);
+    assertTrue(checker.checkGroup(group1));
+
+    ChildGroup group2 = typeCheckModule("\\lemma f : 0 = 0 => path (\\lam _ => 0)\n\\func g => 0");
+    Map<TCReferable, byte[]> newVerifiedHashes = new HashMap<>();
+    for (String name : Arrays.asList("f", "g")) {
+      newVerifiedHashes.put(get(group2.getGroupScope(), name), verifiedHashes.get(get(group1.getGroupScope(), name)));
+    }
+    checker = new CoreModuleChecker(errorReporter, typecheckerState);
+    checker.setVerifiedHashes(newVerifiedHashes);
+    assertTrue(checker.checkGroup(group2));
+    assertEquals(1, checker.getNumberOfSkipped());
+    assertFalse(Arrays.equals(verifiedHashes.get(get(group1.getGroupScope(), "f")), newVerifiedHashes.get(get(group2.getGroupScope(), "f"))));
+  }
+}
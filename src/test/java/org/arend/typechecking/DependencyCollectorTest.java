@@ -0,0 +1,131 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.ConCallExpression;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.frontend.reference.ConcreteLocatedReferable;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.typechecking.visitor.FindDefCallVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class DependencyCollectorTest extends TypeCheckingTestCase {
+  private DependencyCollector dependencyCollector;
+  private TypecheckingOrderingListener typecheckingWithDependencies;
+
+  @Before
+  public void initialize() {
+    dependencyCollector = new DependencyCollector(typecheckerState);
+    typecheckingWithDependencies = new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, errorReporter, dependencyCollector, PositionComparator.INSTANCE, TypecheckingListener.DEFAULT);
+  }
+
+  private void typeCheck(String text) {
+    lastGroup = resolveNamesModule(text);
+    assertTrue(typecheckingWithDependencies.typecheckModules(Collections.singletonList(lastGroup), null));
+    assertThat(errorList, is(empty()));
+  }
+
+  private void retypeCheck(TCReferable referable) {
+    assertTrue(typecheckingWithDependencies.typecheckDefinitions(Collections.singletonList((Concrete.Definition) ((ConcreteLocatedReferable) referable).getDefinition()), null));
+    assertThat(errorList, is(empty()));
+  }
+
+  @Test
+  public void updateResetsReverseDependencies() {
+    typeCheck(
+      "\\func f => 0\n" +
+      "\\func g => f\n" +
+      "\\func h => g");
+    assertThat(dependencyCollector.update(get("f")), containsInAnyOrder(get("f"), get("g"), get("h")));
+    assertThat(getDefinition("h"), is(nullValue()));
+  }
+
+  private void setBody(TCReferable referable, String text) {
+    Concrete.FunctionDefinition definition = (Concrete.FunctionDefinition) ((ConcreteLocatedReferable) referable).getDefinition();
+    ((Concrete.TermFunctionBody) definition.getBody()).setTerm(resolveNamesExpr(text));
+  }
+
+  @Test
+  public void lemmaBodyChanged() {
+    typeCheck(
+      "\\lemma l : 0 = 0 => idp\n" +
+      "\\func f : 0 = 0 => l");
+    TCReferable lemmaRef = get("l");
+    Definition lemma = getDefinition("l");
+    Definition function = getDefinition("f");
+
+    assertThat(dependencyCollector.update(lemmaRef), contains(lemmaRef));
+    assertThat(typecheckerState.getTypechecked(lemmaRef), is(nullValue()));
+    assertSame(function, getDefinition("f"));
+
+    setBody(lemmaRef, "path (\\lam _ => 0)");
+    retypeCheck(lemmaRef);
+    assertSame(lemma, typecheckerState.getTypechecked(lemmaRef));
+    assertThat(((FunctionDefinition) lemma).getActualBody(), is(instanceOf(ConCallExpression.class)));
+    assertSame(function, getDefinition("f"));
+  }
+
+  @Test
+  public void recursiveLemmaBodyChanged() {
+    typeCheck(
+      "\\lemma l (n : Nat) : 0 = 0 | 0 => idp | suc n => l n\n" +
+      "\\func f : 0 = 0 => l 0");
+    TCReferable lemmaRef = get("l");
+    Definition lemma = getDefinition("l");
+
+    assertThat(dependencyCollector.update(lemmaRef), contains(lemmaRef));
+    Concrete.FunctionDefinition definition = (Concrete.FunctionDefinition) ((ConcreteLocatedReferable) lemmaRef).getDefinition();
+    ((Concrete.ElimFunctionBody) definition.getBody()).getClauses().get(0).expression = resolveNamesExpr("path (\\lam _ => 0)");
+    retypeCheck(lemmaRef);
+    // The new body refers to the new definition, so its content cannot be moved to the old one
+    Definition newLemma = getDefinition("l");
+    assertNotSame(lemma, newLemma);
+    FindDefCallVisitor<Definition> visitor = new FindDefCallVisitor<>(Collections.singleton(newLemma), false);
+    visitor.findDefinition(((FunctionDefinition) newLemma).getActualBody());
+    assertSame(newLemma, visitor.getFoundDefinition());
+    assertThat(getDefinition("f"), is(nullValue()));
+  }
+
+  @Test
+  public void lemmaTypeChanged() {
+    typeCheck(
+      "\\lemma l : 0 = 0 => idp\n" +
+      "\\func f => l");
+    TCReferable lemmaRef = get("l");
+
+    assertThat(dependencyCollector.update(lemmaRef), contains(lemmaRef));
+    assertThat(getDefinition("f"), is(notNullValue()));
+
+    Concrete.FunctionDefinition definition = (Concrete.FunctionDefinition) ((ConcreteLocatedReferable) lemmaRef).getDefinition();
+    definition.setResultType(resolveNamesExpr("1 = 1"));
+    retypeCheck(lemmaRef);
+    assertThat(typecheckerState.getTypechecked(lemmaRef), is(notNullValue()));
+    assertThat(getDefinition("f"), is(nullValue()));
+  }
+
+  @Test
+  public void visibleBodyChanged() {
+    typeCheck(
+      "\\func g => 0\n" +
+      "\\func h : g = 0 => idp");
+
+    assertThat(dependencyCollector.updateDefinition(get("g")), contains(get("g")));
+    assertThat(getDefinition("h"), is(notNullValue()));
+
+    setBody(get("g"), "1");
+    retypeCheck(get("g"));
+    assertThat(getDefinition("g"), is(notNullValue()));
+    assertThat(getDefinition("h"), is(nullValue()));
+  }
+}
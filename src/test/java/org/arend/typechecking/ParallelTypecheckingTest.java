@@ -0,0 +1,92 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.Definition;
+import org.arend.ext.error.GeneralError;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.doubleChecker.CoreModuleChecker;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParallelTypecheckingTest extends TypeCheckingTestCase {
+  private ChildGroup typeCheckModuleInParallel(String text, int errors) {
+    ChildGroup group = resolveNamesModule(text);
+    TypecheckingOrderingListener typechecking = new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, localErrorReporter, PositionComparator.INSTANCE);
+    typechecking.setNumberOfThreads(4);
+    assertTrue(typechecking.typecheckModules(Collections.singletonList(group), null));
+    assertEquals(errorList.toString(), errors, errorList.size());
+    if (errors == 0) {
+      assertTrue(new CoreModuleChecker(errorReporter, typecheckerState).checkGroup(group));
+    }
+    lastGroup = group;
+    return group;
+  }
+
+  private static String independentDefinitions(int n) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      builder.append("\\func a").append(i).append(" (x : Nat) : Nat | 0 => ").append(i).append(" | suc x => suc (a").append(i).append(" x)\n");
+      builder.append("\\func b").append(i).append(" : a").append(i).append(" 3 = ").append(i + 3).append(" => idp\n");
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void independentTest() {
+    typeCheckModuleInParallel(independentDefinitions(50), 0);
+    for (int i = 0; i < 50; i++) {
+      assertEquals(Definition.TypeCheckingStatus.NO_ERRORS, getDefinition("b" + i).status());
+    }
+  }
+
+  @Test
+  public void dependenciesTest() {
+    typeCheckModuleInParallel(
+      "\\data D : \\Set0 | con1 | con2 E\n" +
+      "\\data E : \\Set0 | con3 | con4 D\n" +
+      "\\func f (d : D) : Nat | con1 => 0 | con2 e => g e\n" +
+      "\\func g (e : E) : Nat | con3 => 1 | con4 d => f d\n" +
+      "\\func h : f (con2 (con4 con1)) = 0 => idp\n" +
+      "\\class C (n : Nat)\n" +
+      "\\instance inst : C 7\n" +
+      "\\func k {c : C} => c.n\n" +
+      "\\func test : k = 7 => idp", 0);
+  }
+
+  @Test
+  public void errorsOrderTest() {
+    String text =
+      "\\func f1 : Nat => g1\n" +
+      "\\func g1 : \\Set0 => Nat\n" +
+      "\\func f2 (n : Nat) : Nat => f2 n\n" +
+      "\\func f3 : 0 = 1 => idp\n" +
+      "\\func f4 (x : Nat) : Nat => f4 (suc x)\n" +
+      "\\func f5 : \\Prop => Nat\n" +
+      independentDefinitions(20);
+
+    typeCheckModule(text, 5);
+    List<String> expected = new ArrayList<>();
+    for (GeneralError error : errorList) {
+      expected.add(error.toString());
+    }
+    errorList.clear();
+
+    for (int i = 0; i < 10; i++) {
+      typeCheckModuleInParallel(text, 5);
+      List<String> actual = new ArrayList<>();
+      for (GeneralError error : errorList) {
+        actual.add(error.toString());
+      }
+      assertEquals(expected, actual);
+      errorList.clear();
+    }
+  }
+}
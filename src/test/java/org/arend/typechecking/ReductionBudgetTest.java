@@ -0,0 +1,72 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.typechecking.computation.UnfoldingProfiler;
+import org.arend.typechecking.error.local.ReductionLimitError;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.util.Pair;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.arend.Matchers.typecheckingError;
+import static org.junit.Assert.*;
+
+public class ReductionBudgetTest extends TypeCheckingTestCase {
+  private static final String FIB =
+    "\\func fib (n : Nat) : Nat\n" +
+    "  | 0 => 0\n" +
+    "  | 1 => 1\n" +
+    "  | suc (suc n) => fib n Nat.+ fib (suc n)\n";
+
+  @Test
+  public void limitExceeded() {
+    TypecheckingOrderingListener typechecking = newTypechecking();
+    typechecking.setMaxReductionSteps(1000);
+    typeCheckModule(typechecking, FIB +
+      "\\func small : fib 5 = 5 => idp\n" +
+      "\\func large : fib 20 = 6765 => idp", 1);
+    assertThatErrorsAre(typecheckingError(ReductionLimitError.class));
+    assertEquals(Definition.TypeCheckingStatus.NO_ERRORS, getDefinition("small").status());
+    assertTrue(getDefinition("large").status().hasErrors());
+  }
+
+  @Test
+  public void noLimit() {
+    typeCheckModule(FIB + "\\func large : fib 20 = 6765 => idp");
+  }
+
+  @Test
+  public void profiling() {
+    TypecheckingOrderingListener typechecking = newTypechecking();
+    UnfoldingProfiler profiler = new UnfoldingProfiler();
+    typechecking.setUnfoldingProfiler(profiler);
+    typeCheckModule(typechecking, FIB + "\\func test : fib 10 = 55 => idp", 0);
+    List<Pair<FunctionDefinition, Long>> unfoldings = profiler.getMostUnfolded(1);
+    assertEquals(1, unfoldings.size());
+    assertSame(getDefinition("fib"), unfoldings.get(0).proj1);
+    assertTrue(unfoldings.get(0).proj2 >= 177);
+  }
+
+  @Test
+  public void sessionsAreIndependent() {
+    TypecheckingOrderingListener limited = newTypechecking();
+    UnfoldingProfiler profiler = new UnfoldingProfiler();
+    limited.setMaxReductionSteps(1000);
+    limited.setUnfoldingProfiler(profiler);
+
+    typeCheckModule(limited, FIB + "\\func large : fib 20 = 6765 => idp", 1);
+    assertThatErrorsAre(typecheckingError(ReductionLimitError.class));
+    assertTrue(getDefinition("large").status().hasErrors());
+    List<Pair<FunctionDefinition, Long>> unfoldings = profiler.getMostUnfolded(1);
+    assertEquals(1, unfoldings.size());
+    long fibUnfoldings = unfoldings.get(0).proj2;
+
+    // Neither the limit nor the profiler of the first session applies to the second one
+    errorList.clear();
+    typeCheckModule(newTypechecking(), FIB + "\\func large : fib 20 = 6765 => idp", 0);
+    assertEquals(Definition.TypeCheckingStatus.NO_ERRORS, getDefinition("large").status());
+    assertEquals(fibUnfoldings, (long) profiler.getMostUnfolded(1).get(0).proj2);
+  }
+}
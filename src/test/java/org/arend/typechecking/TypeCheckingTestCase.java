@@ -116,8 +116,16 @@ public class TypeCheckingTestCase extends NameResolverTestCase {
   }
 
 
+  protected TypecheckingOrderingListener newTypechecking() {
+    return new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, localErrorReporter, PositionComparator.INSTANCE);
+  }
+
   private void typeCheckModule(Group group, int errors) {
-    assertTrue(new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, localErrorReporter, PositionComparator.INSTANCE).typecheckModules(Collections.singletonList(group), null));
+    typeCheckModule(newTypechecking(), group, errors);
+  }
+
+  private void typeCheckModule(TypecheckingOrderingListener typechecking, Group group, int errors) {
+    assertTrue(typechecking.typecheckModules(Collections.singletonList(group), null));
     boolean ok = errors != 0 || new CoreModuleChecker(errorReporter, typecheckerState).checkGroup(group);
     assertThat(errorList, containsErrors(errors));
     assertTrue(ok);
@@ -153,6 +161,12 @@ public class TypeCheckingTestCase extends NameResolverTestCase {
     return typeCheckModule(text, 0);
   }
 
+  protected ChildGroup typeCheckModule(TypecheckingOrderingListener typechecking, String text, int errors) {
+    lastGroup = resolveNamesModule(text);
+    typeCheckModule(typechecking, lastGroup, errors);
+    return lastGroup;
+  }
+
   protected ChildGroup typeCheckClass(String instance, String global, int errors) {
     lastGroup = resolveNamesDefGroup("\\class Test {\n" + instance + (global.isEmpty() ? "" : "\n} \\where {\n" + global) + "\n}");
     typeCheckModule(lastGroup, errors);
@@ -0,0 +1,103 @@
+package org.arend.typechecking;
+
+import org.arend.frontend.MetricsExporter;
+import org.arend.typechecking.computation.TypecheckingMetrics;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TypecheckingMetricsTest extends TypeCheckingTestCase {
+  private final TypecheckingMetrics myMetrics = new TypecheckingMetrics();
+
+  private void typeCheckModuleWithMetrics(String text) {
+    TypecheckingOrderingListener typechecking = newTypechecking();
+    typechecking.setMetrics(myMetrics);
+    typeCheckModule(typechecking, text, 0);
+  }
+
+  private TypecheckingMetrics.DefinitionMetrics getMetrics(String name) {
+    TypecheckingMetrics.DefinitionMetrics metrics = myMetrics.getDefinitionMetrics().get(get(name));
+    assertNotNull(metrics);
+    return metrics;
+  }
+
+  @Test
+  public void countersTest() {
+    typeCheckModuleWithMetrics(
+      "\\class C (X : \\Type) | xxx : X\n" +
+      "\\instance NatC : C Nat | xxx => 7\n" +
+      "\\func id {A : \\Type} (a : A) => a\n" +
+      "\\func test : id {Nat} xxx = 7 => idp");
+    TypecheckingMetrics.DefinitionMetrics metrics = getMetrics("test");
+    assertTrue(metrics.getInstanceSearches() > 0);
+    assertTrue(metrics.getEquations() > 0);
+    assertTrue(metrics.getNormalizationSteps() > 0);
+    assertTrue(metrics.getHeaderTime() > 0);
+    assertTrue(metrics.getBodyTime() > 0);
+    assertEquals(0, getMetrics("id").getInstanceSearches());
+  }
+
+  @Test
+  public void mutualRecursionTest() {
+    typeCheckModuleWithMetrics(
+      "\\func isEven (n : Nat) : Nat\n" +
+      "  | 0 => 1\n" +
+      "  | suc n => isOdd n\n" +
+      "\\func isOdd (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | suc n => isEven n");
+    TypecheckingMetrics.DefinitionMetrics metrics = getMetrics("isEven");
+    assertTrue(metrics.getHeaderTime() > 0);
+    assertTrue(metrics.getBodyTime() > 0);
+  }
+
+  @Test
+  public void disabledTest() {
+    typeCheckModule("\\func f => 0");
+    assertTrue(myMetrics.getDefinitionMetrics().isEmpty());
+  }
+
+  @Test
+  public void classTest() {
+    typeCheckModuleWithMetrics("\\class C (X : \\Type) | xxx : X");
+    TypecheckingMetrics.DefinitionMetrics metrics = getMetrics("C");
+    assertEquals(0, metrics.getHeaderTime());
+    assertTrue(metrics.getBodyTime() > 0);
+  }
+
+  @Test
+  public void sessionsTest() {
+    TypecheckingOrderingListener typechecking = newTypechecking();
+    TypecheckingMetrics otherMetrics = new TypecheckingMetrics();
+    typechecking.setMetrics(otherMetrics);
+    typeCheckModule(typechecking, "\\func f => 0", 0);
+    typeCheckModuleWithMetrics("\\func g => 0");
+    assertEquals(Collections.singleton(get("g")), myMetrics.getDefinitionMetrics().keySet());
+    assertEquals(1, otherMetrics.getDefinitionMetrics().size());
+    assertFalse(otherMetrics.getDefinitionMetrics().containsKey(get("g")));
+  }
+
+  @Test
+  public void exportTest() throws IOException {
+    typeCheckModuleWithMetrics("\\func f => 0");
+    MetricsExporter exporter = new MetricsExporter(myMetrics.getDefinitionMetrics(), Collections.emptyMap());
+
+    StringWriter csv = new StringWriter();
+    exporter.writeCsv(csv);
+    String[] lines = csv.toString().split("\n");
+    assertEquals(2, lines.length);
+    assertTrue(lines[0].startsWith("kind,module,name,headerTime,bodyTime"));
+    assertTrue(lines[1].startsWith("definition,"));
+    assertTrue(lines[1].contains(",f,"));
+
+    StringWriter json = new StringWriter();
+    exporter.writeJson(json);
+    assertTrue(json.toString().contains("\"name\": \"f\""));
+    assertTrue(json.toString().contains("\"modules\": []"));
+  }
+}
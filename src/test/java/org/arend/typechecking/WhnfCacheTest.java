@@ -0,0 +1,97 @@
+package org.arend.typechecking;
+
+import org.arend.core.context.binding.inference.ExpressionInferenceVariable;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.*;
+import org.arend.core.expr.visitor.WhnfCache;
+import org.arend.core.sort.Sort;
+import org.arend.ext.core.ops.NormalizationMode;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.arend.core.expr.ExpressionFactory.*;
+import static org.junit.Assert.*;
+
+public class WhnfCacheTest extends TypeCheckingTestCase {
+  private final WhnfCache cache = new WhnfCache();
+
+  @Override
+  protected TypecheckingOrderingListener newTypechecking() {
+    TypecheckingOrderingListener typechecking = super.newTypechecking();
+    typechecking.setWhnfCache(cache);
+    return typechecking;
+  }
+
+  @Test
+  public void countersAreRecorded() {
+    typeCheckModule(
+      "\\func T (n : Nat) : \\Set0 \\elim n\n" +
+      "  | 0 => Nat\n" +
+      "  | suc n => T n\n" +
+      "\\func f (x : T 3) : T 3 => x\n" +
+      "\\func g (x : T 3) => f (f (f x))");
+    WhnfCache.Counters counters = cache.getCounters().get(get("g"));
+    assertNotNull(counters);
+    assertTrue(counters.getHits() > 0);
+  }
+
+  @Test
+  public void sessionsAreIndependent() {
+    typeCheckModule(super.newTypechecking(),
+      "\\func T (n : Nat) : \\Set0 \\elim n\n" +
+      "  | 0 => Nat\n" +
+      "  | suc n => T n\n" +
+      "\\func f (x : T 3) : T 3 => x\n" +
+      "\\func g (x : T 3) => f (f (f x))", 0);
+    assertTrue(cache.getCounters().isEmpty());
+  }
+
+  @Test
+  public void solvedInferenceVariables() {
+    typeCheckModule(
+      "\\func id {A : \\Type} (a : A) => a\n" +
+      "\\func T (b : Nat) : \\Set0 \\elim b\n" +
+      "  | 0 => Nat\n" +
+      "  | suc _ => Nat -> Nat\n" +
+      "\\func f (t : T 1) : T (id 1) => id (id t)\n" +
+      "\\func g : T (id 0) => id (id (f (\\lam x => x) 0))");
+
+    InferenceReferenceExpression reference = new InferenceReferenceExpression(new ExpressionInferenceVariable(Nat(), null, Collections.emptySet()));
+    Expression expr = new FunCallExpression((FunctionDefinition) getDefinition("T"), Sort.STD, Collections.singletonList(reference));
+    WhnfCache.run(cache, get("T"), () -> {
+      assertSame(expr, expr.normalize(NormalizationMode.WHNF));
+      assertSame(expr, expr.normalize(NormalizationMode.WHNF));
+      // The cached result got stuck on the variable, so it is computed again after the variable is solved
+      reference.setSubstExpression(Zero());
+      assertTrue(expr.normalize(NormalizationMode.WHNF) instanceof DataCallExpression);
+      return null;
+    });
+    WhnfCache.Counters counters = cache.getCounters().get(get("T"));
+    assertEquals(1, counters.getHits());
+    assertEquals(2, counters.getMisses());
+  }
+
+  @Test
+  public void changedDefinition() {
+    typeCheckModule(
+      "\\func T (b : Nat) : \\Set0 \\elim b\n" +
+      "  | 0 => Nat\n" +
+      "  | suc _ => Nat -> Nat\n" +
+      "\\func S : \\Set0 => T 0");
+
+    FunctionDefinition definition = (FunctionDefinition) getDefinition("S");
+    Expression expr = new FunCallExpression(definition, Sort.STD, Collections.emptyList());
+    WhnfCache.run(cache, get("S"), () -> {
+      assertTrue(expr.normalize(NormalizationMode.WHNF) instanceof DataCallExpression);
+      // Results are invalidated when a body changes, even if it changes in another definition of the session
+      WhnfCache.run(cache, get("T"), () -> {
+        definition.setBody(new PiExpression(Sort.SET0, singleParams(true, Collections.singletonList("x"), Nat()), Nat()));
+        return null;
+      });
+      assertTrue(expr.normalize(NormalizationMode.WHNF) instanceof PiExpression);
+      return null;
+    });
+  }
+}
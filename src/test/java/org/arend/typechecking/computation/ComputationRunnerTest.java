@@ -0,0 +1,81 @@
+package org.arend.typechecking.computation;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ComputationRunnerTest {
+  private static class MyRunner extends ComputationRunner<Boolean> {
+    @Override
+    protected Boolean computationInterrupted() {
+      return false;
+    }
+  }
+
+  private static class MyCancellationIndicator implements CancellationIndicator {
+    volatile boolean canceled;
+
+    @Override
+    public boolean isCanceled() {
+      return canceled;
+    }
+  }
+
+  @Test
+  public void concurrentComputationsTest() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch canceled = new CountDownLatch(1);
+    MyCancellationIndicator indicator1 = new MyCancellationIndicator();
+    MyCancellationIndicator indicator2 = new MyCancellationIndicator();
+    AtomicBoolean result1 = new AtomicBoolean(true);
+    AtomicBoolean result2 = new AtomicBoolean(false);
+
+    Thread thread1 = new Thread(() -> result1.set(new MyRunner().run(indicator1, () -> {
+      started.countDown();
+      while (true) {
+        ComputationRunner.checkCanceled();
+        Thread.yield();
+      }
+    })));
+    Thread thread2 = new Thread(() -> result2.set(new MyRunner().run(indicator2, () -> {
+      started.countDown();
+      try {
+        assertTrue(canceled.await(10, TimeUnit.SECONDS));
+      } catch (InterruptedException e) {
+        return false;
+      }
+      ComputationRunner.checkCanceled();
+      return ComputationRunner.getCancellationIndicator() == indicator2;
+    })));
+
+    thread1.start();
+    thread2.start();
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    indicator1.canceled = true;
+    thread1.join();
+    canceled.countDown();
+    thread2.join();
+
+    assertFalse(result1.get());
+    assertTrue(result2.get());
+    assertSame(ThreadCancellationIndicator.INSTANCE, ComputationRunner.getCancellationIndicator());
+  }
+
+  @Test
+  public void nestedComputationsTest() {
+    MyCancellationIndicator outer = new MyCancellationIndicator();
+    MyCancellationIndicator inner = new MyCancellationIndicator();
+    assertTrue(new MyRunner().run(outer, () -> {
+      inner.canceled = true;
+      assertFalse(new MyRunner().run(inner, () -> {
+        ComputationRunner.checkCanceled();
+        return true;
+      }));
+      return ComputationRunner.getCancellationIndicator() == outer;
+    }));
+  }
+}
@@ -0,0 +1,73 @@
+package org.arend.typechecking.implicitargs.equations;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LevelEquationsTest {
+  private static LevelEquations<String> equations(String... variables) {
+    LevelEquations<String> result = new LevelEquations<>();
+    for (String variable : variables) {
+      result.addVariable(variable);
+    }
+    return result;
+  }
+
+  @Test
+  public void solutionTest() {
+    LevelEquations<String> equations = equations("x", "y", "z");
+    equations.addEquation(new LevelEquation<>(null, "x", -2));
+    equations.addEquation(new LevelEquation<>("x", "y", 1));
+    equations.addEquation(new LevelEquation<>("y", "z", -3));
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertEquals(3, solution.size());
+    assertEquals(-2, (int) solution.get("x"));
+    assertEquals(-1, (int) solution.get("y"));
+    assertEquals(-4, (int) solution.get("z"));
+  }
+
+  @Test
+  public void infinityTest() {
+    LevelEquations<String> equations = equations("x", "y");
+    equations.addEquation(new LevelEquation<>(null, "y", -1));
+    equations.addEquation(new LevelEquation<>("x", "y", 0));
+    equations.addEquation(new LevelEquation<>("x"));
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertEquals(LevelEquations.INFINITY, (int) solution.get("x"));
+    assertEquals(LevelEquations.INFINITY, (int) solution.get("y"));
+  }
+
+  @Test
+  public void cycleTest() {
+    LevelEquations<String> equations = equations("x", "y");
+    LevelEquation<String> eq1 = new LevelEquation<>(null, "x", -1);
+    LevelEquation<String> eq2 = new LevelEquation<>("x", "y", -1);
+    LevelEquation<String> eq3 = new LevelEquation<>("y", "x", 1);
+    LevelEquation<String> eq4 = new LevelEquation<>("y", null, 0);
+    equations.addEquation(eq1);
+    equations.addEquation(eq2);
+    equations.addEquation(eq3);
+    equations.addEquation(eq4);
+    List<LevelEquation<String>> cycle = equations.solve(new HashMap<>());
+    assertEquals(Arrays.asList(eq1, eq2, eq4), cycle);
+  }
+
+  @Test
+  public void negativeCycleTest() {
+    LevelEquations<String> equations = equations("x", "y");
+    LevelEquation<String> eq1 = new LevelEquation<>("x", "y", -1);
+    LevelEquation<String> eq2 = new LevelEquation<>("y", "x", 0);
+    equations.addEquation(eq1);
+    equations.addEquation(eq2);
+    List<LevelEquation<String>> cycle = equations.solve(new HashMap<>());
+    assertNotNull(cycle);
+    assertEquals(Arrays.asList(eq1, eq2, eq1, eq2, eq1), cycle);
+  }
+}
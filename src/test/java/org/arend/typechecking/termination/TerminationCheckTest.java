@@ -21,6 +21,8 @@ import org.junit.Test;
 import java.util.HashSet;
 import java.util.Set;
 
+import static org.junit.Assert.*;
+
 public class TerminationCheckTest extends TypeCheckingTestCase {
 
   @Test
@@ -264,4 +266,33 @@ public class TerminationCheckTest extends TypeCheckingTestCase {
     assert !callCategory.checkTermination();
   }
 
+  @Test
+  public void wideMatrices() {
+    int size = 40;
+    String[] arguments = new String[size];
+    Object[] data = new Object[size * 2];
+    for (int i = 0; i < size; i++) {
+      arguments[i] = "x" + i;
+      data[2 * i] = i == size - 1 ? '<' : '=';
+      data[2 * i + 1] = (i + 1) % size;
+    }
+    TestVertex f = new TestVertex("f", arguments);
+    BaseCallMatrix<TestVertex> m = new TestCallMatrix("1", f, f, data);
+
+    BaseCallMatrix<TestVertex> power = m;
+    for (int k = 2; k < size; k++) {
+      power = new CompositeCallMatrix<>(power, m);
+    }
+    BaseCallMatrix<TestVertex> left = new CompositeCallMatrix<>(power, m);
+    BaseCallMatrix<TestVertex> right = new CompositeCallMatrix<>(m, power);
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        assertEquals(i == j ? BaseCallMatrix.R.LessThan : BaseCallMatrix.R.Unknown, left.getValue(i, j));
+      }
+    }
+    assertEquals(left, right);
+    assertEquals(left.hashCode(), right.hashCode());
+    assertTrue(m.leq(m));
+    assertFalse(left.leq(m));
+  }
 }
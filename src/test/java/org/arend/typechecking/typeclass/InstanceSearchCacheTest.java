@@ -0,0 +1,103 @@
+package org.arend.typechecking.typeclass;
+
+import org.arend.core.definition.ClassDefinition;
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.frontend.reference.ConcreteLocatedReferable;
+import org.arend.naming.reference.ClassReferable;
+import org.arend.prelude.Prelude;
+import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.arend.typechecking.instance.provider.InstanceHeadFunction;
+import org.arend.typechecking.instance.provider.SimpleInstanceProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InstanceSearchCacheTest extends TypeCheckingTestCase {
+  private SimpleInstanceProvider provider;
+  private ClassReferable classRef;
+  private ClassField classifyingField;
+  private long stamp;
+  private int lookups;
+
+  private final InstanceHeadFunction headFunction = new InstanceHeadFunction() {
+    @Override
+    public FunctionDefinition getTypechecked(Concrete.FunctionDefinition instance) {
+      lookups++;
+      return (FunctionDefinition) typecheckerState.getTypechecked(instance.getData());
+    }
+
+    @Override
+    public Object getHead(FunctionDefinition instance, ClassField classifyingField) {
+      return instance.getReferable().textRepresentation().endsWith("Nat") ? Prelude.NAT : Prelude.INT;
+    }
+
+    @Override
+    public long getStamp() {
+      return stamp;
+    }
+  };
+
+  private Concrete.FunctionDefinition getInstance(String name) {
+    return (Concrete.FunctionDefinition) ((ConcreteLocatedReferable) get(name)).getDefinition();
+  }
+
+  @Before
+  public void initialize() {
+    typeCheckModule(
+      "\\class C (X : \\Type) | x : X\n" +
+      "\\instance C-Int : C Int | x => pos 3\n" +
+      "\\instance C-Nat : C Nat | x => 1\n" +
+      "\\class E (Y : \\Type)\n" +
+      "\\class D \\extends E\n" +
+      "\\instance D-Nat : D Nat");
+    provider = new SimpleInstanceProvider();
+    provider.put(getInstance("C-Int"));
+    provider.put(getInstance("C-Nat"));
+    classRef = (ClassReferable) get("C");
+    classifyingField = ((ClassDefinition) getDefinition("C")).getClassifyingField();
+  }
+
+  private Concrete.FunctionDefinition find() {
+    lookups = 0;
+    return provider.findInstance(classRef, classifyingField, Prelude.NAT, Prelude.NAT, headFunction, instance -> true);
+  }
+
+  @Test
+  public void cachedResult() {
+    assertSame(getInstance("C-Nat"), find());
+    assertEquals(2, lookups);
+    assertSame(getInstance("C-Nat"), find());
+    assertEquals(1, lookups);
+  }
+
+  @Test
+  public void stampChanged() {
+    assertSame(getInstance("C-Nat"), find());
+    stamp++;
+    assertSame(getInstance("C-Nat"), find());
+    assertEquals(2, lookups);
+  }
+
+  @Test
+  public void instanceAdded() {
+    assertSame(getInstance("C-Nat"), find());
+    provider.put(getInstance("C-Int"));
+    assertSame(getInstance("C-Nat"), find());
+    assertEquals(2, lookups);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void superClassAdded() {
+    Concrete.FunctionDefinition instance = getInstance("D-Nat");
+    provider.put(instance);
+    assertNull(provider.findInstance(classRef, inst -> inst == instance));
+    ((List<ClassReferable>) ((ClassReferable) get("D")).getSuperClassReferences()).add(classRef);
+    assertSame(instance, provider.findInstance(classRef, inst -> inst == instance));
+  }
+}
@@ -370,4 +370,28 @@ public class TypeClassesGlobal extends TypeCheckingTestCase {
       "\\class D \\extends C | X => Nat -> Nat\n" +
       "\\instance ddd : D", 1);
   }
+
+  @Test
+  public void firstMatchingInstance() {
+    typeCheckModule(
+      "\\class C (X : \\Type) | x : X\n" +
+      "\\class D \\extends C\n" +
+      "\\instance C-Int : C Int | x => pos 3\n" +
+      "\\instance D-Nat : D Nat | x => 1\n" +
+      "\\instance C-Nat : C Nat | x => 2\n" +
+      "\\func f : x = {Nat} 1 => idp\n" +
+      "\\func g : x = {Int} pos 3 => idp");
+  }
+
+  @Test
+  public void numeralInstances() {
+    typeCheckModule(
+      "\\class C (n : Nat) | p : n = n\n" +
+      "\\instance C0 : C 0 | p => idp\n" +
+      "\\instance C3 : C 3 | p => idp\n" +
+      "\\func f : 0 = 0 => p\n" +
+      "\\func g : 3 = 3 => p\n" +
+      "\\func h (n : Nat) : suc n = suc n => p", 1);
+    assertThatErrorsAre(typeMismatchError());
+  }
 }